@@ -0,0 +1,161 @@
+package com.auction.benchmark;
+
+import com.auction.common.AuctionItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mede lances concorrentes em um único leilão: o AuctionItem atual, que publica cada lance
+ * com compare-and-set sobre um estado imutável, contra uma réplica da versão anterior, que
+ * validava e gravava o lance sob um ReentrantLock.
+ *
+ * <pre>
+ * java -cp out com.auction.benchmark.BidContentionBenchmark 2000
+ * </pre>
+ * O argumento é a duração de cada medição em milissegundos. Cada thread lê o lance atual e
+ * tenta cobri-lo com um pequeno incremento aleatório, como licitantes disputando o mesmo
+ * item; a maioria das tentativas perde para um lance mais novo e é recusada.
+ */
+public class BidContentionBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int WARMUP_ROUNDS = 2;
+
+    /**
+     * Uma implementação de lance a ser medida.
+     */
+    private interface Bidder {
+        long currentBid();
+        boolean bid(String bidderId, String bidderUsername, long amount);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(newCasBidder(), 8, durationMillis / 2);
+            run(new LockedBidder(), 8, durationMillis / 2);
+        }
+
+        System.out.println("--- BidContentionBenchmark (" + durationMillis + " ms por medição, "
+                + Runtime.getRuntime().availableProcessors() + " CPUs) ---");
+        System.out.printf("%-8s %-6s %16s %16s %8s%n", "Threads", "Modo", "tentativas/s", "aceitos/s", "aceitos%");
+        for (int threads : THREADS) {
+            print(threads, "lock", run(new LockedBidder(), threads, durationMillis), durationMillis);
+            print(threads, "cas", run(newCasBidder(), threads, durationMillis), durationMillis);
+        }
+    }
+
+    private static Bidder newCasBidder() {
+        AuctionItem item = new AuctionItem("Relógio antigo", "Relógio de bolso de 1920.", 10000, 3600,
+                UUID.randomUUID().toString(), "alice");
+        return new Bidder() {
+            @Override
+            public long currentBid() {
+                return item.getCurrentBid();
+            }
+
+            @Override
+            public boolean bid(String bidderId, String bidderUsername, long amount) {
+                return item.tryPlaceBid(bidderId, bidderUsername, amount, 1) > 0;
+            }
+        };
+    }
+
+    // Devolve {tentativas, aceitos}.
+    private static long[] run(Bidder bidder, int threads, long durationMillis) throws InterruptedException {
+        LongAdder attempts = new LongAdder();
+        LongAdder accepted = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis) + TimeUnit.MILLISECONDS.toNanos(50);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String bidderId = UUID.randomUUID().toString();
+            String bidderUsername = "bidder" + t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long localAttempts = 0;
+                long localAccepted = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    long amount = bidder.currentBid() + 1 + random.nextInt(10);
+                    if (bidder.bid(bidderId, bidderUsername, amount)) {
+                        localAccepted++;
+                    }
+                    localAttempts++;
+                }
+                attempts.add(localAttempts);
+                accepted.add(localAccepted);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        Thread.sleep(50); // Todas as threads prontas antes da largada
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new long[]{attempts.sum(), accepted.sum()};
+    }
+
+    private static void print(int threads, String mode, long[] result, long durationMillis) {
+        double seconds = durationMillis / 1000.0;
+        System.out.printf("%-8d %-6s %,16.0f %,16.0f %7.1f%%%n", threads, mode, result[0] / seconds,
+                result[1] / seconds, result[0] == 0 ? 0.0 : 100.0 * result[1] / result[0]);
+    }
+
+    /**
+     * Réplica do lance da versão anterior do AuctionItem: campos comuns, validados e
+     * gravados sob um ReentrantLock. Um lance perdedor espera na fila do lock para só então
+     * ser recusado.
+     */
+    private static final class LockedBidder implements Bidder {
+        private final ReentrantLock bidLock = new ReentrantLock();
+        private final long endTimeMillis = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        private long currentBid = 10000;
+        private String highestBidderId;
+        private String highestBidderUsername;
+        private long updateSequence;
+
+        @Override
+        public long currentBid() {
+            bidLock.lock();
+            try {
+                return currentBid;
+            } finally {
+                bidLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean bid(String bidderId, String bidderUsername, long amount) {
+            bidLock.lock();
+            try {
+                if (System.currentTimeMillis() >= endTimeMillis) {
+                    return false;
+                }
+                if (amount > currentBid) {
+                    currentBid = amount;
+                    highestBidderId = bidderId;
+                    highestBidderUsername = bidderUsername;
+                    updateSequence++;
+                    return true;
+                }
+                return false;
+            } finally {
+                bidLock.unlock();
+            }
+        }
+    }
+}
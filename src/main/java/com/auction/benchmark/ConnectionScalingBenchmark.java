@@ -0,0 +1,107 @@
+package com.auction.benchmark;
+
+import com.auction.common.SerializedFrames;
+import com.auction.server.AuctionServer;
+import com.auction.server.ServerConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mede quantas conexões ociosas o servidor sustenta e quanto isso custa em threads e memória,
+ * para comparar o modelo atual (uma thread de plataforma por cliente) com threads virtuais
+ * ou com o transporte NIO.
+ *
+ * O modo é escolhido com as mesmas propriedades do servidor, uma execução por modo:
+ * <pre>
+ * java -cp out com.auction.benchmark.ConnectionScalingBenchmark 5000
+ * java -Dauction.threads=virtual -cp out com.auction.benchmark.ConnectionScalingBenchmark 5000
+ * java -Dauction.transport=nio -cp out com.auction.benchmark.ConnectionScalingBenchmark 5000
+ * </pre>
+ * Cada conexão envia apenas o cabeçalho do stream e fica parada, como um cliente que
+ * ainda não fez login: o handler correspondente fica bloqueado em readObject().
+ */
+public class ConnectionScalingBenchmark {
+
+    private static final int BENCHMARK_PORT = 12399;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        AuctionServer server = new AuctionServer(BENCHMARK_PORT);
+        Thread serverThread = new Thread(server::start, "benchmark-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(500);
+
+        long baselineHeap = usedHeapAfterGc();
+        long baselineRss = residentSetSize();
+        int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        List<Socket> sockets = new ArrayList<>(connections);
+        long startNanos = System.nanoTime();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Socket socket = new Socket("localhost", BENCHMARK_PORT);
+                socket.getOutputStream().write(SerializedFrames.STREAM_HEADER);
+                sockets.add(socket);
+            }
+        } catch (IOException e) {
+            System.err.println("Parou em " + sockets.size() + " conexões: " + e.getMessage());
+        }
+        long connectMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Thread.sleep(2000); // Dá tempo para o servidor aceitar e iniciar todos os handlers
+
+        long heap = usedHeapAfterGc() - baselineHeap;
+        long rss = residentSetSize() - baselineRss;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount() - baselineThreads;
+
+        System.out.println("--- ConnectionScalingBenchmark ---");
+        System.out.println("Modo                 : transporte " + ServerConfig.TRANSPORT + ", threads " + ServerConfig.THREADS);
+        System.out.println("Conexões abertas     : " + sockets.size() + " (em " + connectMillis + " ms)");
+        System.out.println("Threads de plataforma: +" + threads);
+        System.out.printf("Heap usado           : +%.1f MB (%.1f KB/conexão)%n", heap / 1048576.0,
+                sockets.isEmpty() ? 0.0 : heap / 1024.0 / sockets.size());
+        if (baselineRss >= 0) {
+            System.out.printf("Memória residente    : +%.1f MB (%.1f KB/conexão)%n", rss / 1048576.0,
+                    sockets.isEmpty() ? 0.0 : rss / 1024.0 / sockets.size());
+        }
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        System.exit(0);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Lê o VmRSS do processo (apenas Linux). Inclui as pilhas das threads, que não aparecem no heap.
+     *
+     * @return Memória residente em bytes, ou -1 se não estiver disponível.
+     */
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Sistema sem /proc; mede apenas heap e threads.
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package com.auction.benchmark;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.AuctionUpdateMessage;
+import com.auction.common.BidDeltaMessage;
+import com.auction.common.BinaryCodec;
+import com.auction.common.Constants;
+import com.auction.common.KeepAliveMessage;
+import com.auction.common.LoginResponseMessage;
+import com.auction.common.Message;
+import com.auction.common.MessageInput;
+import com.auction.common.PlaceBidMessage;
+import com.auction.common.UserInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compara a serialização Java usada originalmente ({@code out.reset(); out.writeObject(msg)})
+ * com o BinaryCodec: bytes por mensagem e tempo médio de codificação e decodificação.
+ *
+ * <pre>
+ * java -cp out com.auction.benchmark.WireCodecBenchmark 200000
+ * </pre>
+ * O argumento é o número de mensagens por medição. Cada medição é repetida algumas vezes
+ * antes de valer, para o JIT compilar os dois caminhos.
+ */
+public class WireCodecBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        String seller = UUID.randomUUID().toString();
+        String bidder = UUID.randomUUID().toString();
+        AuctionItem item = new AuctionItem("Relógio antigo", "Relógio de bolso de 1920, funcionando.",
+                10000, 300, seller, "alice");
+        item.placeBid(bidder, "bob", 15000);
+
+        List<AuctionItem> auctions = new ArrayList<>();
+        List<UserInfo> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            auctions.add(new AuctionItem("Item " + i, "Descrição do item " + i, 1000L * i, 600, seller, "alice"));
+            users.add(new UserInfo(UUID.randomUUID().toString(), "user" + i, "192.168.0." + i, Constants.P2P_BASE_PORT + i));
+        }
+
+        System.out.println("--- WireCodecBenchmark (" + iterations + " mensagens por medição) ---");
+        System.out.printf("%-22s %-14s %8s %12s %12s%n", "Mensagem", "Formato", "bytes", "encode ns", "decode ns");
+        run("KEEP_ALIVE", new KeepAliveMessage(bidder), iterations);
+        run("PLACE_BID (ID)", new PlaceBidMessage(bidder, item.getId(), 17500, "bob"), iterations);
+        run("PLACE_BID (handle)", new PlaceBidMessage(bidder, item.getId(), 17, 17500, "bob"), iterations);
+        run("AUCTION_UPDATE", new AuctionUpdateMessage("server", item, "Novo lance de bob: 150.00"), iterations);
+        run("BID_DELTA", new BidDeltaMessage("server", 17, 42, 15000, 3), iterations);
+        run("LOGIN_RESPONSE (20+20)", new LoginResponseMessage("server", true, "Login bem-sucedido!", auctions, users,
+                Constants.PROTOCOL_VERSION), iterations / 20);
+    }
+
+    private static void run(String label, Message message, int iterations) throws Exception {
+        Result serialized = null;
+        Result binary = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            serialized = measureSerialized(message, iterations);
+            binary = measureBinary(message, iterations);
+        }
+        serialized.print(label, "serialização");
+        binary.print("", "binário");
+    }
+
+    private static Result measureSerialized(Message message, int iterations) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.flush();
+        int headerLength = bytes.size();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            out.reset();
+            out.writeObject(message);
+        }
+        out.flush();
+        long encodeNanos = System.nanoTime() - start;
+        int perMessage = (bytes.size() - headerLength) / iterations;
+
+        MessageInput in = new MessageInput(new ByteArrayInputStream(bytes.toByteArray()));
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            in.readMessage();
+        }
+        long decodeNanos = System.nanoTime() - start;
+        return new Result(perMessage, encodeNanos / (double) iterations, decodeNanos / (double) iterations);
+    }
+
+    private static Result measureBinary(Message message, int iterations) throws IOException {
+        byte[] frame = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            frame = BinaryCodec.encode(message);
+        }
+        long encodeNanos = System.nanoTime() - start;
+
+        int payloadLength = BinaryCodec.payloadLength(frame, 0);
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            BinaryCodec.decode(frame[1], frame, BinaryCodec.HEADER_LENGTH, payloadLength);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        return new Result(frame.length, encodeNanos / (double) iterations, decodeNanos / (double) iterations);
+    }
+
+    private static final class Result {
+        final int bytes;
+        final double encodeNanos;
+        final double decodeNanos;
+
+        Result(int bytes, double encodeNanos, double decodeNanos) {
+            this.bytes = bytes;
+            this.encodeNanos = encodeNanos;
+            this.decodeNanos = decodeNanos;
+        }
+
+        void print(String label, String format) {
+            System.out.printf("%-22s %-14s %8d %12.0f %12.0f%n", label, format, bytes, encodeNanos, decodeNanos);
+        }
+    }
+}
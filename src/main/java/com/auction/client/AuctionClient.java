@@ -2,8 +2,8 @@ package com.auction.client;
 
 import com.auction.common.*; // Importa todas as classes de mensagem e utilitários
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -13,11 +13,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Cliente para a aplicação de leilões online.
@@ -31,13 +34,38 @@ public class AuctionClient {
 
     // Conexão com o servidor principal
     private Socket serverConnectionSocket;
-    private ObjectInputStream inFromServer;
+    private MessageInput inFromServer;
+    private BufferedOutputStream rawToServer; // Abaixo de outToServer; recebe os frames binários
     private ObjectOutputStream outToServer;
+    // Versão de protocolo negociada com o servidor. Até a resposta do LOGIN, tudo é serializado.
+    private volatile int serverProtocolVersion = Constants.PROTOCOL_LEGACY;
+    // A UI e o Keep-Alive enviam mensagens de threads diferentes.
+    private final ReentrantLock serverWriteLock = new ReentrantLock();
 
     // Estado local da aplicação (listas de leilões e usuários online)
     private final List<AuctionItem> activeAuctions = Collections.synchronizedList(new ArrayList<>());
     private final List<AuctionItem> discontinuedAuctions = Collections.synchronizedList(new ArrayList<>());
     private final Map<String, UserInfo> activeUsers = Collections.synchronizedMap(new HashMap<>());
+    // Os mesmos leilões e usuários pelo handle atribuído pelo servidor, para aplicar os deltas
+    // sem percorrer as listas.
+    private final Map<Integer, AuctionItem> auctionsByHandle = new ConcurrentHashMap<>();
+    private final Map<Integer, UserInfo> usersByHandle = new ConcurrentHashMap<>();
+    // Leilões assinados no servidor (a partir de PROTOCOL_SUBSCRIPTIONS). Por padrão o cliente
+    // acompanha todos os leilões que conhece, exceto os que o usuário pediu para ignorar.
+    private final Set<String> subscribedAuctions = ConcurrentHashMap.newKeySet();
+    private final Set<String> unwatchedAuctions = ConcurrentHashMap.newKeySet();
+
+    // Tamanho das páginas pedidas em AUCTION_QUERY.
+    private static final int QUERY_PAGE_SIZE = 20;
+    // Última consulta paginada e o cursor da sua próxima página (null quando não há mais).
+    private volatile AuctionQueryMessage lastQuery;
+    private volatile String nextQueryCursor;
+
+    // Máximo de lances pedidos em cada BID_HISTORY_REQUEST.
+    private static final int HISTORY_PAGE_SIZE = 20;
+
+    // Máximo de leilões pedidos em cada SEARCH.
+    private static final int SEARCH_MAX_RESULTS = 20;
 
     // Componentes para a comunicação P2P
     private ServerSocket p2pServerSocket; // Servidor para aceitar conexões P2P de outros clientes
@@ -47,6 +75,9 @@ public class AuctionClient {
     // Scheduler para tarefas em segundo plano (ex: Keep-Alive)
     private ScheduledExecutorService scheduler;
 
+    // Tipo de thread usado para cada PeerConnectionHandler ({@code -Dauction.threads=platform|virtual}).
+    private final ExecutionMode executionMode = ExecutionMode.fromProperty("auction.threads", ExecutionMode.PLATFORM);
+
     // Referência para a UI (interface de usuário) para exibir mensagens.
     private ClientUI ui;
 
@@ -98,6 +129,10 @@ public class AuctionClient {
         return ui;
     }
 
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
     public Map<String, PeerConnectionHandler> getActivePeerConnections() {
         return activePeerConnections;
     };
@@ -127,8 +162,10 @@ public class AuctionClient {
         // A ordem de criação dos ObjectOutputStream e ObjectInputStream é CRUCIAL!
         // Output stream DEVE ser criado antes do input stream para evitar deadlock na
         // conexão inicial.
-        outToServer = new ObjectOutputStream(serverConnectionSocket.getOutputStream());
-        inFromServer = new ObjectInputStream(serverConnectionSocket.getInputStream());
+        rawToServer = new BufferedOutputStream(serverConnectionSocket.getOutputStream());
+        outToServer = new ObjectOutputStream(rawToServer);
+        outToServer.flush(); // O cabeçalho do stream precisa chegar ao servidor antes de tudo
+        inFromServer = new MessageInput(serverConnectionSocket.getInputStream());
         ui.displayMessage("Conectado ao servidor de leilões em " + serverIp + ":" + serverPort);
 
         // Inicia uma thread separada para escutar mensagens do servidor.
@@ -177,7 +214,8 @@ public class AuctionClient {
         } catch (Exception e) {
             // ignore and send without IP
         }
-        sendMessageToServer(new LoginMessage(userId, username, p2pPort, localIp));
+        // Anuncia a versão de protocolo suportada; a resposta traz a versão negociada.
+        sendMessageToServer(new LoginMessage(userId, username, p2pPort, localIp, Constants.PROTOCOL_VERSION));
         // Agendar o envio de mensagens Keep-Alive para o servidor.
         scheduler.scheduleAtFixedRate(() -> sendMessageToServer(new KeepAliveMessage(userId)),
                 Constants.KEEP_ALIVE_INTERVAL_MS,
@@ -190,17 +228,25 @@ public class AuctionClient {
      * @param message A Message a ser enviada.
      */
     public void sendMessageToServer(Message message) {
+        serverWriteLock.lock();
         try {
-            // Reset the stream so that updated objects are fully serialized
-            outToServer.reset();
-            outToServer.writeObject(message);
-            outToServer.flush();
+            if (serverProtocolVersion >= Constants.PROTOCOL_BINARY_CODEC) {
+                rawToServer.write(BinaryCodec.encode(message, serverProtocolVersion));
+                rawToServer.flush();
+            } else {
+                // Reset the stream so that updated objects are fully serialized
+                outToServer.reset();
+                outToServer.writeObject(message);
+                outToServer.flush();
+            }
         } catch (SocketException e) {
             ui.displayError("Conexão com o servidor perdida: " + e.getMessage());
             closeConnections();
         } catch (IOException e) {
             ui.displayError("Erro ao enviar mensagem para o servidor: " + e.getMessage());
             closeConnections();
+        } finally {
+            serverWriteLock.unlock();
         }
     }
 
@@ -217,12 +263,18 @@ public class AuctionClient {
             case LOGIN_RESPONSE:
                 LoginResponseMessage loginResp = (LoginResponseMessage) message;
                 if (loginResp.isSuccess()) {
+                    // Servidores antigos não enviam versão (0): a sessão continua serializada.
+                    serverProtocolVersion = Math.min(loginResp.getProtocolVersion(), Constants.PROTOCOL_VERSION);
                     ui.displayMessage(loginResp.getMessage() + " Logado como " + username);
                     // Atualiza listas locais com dados iniciais do servidor
                     activeAuctions.clear();
                     activeAuctions.addAll(loginResp.getInitialAuctions());
+                    indexAuctionsByHandle();
                     activeUsers.clear();
-                    loginResp.getActiveUsers().forEach(user -> activeUsers.put(user.getUserId(), user));
+                    usersByHandle.clear();
+                    loginResp.getActiveUsers().forEach(this::addUserLocally);
+                    subscribedAuctions.clear();
+                    subscribeToKnownAuctions();
                     ui.setLoggedIn(true); // Atualiza o estado de login da UI
                     Thread.sleep(2000); // Pausa para o usuário ler a mensagem
                     ui.displayCurrentState();
@@ -236,25 +288,82 @@ public class AuctionClient {
                 AuctionListResponseMessage auctionListResp = (AuctionListResponseMessage) message;
                 activeAuctions.clear();
                 activeAuctions.addAll(auctionListResp.getActiveAuctions());
+                indexAuctionsByHandle();
                 discontinuedAuctions.clear();
                 discontinuedAuctions.addAll(auctionListResp.getDiscontinuedAuctions());
+                subscribeToKnownAuctions();
                 ui.displayCurrentState();
                 break;
             case AUCTION_UPDATE:
                 AuctionUpdateMessage auctionUpdate = (AuctionUpdateMessage) message;
                 // Atualiza o leilão na lista local ou adiciona se for novo
                 updateOrCreateAuctionLocally(auctionUpdate.getUpdatedAuctionItem());
+                if (auctionUpdate.getUpdatedAuctionItem().getStatus() == AuctionItem.Status.ACTIVE) {
+                    subscribeToKnownAuctions(); // Leilão novo, anunciado pelo tópico de leilões novos
+                } else {
+                    subscribedAuctions.remove(auctionUpdate.getUpdatedAuctionItem().getId());
+                }
                 ui.displayMessage("--- Leilão atualizado: " + auctionUpdate.getUpdatedAuctionItem().getName() +
                         " - " + auctionUpdate.getUpdateDescription() + " ---");
                 ui.displayCurrentState();
                 break;
+            case BID_DELTA:
+                BidDeltaMessage bidDelta = (BidDeltaMessage) message;
+                AuctionItem bidItem = findAuctionByHandle(bidDelta.getAuctionHandle());
+                UserInfo bidder = findUserByHandle(bidDelta.getBidderHandle());
+                if (bidItem == null || bidder == null) {
+                    // Leilão ou licitante desconhecido (ex: atualização descartada no servidor):
+                    // pede a lista completa para ressincronizar o estado local.
+                    requestAuctionList();
+                    break;
+                }
+                if (bidItem.applyBidDelta(bidDelta.getSequence(), bidDelta.getNewBid(), bidder.getUserId(), bidder.getUsername())) {
+                    ui.displayMessage("--- Leilão atualizado: " + bidItem.getName() + " - Novo lance para "
+                            + bidItem.getName() + ": " + Money.format(bidDelta.getNewBid()) + " por " + bidder.getUsername() + " ---");
+                    ui.displayCurrentState();
+                }
+                break;
+            case AUCTION_STATUS_DELTA:
+                AuctionStatusDeltaMessage statusDelta = (AuctionStatusDeltaMessage) message;
+                AuctionItem statusItem = findAuctionByHandle(statusDelta.getAuctionHandle());
+                if (statusItem == null) {
+                    requestAuctionList();
+                    break;
+                }
+                if (statusDelta.getStatus() != AuctionItem.Status.ACTIVE) {
+                    // O servidor descarta as assinaturas de leilões encerrados
+                    subscribedAuctions.remove(statusItem.getId());
+                }
+                if (statusItem.applyStatusDelta(statusDelta.getSequence(), statusDelta.getStatus())) {
+                    String result = statusItem.getHighestBidderUsername() != null
+                            ? "Vencedor: " + statusItem.getHighestBidderUsername() + " com lance de "
+                                    + Money.format(statusItem.getCurrentBid())
+                            : "Item não foi vendido (sem lances).";
+                    ui.displayMessage("--- Leilão atualizado: " + statusItem.getName() + " - "
+                            + statusDelta.getStatus() + ". " + result + " ---");
+                    ui.displayCurrentState();
+                }
+                break;
+            case AUCTION_QUERY_RESPONSE:
+                AuctionQueryResponseMessage queryResp = (AuctionQueryResponseMessage) message;
+                nextQueryCursor = queryResp.getNextCursor();
+                ui.displayAuctionPage(queryResp.getAuctions(), queryResp.hasMore());
+                break;
+            case BID_HISTORY_RESPONSE:
+                ui.displayBidHistory((BidHistoryResponseMessage) message);
+                break;
+            case SEARCH_RESPONSE:
+                SearchResponseMessage searchResp = (SearchResponseMessage) message;
+                ui.displaySearchResults(searchResp.getQuery(), searchResp.getAuctions());
+                break;
             case USER_STATUS_UPDATE:
                 UserStatusUpdateMessage userUpdate = (UserStatusUpdateMessage) message;
                 if (userUpdate.isOnline()) {
-                    activeUsers.put(userUpdate.getUser().getUserId(), userUpdate.getUser());
+                    addUserLocally(userUpdate.getUser());
                     ui.displayMessage("--- Usuário '" + userUpdate.getUser().getUsername() + "' ficou online. ---");
                 } else {
                     activeUsers.remove(userUpdate.getUser().getUserId());
+                    usersByHandle.remove(userUpdate.getUser().getHandle());
                     ui.displayMessage("--- Usuário '" + userUpdate.getUser().getUsername() + "' ficou offline. ---");
                     // Se o usuário P2P se desconectou, fechar a conexão P2P com ele, se houver.
                     PeerConnectionHandler handler = activePeerConnections.remove(userUpdate.getUser().getUserId());
@@ -305,6 +414,73 @@ public class AuctionClient {
         if (!found) {
             activeAuctions.add(newItem); // Adiciona como novo item
         }
+        if (newItem.getHandle() != 0) {
+            auctionsByHandle.put(newItem.getHandle(), newItem);
+        }
+    }
+
+    /**
+     * Refaz o índice por handle depois que a lista de leilões ativos foi substituída.
+     */
+    private void indexAuctionsByHandle() {
+        auctionsByHandle.clear();
+        synchronized (activeAuctions) {
+            for (AuctionItem item : activeAuctions) {
+                if (item.getHandle() != 0) { // Servidores anteriores a PROTOCOL_DELTA_UPDATES não enviam handles
+                    auctionsByHandle.put(item.getHandle(), item);
+                }
+            }
+        }
+    }
+
+    private void addUserLocally(UserInfo user) {
+        activeUsers.put(user.getUserId(), user);
+        if (user.getHandle() != 0) {
+            usersByHandle.put(user.getHandle(), user);
+        }
+    }
+
+    /**
+     * Assina no servidor os leilões ativos conhecidos que ainda não foram assinados, exceto os
+     * que o usuário deixou de acompanhar. Servidores sem suporte a assinaturas já enviam tudo.
+     */
+    private void subscribeToKnownAuctions() {
+        if (serverProtocolVersion < Constants.PROTOCOL_SUBSCRIPTIONS) {
+            return;
+        }
+        List<String> toSubscribe = new ArrayList<>();
+        synchronized (activeAuctions) {
+            for (AuctionItem item : activeAuctions) {
+                String auctionId = item.getId();
+                if (item.getStatus() == AuctionItem.Status.ACTIVE && !unwatchedAuctions.contains(auctionId)
+                        && subscribedAuctions.add(auctionId)) {
+                    toSubscribe.add(auctionId);
+                }
+            }
+        }
+        if (!toSubscribe.isEmpty()) {
+            sendMessageToServer(new SubscribeMessage(userId, toSubscribe, false));
+        }
+    }
+
+    /**
+     * Procura entre os leilões locais o que tem o handle informado pelo servidor.
+     *
+     * @param handle O handle do leilão.
+     * @return O AuctionItem local, ou null se não estiver em cache.
+     */
+    private AuctionItem findAuctionByHandle(int handle) {
+        return auctionsByHandle.get(handle);
+    }
+
+    /**
+     * Procura entre os usuários online o que tem o handle informado pelo servidor.
+     *
+     * @param handle O handle do usuário.
+     * @return O UserInfo, ou null se o usuário não for conhecido.
+     */
+    private UserInfo findUserByHandle(int handle) {
+        return handle != 0 ? usersByHandle.get(handle) : null;
     }
 
     // --- Métodos de ação do cliente (chamados pela UI) ---
@@ -313,7 +489,85 @@ public class AuctionClient {
         sendMessageToServer(new AuctionListRequestMessage(userId));
     }
 
-    public void placeBid(String auctionId, double amount) {
+    /**
+     * Consulta a primeira página de leilões com os filtros e a ordem informados.
+     *
+     * @param status     Status dos leilões (ativos ou encerrados).
+     * @param sellerId   ID do vendedor, ou null para todos.
+     * @param bidderId   ID do autor do lance mais alto, ou null para todos.
+     * @param minBid     Lance atual mínimo em centavos, ou null.
+     * @param maxBid     Lance atual máximo em centavos, ou null.
+     * @param endsBefore Término máximo em ms, ou null.
+     * @param sortKey    Critério de ordenação.
+     * @param descending true para ordem decrescente.
+     */
+    public void queryAuctions(AuctionItem.Status status, String sellerId, String bidderId, Long minBid, Long maxBid,
+                              Long endsBefore, AuctionQueryMessage.SortKey sortKey, boolean descending) {
+        if (serverProtocolVersion < Constants.PROTOCOL_AUCTION_QUERIES) {
+            ui.displayMessage("O servidor não suporta consultas paginadas; pedindo a lista completa.");
+            requestAuctionList();
+            return;
+        }
+        if (serverProtocolVersion < Constants.PROTOCOL_QUERY_FILTERS
+                && (bidderId != null || minBid != null || maxBid != null || endsBefore != null)) {
+            ui.displayError("O servidor não suporta os filtros de licitante, lance e término.");
+            return;
+        }
+        lastQuery = new AuctionQueryMessage(userId, status, sellerId, bidderId, minBid, maxBid, null, endsBefore,
+                sortKey, descending, QUERY_PAGE_SIZE, null);
+        nextQueryCursor = null;
+        sendMessageToServer(lastQuery);
+    }
+
+    /**
+     * Pede a próxima página da última consulta.
+     */
+    public void requestNextAuctionPage() {
+        AuctionQueryMessage query = lastQuery;
+        String cursor = nextQueryCursor;
+        if (query == null || cursor == null) {
+            ui.displayMessage("Não há mais páginas. Use 'query' para uma nova consulta.");
+            return;
+        }
+        sendMessageToServer(query.withCursor(cursor));
+    }
+
+    /**
+     * Pede um trecho do histórico de lances de um leilão.
+     *
+     * @param auctionId O ID do leilão.
+     * @param fromIndex Posição do primeiro lance (0 é o mais antigo), ou negativo para os
+     *                  lances mais recentes.
+     */
+    public void requestBidHistory(String auctionId, int fromIndex) {
+        if (serverProtocolVersion < Constants.PROTOCOL_BID_HISTORY) {
+            ui.displayError("O servidor não suporta o histórico de lances.");
+            return;
+        }
+        sendMessageToServer(new BidHistoryRequestMessage(userId, auctionId, fromIndex, HISTORY_PAGE_SIZE));
+    }
+
+    /**
+     * Busca leilões pelas palavras do nome e da descrição.
+     *
+     * @param query  As palavras; uma palavra terminada em '*' vale como prefixo.
+     * @param status Status dos leilões (ativos ou encerrados).
+     */
+    public void searchAuctions(String query, AuctionItem.Status status) {
+        if (serverProtocolVersion < Constants.PROTOCOL_SEARCH) {
+            ui.displayError("O servidor não suporta a busca de leilões.");
+            return;
+        }
+        sendMessageToServer(new SearchMessage(userId, query, status, SEARCH_MAX_RESULTS));
+    }
+
+    /**
+     * Envia um lance.
+     *
+     * @param auctionId O ID do leilão.
+     * @param amount    O valor do lance, em centavos.
+     */
+    public void placeBid(String auctionId, long amount) {
         AuctionItem item = activeAuctions.stream().filter(a -> a.getId().equals(auctionId)).findFirst().orElse(null);
         if (item == null) {
             ui.displayError("Leilão com ID " + auctionId + " não encontrado.");
@@ -321,13 +575,65 @@ public class AuctionClient {
         }
         if (amount <= item.getCurrentBid()) {
             ui.displayError(
-                    "Seu lance de " + amount + " deve ser maior que o lance atual de " + item.getCurrentBid() + ".");
+                    "Seu lance de " + Money.format(amount) + " deve ser maior que o lance atual de "
+                            + Money.format(item.getCurrentBid()) + ".");
+            return;
+        }
+        // Quem dá um lance volta a acompanhar o leilão (o servidor faz a assinatura junto com o lance)
+        unwatchedAuctions.remove(auctionId);
+        if (serverProtocolVersion >= Constants.PROTOCOL_SUBSCRIPTIONS) {
+            subscribedAuctions.add(auctionId);
+        }
+        // A partir de PROTOCOL_HANDLES o codec envia só o handle; o ID fica para servidores anteriores
+        sendMessageToServer(new PlaceBidMessage(userId, auctionId, item.getHandle(), amount, username));
+    }
+
+    /**
+     * Volta a receber as atualizações de um leilão que havia deixado de acompanhar.
+     *
+     * @param auctionId O ID do leilão.
+     */
+    public void watchAuction(String auctionId) {
+        if (!unwatchedAuctions.remove(auctionId)) {
+            ui.displayMessage("O leilão " + auctionId + " já está sendo acompanhado.");
             return;
         }
-        sendMessageToServer(new PlaceBidMessage(userId, auctionId, amount, username));
+        if (serverProtocolVersion < Constants.PROTOCOL_SUBSCRIPTIONS) {
+            return; // Servidor antigo: as atualizações nunca deixaram de chegar
+        }
+        if (subscribedAuctions.add(auctionId)) {
+            sendMessageToServer(new SubscribeMessage(userId, List.of(auctionId), false));
+        }
+        // O preço local pode estar desatualizado desde o unwatch
+        requestAuctionList();
     }
 
-    public void createAuction(String name, String description, double startBid, int durationSeconds) {
+    /**
+     * Deixa de receber as atualizações de lance de um leilão. O encerramento continua sendo
+     * anunciado pelo tópico de leilões novos.
+     *
+     * @param auctionId O ID do leilão.
+     */
+    public void unwatchAuction(String auctionId) {
+        if (!unwatchedAuctions.add(auctionId)) {
+            ui.displayMessage("O leilão " + auctionId + " já não está sendo acompanhado.");
+            return;
+        }
+        if (serverProtocolVersion < Constants.PROTOCOL_SUBSCRIPTIONS) {
+            ui.displayMessage("O servidor não suporta assinaturas; as atualizações continuarão chegando.");
+            return;
+        }
+        if (subscribedAuctions.remove(auctionId)) {
+            sendMessageToServer(new UnsubscribeMessage(userId, List.of(auctionId), false));
+        }
+    }
+
+    /**
+     * Pede a criação de um leilão.
+     *
+     * @param startBid Lance inicial, em centavos.
+     */
+    public void createAuction(String name, String description, long startBid, int durationSeconds) {
         if (name == null || name.trim().isEmpty() || description == null || description.trim().isEmpty()
                 || startBid <= 0 || durationSeconds <= 0) {
             ui.displayError("Nome, descrição, lance inicial e duração são obrigatórios e devem ser válidos.");
@@ -372,7 +678,7 @@ public class AuctionClient {
         // Cria um PeerConnectionHandler para gerenciar esta conexão P2P
         PeerConnectionHandler handler = new PeerConnectionHandler(directPeerSocket, this, peerId);
         addActivePeerConnection(peerId, handler);
-        new Thread(handler).start();
+        executionMode.start(handler, "peer-" + peerId);
         ui.displayMessage("Conectado diretamente ao peer " + peerId + " (IP: " + peerIp + ", Porta P2P: " + peerPort
                 + ") para P2P.");
     }
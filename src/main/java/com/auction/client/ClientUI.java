@@ -1,6 +1,9 @@
 package com.auction.client;
 
 import com.auction.common.AuctionItem;
+import com.auction.common.AuctionQueryMessage;
+import com.auction.common.BidHistoryResponseMessage;
+import com.auction.common.Money;
 import com.auction.common.UserInfo;
 
 import java.util.Comparator;
@@ -76,7 +79,12 @@ public class ClientUI {
         System.out.println("---------------------------------------------------");
         System.out.println("Após o login, você pode usar os seguintes comandos:");
         System.out.println("lsauctions                  - Lista todos os leilões ativos e encerrados.");
+        System.out.println("query [active|ended] [end|bid] [asc|desc] [seller <user_id>|mine] [bidder <user_id>|winning]");
+        System.out.println("      [price <min> <max>] [ending <minutos>] - Consulta leilões em páginas.");
+        System.out.println("more                        - Exibe a próxima página da última consulta.");
         System.out.println("bid <auction_id> <valor>     - Dá um lance em um leilão específico.");
+        System.out.println("unwatch <auction_id>        - Deixa de receber os lances de um leilão.");
+        System.out.println("watch <auction_id>          - Volta a receber os lances de um leilão.");
         System.out.println(
                 "createauction '<nome>' '<descricao>' <lance_inicial> <duracao_segundos> - Cria um novo leilão.");
         System.out.println("lsonline                    - Lista todos os usuários online.");
@@ -135,12 +143,127 @@ public class ClientUI {
                 }
                 try {
                     String auctionId = bidArgs[0];
-                    double bidAmount = parseBidAmount(bidArgs[1]);
+                    long bidAmount = parseBidAmount(bidArgs[1]);
                     client.placeBid(auctionId, bidAmount);
                 } catch (NumberFormatException e) {
                     displayError("Valor do lance deve ser um número válido: " + e.getMessage());
                 }
                 break;
+            case "query":
+                // Exemplo: query ended bid desc seller <user_id>; query winning; query ending 5
+                String[] queryArgs = parts.length < 2 ? new String[0] : parts[1].trim().split("\\s+");
+                String queryUsage = "Uso: query [active|ended] [end|bid] [asc|desc] [seller <user_id>|mine] "
+                        + "[bidder <user_id>|winning] [price <min> <max>] [ending <minutos>]";
+                AuctionItem.Status status = AuctionItem.Status.ACTIVE;
+                String sellerId = null;
+                String bidderId = null;
+                Long minBid = null;
+                Long maxBid = null;
+                Long endsBefore = null;
+                AuctionQueryMessage.SortKey sortKey = AuctionQueryMessage.SortKey.END_TIME;
+                boolean descending = false;
+                try {
+                    for (int i = 0; i < queryArgs.length; i++) {
+                        switch (queryArgs[i].toLowerCase()) {
+                            case "active": status = AuctionItem.Status.ACTIVE; break;
+                            case "ended": status = AuctionItem.Status.ENDED; break;
+                            case "end": sortKey = AuctionQueryMessage.SortKey.END_TIME; break;
+                            case "bid": sortKey = AuctionQueryMessage.SortKey.CURRENT_BID; break;
+                            case "asc": descending = false; break;
+                            case "desc": descending = true; break;
+                            case "mine": sellerId = client.getUserId(); break;
+                            case "winning": bidderId = client.getUserId(); break;
+                            case "seller":
+                                if (i + 1 >= queryArgs.length) {
+                                    displayError(queryUsage);
+                                    return;
+                                }
+                                sellerId = queryArgs[++i];
+                                break;
+                            case "bidder":
+                                if (i + 1 >= queryArgs.length) {
+                                    displayError(queryUsage);
+                                    return;
+                                }
+                                bidderId = queryArgs[++i];
+                                break;
+                            case "price":
+                                if (i + 2 >= queryArgs.length) {
+                                    displayError(queryUsage);
+                                    return;
+                                }
+                                minBid = parseBidAmount(queryArgs[++i]);
+                                maxBid = parseBidAmount(queryArgs[++i]);
+                                break;
+                            case "ending":
+                                if (i + 1 >= queryArgs.length) {
+                                    displayError(queryUsage);
+                                    return;
+                                }
+                                long minutes = Long.parseLong(queryArgs[++i]);
+                                endsBefore = System.currentTimeMillis() + minutes * 60_000;
+                                break;
+                            default:
+                                displayError(queryUsage);
+                                return;
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    displayError("Valor inválido na consulta: " + e.getMessage());
+                    return;
+                }
+                client.queryAuctions(status, sellerId, bidderId, minBid, maxBid, endsBefore, sortKey, descending);
+                break;
+            case "more":
+                client.requestNextAuctionPage();
+                break;
+            case "search":
+                // Exemplo: search ended relóg* antigo
+                String searchArgs = parts.length < 2 ? "" : parts[1].trim();
+                AuctionItem.Status searchStatus = AuctionItem.Status.ACTIVE;
+                String[] searchWords = searchArgs.split("\\s+", 2);
+                if (searchWords.length == 2 && (searchWords[0].equalsIgnoreCase("ended")
+                        || searchWords[0].equalsIgnoreCase("active"))) {
+                    searchStatus = searchWords[0].equalsIgnoreCase("ended")
+                            ? AuctionItem.Status.ENDED : AuctionItem.Status.ACTIVE;
+                    searchArgs = searchWords[1];
+                }
+                if (searchArgs.isEmpty()) {
+                    displayError("Uso: search [active|ended] <palavras> (use * no fim de uma palavra para prefixo)");
+                    return;
+                }
+                client.searchAuctions(searchArgs, searchStatus);
+                break;
+            case "history":
+                // Exemplo: history <auction_id> 40
+                String[] historyArgs = parts.length < 2 ? new String[0] : parts[1].trim().split("\\s+");
+                if (historyArgs.length < 1 || historyArgs.length > 2 || historyArgs[0].isEmpty()) {
+                    displayError("Uso: history <auction_id> [início]");
+                    return;
+                }
+                try {
+                    int fromIndex = historyArgs.length == 2 ? Integer.parseInt(historyArgs[1]) : -1;
+                    if (historyArgs.length == 2 && fromIndex < 0) {
+                        displayError("O início do histórico não pode ser negativo.");
+                        return;
+                    }
+                    client.requestBidHistory(historyArgs[0], fromIndex);
+                } catch (NumberFormatException e) {
+                    displayError("O início do histórico deve ser um número inteiro: " + e.getMessage());
+                }
+                break;
+            case "watch":
+            case "unwatch":
+                if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    displayError("Uso: " + command + " <auction_id>");
+                    return;
+                }
+                if (command.equals("watch")) {
+                    client.watchAuction(parts[1].trim());
+                } else {
+                    client.unwatchAuction(parts[1].trim());
+                }
+                break;
             case "createauction":
                 // Exemplo: createauction "Nome do Item" "Descricao do item" 10.50 60
                 if (parts.length < 2) {
@@ -169,7 +292,7 @@ public class ClientUI {
                 try {
                     String itemName = parsedArgs.get(0);
                     String itemDescription = parsedArgs.get(1);
-                    double startBid = parseBidAmount(parsedArgs.get(2));
+                    long startBid = parseBidAmount(parsedArgs.get(2));
                     int durationSeconds = parseAuctionDuration(parsedArgs.get(3));
                     client.createAuction(itemName, itemDescription, startBid, durationSeconds);
                 } catch (NumberFormatException e) {
@@ -227,10 +350,10 @@ public class ClientUI {
                         if (System.currentTimeMillis() < endTimeMillis) {
                             haveActiveAuctions.set(true);
                             System.out.printf(
-                                    "ID: %s | Item: %-20s | Lance Atual: %.2f (por %s) | Vendedor: %s | Expira em: %s%n",
+                                    "ID: %s | Item: %-20s | Lance Atual: %s (por %s) | Vendedor: %s | Expira em: %s%n",
                                     item.getId(),
                                     item.getName(),
-                                    item.getCurrentBid(),
+                                    Money.format(item.getCurrentBid()),
                                     item.getHighestBidderUsername() != null ? item.getHighestBidderUsername() : "N/A",
                                     item.getSellerUsername(),
                                     formattedEndTime);
@@ -250,10 +373,10 @@ public class ClientUI {
         } else {
             // Exibe leilões que foram recentemente descontinuados
             for (AuctionItem item : recentlyDiscontinuedAuctions) {
-                System.out.printf("ID: %s | Item: %-20s | ENCERRADO | Lance Final: %.2f (por %s) | Vendedor: %s%n",
+                System.out.printf("ID: %s | Item: %-20s | ENCERRADO | Lance Final: %s (por %s) | Vendedor: %s%n",
                         item.getId(),
                         item.getName(),
-                        item.getCurrentBid(),
+                        Money.format(item.getCurrentBid()),
                         item.getHighestBidderUsername() != null ? item.getHighestBidderUsername() : "N/A",
                         item.getSellerUsername());
             }
@@ -262,10 +385,10 @@ public class ClientUI {
                     .sorted(Comparator.comparingLong(AuctionItem::getEndTimeMillis))
                     .forEach(item -> {
                         System.out.printf(
-                                "ID: %s | Item: %-20s | ENCERRADO | Lance Final: %.2f (por %s) | Vendedor: %s%n",
+                                "ID: %s | Item: %-20s | ENCERRADO | Lance Final: %s (por %s) | Vendedor: %s%n",
                                 item.getId(),
                                 item.getName(),
-                                item.getCurrentBid(),
+                                Money.format(item.getCurrentBid()),
                                 item.getHighestBidderUsername() != null ? item.getHighestBidderUsername() : "N/A",
                                 item.getSellerUsername());
                     });
@@ -274,6 +397,92 @@ public class ClientUI {
         System.out.print("> ");
     }
 
+    /**
+     * Exibe uma página de resultados de uma consulta de leilões.
+     *
+     * @param auctions Os leilões da página, na ordem pedida.
+     * @param hasMore  Se há uma próxima página.
+     */
+    public synchronized void displayAuctionPage(List<AuctionItem> auctions, boolean hasMore) {
+        System.out.println("\n--- RESULTADO DA CONSULTA ---");
+        if (auctions == null || auctions.isEmpty()) {
+            System.out.println("Nenhum leilão encontrado.");
+        } else {
+            for (AuctionItem item : auctions) {
+                System.out.printf("ID: %s | Item: %-20s | %s | Lance: %s (por %s) | Vendedor: %s%n",
+                        item.getId(),
+                        item.getName(),
+                        item.getStatus() == AuctionItem.Status.ACTIVE ? "ATIVO" : "ENCERRADO",
+                        Money.format(item.getCurrentBid()),
+                        item.getHighestBidderUsername() != null ? item.getHighestBidderUsername() : "N/A",
+                        item.getSellerUsername());
+            }
+        }
+        if (hasMore) {
+            System.out.println("Digite 'more' para a próxima página.");
+        }
+        System.out.println("---------------------------------------------------");
+        System.out.print("> ");
+    }
+
+    /**
+     * Exibe o resultado de uma busca de leilões.
+     *
+     * @param query    As palavras buscadas.
+     * @param auctions Os leilões encontrados, do mais relevante para o menos relevante.
+     */
+    public synchronized void displaySearchResults(String query, List<AuctionItem> auctions) {
+        System.out.println("\n--- RESULTADO DA BUSCA: " + query + " ---");
+        if (auctions == null || auctions.isEmpty()) {
+            System.out.println("Nenhum leilão encontrado.");
+        } else {
+            for (AuctionItem item : auctions) {
+                System.out.printf("ID: %s | Item: %-20s | %s | Lance: %s (por %s) | Vendedor: %s%n",
+                        item.getId(),
+                        item.getName(),
+                        item.getStatus() == AuctionItem.Status.ACTIVE ? "ATIVO" : "ENCERRADO",
+                        Money.format(item.getCurrentBid()),
+                        item.getHighestBidderUsername() != null ? item.getHighestBidderUsername() : "N/A",
+                        item.getSellerUsername());
+            }
+        }
+        System.out.println("---------------------------------------------------");
+        System.out.print("> ");
+    }
+
+    /**
+     * Exibe um trecho do histórico de lances de um leilão.
+     *
+     * @param history A resposta do servidor.
+     */
+    public synchronized void displayBidHistory(BidHistoryResponseMessage history) {
+        System.out.println("\n--- HISTÓRICO DE LANCES ---");
+        if (history.getTotalBids() < 0) {
+            System.out.println("Leilão " + history.getAuctionId() + " não encontrado.");
+        } else if (history.getTotalBids() == 0) {
+            System.out.println("Nenhum lance no leilão " + history.getAuctionId() + ".");
+        } else {
+            int from = history.getFromIndex();
+            System.out.printf("Lances %d a %d de %d%n", from, from + history.size() - 1, history.getTotalBids());
+            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter
+                    .ofPattern("dd/MM/yyyy HH:mm:ss.SSS").withZone(java.time.ZoneId.systemDefault());
+            for (int i = 0; i < history.size(); i++) {
+                long timestamp = history.getTimestamps()[i];
+                System.out.printf("#%d | %s | %s | %s%n",
+                        from + i,
+                        timestamp > 0 ? formatter.format(java.time.Instant.ofEpochMilli(timestamp)) : "horário desconhecido",
+                        Money.format(history.getAmounts()[i]),
+                        history.getBidderUsernames()[i]);
+            }
+            int next = from + history.size();
+            if (next < history.getTotalBids()) {
+                System.out.println("Digite 'history " + history.getAuctionId() + " " + next + "' para os seguintes.");
+            }
+        }
+        System.out.println("---------------------------------------------------");
+        System.out.print("> ");
+    }
+
     public synchronized void listClients() {
         System.out.println("\n--- USUÁRIOS ONLINE ---");
 
@@ -332,22 +541,17 @@ public class ClientUI {
      * Exibe a lista de comandos disponíveis para o usuário.
      */
     /**
-     * Faz o parsing de uma string para um valor de lance em formato double.
-     * Tenta converter diferentes formatos de número para o formato adequado.
+     * Faz o parsing de uma string para um valor de lance em centavos.
+     * Aceita vírgula ou ponto como separador decimal.
      * 
      * @param value A string contendo o valor do lance
-     * @return O valor do lance como double
+     * @return O valor do lance em centavos
      * @throws NumberFormatException se não for possível converter para um número
      *                               válido
      */
-    private double parseBidAmount(String value) throws NumberFormatException {
-        // Remove espaços e substitui vírgula por ponto (caso o usuário use vírgula)
-        String cleanValue = value.trim().replace(",", ".");
-
+    private long parseBidAmount(String value) throws NumberFormatException {
         try {
-            double amount = Double.parseDouble(cleanValue);
-            // Garante que o valor tem exatamente 2 casas decimais
-            return Math.round(amount * 100.0) / 100.0;
+            return Money.parse(value);
         } catch (NumberFormatException e) {
             throw new NumberFormatException(
                     "Formato inválido para valor monetário. Use números com até duas casas decimais.");
@@ -381,7 +585,14 @@ public class ClientUI {
     private void displayHelp() {
         System.out.println("\n--- COMANDOS DISPONÍVEIS ---");
         System.out.println("lsauctions              - Lista todos os leilões ativos e encerrados.");
+        System.out.println("query [active|ended] [end|bid] [asc|desc] [seller <user_id>|mine] [bidder <user_id>|winning]");
+        System.out.println("      [price <min> <max>] [ending <minutos>] - Consulta leilões em páginas.");
+        System.out.println("more                    - Exibe a próxima página da última consulta.");
+        System.out.println("search [active|ended] <palavras> - Busca leilões pelo nome e descrição (relóg* para prefixo).");
         System.out.println("bid <auction_id> <valor> - Dá um lance em um leilão específico.");
+        System.out.println("history <auction_id> [início] - Exibe os lances de um leilão (os mais recentes, sem início).");
+        System.out.println("unwatch <auction_id>     - Deixa de receber os lances de um leilão.");
+        System.out.println("watch <auction_id>       - Volta a receber os lances de um leilão.");
         System.out.println(
                 "createauction '<nome>' '<descricao>' <lance_inicial> <duracao_segundos> - Cria um novo leilão.");
         System.out.println("lsonline                - Lista todos os usuários online.");
@@ -7,6 +7,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Lida com uma única conexão P2P com outro cliente.
@@ -22,6 +23,10 @@ public class PeerConnectionHandler implements Runnable {
     private ObjectOutputStream out;
     private String peerId; // ID do cliente remoto com o qual esta conexão P2P foi estabelecida
 
+    // Impede que a UI e o envio de mensagens pendentes intercalem escritas no stream.
+    // ReentrantLock não prende threads virtuais à carregadora durante a escrita no socket.
+    private final ReentrantLock writeLock = new ReentrantLock();
+
     /**
      * Construtor para o PeerConnectionHandler.
      *
@@ -104,6 +109,7 @@ public class PeerConnectionHandler implements Runnable {
      * @param message A Message a ser enviada.
      */
     public void sendMessage(Message message) {
+        writeLock.lock();
         try {
             // Reset cache to ensure up-to-date object state is serialized
             out.reset();
@@ -113,6 +119,8 @@ public class PeerConnectionHandler implements Runnable {
             client.getUi().displayError("Erro ao enviar mensagem P2P para o peer "
                     + (peerId != null ? peerId : peerSocket.getInetAddress()) + ": " + e.getMessage());
             closeConnection(); // A conexão pode ter caído, então tenta fechá-la.
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -39,7 +39,9 @@ public class PeerListener implements Runnable {
 
                 // Cria um novo PeerConnectionHandler para gerenciar a comunicação com este peer.
                 // O peerId é null inicialmente, pois será descoberto na primeira mensagem recebida.
-                new Thread(new PeerConnectionHandler(peerSocket, client, null)).start();
+                // A thread é de plataforma ou virtual conforme o modo de execução do cliente.
+                client.getExecutionMode().start(new PeerConnectionHandler(peerSocket, client, null),
+                        "peer-" + peerSocket.getRemoteSocketAddress());
             }
         } catch (SocketException e) {
             // Geralmente ocorre quando p2pServerSocket.close() é chamado em outra thread,
@@ -1,10 +1,10 @@
 package com.auction.client;
 
 import com.auction.common.Message;
+import com.auction.common.MessageInput;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.net.SocketException;
 
 /**
@@ -14,29 +14,29 @@ import java.net.SocketException;
  */
 public class ServerListener implements Runnable {
 
-    private ObjectInputStream inFromServer; // Stream de entrada do servidor
+    private MessageInput inFromServer; // Stream de entrada do servidor
     private AuctionClient client;           // Referência para a instância do cliente principal
 
     /**
      * Construtor para o ServerListener.
      *
-     * @param inFromServer O ObjectInputStream conectado ao servidor.
+     * @param inFromServer O MessageInput conectado ao servidor.
      * @param client A instância do AuctionClient que este listener irá servir.
      */
-    public ServerListener(ObjectInputStream inFromServer, AuctionClient client) {
+    public ServerListener(MessageInput inFromServer, AuctionClient client) {
         this.inFromServer = inFromServer;
         this.client = client;
     }
 
     /**
      * O método run() contém o loop principal de escuta.
-     * Ele lê objetos (mensagens) do servidor e os passa para o AuctionClient para tratamento.
+     * Ele lê mensagens (serializadas ou binárias) do servidor e os passa para o AuctionClient para tratamento.
      */
     @Override
     public void run() {
         try {
             while (true) { // Loop infinito para escutar continuamente
-                Message message = (Message) inFromServer.readObject(); // Bloqueia até receber uma mensagem
+                Message message = inFromServer.readMessage(); // Bloqueia até receber uma mensagem
                 client.handleServerMessage(message); // Encaminha a mensagem para o cliente principal
             }
         } catch (EOFException e) {
@@ -1,8 +1,13 @@
 package com.auction.common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Representa um item que está em leilão na aplicação.
@@ -21,82 +26,281 @@ public class AuctionItem implements Serializable {
     private String id;                      // ID único do leilão (gerado automaticamente).
     private String name;                    // Nome do item leiloado.
     private String description;             // Descrição detalhada do item.
-    private double currentBid;              // O valor do lance mais alto atual.
-    private double startBid;                // O valor do lance inicial.
-    private String highestBidderId;         // ID do cliente que deu o lance mais alto.
-    private String highestBidderUsername;   // Nome de usuário do cliente que deu o lance mais alto.
+    private long startBid;                  // O valor do lance inicial, em centavos.
     private long endTimeMillis;             // Carimbo de data/hora em milissegundos para o fim do leilão.
     private String sellerId;                // ID do cliente que criou/vendeu o item.
     private String sellerUsername;          // Nome de usuário do vendedor.
-    private Status status;                  // Status atual do leilão.
+    private int handle;                     // Número curto atribuído pelo servidor, usado nos deltas.
+
+    // Lance atual, licitante, status e número de sequência, trocados juntos por compare-and-set.
+    // Não é serializado diretamente: writeObject/readObject mantêm os campos do formato original,
+    // inclusive os valores em double.
+    private transient AtomicReference<BidState> state;
+
+    // Forma serializada do AuctionItem, idêntica à de quando o estado do lance eram campos
+    // comuns, para que clientes antigos continuem lendo os itens recebidos.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("currentBid", double.class),
+            new ObjectStreamField("startBid", double.class),
+            new ObjectStreamField("highestBidderId", String.class),
+            new ObjectStreamField("highestBidderUsername", String.class),
+            new ObjectStreamField("endTimeMillis", long.class),
+            new ObjectStreamField("sellerId", String.class),
+            new ObjectStreamField("sellerUsername", String.class),
+            new ObjectStreamField("status", Status.class),
+            new ObjectStreamField("handle", int.class),
+            new ObjectStreamField("updateSequence", long.class),
+    };
+
+    /**
+     * Estado imutável do lance. Cada lance aceito ou mudança de status cria um novo
+     * BidState e o publica com compare-and-set; quem lê um BidState vê sempre um lance,
+     * licitante e status coerentes entre si.
+     */
+    public static final class BidState {
+        public final long currentBid;               // O valor do lance mais alto atual, em centavos.
+        public final String highestBidderId;        // ID do cliente que deu o lance mais alto.
+        public final String highestBidderUsername;  // Nome de usuário do cliente que deu o lance mais alto.
+        public final Status status;                 // Status atual do leilão.
+        public final long updateSequence;           // Incrementado a cada lance aceito ou mudança de status.
+
+        BidState(long currentBid, String highestBidderId, String highestBidderUsername, Status status,
+                 long updateSequence) {
+            this.currentBid = currentBid;
+            this.highestBidderId = highestBidderId;
+            this.highestBidderUsername = highestBidderUsername;
+            this.status = status;
+            this.updateSequence = updateSequence;
+        }
+    }
 
     /**
      * Construtor para criar um novo AuctionItem.
      *
      * @param name           Nome do item.
      * @param description    Descrição do item.
-     * @param startBid       Lance inicial para o item.
+     * @param startBid       Lance inicial para o item, em centavos.
      * @param durationSeconds Duração do leilão em segundos a partir da criação.
      * @param sellerId       ID do vendedor.
      * @param sellerUsername Nome de usuário do vendedor.
      */
-    public AuctionItem(String name, String description, double startBid, int durationSeconds,
+    public AuctionItem(String name, String description, long startBid, int durationSeconds,
                        String sellerId, String sellerUsername) {
         this.id = UUID.randomUUID().toString();
         this.name = name;
         this.description = description;
-        this.currentBid = startBid;
         this.startBid = startBid;
-        this.highestBidderId = null;
-        this.highestBidderUsername = null;
         this.endTimeMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(durationSeconds);
         this.sellerId = sellerId;
         this.sellerUsername = sellerUsername;
-        this.status = Status.ACTIVE;
+        this.state = new AtomicReference<>(new BidState(startBid, null, null, Status.ACTIVE, 0));
+    }
+
+    /**
+     * Construtor com o estado completo, usado para reconstruir um item recebido (BinaryCodec)
+     * ou recuperado do journal do servidor.
+     */
+    public AuctionItem(String id, String name, String description, long currentBid, long startBid,
+                String highestBidderId, String highestBidderUsername, long endTimeMillis,
+                String sellerId, String sellerUsername, Status status, int handle, long updateSequence) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.startBid = startBid;
+        this.endTimeMillis = endTimeMillis;
+        this.sellerId = sellerId;
+        this.sellerUsername = sellerUsername;
+        this.handle = handle;
+        this.state = new AtomicReference<>(
+                new BidState(currentBid, highestBidderId, highestBidderUsername, status, updateSequence));
     }
 
     public String getId() { return id; }
     public String getName() { return name; }
     public String getDescription() { return description; }
-    public double getCurrentBid() { return currentBid; }
-    public double getStartBid() { return startBid; }
-    public String getHighestBidderId() { return highestBidderId; }
-    public String getHighestBidderUsername() { return highestBidderUsername; }
+    public long getCurrentBid() { return state.get().currentBid; }   // Em centavos
+    public long getStartBid() { return startBid; }                   // Em centavos
+    public String getHighestBidderId() { return state.get().highestBidderId; }
+    public String getHighestBidderUsername() { return state.get().highestBidderUsername; }
     public long getEndTimeMillis() { return endTimeMillis; }
     public String getSellerId() { return sellerId; }
     public String getSellerUsername() { return sellerUsername; }
-    public Status getStatus() { return status; }
+    public Status getStatus() { return state.get().status; }
+    public int getHandle() { return handle; }
+    public long getUpdateSequence() { return state.get().updateSequence; }
+
+    public void setHandle(int handle) { this.handle = handle; }
+
+    /**
+     * @return O estado atual do lance, para quem precisa de vários campos coerentes entre si
+     *         (ex: o BinaryCodec e os índices do servidor). Chamadas separadas aos getters podem
+     *         ver lances diferentes.
+     */
+    public BidState getBidState() {
+        return state.get();
+    }
 
-    private void setCurrentBid(double currentBid) { this.currentBid = currentBid; }
-    private void setHighestBidderId(String highestBidderId) { this.highestBidderId = highestBidderId; }
-    private void setHighestBidderUsername(String highestBidderUsername) { this.highestBidderUsername = highestBidderUsername; }
-    public void setStatus(Status status) { this.status = status; }
+    /**
+     * @return Uma cópia do item com lance, licitante, status e sequência do mesmo instante,
+     *         para gravar ou enviar enquanto novos lances continuam chegando.
+     */
+    public AuctionItem copy() {
+        BidState current = state.get();
+        return new AuctionItem(id, name, description, current.currentBid, startBid, current.highestBidderId,
+                current.highestBidderUsername, endTimeMillis, sellerId, sellerUsername, current.status, handle,
+                current.updateSequence);
+    }
+
+    /**
+     * Altera o status do leilão e avança o número de sequência, para que os clientes
+     * ordenem esta mudança em relação aos lances.
+     *
+     * @param status O novo status.
+     * @return O número de sequência desta mudança.
+     */
+    public long setStatus(Status status) {
+        while (true) {
+            BidState current = state.get();
+            BidState next = new BidState(current.currentBid, current.highestBidderId,
+                    current.highestBidderUsername, status, current.updateSequence + 1);
+            if (state.compareAndSet(current, next)) {
+                return next.updateSequence;
+            }
+        }
+    }
 
     /**
      * Tenta registrar um novo lance para este item.
      *
      * @param bidderId         ID do cliente que está dando o lance.
      * @param bidderUsername   Nome de usuário do cliente que está dando o lance.
-     * @param bidAmount        O valor do lance proposto.
+     * @param bidAmount        O valor do lance proposto, em centavos.
      * @return true se o lance for aceito (maior que o lance atual), false caso contrário.
      */
-    public synchronized boolean placeBid(String bidderId, String bidderUsername, double bidAmount) {
-        if (status != Status.ACTIVE) {
-            System.out.println("Leilão " + id + " não está ativo.");
-            return false;
+    public boolean placeBid(String bidderId, String bidderUsername, long bidAmount) {
+        return tryPlaceBid(bidderId, bidderUsername, bidAmount, 1) > 0;
+    }
+
+    /**
+     * Igual a placeBid(), mas devolve o número de sequência atribuído ao lance aceito.
+     *
+     * Não bloqueia: lê o estado atual, valida o lance contra ele e tenta publicar o novo
+     * estado com compare-and-set. Se outro lance foi publicado no meio tempo, valida de
+     * novo contra ele; um lance que já não supera o atual é recusado na hora. O número de
+     * sequência pertence ao estado publicado, então corresponde exatamente a este valor e
+     * licitante.
+     *
+     * @param bidderId       ID do cliente que está dando o lance.
+     * @param bidderUsername Nome de usuário do cliente que está dando o lance.
+     * @param bidAmount      O valor do lance proposto, em centavos.
+     * @param minIncrement   Quanto, no mínimo, o lance deve superar o atual, em centavos (1 aceita
+     *                       qualquer lance maior).
+     * @return O número de sequência do lance (maior que zero), ou -1 se ele foi recusado.
+     */
+    public long tryPlaceBid(String bidderId, String bidderUsername, long bidAmount, long minIncrement) {
+        BidState previous = tryPlaceBidOver(bidderId, bidderUsername, bidAmount, minIncrement);
+        return previous != null ? previous.updateSequence + 1 : -1;
+    }
+
+    /**
+     * Igual a tryPlaceBid(), mas devolve o estado que o lance aceito substituiu, para que ele
+     * possa ser desfeito com revertBid(). O número de sequência do lance é o desse estado mais um.
+     *
+     * @return O estado anterior ao lance, ou null se ele foi recusado.
+     */
+    public BidState tryPlaceBidOver(String bidderId, String bidderUsername, long bidAmount, long minIncrement) {
+        while (true) {
+            BidState current = state.get();
+            if (current.status != Status.ACTIVE) {
+                Log.log(Log.Level.DEBUG, "Leilão {} não está ativo.", id);
+                return null;
+            }
+            if (isEnded()) {
+                // Recusa sem alterar o status: o encerramento (e seu anúncio) fica a cargo do
+                // AuctionManager, que pode estar a poucos milissegundos de executá-lo.
+                Log.log(Log.Level.DEBUG, "Leilão {} já terminou.", id);
+                return null;
+            }
+            if (bidAmount <= current.currentBid || bidAmount - current.currentBid < minIncrement) {
+                return null;
+            }
+            BidState next = new BidState(bidAmount, bidderId, bidderUsername, current.status,
+                    current.updateSequence + 1);
+            if (state.compareAndSet(current, next)) {
+                return current;
+            }
         }
-        if (isEnded()) {
-            System.out.println("Leilão " + id + " já terminou.");
-            this.status = Status.ENDED; // Atualiza o status caso não tenha sido feito pelo scheduler
-            return false;
+    }
+
+    /**
+     * Desfaz, no servidor, um lance aceito que não pôde ser gravado: volta lance, licitante e
+     * sequência aos de {@code previous}, o estado que tryPlaceBidOver() devolveu. O status
+     * atual é mantido, para não reabrir um leilão encerrado no meio tempo. Se o estado atual
+     * já não é posterior a {@code previous}, um lance anterior (também não gravado) já foi
+     * desfeito e este não muda nada.
+     *
+     * @param previous O estado anterior ao lance.
+     * @return true se o lance foi desfeito.
+     */
+    public boolean revertBid(BidState previous) {
+        while (true) {
+            BidState current = state.get();
+            if (current.updateSequence <= previous.updateSequence) {
+                return false;
+            }
+            BidState next = new BidState(previous.currentBid, previous.highestBidderId,
+                    previous.highestBidderUsername, current.status, previous.updateSequence);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
         }
-        if (bidAmount > currentBid) {
-            setCurrentBid(bidAmount);
-            setHighestBidderId(bidderId);
-            setHighestBidderUsername(bidderUsername);
-            return true;
+    }
+
+    /**
+     * Aplica, na cópia local do cliente, um lance recebido como BidDeltaMessage. Deltas
+     * carregam o estado absoluto, então um delta perdido não corrompe o item; apenas deltas
+     * mais antigos que o estado atual são ignorados.
+     *
+     * @param sequence       Número de sequência do delta.
+     * @param newBid         Novo lance mais alto, em centavos.
+     * @param bidderId       ID do licitante.
+     * @param bidderUsername Nome de usuário do licitante.
+     * @return true se o delta foi aplicado, false se já estava superado.
+     */
+    public boolean applyBidDelta(long sequence, long newBid, String bidderId, String bidderUsername) {
+        while (true) {
+            BidState current = state.get();
+            if (sequence <= current.updateSequence) {
+                return false;
+            }
+            if (state.compareAndSet(current, new BidState(newBid, bidderId, bidderUsername, current.status, sequence))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Aplica, na cópia local do cliente, uma mudança de status recebida como AuctionStatusDeltaMessage.
+     *
+     * @param sequence Número de sequência do delta.
+     * @param status   O novo status.
+     * @return true se o delta foi aplicado, false se já estava superado.
+     */
+    public boolean applyStatusDelta(long sequence, Status status) {
+        while (true) {
+            BidState current = state.get();
+            if (sequence <= current.updateSequence) {
+                return false;
+            }
+            BidState next = new BidState(current.currentBid, current.highestBidderId,
+                    current.highestBidderUsername, status, sequence);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
         }
-        return false;
     }
 
     /**
@@ -117,15 +321,52 @@ public class AuctionItem implements Serializable {
         return Math.max(0, endTimeMillis - System.currentTimeMillis());
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        BidState current = state.get();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("name", name);
+        fields.put("description", description);
+        fields.put("currentBid", Money.toDouble(current.currentBid));
+        fields.put("startBid", Money.toDouble(startBid));
+        fields.put("highestBidderId", current.highestBidderId);
+        fields.put("highestBidderUsername", current.highestBidderUsername);
+        fields.put("endTimeMillis", endTimeMillis);
+        fields.put("sellerId", sellerId);
+        fields.put("sellerUsername", sellerUsername);
+        fields.put("status", current.status);
+        fields.put("handle", handle);
+        fields.put("updateSequence", current.updateSequence);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.id = (String) fields.get("id", null);
+        this.name = (String) fields.get("name", null);
+        this.description = (String) fields.get("description", null);
+        this.startBid = Money.fromDouble(fields.get("startBid", 0.0));
+        this.endTimeMillis = fields.get("endTimeMillis", 0L);
+        this.sellerId = (String) fields.get("sellerId", null);
+        this.sellerUsername = (String) fields.get("sellerUsername", null);
+        this.handle = fields.get("handle", 0);
+        this.state = new AtomicReference<>(new BidState(
+                Money.fromDouble(fields.get("currentBid", 0.0)),
+                (String) fields.get("highestBidderId", null),
+                (String) fields.get("highestBidderUsername", null),
+                (Status) fields.get("status", null),
+                fields.get("updateSequence", 0L)));
+    }
+
     @Override
     public String toString() {
         return "AuctionItem{" +
                "id='" + id + '\'' +
                ", name='" + name + '\'' +
-               ", currentBid=" + currentBid +
-               ", highestBidder='" + (highestBidderUsername != null ? highestBidderUsername : "N/A") + '\'' +
+               ", currentBid=" + Money.format(getCurrentBid()) +
+               ", highestBidder='" + (getHighestBidderUsername() != null ? getHighestBidderUsername() : "N/A") + '\'' +
                ", endTime=" + (getRemainingTime() > 0 ? TimeUnit.MILLISECONDS.toSeconds(getRemainingTime()) + "s restantes" : "ENCERRADO") +
-               ", status=" + status +
+               ", status=" + getStatus() +
                '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.auction.common;
+
+/**
+ * Mensagem enviada pelo cliente para consultar uma página de leilões, filtrada por status
+ * e, opcionalmente, por vendedor, em uma ordem escolhida. Substitui o AUCTION_LIST_REQUEST,
+ * que devolve todos os leilões de uma vez, para servidores que negociaram
+ * Constants.PROTOCOL_AUCTION_QUERIES.
+ *
+ * Para obter a página seguinte, o cliente repete a consulta com o cursor devolvido na
+ * AuctionQueryResponseMessage anterior.
+ *
+ * A partir de Constants.PROTOCOL_QUERY_FILTERS a consulta também pode filtrar pelo autor do
+ * lance mais alto ("leilões que estou vencendo") e por faixas de lance atual e de término
+ * ("terminam nos próximos 5 minutos"). A faixa do critério de ordenação é lida direto do
+ * índice ordenado; a outra é conferida leilão a leilão.
+ */
+public class AuctionQueryMessage extends Message {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Critério de ordenação dos resultados.
+     */
+    public enum SortKey {
+        END_TIME,   // Pelo horário de término do leilão.
+        CURRENT_BID // Pelo lance atual.
+    }
+
+    private AuctionItem.Status status; // Só leilões com este status
+    private String sellerId;           // Só leilões deste vendedor (null para qualquer um)
+    private SortKey sortKey;           // Ordem dos resultados
+    private boolean descending;        // true para ordem decrescente
+    private int pageSize;              // Máximo de leilões na resposta
+    private String cursor;             // Cursor da página anterior (null para a primeira)
+    // Filtros de PROTOCOL_QUERY_FILTERS; null em todos significa sem filtro, inclusive quando
+    // a mensagem vem serializada de um cliente anterior a eles.
+    private String bidderId;           // Só leilões em que este usuário tem o lance mais alto
+    private Long minBid;               // Lance atual mínimo, em centavos (inclusive)
+    private Long maxBid;               // Lance atual máximo, em centavos (inclusive)
+    private Long endsAfter;            // Término a partir deste instante, em ms (inclusive)
+    private Long endsBefore;           // Término até este instante, em ms (inclusive)
+
+    public AuctionQueryMessage(String senderId, AuctionItem.Status status, String sellerId, SortKey sortKey,
+                               boolean descending, int pageSize, String cursor) {
+        this(senderId, status, sellerId, null, null, null, null, null, sortKey, descending, pageSize, cursor);
+    }
+
+    public AuctionQueryMessage(String senderId, AuctionItem.Status status, String sellerId, String bidderId,
+                               Long minBid, Long maxBid, Long endsAfter, Long endsBefore, SortKey sortKey,
+                               boolean descending, int pageSize, String cursor) {
+        super(MessageType.AUCTION_QUERY, senderId);
+        this.status = status;
+        this.sellerId = sellerId;
+        this.bidderId = bidderId;
+        this.minBid = minBid;
+        this.maxBid = maxBid;
+        this.endsAfter = endsAfter;
+        this.endsBefore = endsBefore;
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+    }
+
+    public AuctionItem.Status getStatus() { return status; }
+    public String getSellerId() { return sellerId; }
+    public String getBidderId() { return bidderId; }
+    public Long getMinBid() { return minBid; }
+    public Long getMaxBid() { return maxBid; }
+    public Long getEndsAfter() { return endsAfter; }
+    public Long getEndsBefore() { return endsBefore; }
+    public SortKey getSortKey() { return sortKey; }
+    public boolean isDescending() { return descending; }
+    public int getPageSize() { return pageSize; }
+    public String getCursor() { return cursor; }
+
+    /**
+     * Cria a mesma consulta a partir de outro cursor, para pedir a página seguinte.
+     *
+     * @param nextCursor O cursor devolvido na resposta anterior.
+     * @return A nova consulta.
+     */
+    public AuctionQueryMessage withCursor(String nextCursor) {
+        return new AuctionQueryMessage(getSenderId(), status, sellerId, bidderId, minBid, maxBid, endsAfter,
+                endsBefore, sortKey, descending, pageSize, nextCursor);
+    }
+
+    @Override
+    public String toString() {
+        return "AuctionQueryMessage{" +
+               "status=" + status +
+               ", sellerId='" + sellerId + '\'' +
+               ", bidderId='" + bidderId + '\'' +
+               ", minBid=" + minBid +
+               ", maxBid=" + maxBid +
+               ", endsAfter=" + endsAfter +
+               ", endsBefore=" + endsBefore +
+               ", sortKey=" + sortKey +
+               ", descending=" + descending +
+               ", pageSize=" + pageSize +
+               ", cursor='" + cursor + '\'' +
+               "} " + super.toString();
+    }
+}
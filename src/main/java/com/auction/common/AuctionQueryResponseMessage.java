@@ -0,0 +1,31 @@
+package com.auction.common;
+
+import java.util.List;
+
+/**
+ * Resposta do servidor a uma AuctionQueryMessage: uma página de leilões, na ordem pedida,
+ * e o cursor para a página seguinte.
+ */
+public class AuctionQueryResponseMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private List<AuctionItem> auctions; // Leilões desta página
+    private String nextCursor;          // Cursor da próxima página (null se esta for a última)
+
+    public AuctionQueryResponseMessage(String senderId, List<AuctionItem> auctions, String nextCursor) {
+        super(MessageType.AUCTION_QUERY_RESPONSE, senderId);
+        this.auctions = auctions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<AuctionItem> getAuctions() { return auctions; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+
+    @Override
+    public String toString() {
+        return "AuctionQueryResponseMessage{" +
+               "auctions=" + (auctions != null ? auctions.size() : 0) + " items" +
+               ", nextCursor='" + nextCursor + '\'' +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.auction.common;
+
+/**
+ * Mensagem enviada pelo servidor quando o status de um leilão muda (ex: encerrado), para
+ * clientes que negociaram deltas (Constants.PROTOCOL_DELTA_UPDATES). O vencedor e o valor
+ * final já são conhecidos pelo cliente através dos deltas de lance anteriores.
+ */
+public class AuctionStatusDeltaMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private int auctionHandle;          // Handle do leilão (AuctionItem.getHandle())
+    private long sequence;              // Número de sequência da atualização no leilão
+    private AuctionItem.Status status;  // Novo status do leilão
+
+    public AuctionStatusDeltaMessage(String senderId, int auctionHandle, long sequence, AuctionItem.Status status) {
+        super(MessageType.AUCTION_STATUS_DELTA, senderId);
+        this.auctionHandle = auctionHandle;
+        this.sequence = sequence;
+        this.status = status;
+    }
+
+    public int getAuctionHandle() { return auctionHandle; }
+    public long getSequence() { return sequence; }
+    public AuctionItem.Status getStatus() { return status; }
+
+    @Override
+    public String toString() {
+        return "AuctionStatusDeltaMessage{" +
+               "auctionHandle=" + auctionHandle +
+               ", sequence=" + sequence +
+               ", status=" + status +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.auction.common;
+
+/**
+ * Mensagem enviada pelo servidor quando um lance é aceito, para clientes que negociaram
+ * deltas (Constants.PROTOCOL_DELTA_UPDATES). Carrega apenas o que muda: o leilão e o
+ * licitante são identificados pelos seus handles, e o cliente aplica o delta ao item que
+ * já tem em cache.
+ */
+public class BidDeltaMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private int auctionHandle;   // Handle do leilão (AuctionItem.getHandle())
+    private long sequence;       // Número de sequência da atualização no leilão
+    private long newBid;         // Novo lance mais alto, em centavos
+    private int bidderHandle;    // Handle do licitante (UserInfo.getHandle()), 0 se desconhecido
+
+    public BidDeltaMessage(String senderId, int auctionHandle, long sequence, long newBid, int bidderHandle) {
+        super(MessageType.BID_DELTA, senderId);
+        this.auctionHandle = auctionHandle;
+        this.sequence = sequence;
+        this.newBid = newBid;
+        this.bidderHandle = bidderHandle;
+    }
+
+    public int getAuctionHandle() { return auctionHandle; }
+    public long getSequence() { return sequence; }
+    public long getNewBid() { return newBid; }
+    public int getBidderHandle() { return bidderHandle; }
+
+    @Override
+    public String toString() {
+        return "BidDeltaMessage{" +
+               "auctionHandle=" + auctionHandle +
+               ", sequence=" + sequence +
+               ", newBid=" + Money.format(newBid) +
+               ", bidderHandle=" + bidderHandle +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.auction.common;
+
+/**
+ * Mensagem enviada pelo cliente para consultar um trecho do histórico de lances de um
+ * leilão, para servidores que negociaram Constants.PROTOCOL_BID_HISTORY.
+ */
+public class BidHistoryRequestMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private String auctionId; // Leilão consultado
+    private int fromIndex;    // Posição do primeiro lance (0 = o mais antigo); negativo para os últimos lances
+    private int maxEntries;   // Máximo de lances na resposta
+
+    public BidHistoryRequestMessage(String senderId, String auctionId, int fromIndex, int maxEntries) {
+        super(MessageType.BID_HISTORY_REQUEST, senderId);
+        this.auctionId = auctionId;
+        this.fromIndex = fromIndex;
+        this.maxEntries = maxEntries;
+    }
+
+    public String getAuctionId() { return auctionId; }
+    public int getFromIndex() { return fromIndex; }
+    public int getMaxEntries() { return maxEntries; }
+
+    @Override
+    public String toString() {
+        return "BidHistoryRequestMessage{" +
+               "auctionId='" + auctionId + '\'' +
+               ", fromIndex=" + fromIndex +
+               ", maxEntries=" + maxEntries +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.auction.common;
+
+/**
+ * Resposta do servidor a uma BidHistoryRequestMessage: um trecho do histórico de lances do
+ * leilão, do mais antigo para o mais recente, em arrays paralelos.
+ */
+public class BidHistoryResponseMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private String auctionId;          // Leilão consultado
+    private int fromIndex;             // Posição do primeiro lance do trecho no histórico
+    private int totalBids;             // Total de lances do leilão (-1 se o leilão não existe)
+    private long[] timestamps;         // Horário de cada lance, em milissegundos
+    private long[] amounts;            // Valor de cada lance, em centavos
+    private String[] bidderUsernames;  // Nome de usuário de quem deu cada lance
+
+    public BidHistoryResponseMessage(String senderId, String auctionId, int fromIndex, int totalBids,
+                                     long[] timestamps, long[] amounts, String[] bidderUsernames) {
+        super(MessageType.BID_HISTORY_RESPONSE, senderId);
+        this.auctionId = auctionId;
+        this.fromIndex = fromIndex;
+        this.totalBids = totalBids;
+        this.timestamps = timestamps;
+        this.amounts = amounts;
+        this.bidderUsernames = bidderUsernames;
+    }
+
+    public String getAuctionId() { return auctionId; }
+    public int getFromIndex() { return fromIndex; }
+    public int getTotalBids() { return totalBids; }
+    public long[] getTimestamps() { return timestamps; }
+    public long[] getAmounts() { return amounts; }
+    public String[] getBidderUsernames() { return bidderUsernames; }
+    public int size() { return amounts != null ? amounts.length : 0; }
+
+    @Override
+    public String toString() {
+        return "BidHistoryResponseMessage{" +
+               "auctionId='" + auctionId + '\'' +
+               ", fromIndex=" + fromIndex +
+               ", totalBids=" + totalBids +
+               ", entries=" + size() +
+               "} " + super.toString();
+    }
+}
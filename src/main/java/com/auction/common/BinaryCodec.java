@@ -0,0 +1,844 @@
+package com.auction.common;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Codec binário compacto para as mensagens trocadas entre cliente e servidor, usado no
+ * lugar da serialização Java quando os dois lados o negociam no LOGIN
+ * (ver Constants.PROTOCOL_BINARY_CODEC).
+ *
+ * Formato de um frame:
+ * <pre>
+ * [FRAME_MARKER:1][versão:1][tamanho do payload:4][payload]
+ * payload = [código do MessageType:1][timestamp:8][senderId][campos específicos do tipo]
+ * </pre>
+ * O marcador nunca coincide com o primeiro byte de uma mensagem serializada (TC_RESET ou
+ * TC_OBJECT), então frames binários e mensagens serializadas podem se alternar no mesmo
+ * stream: quem lê decide pelo primeiro byte de cada mensagem.
+ *
+ * Strings são UTF-8 prefixadas pelo tamanho em varint (0 representa null); listas também
+ * têm o tamanho + 1 em varint, com 0 para null. Varints só carregam valores não negativos
+ * (tamanhos, handles, portas, sequências, centavos); os campos com sinal usam int ou long
+ * fixos. Na leitura, um varint negativo ou mais longo que o necessário é recusado, assim
+ * como qualquer tamanho que passe do fim do payload.
+ */
+public final class BinaryCodec {
+
+    /** Primeiro byte de todo frame binário. */
+    public static final byte FRAME_MARKER = (byte) 0xB7;
+
+    /**
+     * Maior versão do formato suportada. A versão de cada frame é a versão de protocolo
+     * negociada com o destinatário: a 2 acrescenta handles e números de sequência aos itens
+     * e usuários, e as mensagens delta; a 3, as assinaturas; a 4, as consultas paginadas; a 5,
+     * o histórico de lances; a 6 grava os valores monetários como centavos (varlong) em vez
+     * de double; a 7 identifica o leilão do PLACE_BID pelo handle, sem o ID nem o nome do
+     * licitante; a 8, a busca por palavras; a 9, os filtros de licitante e de faixas da
+     * AUCTION_QUERY.
+     * Frames de versões maiores são rejeitados.
+     */
+    public static final byte VERSION = 9;
+
+    /** Tamanho do cabeçalho do frame: marcador, versão e tamanho do payload. */
+    public static final int HEADER_LENGTH = 6;
+
+    /** Tamanho máximo aceito para o payload de um frame. */
+    public static final int MAX_PAYLOAD_LENGTH = 16 * 1024 * 1024; // 16 MB
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Codifica uma mensagem como um frame binário completo (cabeçalho + payload), na versão
+     * mais recente do formato.
+     *
+     * @param message A Message a ser codificada.
+     * @return Os bytes do frame.
+     * @throws IOException Se o tipo da mensagem não for suportado pelo codec.
+     */
+    public static byte[] encode(Message message) throws IOException {
+        return encode(message, VERSION);
+    }
+
+    /**
+     * Codifica uma mensagem como um frame binário completo (cabeçalho + payload).
+     *
+     * @param message         A Message a ser codificada.
+     * @param protocolVersion A versão de protocolo negociada com o destinatário; define a versão do frame.
+     * @return Os bytes do frame.
+     * @throws IOException Se o tipo da mensagem não existir na versão pedida, ou se um campo
+     *                     gravado como varint for negativo.
+     */
+    public static byte[] encode(Message message, int protocolVersion) throws IOException {
+        int version = Math.min(Math.max(protocolVersion, 1), VERSION);
+        try {
+            return encodeFrame(message, version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Mensagem " + message.getType() + " não codificável: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] encodeFrame(Message message, int version) throws IOException {
+        Writer out = new Writer(version);
+        out.writeByte(FRAME_MARKER);
+        out.writeByte((byte) version);
+        out.writeInt(0); // Tamanho do payload, preenchido no final
+        out.writeByte(typeCode(message.getType()));
+        out.writeLong(message.getTimestamp());
+        out.writeString(message.getSenderId());
+        switch (message.getType()) {
+            case LOGIN: {
+                LoginMessage m = (LoginMessage) message;
+                out.writeString(m.getUsername());
+                out.writeVarInt(m.getP2pPort());
+                out.writeString(m.getIpAddress());
+                out.writeVarInt(m.getProtocolVersion());
+                break;
+            }
+            case AUCTION_LIST_REQUEST:
+            case KEEP_ALIVE:
+                break;
+            case PLACE_BID: {
+                PlaceBidMessage m = (PlaceBidMessage) message;
+                if (version >= 7) {
+                    // Handle 0 (leilão sem handle conhecido): o ID segue logo depois
+                    out.writeVarInt(m.getAuctionHandle());
+                    if (m.getAuctionHandle() == 0) {
+                        out.writeString(m.getAuctionId());
+                    }
+                    out.writeMoney(m.getBidAmount());
+                } else {
+                    out.writeString(m.getAuctionId());
+                    out.writeMoney(m.getBidAmount());
+                    out.writeString(m.getBidderUsername());
+                }
+                break;
+            }
+            case CREATE_AUCTION: {
+                CreateAuctionMessage m = (CreateAuctionMessage) message;
+                out.writeString(m.getItemName());
+                out.writeString(m.getItemDescription());
+                out.writeMoney(m.getStartBid());
+                out.writeVarInt(m.getDurationSeconds());
+                break;
+            }
+            case PEER_INFO_REQUEST:
+                out.writeString(((PeerInfoRequestMessage) message).getTargetUserId());
+                break;
+            case SUBSCRIBE: {
+                requireVersion(version, 3, message.getType());
+                SubscribeMessage m = (SubscribeMessage) message;
+                writeStringList(out, m.getAuctionIds());
+                out.writeBoolean(m.isNewAuctions());
+                break;
+            }
+            case UNSUBSCRIBE: {
+                requireVersion(version, 3, message.getType());
+                UnsubscribeMessage m = (UnsubscribeMessage) message;
+                writeStringList(out, m.getAuctionIds());
+                out.writeBoolean(m.isNewAuctions());
+                break;
+            }
+            case AUCTION_QUERY: {
+                requireVersion(version, 4, message.getType());
+                AuctionQueryMessage m = (AuctionQueryMessage) message;
+                out.writeByte((byte) m.getStatus().ordinal());
+                out.writeString(m.getSellerId());
+                out.writeByte((byte) m.getSortKey().ordinal());
+                out.writeBoolean(m.isDescending());
+                out.writeVarInt(m.getPageSize());
+                out.writeString(m.getCursor());
+                if (version >= 9) {
+                    out.writeString(m.getBidderId());
+                    writeOptionalLong(out, m.getMinBid());
+                    writeOptionalLong(out, m.getMaxBid());
+                    writeOptionalLong(out, m.getEndsAfter());
+                    writeOptionalLong(out, m.getEndsBefore());
+                }
+                break;
+            }
+            case SEARCH: {
+                requireVersion(version, 8, message.getType());
+                SearchMessage m = (SearchMessage) message;
+                out.writeString(m.getQuery());
+                out.writeByte((byte) m.getStatus().ordinal());
+                out.writeVarInt(m.getMaxResults());
+                break;
+            }
+            case LOGIN_RESPONSE: {
+                LoginResponseMessage m = (LoginResponseMessage) message;
+                out.writeBoolean(m.isSuccess());
+                out.writeString(m.getMessage());
+                writeAuctionList(out, m.getInitialAuctions());
+                writeUserList(out, m.getActiveUsers());
+                out.writeVarInt(m.getProtocolVersion());
+                break;
+            }
+            case AUCTION_LIST_RESPONSE: {
+                AuctionListResponseMessage m = (AuctionListResponseMessage) message;
+                writeAuctionList(out, m.getActiveAuctions());
+                writeAuctionList(out, m.getDiscontinuedAuctions());
+                break;
+            }
+            case AUCTION_UPDATE: {
+                AuctionUpdateMessage m = (AuctionUpdateMessage) message;
+                writeAuctionItem(out, m.getUpdatedAuctionItem());
+                out.writeString(m.getUpdateDescription());
+                break;
+            }
+            case USER_STATUS_UPDATE: {
+                UserStatusUpdateMessage m = (UserStatusUpdateMessage) message;
+                writeUserInfo(out, m.getUser());
+                out.writeBoolean(m.isOnline());
+                break;
+            }
+            case PEER_INFO_RESPONSE: {
+                PeerInfoResponseMessage m = (PeerInfoResponseMessage) message;
+                out.writeString(m.getTargetUserId());
+                out.writeString(m.getTargetIp());
+                out.writeVarInt(m.getTargetPort());
+                break;
+            }
+            case DIRECT_MESSAGE: {
+                DirectMessage m = (DirectMessage) message;
+                out.writeString(m.getReceiverId());
+                out.writeString(m.getContent());
+                out.writeString(m.getRelatedAuctionId());
+                break;
+            }
+            case BID_DELTA: {
+                requireVersion(version, 2, message.getType());
+                BidDeltaMessage m = (BidDeltaMessage) message;
+                out.writeVarInt(m.getAuctionHandle());
+                out.writeVarLong(m.getSequence());
+                out.writeMoney(m.getNewBid());
+                out.writeVarInt(m.getBidderHandle());
+                break;
+            }
+            case AUCTION_STATUS_DELTA: {
+                requireVersion(version, 2, message.getType());
+                AuctionStatusDeltaMessage m = (AuctionStatusDeltaMessage) message;
+                out.writeVarInt(m.getAuctionHandle());
+                out.writeVarLong(m.getSequence());
+                out.writeByte((byte) m.getStatus().ordinal());
+                break;
+            }
+            case AUCTION_QUERY_RESPONSE: {
+                requireVersion(version, 4, message.getType());
+                AuctionQueryResponseMessage m = (AuctionQueryResponseMessage) message;
+                writeAuctionList(out, m.getAuctions());
+                out.writeString(m.getNextCursor());
+                break;
+            }
+            case BID_HISTORY_REQUEST: {
+                requireVersion(version, 5, message.getType());
+                BidHistoryRequestMessage m = (BidHistoryRequestMessage) message;
+                out.writeString(m.getAuctionId());
+                out.writeInt(m.getFromIndex());
+                out.writeVarInt(m.getMaxEntries());
+                break;
+            }
+            case BID_HISTORY_RESPONSE: {
+                requireVersion(version, 5, message.getType());
+                BidHistoryResponseMessage m = (BidHistoryResponseMessage) message;
+                out.writeString(m.getAuctionId());
+                out.writeVarInt(m.getFromIndex());
+                out.writeInt(m.getTotalBids());
+                out.writeVarInt(m.size());
+                for (int i = 0; i < m.size(); i++) {
+                    out.writeVarLong(m.getTimestamps()[i]);
+                    out.writeMoney(m.getAmounts()[i]);
+                    out.writeString(m.getBidderUsernames()[i]);
+                }
+                break;
+            }
+            case SEARCH_RESPONSE: {
+                requireVersion(version, 8, message.getType());
+                SearchResponseMessage m = (SearchResponseMessage) message;
+                out.writeString(m.getQuery());
+                writeAuctionList(out, m.getAuctions());
+                break;
+            }
+            default:
+                throw new IOException("Tipo de mensagem não suportado pelo codec binário: " + message.getType());
+        }
+        return out.toFrame();
+    }
+
+    /**
+     * Decodifica o payload de um frame (sem o cabeçalho).
+     *
+     * @param version A versão lida do cabeçalho do frame.
+     * @param payload Os bytes do payload.
+     * @param offset  Posição do primeiro byte do payload.
+     * @param length  Tamanho do payload.
+     * @return A Message decodificada.
+     * @throws IOException Se a versão não for suportada ou o payload estiver corrompido.
+     */
+    public static Message decode(int version, byte[] payload, int offset, int length) throws IOException {
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Versão de frame binário não suportada: " + version);
+        }
+        Reader in = new Reader(payload, offset, length, version);
+        MessageType type = typeForCode(in.readByte());
+        long timestamp = in.readLong();
+        String senderId = in.readString();
+        Message message;
+        switch (type) {
+            case LOGIN:
+                message = new LoginMessage(senderId, in.readString(), in.readVarInt(), in.readString(), in.readVarInt());
+                break;
+            case AUCTION_LIST_REQUEST:
+                message = new AuctionListRequestMessage(senderId);
+                break;
+            case KEEP_ALIVE:
+                message = new KeepAliveMessage(senderId);
+                break;
+            case PLACE_BID:
+                if (version >= 7) {
+                    int auctionHandle = in.readVarInt();
+                    String auctionId = auctionHandle == 0 ? in.readString() : null;
+                    message = new PlaceBidMessage(senderId, auctionId, auctionHandle, in.readMoney(), null);
+                } else {
+                    message = new PlaceBidMessage(senderId, in.readString(), in.readMoney(), in.readString());
+                }
+                break;
+            case CREATE_AUCTION:
+                message = new CreateAuctionMessage(senderId, in.readString(), in.readString(), in.readMoney(), in.readVarInt());
+                break;
+            case PEER_INFO_REQUEST:
+                message = new PeerInfoRequestMessage(senderId, in.readString());
+                break;
+            case SUBSCRIBE:
+                requireVersion(version, 3, type);
+                message = new SubscribeMessage(senderId, readStringList(in), in.readBoolean());
+                break;
+            case UNSUBSCRIBE:
+                requireVersion(version, 3, type);
+                message = new UnsubscribeMessage(senderId, readStringList(in), in.readBoolean());
+                break;
+            case AUCTION_QUERY:
+                requireVersion(version, 4, type);
+                message = readAuctionQuery(senderId, in);
+                break;
+            case SEARCH:
+                requireVersion(version, 8, type);
+                message = new SearchMessage(senderId, in.readString(), readStatus(in), in.readVarInt());
+                break;
+            case LOGIN_RESPONSE:
+                message = new LoginResponseMessage(senderId, in.readBoolean(), in.readString(),
+                        readAuctionList(in), readUserList(in), in.readVarInt());
+                break;
+            case AUCTION_LIST_RESPONSE:
+                message = new AuctionListResponseMessage(senderId, readAuctionList(in), readAuctionList(in));
+                break;
+            case AUCTION_UPDATE:
+                message = new AuctionUpdateMessage(senderId, readAuctionItem(in), in.readString());
+                break;
+            case USER_STATUS_UPDATE:
+                message = new UserStatusUpdateMessage(senderId, readUserInfo(in), in.readBoolean());
+                break;
+            case PEER_INFO_RESPONSE:
+                message = new PeerInfoResponseMessage(senderId, in.readString(), in.readString(), in.readVarInt());
+                break;
+            case DIRECT_MESSAGE:
+                message = new DirectMessage(senderId, in.readString(), in.readString(), in.readString());
+                break;
+            case BID_DELTA:
+                requireVersion(version, 2, type);
+                message = new BidDeltaMessage(senderId, in.readVarInt(), in.readVarLong(), in.readMoney(), in.readVarInt());
+                break;
+            case AUCTION_STATUS_DELTA:
+                requireVersion(version, 2, type);
+                message = new AuctionStatusDeltaMessage(senderId, in.readVarInt(), in.readVarLong(), readStatus(in));
+                break;
+            case AUCTION_QUERY_RESPONSE:
+                requireVersion(version, 4, type);
+                message = new AuctionQueryResponseMessage(senderId, readAuctionList(in), in.readString());
+                break;
+            case BID_HISTORY_REQUEST:
+                requireVersion(version, 5, type);
+                message = new BidHistoryRequestMessage(senderId, in.readString(), in.readInt(), in.readVarInt());
+                break;
+            case BID_HISTORY_RESPONSE:
+                requireVersion(version, 5, type);
+                message = readBidHistoryResponse(senderId, in);
+                break;
+            case SEARCH_RESPONSE:
+                requireVersion(version, 8, type);
+                message = new SearchResponseMessage(senderId, in.readString(), readAuctionList(in));
+                break;
+            default:
+                throw new StreamCorruptedException("Tipo de mensagem não suportado pelo codec binário: " + type);
+        }
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    /**
+     * Lê o tamanho do payload a partir do cabeçalho de um frame.
+     *
+     * @param header Bytes que começam no FRAME_MARKER (ao menos HEADER_LENGTH bytes).
+     * @param offset Posição do marcador.
+     * @return O tamanho do payload.
+     * @throws IOException Se o tamanho for inválido.
+     */
+    public static int payloadLength(byte[] header, int offset) throws IOException {
+        int length = ((header[offset + 2] & 0xFF) << 24) | ((header[offset + 3] & 0xFF) << 16)
+                | ((header[offset + 4] & 0xFF) << 8) | (header[offset + 5] & 0xFF);
+        if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+            throw new StreamCorruptedException("Tamanho de frame binário inválido: " + length);
+        }
+        return length;
+    }
+
+    private static void requireVersion(int version, int required, MessageType type) throws IOException {
+        if (version < required) {
+            throw new IOException("Tipo de mensagem " + type + " exige a versão " + required + " do codec binário.");
+        }
+    }
+
+    // Códigos estáveis de cada tipo no fio. Não usar ordinal(): novos tipos podem ser
+    // inseridos no enum sem mudar o formato.
+    private static byte typeCode(MessageType type) throws IOException {
+        switch (type) {
+            case LOGIN: return 1;
+            case AUCTION_LIST_REQUEST: return 3;
+            case PLACE_BID: return 4;
+            case CREATE_AUCTION: return 5;
+            case KEEP_ALIVE: return 6;
+            case PEER_INFO_REQUEST: return 7;
+            case SUBSCRIBE: return 8;
+            case UNSUBSCRIBE: return 9;
+            case AUCTION_QUERY: return 10;
+            case BID_HISTORY_REQUEST: return 11;
+            case SEARCH: return 12;
+            case LOGIN_RESPONSE: return 20;
+            case AUCTION_LIST_RESPONSE: return 21;
+            case AUCTION_UPDATE: return 22;
+            case USER_STATUS_UPDATE: return 23;
+            case PEER_INFO_RESPONSE: return 24;
+            case BID_DELTA: return 25;
+            case AUCTION_STATUS_DELTA: return 26;
+            case AUCTION_QUERY_RESPONSE: return 27;
+            case BID_HISTORY_RESPONSE: return 28;
+            case SEARCH_RESPONSE: return 29;
+            case DIRECT_MESSAGE: return 40;
+            default:
+                throw new IOException("Tipo de mensagem não suportado pelo codec binário: " + type);
+        }
+    }
+
+    private static MessageType typeForCode(byte code) throws IOException {
+        switch (code) {
+            case 1: return MessageType.LOGIN;
+            case 3: return MessageType.AUCTION_LIST_REQUEST;
+            case 4: return MessageType.PLACE_BID;
+            case 5: return MessageType.CREATE_AUCTION;
+            case 6: return MessageType.KEEP_ALIVE;
+            case 7: return MessageType.PEER_INFO_REQUEST;
+            case 8: return MessageType.SUBSCRIBE;
+            case 9: return MessageType.UNSUBSCRIBE;
+            case 10: return MessageType.AUCTION_QUERY;
+            case 11: return MessageType.BID_HISTORY_REQUEST;
+            case 12: return MessageType.SEARCH;
+            case 20: return MessageType.LOGIN_RESPONSE;
+            case 21: return MessageType.AUCTION_LIST_RESPONSE;
+            case 22: return MessageType.AUCTION_UPDATE;
+            case 23: return MessageType.USER_STATUS_UPDATE;
+            case 24: return MessageType.PEER_INFO_RESPONSE;
+            case 25: return MessageType.BID_DELTA;
+            case 26: return MessageType.AUCTION_STATUS_DELTA;
+            case 27: return MessageType.AUCTION_QUERY_RESPONSE;
+            case 28: return MessageType.BID_HISTORY_RESPONSE;
+            case 29: return MessageType.SEARCH_RESPONSE;
+            case 40: return MessageType.DIRECT_MESSAGE;
+            default:
+                throw new StreamCorruptedException("Código de tipo de mensagem desconhecido: " + code);
+        }
+    }
+
+    private static void writeAuctionItem(Writer out, AuctionItem item) {
+        // Um único BidState: lance, licitante, status e sequência do mesmo instante.
+        AuctionItem.BidState bid = item.getBidState();
+        out.writeString(item.getId());
+        out.writeString(item.getName());
+        out.writeString(item.getDescription());
+        out.writeMoney(bid.currentBid);
+        out.writeMoney(item.getStartBid());
+        out.writeString(bid.highestBidderId);
+        out.writeString(bid.highestBidderUsername);
+        out.writeLong(item.getEndTimeMillis());
+        out.writeString(item.getSellerId());
+        out.writeString(item.getSellerUsername());
+        out.writeByte((byte) bid.status.ordinal());
+        if (out.version >= 2) {
+            out.writeVarInt(item.getHandle());
+            out.writeVarLong(bid.updateSequence);
+        }
+    }
+
+    private static AuctionItem readAuctionItem(Reader in) throws IOException {
+        String id = in.readString();
+        String name = in.readString();
+        String description = in.readString();
+        long currentBid = in.readMoney();
+        long startBid = in.readMoney();
+        String highestBidderId = in.readString();
+        String highestBidderUsername = in.readString();
+        long endTimeMillis = in.readLong();
+        String sellerId = in.readString();
+        String sellerUsername = in.readString();
+        AuctionItem.Status status = readStatus(in);
+        int handle = in.version >= 2 ? in.readVarInt() : 0;
+        long updateSequence = in.version >= 2 ? in.readVarLong() : 0;
+        return new AuctionItem(id, name, description, currentBid, startBid, highestBidderId, highestBidderUsername,
+                endTimeMillis, sellerId, sellerUsername, status, handle, updateSequence);
+    }
+
+    private static AuctionItem.Status readStatus(Reader in) throws IOException {
+        int status = in.readByte();
+        AuctionItem.Status[] statuses = AuctionItem.Status.values();
+        if (status < 0 || status >= statuses.length) {
+            throw new StreamCorruptedException("Status de leilão inválido: " + status);
+        }
+        return statuses[status];
+    }
+
+    private static AuctionQueryMessage.SortKey readSortKey(Reader in) throws IOException {
+        int sortKey = in.readByte();
+        AuctionQueryMessage.SortKey[] sortKeys = AuctionQueryMessage.SortKey.values();
+        if (sortKey < 0 || sortKey >= sortKeys.length) {
+            throw new StreamCorruptedException("Critério de ordenação inválido: " + sortKey);
+        }
+        return sortKeys[sortKey];
+    }
+
+    private static AuctionQueryMessage readAuctionQuery(String senderId, Reader in) throws IOException {
+        AuctionItem.Status status = readStatus(in);
+        String sellerId = in.readString();
+        AuctionQueryMessage.SortKey sortKey = readSortKey(in);
+        boolean descending = in.readBoolean();
+        int pageSize = in.readVarInt();
+        String cursor = in.readString();
+        if (in.version < 9) {
+            return new AuctionQueryMessage(senderId, status, sellerId, sortKey, descending, pageSize, cursor);
+        }
+        return new AuctionQueryMessage(senderId, status, sellerId, in.readString(), readOptionalLong(in),
+                readOptionalLong(in), readOptionalLong(in), readOptionalLong(in), sortKey, descending, pageSize, cursor);
+    }
+
+    // Um Long opcional: um byte de presença e, se presente, o valor.
+    private static void writeOptionalLong(Writer out, Long value) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readOptionalLong(Reader in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static BidHistoryResponseMessage readBidHistoryResponse(String senderId, Reader in) throws IOException {
+        String auctionId = in.readString();
+        int fromIndex = in.readVarInt();
+        int totalBids = in.readInt();
+        int size = in.readVarInt();
+        // Cada lance ocupa ao menos 3 bytes: não aloca arrays maiores que o próprio frame.
+        if (size < 0 || size > (in.end - in.pos) / 3) {
+            throw new StreamCorruptedException("Tamanho de histórico de lances inválido: " + size);
+        }
+        long[] timestamps = new long[size];
+        long[] amounts = new long[size];
+        String[] bidderUsernames = new String[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = in.readVarLong();
+            amounts[i] = in.readMoney();
+            bidderUsernames[i] = in.readString();
+        }
+        return new BidHistoryResponseMessage(senderId, auctionId, fromIndex, totalBids, timestamps, amounts,
+                bidderUsernames);
+    }
+
+    private static void writeAuctionList(Writer out, List<AuctionItem> items) {
+        out.writeVarInt(items == null ? 0 : items.size() + 1);
+        if (items != null) {
+            for (AuctionItem item : items) {
+                writeAuctionItem(out, item);
+            }
+        }
+    }
+
+    private static List<AuctionItem> readAuctionList(Reader in) throws IOException {
+        int size = in.readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<AuctionItem> items = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            items.add(readAuctionItem(in));
+        }
+        return items;
+    }
+
+    private static void writeStringList(Writer out, List<String> values) {
+        out.writeVarInt(values == null ? 0 : values.size() + 1);
+        if (values != null) {
+            for (String value : values) {
+                out.writeString(value);
+            }
+        }
+    }
+
+    private static List<String> readStringList(Reader in) throws IOException {
+        int size = in.readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            values.add(in.readString());
+        }
+        return values;
+    }
+
+    private static void writeUserInfo(Writer out, UserInfo user) {
+        out.writeString(user.getUserId());
+        out.writeString(user.getUsername());
+        out.writeString(user.getIpAddress());
+        out.writeVarInt(user.getP2pPort());
+        if (out.version >= 2) {
+            out.writeVarInt(user.getHandle());
+        }
+    }
+
+    private static UserInfo readUserInfo(Reader in) throws IOException {
+        return new UserInfo(in.readString(), in.readString(), in.readString(), in.readVarInt(),
+                in.version >= 2 ? in.readVarInt() : 0);
+    }
+
+    private static void writeUserList(Writer out, List<UserInfo> users) {
+        out.writeVarInt(users == null ? 0 : users.size() + 1);
+        if (users != null) {
+            for (UserInfo user : users) {
+                writeUserInfo(out, user);
+            }
+        }
+    }
+
+    private static List<UserInfo> readUserList(Reader in) throws IOException {
+        int size = in.readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<UserInfo> users = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            users.add(readUserInfo(in));
+        }
+        return users;
+    }
+
+    /**
+     * Buffer de escrita que cresce conforme necessário. Evita DataOutputStream para não
+     * alocar um stream por mensagem e para ter varints e strings nulas.
+     */
+    private static final class Writer {
+        final int version;
+        private byte[] buf = new byte[128];
+        private int pos;
+
+        Writer(int version) {
+            this.version = version;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(pos + extra, buf.length * 2));
+            }
+        }
+
+        void writeByte(byte value) {
+            ensure(1);
+            buf[pos++] = value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? (byte) 1 : (byte) 0);
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buf[pos++] = (byte) (value >>> 24);
+            buf[pos++] = (byte) (value >>> 16);
+            buf[pos++] = (byte) (value >>> 8);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        // Valor em centavos: varlong a partir da versão 6, double nas anteriores. Ao contrário do
+        // journal e do snapshot, que só o próprio servidor lê e podem recusar formatos antigos,
+        // a versão do protocolo é negociada no LOGIN e pode ser fixada em qualquer valor com
+        // auction.protocol, então cada versão aceita continua com o seu formato.
+        void writeMoney(long cents) {
+            if (version >= 6) {
+                writeVarLong(cents);
+            } else {
+                writeDouble(Money.toDouble(cents));
+            }
+        }
+
+        void writeVarInt(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("varint negativo: " + value);
+            }
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("varlong negativo: " + value);
+            }
+            ensure(9);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, pos, utf8.length);
+            pos += utf8.length;
+        }
+
+        /** Preenche o tamanho do payload no cabeçalho e devolve o frame com o tamanho exato. */
+        byte[] toFrame() {
+            int payload = pos - HEADER_LENGTH;
+            buf[2] = (byte) (payload >>> 24);
+            buf[3] = (byte) (payload >>> 16);
+            buf[4] = (byte) (payload >>> 8);
+            buf[5] = (byte) payload;
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    /**
+     * Leitura sequencial de um payload, com verificação de limites.
+     */
+    private static final class Reader {
+        final int version;
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        Reader(byte[] buf, int offset, int length, int version) {
+            this.buf = buf;
+            this.pos = offset;
+            this.end = offset + length;
+            this.version = version;
+        }
+
+        private void require(int count) throws IOException {
+            if (count < 0 || count > end - pos) { // pos + count poderia estourar o int
+                throw new StreamCorruptedException("Frame binário truncado.");
+            }
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return buf[pos++];
+        }
+
+        boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            int value = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16)
+                    | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+            pos += 4;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        // Ver writeMoney().
+        long readMoney() throws IOException {
+            return version >= 6 ? readVarLong() : Money.fromDouble(readDouble());
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 28; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            // Quinto byte: só os 3 bits que faltam para 31, sem continuação
+            byte b = readByte();
+            if ((b & 0xF8) != 0) {
+                throw new StreamCorruptedException("Varint inválido.");
+            }
+            return value | (b << 28);
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            // Nove bytes de 7 bits cobrem os 63 bits de um long não negativo
+            for (int shift = 0; shift < 63; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varlong inválido.");
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            require(length);
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
@@ -22,13 +22,6 @@ public class Constants {
      */
     public static final long KEEP_ALIVE_INTERVAL_MS = 10000; // 10 segundos
 
-    /**
-     * Intervalo em milissegundos para o servidor verificar o término dos leilões.
-     * O servidor executará esta verificação periodicamente para finalizar leilões
-     * cujo tempo se esgotou e notificar os clientes.
-     */
-    public static final long AUCTION_END_CHECK_INTERVAL_MS = 1000; // 1 segundo
-
     /**
      * Tempo máximo de inatividade permitido para um cliente antes de ser desconectado.
      * Se o servidor não receber nenhuma mensagem (incluindo Keep-Alive) de um cliente
@@ -37,9 +30,68 @@ public class Constants {
     public static final long CLIENT_INACTIVITY_TIMEOUT_MS = 60000; // 60 segundos
 
     /**
-     * Intervalo em milissegundos para o servidor verificar a inatividade dos clientes.
-     * O servidor executará esta verificação periodicamente para identificar clientes
-     * que não enviaram mensagens dentro do tempo permitido e desconectá-los.
+     * Versão de protocolo dos clientes que só conhecem a serialização Java.
+     * É o valor lido de um LoginMessage enviado por um cliente antigo.
+     */
+    public static final int PROTOCOL_LEGACY = 0;
+
+    /**
+     * Versão de protocolo em que as mensagens cliente-servidor usam o BinaryCodec.
+     */
+    public static final int PROTOCOL_BINARY_CODEC = 1;
+
+    /**
+     * Versão de protocolo em que lances aceitos e mudanças de status chegam como deltas
+     * (BID_DELTA, AUCTION_STATUS_DELTA) em vez do AuctionItem inteiro.
+     */
+    public static final int PROTOCOL_DELTA_UPDATES = 2;
+
+    /**
+     * Versão de protocolo em que o cliente só recebe atualizações dos leilões que assinou
+     * (SUBSCRIBE/UNSUBSCRIBE) e do tópico de leilões novos. Clientes de versões anteriores
+     * continuam recebendo tudo.
+     */
+    public static final int PROTOCOL_SUBSCRIPTIONS = 3;
+
+    /**
+     * Versão de protocolo em que o cliente pode consultar os leilões em páginas
+     * (AUCTION_QUERY) em vez de receber a lista completa.
+     */
+    public static final int PROTOCOL_AUCTION_QUERIES = 4;
+
+    /**
+     * Versão de protocolo em que o cliente pode consultar o histórico de lances de um leilão
+     * (BID_HISTORY_REQUEST).
+     */
+    public static final int PROTOCOL_BID_HISTORY = 5;
+
+    /**
+     * Versão de protocolo em que os valores monetários (lances e preços) trafegam no codec
+     * binário como centavos (long) em vez de double.
+     */
+    public static final int PROTOCOL_MONEY_CENTS = 6;
+
+    /**
+     * Versão de protocolo em que o lance (PLACE_BID) identifica o leilão pelo handle inteiro
+     * atribuído pelo servidor, em vez do UUID em texto.
+     */
+    public static final int PROTOCOL_HANDLES = 7;
+
+    /**
+     * Versão de protocolo em que o cliente pode buscar leilões por palavras do nome e da
+     * descrição (SEARCH).
+     */
+    public static final int PROTOCOL_SEARCH = 8;
+
+    /**
+     * Versão de protocolo em que a AUCTION_QUERY aceita os filtros de licitante vencedor e as
+     * faixas de lance atual e de término.
+     */
+    public static final int PROTOCOL_QUERY_FILTERS = 9;
+
+    /**
+     * Maior versão de protocolo suportada por este build. Cliente e servidor anunciam
+     * esta versão no LOGIN e usam a menor das duas pelo restante da sessão.
      */
-    public static final long CLIENT_INACTIVITY_CHECK_INTERVAL_MS = 30000; // 30 segundos
+    public static final int PROTOCOL_VERSION = PROTOCOL_QUERY_FILTERS;
 }
\ No newline at end of file
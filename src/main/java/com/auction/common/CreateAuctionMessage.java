@@ -1,5 +1,10 @@
 package com.auction.common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 /**
  * Mensagem enviada pelo cliente para criar um novo leilão.
  * Encapsula os dados do AuctionItem a ser criado.
@@ -8,11 +13,19 @@ public class CreateAuctionMessage extends Message {
     private static final long serialVersionUID = 1L;
     private String itemName;
     private String itemDescription;
-    private double startBid;
+    private long startBid;       // Em centavos
     private int durationSeconds; // Duração do leilão em segundos
 
+    // Forma serializada original, com o lance inicial em double, para clientes antigos.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("itemName", String.class),
+            new ObjectStreamField("itemDescription", String.class),
+            new ObjectStreamField("startBid", double.class),
+            new ObjectStreamField("durationSeconds", int.class),
+    };
+
     public CreateAuctionMessage(String senderId, String itemName, String itemDescription,
-                                double startBid, int durationSeconds) {
+                                long startBid, int durationSeconds) {
         super(MessageType.CREATE_AUCTION, senderId);
         this.itemName = itemName;
         this.itemDescription = itemDescription;
@@ -22,15 +35,32 @@ public class CreateAuctionMessage extends Message {
 
     public String getItemName() { return itemName; }
     public String getItemDescription() { return itemDescription; }
-    public double getStartBid() { return startBid; }
+    public long getStartBid() { return startBid; }
     public int getDurationSeconds() { return durationSeconds; }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("itemName", itemName);
+        fields.put("itemDescription", itemDescription);
+        fields.put("startBid", Money.toDouble(startBid));
+        fields.put("durationSeconds", durationSeconds);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.itemName = (String) fields.get("itemName", null);
+        this.itemDescription = (String) fields.get("itemDescription", null);
+        this.startBid = Money.fromDouble(fields.get("startBid", 0.0));
+        this.durationSeconds = fields.get("durationSeconds", 0);
+    }
+
     @Override
     public String toString() {
         return "CreateAuctionMessage{" +
                "itemName='" + itemName + '\'' +
-               ", startBid=" + startBid +
+               ", startBid=" + Money.format(startBid) +
                ", durationSeconds=" + durationSeconds +
                "} " + super.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.auction.common;
+
+import java.lang.reflect.Method;
+
+/**
+ * Define em que tipo de thread são executados os handlers de conexão (ClientHandler no
+ * servidor e PeerConnectionHandler no cliente).
+ *
+ * Threads virtuais só existem a partir do Java 21. Para que o projeto continue compilando
+ * e rodando em JDKs anteriores, a API é resolvida por reflexão; se não estiver disponível,
+ * o modo VIRTUAL recai em threads de plataforma (com um aviso na inicialização).
+ */
+public enum ExecutionMode {
+    PLATFORM, // Uma thread de plataforma (do sistema operacional) por conexão.
+    VIRTUAL;  // Uma thread virtual por conexão, multiplexada sobre poucas threads carregadoras.
+
+    // Thread.ofVirtual() e Thread.Builder#name/#start, quando o JDK oferece threads virtuais.
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_START;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method start = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            start = builder.getMethod("start", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null; // JDK sem threads virtuais
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_START = start;
+    }
+
+    /**
+     * Lê o modo de execução de uma propriedade de sistema ("platform" ou "virtual").
+     *
+     * @param property     Nome da propriedade, por exemplo "auction.threads".
+     * @param defaultValue Modo usado quando a propriedade não está definida.
+     * @return O modo efetivo: VIRTUAL só é devolvido se o JDK oferecer threads virtuais.
+     */
+    public static ExecutionMode fromProperty(String property, ExecutionMode defaultValue) {
+        String value = System.getProperty(property);
+        ExecutionMode mode = value == null ? defaultValue : valueOf(value.trim().toUpperCase());
+        if (mode == VIRTUAL && OF_VIRTUAL == null) {
+            Log.log(Log.Level.WARN, "Threads virtuais não disponíveis neste JDK ({}). Usando threads de plataforma.",
+                    System.getProperty("java.version"));
+            return PLATFORM;
+        }
+        return mode;
+    }
+
+    /**
+     * Cria e inicia uma thread deste modo para executar a tarefa.
+     *
+     * @param task A tarefa (por exemplo, um ClientHandler).
+     * @param name Nome da thread, útil em dumps e logs.
+     * @return A thread iniciada.
+     */
+    public Thread start(Runnable task, String name) {
+        if (this == VIRTUAL && OF_VIRTUAL != null) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name);
+                return (Thread) BUILDER_START.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Falha ao iniciar thread virtual: " + e.getMessage(), e);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,327 @@
+package com.auction.common;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log assíncrono do servidor, feito para os caminhos quentes (mensagens recebidas, lances,
+ * encerramentos) e usado também pelos avisos e erros dos demais componentes.
+ *
+ * Quem registra um evento não monta texto nem toma o lock do System.out: o evento é o modelo
+ * da mensagem (uma constante) e seus argumentos, copiados para uma posição pré-alocada de um
+ * anel. Uma única thread ("log-writer") formata os eventos em lote e os escreve. A reserva da
+ * posição é um compare-and-set, sem lock; com o anel cheio o evento é descartado e contado
+ * (getDroppedEvents()), em vez de frear quem o registrou.
+ *
+ * No modelo, {} é substituído pelo próximo argumento de referência (String.valueOf), {n} pelo
+ * próximo argumento long em decimal e {$} pelo próximo argumento long como valor em centavos
+ * (Money.format). Os argumentos de referência devem ser imutáveis (textos, enums), pois só são
+ * lidos depois, na thread do log.
+ *
+ * Configurado por propriedades de sistema: {@code auction.log.level} ("debug", "info", "warn",
+ * "error" ou "off"; padrão "info") e {@code auction.log.buffer} (posições do anel, arredondado
+ * para a próxima potência de 2; padrão 8192). DEBUG e INFO vão para o System.out, WARN e ERROR
+ * para o System.err.
+ */
+public final class Log {
+
+    /**
+     * Nível de um evento. Eventos abaixo do nível configurado são ignorados sem custo além da
+     * comparação.
+     */
+    public enum Level {
+        DEBUG, // Uma linha por mensagem recebida e por lance recusado dentro do leilão.
+        INFO,  // Conexões, leilões criados e encerrados, lances aceitos e recusados.
+        WARN,
+        ERROR,
+        OFF    // Só como nível configurado: desliga o log.
+    }
+
+    private static final Level LEVEL = Level.valueOf(
+            System.getProperty("auction.log.level", "info").trim().toUpperCase());
+
+    // Espera máxima da thread do log estacionada; normalmente ela é acordada antes pelo produtor.
+    private static final long PARK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Tamanho de texto acumulado a partir do qual o lote é escrito antes de acabar.
+    private static final int MAX_BATCH_CHARS = 16 * 1024;
+
+    private static final LongAdder DROPPED_EVENTS = new LongAdder();
+
+    private static final Event[] RING;
+    private static final int MASK;
+    // Para cada posição, a sequência que ela espera: igual à posição livre para o produtor da
+    // sequência, igual a sequência + 1 depois de publicada (algoritmo do anel limitado de Vyukov).
+    private static final AtomicLongArray SEQUENCES;
+    // Próxima sequência a ser reservada por um produtor.
+    private static final AtomicLong TAIL = new AtomicLong();
+    // Eventos já escritos pela thread do log, para flush().
+    private static final AtomicLong WRITTEN = new AtomicLong();
+    private static final Thread WRITER;
+    private static volatile boolean writerParked;
+
+    static {
+        int size = Math.max(2, Integer.getInteger("auction.log.buffer", 8192));
+        int capacity = Integer.highestOneBit(size - 1) << 1;
+        RING = new Event[capacity];
+        SEQUENCES = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            RING[i] = new Event();
+            SEQUENCES.set(i, i);
+        }
+        MASK = capacity - 1;
+        WRITER = new Thread(Log::runWriter, "log-writer");
+        WRITER.setDaemon(true);
+        if (LEVEL != Level.OFF) {
+            WRITER.start();
+            // Escreve o que ainda está no anel quando a JVM encerra normalmente
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "log-flush"));
+        }
+    }
+
+    /**
+     * Uma posição do anel: o evento copiado pelo produtor, lido só pela thread do log.
+     */
+    private static final class Event {
+        Level level;
+        long timestampMillis;
+        String template;
+        Object a, b, c;
+        long x, y;
+
+        private void clear() {
+            template = null;
+            a = null;
+            b = null;
+            c = null;
+        }
+    }
+
+    private Log() {
+    }
+
+    /**
+     * @return true se eventos deste nível são registrados. Use antes de calcular argumentos
+     *         que custam caro.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0 && LEVEL != Level.OFF;
+    }
+
+    /**
+     * @return Quantos eventos foram descartados por encontrar o anel cheio.
+     */
+    public static long getDroppedEvents() {
+        return DROPPED_EVENTS.sum();
+    }
+
+    public static void log(Level level, String template) {
+        if (isEnabled(level)) {
+            publish(level, template, null, null, null, 0, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a) {
+        if (isEnabled(level)) {
+            publish(level, template, a, null, null, 0, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, Object b) {
+        if (isEnabled(level)) {
+            publish(level, template, a, b, null, 0, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, Object b, Object c) {
+        if (isEnabled(level)) {
+            publish(level, template, a, b, c, 0, 0);
+        }
+    }
+
+    public static void log(Level level, String template, long x) {
+        if (isEnabled(level)) {
+            publish(level, template, null, null, null, x, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, long x) {
+        if (isEnabled(level)) {
+            publish(level, template, a, null, null, x, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, Object b, long x) {
+        if (isEnabled(level)) {
+            publish(level, template, a, b, null, x, 0);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, long x, long y) {
+        if (isEnabled(level)) {
+            publish(level, template, a, null, null, x, y);
+        }
+    }
+
+    public static void log(Level level, String template, Object a, Object b, Object c, long x) {
+        if (isEnabled(level)) {
+            publish(level, template, a, b, c, x, 0);
+        }
+    }
+
+    /**
+     * Espera a thread do log escrever os eventos registrados até agora.
+     *
+     * @param timeoutMillis Espera máxima, em ms.
+     * @return true se todos foram escritos dentro do prazo.
+     */
+    public static boolean flush(long timeoutMillis) {
+        if (LEVEL == Level.OFF) {
+            return true;
+        }
+        long target = TAIL.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // Descartados não ocupam sequência, então o alvo é alcançável
+        while (WRITTEN.get() < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(WRITER);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    private static void publish(Level level, String template, Object a, Object b, Object c, long x, long y) {
+        long sequence = TAIL.get();
+        int index;
+        while (true) {
+            index = (int) (sequence & MASK);
+            long expected = SEQUENCES.get(index);
+            if (expected == sequence) {
+                if (TAIL.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+                sequence = TAIL.get();
+            } else if (expected < sequence) {
+                DROPPED_EVENTS.increment(); // A posição ainda não foi escrita: anel cheio
+                return;
+            } else {
+                sequence = TAIL.get(); // Outro produtor ficou com a posição
+            }
+        }
+        Event event = RING[index];
+        event.level = level;
+        event.timestampMillis = System.currentTimeMillis();
+        event.template = template;
+        event.a = a;
+        event.b = b;
+        event.c = c;
+        event.x = x;
+        event.y = y;
+        SEQUENCES.set(index, sequence + 1); // Publica o evento para a thread do log
+        if (writerParked) {
+            LockSupport.unpark(WRITER);
+        }
+    }
+
+    private static void runWriter() {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ZoneId zone = ZoneId.systemDefault();
+        StringBuilder outBatch = new StringBuilder(MAX_BATCH_CHARS);
+        StringBuilder errBatch = new StringBuilder(1024);
+        long next = 0;
+        while (true) {
+            int index = (int) (next & MASK);
+            if (SEQUENCES.get(index) == next + 1) {
+                Event event = RING[index];
+                StringBuilder batch = event.level.compareTo(Level.WARN) >= 0 ? errBatch : outBatch;
+                format(event, zone, batch);
+                event.clear();
+                SEQUENCES.set(index, next + RING.length); // Libera a posição para a próxima volta
+                next++;
+                if (batch.length() < MAX_BATCH_CHARS) {
+                    continue;
+                }
+            }
+            // Lote completo ou anel vazio: escreve o que foi formatado
+            write(outBatch, out);
+            write(errBatch, err);
+            WRITTEN.set(next);
+            if (SEQUENCES.get((int) (next & MASK)) != next + 1) {
+                writerParked = true;
+                if (SEQUENCES.get((int) (next & MASK)) != next + 1) {
+                    LockSupport.parkNanos(PARK_TIMEOUT_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private static void write(StringBuilder batch, PrintStream stream) {
+        if (batch.length() > 0) {
+            stream.print(batch);
+            stream.flush();
+            batch.setLength(0);
+        }
+    }
+
+    // Uma linha: "HH:mm:ss.SSS NÍVEL mensagem".
+    private static void format(Event event, ZoneId zone, StringBuilder line) {
+        LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(event.timestampMillis), zone);
+        appendPadded(line, time.getHour(), 2).append(':');
+        appendPadded(line, time.getMinute(), 2).append(':');
+        appendPadded(line, time.getSecond(), 2).append('.');
+        appendPadded(line, time.getNano() / 1_000_000, 3).append(' ');
+        String level = event.level.name();
+        line.append(level);
+        for (int i = level.length(); i < 6; i++) {
+            line.append(' ');
+        }
+        String template = event.template;
+        int refs = 0;
+        int longs = 0;
+        int i = 0;
+        while (i < template.length()) {
+            char ch = template.charAt(i);
+            if (ch == '{' && i + 1 < template.length()) {
+                char kind = template.charAt(i + 1);
+                if (kind == '}' && refs < 3) {
+                    line.append(refs == 0 ? event.a : refs == 1 ? event.b : event.c);
+                    refs++;
+                    i += 2;
+                    continue;
+                }
+                if ((kind == 'n' || kind == '$') && i + 2 < template.length() && template.charAt(i + 2) == '}'
+                        && longs < 2) {
+                    long value = longs == 0 ? event.x : event.y;
+                    if (kind == 'n') {
+                        line.append(value);
+                    } else {
+                        line.append(Money.format(value));
+                    }
+                    longs++;
+                    i += 3;
+                    continue;
+                }
+            }
+            line.append(ch);
+            i++;
+        }
+        line.append(System.lineSeparator());
+    }
+
+    private static StringBuilder appendPadded(StringBuilder line, int value, int digits) {
+        for (int limit = digits == 3 ? 100 : 10; limit > 1 && value < limit; limit /= 10) {
+            line.append('0');
+        }
+        return line.append(value);
+    }
+}
@@ -10,16 +10,22 @@ public class LoginMessage extends Message {
     private String username;
     private int p2pPort; // Porta que o cliente usará para comunicação P2P
     private String ipAddress; // Endereço IP que o cliente informa ao servidor (opcional)
+    private int protocolVersion; // Maior versão de protocolo suportada (0 em clientes antigos)
 
     public LoginMessage(String senderId, String username, int p2pPort) {
         this(senderId, username, p2pPort, null);
     }
 
     public LoginMessage(String senderId, String username, int p2pPort, String ipAddress) {
+        this(senderId, username, p2pPort, ipAddress, Constants.PROTOCOL_LEGACY);
+    }
+
+    public LoginMessage(String senderId, String username, int p2pPort, String ipAddress, int protocolVersion) {
         super(MessageType.LOGIN, senderId);
         this.username = username;
         this.p2pPort = p2pPort;
         this.ipAddress = ipAddress;
+        this.protocolVersion = protocolVersion;
     }
 
     public String getUsername() {
@@ -34,12 +40,17 @@ public class LoginMessage extends Message {
         return ipAddress;
     }
 
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
     @Override
     public String toString() {
         return "LoginMessage{" +
                 "username='" + username + '\'' +
                 ", p2pPort=" + p2pPort +
                 ", ipAddress='" + ipAddress + '\'' +
+                ", protocolVersion=" + protocolVersion +
                 "} " + super.toString();
     }
 }
\ No newline at end of file
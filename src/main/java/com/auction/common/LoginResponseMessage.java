@@ -12,20 +12,28 @@ public class LoginResponseMessage extends Message {
     private String message;
     private List<AuctionItem> initialAuctions; // Leilões ativos no momento do login
     private List<UserInfo> activeUsers; // Usuários online no momento do login
+    private int protocolVersion; // Versão de protocolo negociada para o restante da sessão
 
     public LoginResponseMessage(String senderId, boolean success, String message,
                                 List<AuctionItem> initialAuctions, List<UserInfo> activeUsers) {
+        this(senderId, success, message, initialAuctions, activeUsers, Constants.PROTOCOL_LEGACY);
+    }
+
+    public LoginResponseMessage(String senderId, boolean success, String message,
+                                List<AuctionItem> initialAuctions, List<UserInfo> activeUsers, int protocolVersion) {
         super(MessageType.LOGIN_RESPONSE, senderId);
         this.success = success;
         this.message = message;
         this.initialAuctions = initialAuctions;
         this.activeUsers = activeUsers;
+        this.protocolVersion = protocolVersion;
     }
 
     public boolean isSuccess() { return success; }
     public String getMessage() { return message; }
     public List<AuctionItem> getInitialAuctions() { return initialAuctions; }
     public List<UserInfo> getActiveUsers() { return activeUsers; }
+    public int getProtocolVersion() { return protocolVersion; }
 
     @Override
     public String toString() {
@@ -34,6 +42,7 @@ public class LoginResponseMessage extends Message {
                ", message='" + message + '\'' +
                ", initialAuctions=" + (initialAuctions != null ? initialAuctions.size() : 0) + " items" +
                ", activeUsers=" + (activeUsers != null ? activeUsers.size() : 0) + " users" +
+               ", protocolVersion=" + protocolVersion +
                "} " + super.toString();
     }
 }
\ No newline at end of file
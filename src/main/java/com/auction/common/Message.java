@@ -33,6 +33,13 @@ public abstract class Message implements Serializable {
         return timestamp;
     }
 
+    /**
+     * Restaura o timestamp original de uma mensagem decodificada pelo BinaryCodec.
+     */
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public String toString() {
         return "Message{" +
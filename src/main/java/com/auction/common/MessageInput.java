@@ -0,0 +1,75 @@
+package com.auction.common;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Leitura bloqueante de mensagens de um socket em que podem chegar tanto objetos
+ * serializados quanto frames do BinaryCodec. É o equivalente, para streams bloqueantes,
+ * do MessageStreamDecoder usado pelo transporte NIO.
+ *
+ * O ObjectInputStream não lê além do fim de cada objeto, então os dois formatos podem
+ * compartilhar o mesmo BufferedInputStream: o primeiro byte de cada mensagem decide
+ * quem a lê.
+ */
+public final class MessageInput {
+
+    private final BufferedInputStream buffered;
+    private final ObjectInputStream objects;
+    private final DataInputStream data;
+
+    /**
+     * Cria o leitor e consome o cabeçalho do stream de serialização, como o construtor de
+     * ObjectInputStream: bloqueia até o outro lado enviá-lo.
+     *
+     * @param in O InputStream do socket.
+     * @throws IOException Se o cabeçalho não puder ser lido.
+     */
+    public MessageInput(InputStream in) throws IOException {
+        this.buffered = new BufferedInputStream(in);
+        this.objects = new ObjectInputStream(buffered);
+        this.data = new DataInputStream(buffered);
+    }
+
+    /**
+     * Lê a próxima mensagem, em qualquer um dos dois formatos. Bloqueia até ela chegar por completo.
+     *
+     * @return A Message recebida.
+     * @throws EOFException Se o outro lado fechou a conexão.
+     * @throws IOException Se o stream estiver corrompido.
+     * @throws ClassNotFoundException Se um objeto serializado for de uma classe desconhecida.
+     */
+    public Message readMessage() throws IOException, ClassNotFoundException {
+        buffered.mark(1);
+        int first = buffered.read();
+        if (first < 0) {
+            throw new EOFException();
+        }
+        if ((byte) first != BinaryCodec.FRAME_MARKER) {
+            buffered.reset();
+            Object decoded = objects.readObject();
+            if (!(decoded instanceof Message)) {
+                throw new StreamCorruptedException("Objeto recebido não é uma Message: " + decoded);
+            }
+            return (Message) decoded;
+        }
+        byte[] header = new byte[BinaryCodec.HEADER_LENGTH];
+        header[0] = BinaryCodec.FRAME_MARKER;
+        data.readFully(header, 1, header.length - 1);
+        byte[] payload = new byte[BinaryCodec.payloadLength(header, 0)];
+        data.readFully(payload);
+        return BinaryCodec.decode(header[1], payload, 0, payload.length);
+    }
+
+    /**
+     * Fecha o stream subjacente.
+     */
+    public void close() throws IOException {
+        objects.close();
+    }
+}
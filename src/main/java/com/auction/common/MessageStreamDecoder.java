@@ -0,0 +1,124 @@
+package com.auction.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.SequenceInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodificador incremental de um stream de serialização Java (o mesmo produzido por
+ * ObjectOutputStream nos clientes), para uso com I/O não bloqueante. Após o cabeçalho, cada
+ * mensagem pode ser um objeto serializado ou um frame do BinaryCodec; o primeiro byte decide.
+ *
+ * Os bytes recebidos são acumulados com {@link #append(ByteBuffer)} e {@link #next()} devolve
+ * a próxima Message completa, ou null se ainda faltarem bytes. Não há thread bloqueada
+ * esperando dados: uma conexão ociosa custa apenas esta instância sem buffer alocado.
+ */
+public final class MessageStreamDecoder {
+
+    /**
+     * Tamanho máximo aceito para uma única mensagem ainda incompleta. Protege o servidor
+     * de clientes que enviam lixo sem nunca fechar um objeto.
+     */
+    public static final int MAX_PENDING_BYTES = 1024 * 1024; // 1 MB
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] pending = EMPTY; // Bytes recebidos e ainda não consumidos
+    private int length;             // Quantidade de bytes válidos em pending
+    private boolean headerConsumed; // Se o cabeçalho do stream já foi lido
+
+    /**
+     * Acrescenta ao buffer interno todos os bytes restantes de {@code src}.
+     *
+     * @param src Buffer em modo de leitura (após flip()).
+     */
+    public void append(ByteBuffer src) {
+        int incoming = src.remaining();
+        if (length + incoming > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(length + incoming, Math.max(256, pending.length * 2)));
+        }
+        src.get(pending, length, incoming);
+        length += incoming;
+    }
+
+    /**
+     * Tenta decodificar a próxima mensagem a partir dos bytes acumulados.
+     *
+     * @return A próxima Message, ou null se os bytes disponíveis ainda não formam um objeto completo.
+     * @throws IOException Se o stream estiver corrompido, exceder o limite ou contiver uma classe desconhecida.
+     */
+    public Message next() throws IOException {
+        if (!headerConsumed) {
+            if (length < SerializedFrames.STREAM_HEADER.length) {
+                return null;
+            }
+            for (int i = 0; i < SerializedFrames.STREAM_HEADER.length; i++) {
+                if (pending[i] != SerializedFrames.STREAM_HEADER[i]) {
+                    throw new StreamCorruptedException("Cabeçalho de stream inválido.");
+                }
+            }
+            consume(SerializedFrames.STREAM_HEADER.length);
+            headerConsumed = true;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (pending[0] == BinaryCodec.FRAME_MARKER) {
+            return nextBinaryFrame();
+        }
+
+        ByteArrayInputStream body = new ByteArrayInputStream(pending, 0, length);
+        Object decoded;
+        try {
+            // O cabeçalho já foi consumido; um novo ObjectInputStream precisa dele para ser criado.
+            ObjectInputStream in = new ObjectInputStream(
+                    new SequenceInputStream(new ByteArrayInputStream(SerializedFrames.STREAM_HEADER), body));
+            decoded = in.readObject();
+        } catch (EOFException e) {
+            // Objeto ainda incompleto: aguarda mais bytes.
+            if (length > MAX_PENDING_BYTES) {
+                throw new StreamCorruptedException("Mensagem excede " + MAX_PENDING_BYTES + " bytes.");
+            }
+            return null;
+        } catch (ClassNotFoundException e) {
+            throw new StreamCorruptedException("Classe desconhecida no stream: " + e.getMessage());
+        }
+
+        consume(length - body.available());
+        if (!(decoded instanceof Message)) {
+            throw new StreamCorruptedException("Objeto recebido não é uma Message: " + decoded);
+        }
+        return (Message) decoded;
+    }
+
+    private Message nextBinaryFrame() throws IOException {
+        if (length < BinaryCodec.HEADER_LENGTH) {
+            return null;
+        }
+        int payloadLength = BinaryCodec.payloadLength(pending, 0);
+        if (payloadLength > MAX_PENDING_BYTES) {
+            throw new StreamCorruptedException("Mensagem excede " + MAX_PENDING_BYTES + " bytes.");
+        }
+        if (length < BinaryCodec.HEADER_LENGTH + payloadLength) {
+            return null; // Frame ainda incompleto: aguarda mais bytes.
+        }
+        Message message = BinaryCodec.decode(pending[1], pending, BinaryCodec.HEADER_LENGTH, payloadLength);
+        consume(BinaryCodec.HEADER_LENGTH + payloadLength);
+        return message;
+    }
+
+    private void consume(int count) {
+        length -= count;
+        if (length == 0) {
+            // Libera o buffer de conexões ociosas; a próxima leitura aloca de novo se necessário.
+            pending = EMPTY;
+        } else {
+            System.arraycopy(pending, count, pending, 0, length);
+        }
+    }
+}
@@ -44,6 +44,32 @@ public enum MessageType {
      */
     PEER_INFO_REQUEST,
 
+    /**
+     * Enviada pelo cliente para passar a receber as atualizações de leilões específicos
+     * (e, opcionalmente, do tópico de leilões novos).
+     */
+    SUBSCRIBE,
+
+    /**
+     * Enviada pelo cliente para deixar de receber as atualizações de leilões específicos.
+     */
+    UNSUBSCRIBE,
+
+    /**
+     * Enviada pelo cliente para consultar uma página de leilões, com filtros, ordenação e cursor.
+     */
+    AUCTION_QUERY,
+
+    /**
+     * Enviada pelo cliente para consultar um trecho do histórico de lances de um leilão.
+     */
+    BID_HISTORY_REQUEST,
+
+    /**
+     * Enviada pelo cliente para buscar leilões por palavras do nome e da descrição.
+     */
+    SEARCH,
+
     // --- Mensagens Servidor -> Cliente ---
     /**
      * Resposta do servidor a uma tentativa de LOGIN do cliente.
@@ -75,6 +101,33 @@ public enum MessageType {
      */
     PEER_INFO_RESPONSE,
 
+    /**
+     * Enviada pelo servidor no lugar de AUCTION_UPDATE quando um lance é aceito, para
+     * clientes que negociaram deltas: só o novo preço, o licitante e o número de sequência.
+     */
+    BID_DELTA,
+
+    /**
+     * Enviada pelo servidor no lugar de AUCTION_UPDATE quando o status de um leilão muda
+     * (ex: encerrado), para clientes que negociaram deltas.
+     */
+    AUCTION_STATUS_DELTA,
+
+    /**
+     * Resposta do servidor a uma AUCTION_QUERY: uma página de leilões e o cursor da seguinte.
+     */
+    AUCTION_QUERY_RESPONSE,
+
+    /**
+     * Resposta do servidor a um BID_HISTORY_REQUEST: um trecho do histórico de lances.
+     */
+    BID_HISTORY_RESPONSE,
+
+    /**
+     * Resposta do servidor a um SEARCH: os leilões encontrados, do mais relevante para o menos relevante.
+     */
+    SEARCH_RESPONSE,
+
     // --- Mensagens Cliente <-> Cliente (P2P) ---
     /**
      * Enviada diretamente entre clientes para comunicação P2P.
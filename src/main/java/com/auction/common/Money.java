@@ -0,0 +1,85 @@
+package com.auction.common;
+
+/**
+ * Valores monetários em centavos. Lances e preços circulam como long (centavos) no modelo,
+ * no codec binário, no journal e nas comparações: a comparação é exata e não há
+ * arredondamento de ponto flutuante entre o valor digitado e o valor comparado.
+ *
+ * Conversões de e para double existem só para formatos antigos (serialização Java e versões
+ * do codec anteriores a Constants.PROTOCOL_MONEY_CENTS), que continuam transportando double.
+ */
+public final class Money {
+
+    /** Centavos em uma unidade monetária. */
+    public static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Lê um valor digitado, como "120", "120.5" ou "120,50".
+     *
+     * @param text O texto, com no máximo duas casas decimais.
+     * @return O valor em centavos.
+     * @throws NumberFormatException Se o texto não for um valor não negativo com até duas casas decimais.
+     */
+    public static long parse(String text) throws NumberFormatException {
+        String value = text.trim().replace(',', '.');
+        int separator = value.indexOf('.');
+        String units = separator < 0 ? value : value.substring(0, separator);
+        String fraction = separator < 0 ? "" : value.substring(separator + 1);
+        if (units.isEmpty() || fraction.length() > 2 || !isDigits(units) || !isDigits(fraction)) {
+            throw new NumberFormatException("Valor monetário inválido: " + text);
+        }
+        try {
+            long cents = Math.multiplyExact(Long.parseLong(units), CENTS_PER_UNIT);
+            if (!fraction.isEmpty()) {
+                cents = Math.addExact(cents, Long.parseLong(fraction) * (fraction.length() == 1 ? 10 : 1));
+            }
+            return cents;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Valor monetário muito grande: " + text);
+        }
+    }
+
+    /**
+     * @return O valor com duas casas decimais, como "120.50".
+     */
+    public static String format(long cents) {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long remainder = Math.abs(cents % CENTS_PER_UNIT);
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        text.append(units).append('.');
+        if (remainder < 10) {
+            text.append('0');
+        }
+        return text.append(remainder).toString();
+    }
+
+    /**
+     * @return O valor em centavos mais próximo de um valor em double de um formato antigo.
+     */
+    public static long fromDouble(double value) {
+        return Math.round(value * CENTS_PER_UNIT);
+    }
+
+    /**
+     * @return O valor como double, para formatos antigos.
+     */
+    public static double toDouble(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,31 +1,71 @@
 package com.auction.common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 /**
  * Mensagem enviada pelo cliente para fazer um lance em um leilão específico.
  */
 public class PlaceBidMessage extends Message {
     private static final long serialVersionUID = 1L;
-    private String auctionId;
-    private double bidAmount;
+    private String auctionId;      // null quando o lance chegou só com o handle
+    private int auctionHandle;     // Handle do leilão, 0 se desconhecido; fora da forma serializada
+    private long bidAmount;        // Em centavos
     private String bidderUsername; // Adicionado para facilitar o display no servidor/clientes
 
-    public PlaceBidMessage(String senderId, String auctionId, double bidAmount, String bidderUsername) {
+    // Forma serializada original, com o valor em double, para clientes antigos.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("auctionId", String.class),
+            new ObjectStreamField("bidAmount", double.class),
+            new ObjectStreamField("bidderUsername", String.class),
+    };
+
+    public PlaceBidMessage(String senderId, String auctionId, long bidAmount, String bidderUsername) {
+        this(senderId, auctionId, 0, bidAmount, bidderUsername);
+    }
+
+    /**
+     * Lance com o handle do leilão. A partir de Constants.PROTOCOL_HANDLES só o handle vai para
+     * o fio; o ID e o nome de usuário ficam para versões anteriores e para a serialização Java.
+     */
+    public PlaceBidMessage(String senderId, String auctionId, int auctionHandle, long bidAmount,
+                           String bidderUsername) {
         super(MessageType.PLACE_BID, senderId);
         this.auctionId = auctionId;
+        this.auctionHandle = auctionHandle;
         this.bidAmount = bidAmount;
         this.bidderUsername = bidderUsername;
     }
 
     public String getAuctionId() { return auctionId; }
-    public double getBidAmount() { return bidAmount; }
+    public int getAuctionHandle() { return auctionHandle; }
+    public long getBidAmount() { return bidAmount; }
     public String getBidderUsername() { return bidderUsername; }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("auctionId", auctionId);
+        fields.put("bidAmount", Money.toDouble(bidAmount));
+        fields.put("bidderUsername", bidderUsername);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.auctionId = (String) fields.get("auctionId", null);
+        this.bidAmount = Money.fromDouble(fields.get("bidAmount", 0.0));
+        this.bidderUsername = (String) fields.get("bidderUsername", null);
+    }
+
     @Override
     public String toString() {
         return "PlaceBidMessage{" +
                "auctionId='" + auctionId + '\'' +
-               ", bidAmount=" + bidAmount +
+               ", auctionHandle=" + auctionHandle +
+               ", bidAmount=" + Money.format(bidAmount) +
                ", bidderUsername='" + bidderUsername + '\'' +
                "} " + super.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.auction.common;
+
+/**
+ * Mensagem enviada pelo cliente para buscar leilões por palavras do nome e da descrição,
+ * para servidores que negociaram Constants.PROTOCOL_SEARCH.
+ *
+ * Todas as palavras precisam aparecer no leilão, sem diferença de acentos ou maiúsculas; uma
+ * palavra terminada em '*' vale para qualquer palavra que comece com ela ("relóg*").
+ */
+public class SearchMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private String query;              // Palavras buscadas
+    private AuctionItem.Status status; // Só leilões com este status
+    private int maxResults;            // Máximo de leilões na resposta
+
+    public SearchMessage(String senderId, String query, AuctionItem.Status status, int maxResults) {
+        super(MessageType.SEARCH, senderId);
+        this.query = query;
+        this.status = status;
+        this.maxResults = maxResults;
+    }
+
+    public String getQuery() { return query; }
+    public AuctionItem.Status getStatus() { return status; }
+    public int getMaxResults() { return maxResults; }
+
+    @Override
+    public String toString() {
+        return "SearchMessage{" +
+               "query='" + query + '\'' +
+               ", status=" + status +
+               ", maxResults=" + maxResults +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.auction.common;
+
+import java.util.List;
+
+/**
+ * Resposta do servidor a uma SearchMessage: os leilões encontrados, do mais relevante para
+ * o menos relevante.
+ */
+public class SearchResponseMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private String query;               // Palavras buscadas, como enviadas pelo cliente
+    private List<AuctionItem> auctions; // Leilões encontrados
+
+    public SearchResponseMessage(String senderId, String query, List<AuctionItem> auctions) {
+        super(MessageType.SEARCH_RESPONSE, senderId);
+        this.query = query;
+        this.auctions = auctions;
+    }
+
+    public String getQuery() { return query; }
+    public List<AuctionItem> getAuctions() { return auctions; }
+
+    @Override
+    public String toString() {
+        return "SearchResponseMessage{" +
+               "query='" + query + '\'' +
+               ", auctions=" + (auctions != null ? auctions.size() : 0) + " items" +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.auction.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+
+/**
+ * Utilitários para produzir, fora de um ObjectOutputStream de longa duração, os mesmos
+ * bytes que o cliente e o ClientHandler escrevem com {@code out.reset(); out.writeObject(msg)}.
+ *
+ * Como cada mensagem é precedida de TC_RESET, o trecho serializado não depende do estado
+ * anterior do stream e pode ser gerado de forma independente (e reaproveitado) por qualquer
+ * conexão que já tenha enviado o cabeçalho {@link #STREAM_HEADER}.
+ */
+public final class SerializedFrames {
+
+    /**
+     * Cabeçalho enviado uma única vez no início de todo stream de serialização Java
+     * (STREAM_MAGIC seguido de STREAM_VERSION).
+     */
+    public static final byte[] STREAM_HEADER = {
+            (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8),
+            (byte) ObjectStreamConstants.STREAM_MAGIC,
+            (byte) (ObjectStreamConstants.STREAM_VERSION >>> 8),
+            (byte) ObjectStreamConstants.STREAM_VERSION
+    };
+
+    private SerializedFrames() {
+    }
+
+    /**
+     * Serializa uma mensagem como um trecho autocontido do stream: TC_RESET seguido do objeto.
+     *
+     * @param message A Message a ser serializada.
+     * @return Os bytes prontos para serem escritos após o cabeçalho do stream.
+     * @throws IOException Se a mensagem não puder ser serializada.
+     */
+    public static byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        byte[] serialized = bytes.toByteArray();
+        // Substitui o cabeçalho de 4 bytes do stream temporário por um único TC_RESET,
+        // que faz o receptor descartar a tabela de handles exatamente como out.reset().
+        byte[] frame = new byte[serialized.length - STREAM_HEADER.length + 1];
+        frame[0] = ObjectStreamConstants.TC_RESET;
+        System.arraycopy(serialized, STREAM_HEADER.length, frame, 1, serialized.length - STREAM_HEADER.length);
+        return frame;
+    }
+}
@@ -0,0 +1,31 @@
+package com.auction.common;
+
+import java.util.List;
+
+/**
+ * Mensagem enviada pelo cliente para passar a receber as atualizações de leilões específicos
+ * e, opcionalmente, do tópico de leilões novos (criações e encerramentos).
+ * Só é enviada para servidores que negociaram Constants.PROTOCOL_SUBSCRIPTIONS.
+ */
+public class SubscribeMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private List<String> auctionIds; // Leilões a acompanhar
+    private boolean newAuctions;     // Se deve receber também os leilões novos
+
+    public SubscribeMessage(String senderId, List<String> auctionIds, boolean newAuctions) {
+        super(MessageType.SUBSCRIBE, senderId);
+        this.auctionIds = auctionIds;
+        this.newAuctions = newAuctions;
+    }
+
+    public List<String> getAuctionIds() { return auctionIds; }
+    public boolean isNewAuctions() { return newAuctions; }
+
+    @Override
+    public String toString() {
+        return "SubscribeMessage{" +
+               "auctionIds=" + auctionIds +
+               ", newAuctions=" + newAuctions +
+               "} " + super.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package com.auction.common;
+
+import java.util.List;
+
+/**
+ * Mensagem enviada pelo cliente para deixar de receber as atualizações de leilões específicos
+ * e, opcionalmente, do tópico de leilões novos.
+ * Só é enviada para servidores que negociaram Constants.PROTOCOL_SUBSCRIPTIONS.
+ */
+public class UnsubscribeMessage extends Message {
+    private static final long serialVersionUID = 1L;
+    private List<String> auctionIds; // Leilões a deixar de acompanhar
+    private boolean newAuctions;     // Se deve sair também do tópico de leilões novos
+
+    public UnsubscribeMessage(String senderId, List<String> auctionIds, boolean newAuctions) {
+        super(MessageType.UNSUBSCRIBE, senderId);
+        this.auctionIds = auctionIds;
+        this.newAuctions = newAuctions;
+    }
+
+    public List<String> getAuctionIds() { return auctionIds; }
+    public boolean isNewAuctions() { return newAuctions; }
+
+    @Override
+    public String toString() {
+        return "UnsubscribeMessage{" +
+               "auctionIds=" + auctionIds +
+               ", newAuctions=" + newAuctions +
+               "} " + super.toString();
+    }
+}
@@ -10,6 +10,7 @@ public class UserInfo implements Serializable {
     private String username;    // Nome de usuário (display name).
     private String ipAddress;   // Endereço IP do cliente.
     private int p2pPort;        // Porta que o cliente está escutando para conexões P2P.
+    private int handle;         // Número curto atribuído pelo servidor no login (0 se desconhecido).
 
     /**
      * Construtor para criar um objeto UserInfo.
@@ -20,16 +21,31 @@ public class UserInfo implements Serializable {
      * @param p2pPort   Porta P2P do cliente.
      */
     public UserInfo(String userId, String username, String ipAddress, int p2pPort) {
+        this(userId, username, ipAddress, p2pPort, 0);
+    }
+
+    /**
+     * Construtor para criar um objeto UserInfo com o handle atribuído pelo servidor.
+     *
+     * @param userId    ID único do usuário.
+     * @param username  Nome de usuário.
+     * @param ipAddress Endereço IP do cliente.
+     * @param p2pPort   Porta P2P do cliente.
+     * @param handle    Número curto que identifica o usuário nas mensagens delta.
+     */
+    public UserInfo(String userId, String username, String ipAddress, int p2pPort, int handle) {
         this.userId = userId;
         this.username = username;
         this.ipAddress = ipAddress;
         this.p2pPort = p2pPort;
+        this.handle = handle;
     }
 
     public String getUserId() { return userId; }
     public String getUsername() { return username; }
     public String getIpAddress() { return ipAddress; }
     public int getP2pPort() { return p2pPort; }
+    public int getHandle() { return handle; }
 
     @Override
     public String toString() {
@@ -0,0 +1,328 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Arquivo em disco dos leilões encerrados há mais tempo, para que a memória acompanhe os
+ * leilões em andamento e não todo o histórico do servidor.
+ *
+ * O arquivo só recebe acréscimos: cada leilão arquivado é um registro com o estado final e o
+ * histórico de lances, no mesmo enquadramento do AuctionJournal (tamanho, CRC32 e conteúdo).
+ * Em memória ficam só o índice ID → posição do registro e um cache LRU dos últimos leilões
+ * lidos (ServerConfig.ARCHIVE_CACHE_SIZE). Na abertura o arquivo é percorrido para montar o
+ * índice, e um registro incompleto no fim (queda no meio de uma gravação) é descartado.
+ *
+ * Os licitantes de cada registro são gravados por extenso (ID e nome, uma vez por leilão),
+ * então o arquivo não depende da BidderTable nem do snapshot.
+ */
+final class AuctionArchive {
+
+    // Contadores globais: leituras atendidas pelo cache e leituras que foram ao disco.
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private long end; // Fim do último registro válido. Protegido por writeLock.
+
+    // LinkedHashMap em ordem de acesso: o mais antigo é o menos usado. Protegido por cacheLock.
+    private final ReentrantLock cacheLock = new ReentrantLock();
+    private final LinkedHashMap<String, Archived> cache;
+
+    /**
+     * Um leilão arquivado: o estado final e o histórico inteiro de lances. Os licitantes do
+     * histórico são índices em bidderIds/bidderUsernames.
+     */
+    static final class Archived {
+        final AuctionItem item;
+        final BidHistory.Slice history;
+        final String[] bidderIds;
+        final String[] bidderUsernames;
+
+        Archived(AuctionItem item, BidHistory.Slice history, String[] bidderIds, String[] bidderUsernames) {
+            this.item = item;
+            this.history = history;
+            this.bidderIds = bidderIds;
+            this.bidderUsernames = bidderUsernames;
+        }
+
+        /**
+         * Monta o registro de um leilão a partir do histórico em memória.
+         *
+         * @param item    O leilão encerrado.
+         * @param history O histórico inteiro (BidHistory.all()), ou null se não houve lances.
+         * @param bidders A tabela em que os licitantes do histórico estão.
+         */
+        static Archived of(AuctionItem item, BidHistory.Slice history, BidderTable bidders) {
+            if (history == null) {
+                history = new BidHistory.Slice(0, 0, new long[0], new long[0], new int[0]);
+            }
+            // Troca os handles da BidderTable por índices de uma tabela só deste leilão
+            Map<Integer, Integer> local = new HashMap<>();
+            List<Integer> handles = new ArrayList<>();
+            int[] indexes = new int[history.bidders.length];
+            for (int i = 0; i < indexes.length; i++) {
+                int handle = history.bidders[i];
+                indexes[i] = local.computeIfAbsent(handle, h -> {
+                    handles.add(h);
+                    return handles.size() - 1;
+                });
+            }
+            String[] ids = new String[handles.size()];
+            String[] usernames = new String[handles.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = bidders.idOf(handles.get(i));
+                usernames[i] = bidders.usernameOf(handles.get(i));
+            }
+            return new Archived(item, new BidHistory.Slice(0, indexes.length, history.timestamps, history.amounts,
+                    indexes), ids, usernames);
+        }
+    }
+
+    /**
+     * Abre (ou cria) o arquivo e monta o índice dos leilões já arquivados.
+     *
+     * @param path      Caminho do arquivo.
+     * @param cacheSize Máximo de leilões mantidos no cache.
+     * @throws IOException Se o arquivo não puder ser aberto ou lido.
+     */
+    AuctionArchive(Path path, int cacheSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.cache = new LinkedHashMap<>(Math.min(cacheSize, 1024) * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Archived> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.end = scan();
+    }
+
+    // Percorre os registros para montar o índice; corta um registro incompleto do fim.
+    private long scan() throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        while (true) {
+            header.clear();
+            if (AuctionJournal.readFully(channel, header, position) < RECORD_HEADER_LENGTH) {
+                break;
+            }
+            header.flip();
+            int length = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                break;
+            }
+            ByteBuffer content = readContent(position, length, header.getInt());
+            if (content == null) {
+                break;
+            }
+            offsets.put(AuctionJournal.readString(content), position); // O registro começa pelo ID
+            position += RECORD_HEADER_LENGTH + length;
+        }
+        if (position < channel.size()) {
+            Log.log(Log.Level.WARN, "Arquivo {}: descartando {n} bytes incompletos ou corrompidos no fim do arquivo.",
+                    path, channel.size() - position);
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return Quantas leituras foram atendidas pelo cache.
+     */
+    static long getCacheHits() {
+        return CACHE_HITS.sum();
+    }
+
+    /**
+     * @return Quantas leituras precisaram ir ao disco.
+     */
+    static long getCacheMisses() {
+        return CACHE_MISSES.sum();
+    }
+
+    /**
+     * @return Quantos leilões estão arquivados.
+     */
+    int size() {
+        return offsets.size();
+    }
+
+    /**
+     * @return true se o leilão já está no arquivo.
+     */
+    boolean contains(String auctionId) {
+        return offsets.containsKey(auctionId);
+    }
+
+    /**
+     * Acrescenta leilões ao arquivo e os força para o disco. Só depois disso eles entram no
+     * índice, então quem os tira da memória ao retorno deste método não perde nada em uma queda.
+     *
+     * @param entries Os leilões a arquivar.
+     * @throws IOException Se a gravação falhar; nesse caso nenhum deles entra no índice.
+     */
+    void append(List<Archived> entries) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>(entries.size());
+        for (Archived entry : entries) {
+            records.add(encode(entry));
+        }
+        writeLock.lock();
+        try {
+            long position = end;
+            long[] recordOffsets = new long[records.size()];
+            for (int i = 0; i < records.size(); i++) {
+                ByteBuffer record = records.get(i);
+                recordOffsets[i] = position;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+            }
+            channel.force(false);
+            end = position;
+            for (int i = 0; i < entries.size(); i++) {
+                offsets.put(entries.get(i).item.getId(), recordOffsets[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Lê um leilão arquivado, do cache ou do disco.
+     *
+     * @param auctionId O ID do leilão.
+     * @return O leilão, ou null se ele não estiver no arquivo.
+     * @throws IOException Se o registro não puder ser lido.
+     */
+    Archived get(String auctionId) throws IOException {
+        cacheLock.lock();
+        try {
+            Archived cached = cache.get(auctionId);
+            if (cached != null) {
+                CACHE_HITS.increment();
+                return cached;
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        Long offset = offsets.get(auctionId);
+        if (offset == null) {
+            return null;
+        }
+        CACHE_MISSES.increment();
+        // Lido fora do lock: leituras posicionais no FileChannel podem ser concorrentes
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        if (AuctionJournal.readFully(channel, header, offset) < RECORD_HEADER_LENGTH) {
+            throw new IOException("Arquivo " + path + " truncado na posição " + offset);
+        }
+        header.flip();
+        int length = header.getInt();
+        ByteBuffer content = length > 0 && length <= MAX_RECORD_LENGTH
+                ? readContent(offset, length, header.getInt()) : null;
+        if (content == null) {
+            throw new IOException("Registro corrompido no arquivo " + path + " na posição " + offset);
+        }
+        Archived archived = decode(content);
+        cacheLock.lock();
+        try {
+            cache.put(auctionId, archived);
+        } finally {
+            cacheLock.unlock();
+        }
+        return archived;
+    }
+
+    // O conteúdo do registro em position, ou null se estiver incompleto ou não conferir com o CRC.
+    private ByteBuffer readContent(long position, int length, int checksum) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(length);
+        if (AuctionJournal.readFully(channel, content, position + RECORD_HEADER_LENGTH) < length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        content.flip();
+        return content;
+    }
+
+    private static ByteBuffer encode(Archived entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + entry.history.amounts.length * 20);
+        DataOutputStream out = new DataOutputStream(bytes);
+        AuctionJournal.writeItem(out, entry.item);
+        out.writeInt(entry.bidderIds.length);
+        for (int i = 0; i < entry.bidderIds.length; i++) {
+            AuctionJournal.writeString(out, entry.bidderIds[i]);
+            AuctionJournal.writeString(out, entry.bidderUsernames[i]);
+        }
+        BidHistory.Slice history = entry.history;
+        out.writeInt(history.amounts.length);
+        for (int i = 0; i < history.amounts.length; i++) {
+            out.writeLong(history.timestamps[i]);
+            out.writeLong(history.amounts[i]);
+            out.writeInt(history.bidders[i]);
+        }
+        byte[] content = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + content.length);
+        record.putInt(content.length).putInt((int) crc.getValue()).put(content).flip();
+        return record;
+    }
+
+    private Archived decode(ByteBuffer in) throws IOException {
+        AuctionItem item = AuctionJournal.readItem(in);
+        int bidderCount = in.getInt();
+        if (bidderCount < 0 || bidderCount > in.remaining()) {
+            throw new IOException("Registro do arquivo " + path + " com " + bidderCount + " licitantes");
+        }
+        String[] ids = new String[bidderCount];
+        String[] usernames = new String[bidderCount];
+        for (int i = 0; i < bidderCount; i++) {
+            ids[i] = AuctionJournal.readString(in);
+            usernames[i] = AuctionJournal.readString(in);
+        }
+        int bids = in.getInt();
+        if (bids < 0 || bids > in.remaining() / 20) {
+            throw new IOException("Registro do arquivo " + path + " com " + bids + " lances");
+        }
+        long[] timestamps = new long[bids];
+        long[] amounts = new long[bids];
+        int[] bidders = new int[bids];
+        for (int i = 0; i < bids; i++) {
+            timestamps[i] = in.getLong();
+            amounts[i] = in.getLong();
+            bidders[i] = in.getInt();
+            if (bidders[i] < 0 || bidders[i] >= bidderCount) {
+                throw new IOException("Registro do arquivo " + path + " com licitante inválido: " + bidders[i]);
+            }
+        }
+        return new Archived(item, new BidHistory.Slice(0, bids, timestamps, amounts, bidders), ids, usernames);
+    }
+}
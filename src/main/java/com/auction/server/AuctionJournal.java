@@ -0,0 +1,586 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal (write-ahead log) binário dos leilões: cada criação, lance aceito e encerramento é
+ * acrescentado a um arquivo através de um FileChannel, e o AuctionManager só anuncia a
+ * mudança depois que ela está no disco. Na inicialização o journal é relido para reconstruir
+ * os leilões.
+ *
+ * Os registros são gravados em grupo (group commit) por uma thread própria: ela grava de uma
+ * vez tudo o que foi acrescentado desde a última gravação e chama force() uma única vez.
+ * Lances que chegam enquanto um force() está em andamento entram todos no próximo, então o
+ * custo é um fsync por lote e não um por lance.
+ *
+ * Quem acrescenta não espera o disco: cada registro leva um Commit, chamado depois do force()
+ * do seu lote pela thread "auction-journal-commit", na ordem dos registros. Assim a thread
+ * dona de um leilão (shard ou estágio do pipeline) continua processando lances enquanto o
+ * lote anterior é gravado, e o anúncio de cada mudança fica no Commit. Se a gravação falhar,
+ * o journal deixa de aceitar registros: os Commits pendentes e os seguintes recebem false.
+ *
+ * Formato de cada registro: tamanho do conteúdo (int), CRC32 do conteúdo (int) e o conteúdo,
+ * que começa pelo tipo do registro. Um registro incompleto ou corrompido no fim do arquivo
+ * (queda no meio de uma gravação) encerra a leitura e é descartado. Valores monetários são
+ * gravados em centavos (long).
+ *
+ * Para a compactação, rotate() fecha o arquivo atual, renomeando-o com o sufixo ".old", e
+ * continua a gravar em um arquivo novo. Depois que um AuctionStateSnapshot cobre o
+ * conteúdo do ".old", ele é apagado (discardRotated()). Reler um registro já refletido no
+ * snapshot não muda nada, então a releitura pode começar antes do ponto do snapshot.
+ */
+class AuctionJournal {
+
+    // Contadores globais: registros gravados e chamadas a force().
+    private static final LongAdder WRITTEN_RECORDS = new LongAdder();
+    private static final LongAdder COMMITS = new LongAdder();
+
+    // Os tipos 1 a 3 gravavam os valores em double numa versão que não foi publicada; não são
+    // reaproveitados, para que um journal dessa versão seja recusado em vez de mal interpretado.
+    private static final byte RECORD_CREATE = 4;
+    private static final byte RECORD_BID = 5;
+    private static final byte RECORD_CLOSE = 6;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
+    private final Path path;
+    private final Path rotatedPath;
+    private FileChannel channel; // Trocado apenas pela thread de gravação, em rotate()
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    // Registros acrescentados e ainda não entregues à thread de gravação, e o Commit de cada
+    // um, na mesma ordem. Protegidos por lock.
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private List<Commit> pendingCommits = new ArrayList<>();
+    private volatile boolean failed; // A gravação falhou; o journal deixou de ser durável. Escrito sob lock.
+    private boolean rotateRequested; // Protegido por lock.
+    private IOException rotateFailure; // Resultado da última rotação. Protegido por lock.
+    private final Condition rotated = lock.newCondition();
+    private Thread writer;
+    // Chama os Commits, fora da thread de gravação, para que os anúncios não atrasem o próximo force().
+    private final ExecutorService commits = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "auction-journal-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Recebe o resultado da gravação de um registro.
+     */
+    interface Commit {
+        /**
+         * @param durable true se o registro (e todos os anteriores) está no disco, false se a
+         *                gravação do journal falhou e o registro não será gravado.
+         */
+        void onCommit(boolean durable);
+    }
+
+    /**
+     * Recebe os registros lidos do journal, na ordem em que foram gravados.
+     */
+    interface Replay {
+        void onCreate(AuctionItem item);
+
+        /**
+         * @param timestampMillis Horário em que o lance foi aceito.
+         */
+        void onBid(String auctionId, long sequence, long amount, String bidderId, String bidderUsername,
+                   long timestampMillis);
+
+        /**
+         * @param finalState O leilão encerrado, com o lance vencedor e o status ENDED.
+         */
+        void onClose(AuctionItem finalState);
+    }
+
+    /**
+     * Abre (ou cria) o journal. A gravação só começa depois de replay().
+     *
+     * @param path Caminho do arquivo.
+     * @throws IOException Se o arquivo não puder ser aberto.
+     */
+    AuctionJournal(Path path) throws IOException {
+        this.path = path;
+        this.rotatedPath = path.resolveSibling(path.getFileName() + ".old");
+        this.channel = open(path);
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @return O caminho do arquivo atual do journal.
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return O tamanho do arquivo atual, em bytes.
+     */
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * @return Quantos registros foram gravados.
+     */
+    static long getWrittenRecords() {
+        return WRITTEN_RECORDS.sum();
+    }
+
+    /**
+     * @return Quantas vezes o journal foi forçado para o disco (um por lote).
+     */
+    static long getCommits() {
+        return COMMITS.sum();
+    }
+
+    /**
+     * Relê todos os registros do journal (primeiro os do arquivo ".old", se uma compactação
+     * foi interrompida), descarta um eventual registro incompleto no fim e inicia a thread de
+     * gravação, que passa a acrescentar depois do último registro válido.
+     *
+     * @param replay Quem recebe os registros.
+     * @return O número de registros lidos.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    int replay(Replay replay) throws IOException {
+        int records = 0;
+        if (Files.exists(rotatedPath)) {
+            try (FileChannel rotatedChannel = FileChannel.open(rotatedPath, StandardOpenOption.READ)) {
+                records += replay(rotatedChannel, rotatedPath, replay, false);
+            }
+        }
+        records += replay(channel, path, replay, true);
+        channel.position(channel.size());
+        writer = new Thread(this::writeLoop, "auction-journal");
+        writer.setDaemon(true);
+        writer.start();
+        return records;
+    }
+
+    // Relê um arquivo; com truncate, corta o registro incompleto do fim para as próximas gravações.
+    private static int replay(FileChannel source, Path sourcePath, Replay replay, boolean truncate)
+            throws IOException {
+        long position = 0;
+        int records = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        CRC32 crc = new CRC32();
+        while (true) {
+            header.clear();
+            if (readFully(source, header, position) < RECORD_HEADER_LENGTH) {
+                break;
+            }
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                break;
+            }
+            ByteBuffer content = ByteBuffer.allocate(length);
+            if (readFully(source, content, position + RECORD_HEADER_LENGTH) < length) {
+                break;
+            }
+            crc.reset();
+            crc.update(content.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            content.flip();
+            apply(content, replay);
+            position += RECORD_HEADER_LENGTH + length;
+            records++;
+        }
+        if (position < source.size()) {
+            Log.log(Log.Level.WARN, "Journal {}: descartando {n} bytes incompletos ou corrompidos no fim do arquivo.",
+                    sourcePath, source.size() - position);
+            if (truncate) {
+                source.truncate(position);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Fecha o arquivo atual (depois de gravar e forçar tudo o que já foi acrescentado),
+     * renomeia-o para ".old" e passa a gravar em um arquivo novo. Todo registro acrescentado
+     * antes da chamada fica no ".old"; os seguintes, no arquivo novo. Retorna só depois que os
+     * Commits dos registros do ".old" foram chamados, então o que eles aplicam (histórico,
+     * índices) já está no estado que o snapshot seguinte copia.
+     *
+     * @return true se rodou, false se um ".old" anterior ainda não foi descartado (a rotação
+     *         é adiada; o snapshot seguinte também o cobre).
+     * @throws IOException Se a troca de arquivo falhar.
+     */
+    boolean rotate() throws IOException {
+        if (Files.exists(rotatedPath)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            rotateRequested = true;
+            rotateFailure = null;
+            pendingAvailable.signal();
+            while (rotateRequested && !failed) {
+                rotated.awaitUninterruptibly();
+            }
+            if (failed) {
+                throw new IOException("Journal " + path + " desativado por erro de gravação");
+            }
+            if (rotateFailure != null) {
+                throw rotateFailure;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Os Commits do ".old" já foram entregues à thread dos Commits antes da troca de
+        // arquivo: uma tarefa vazia enfileirada agora roda depois de todos eles
+        try {
+            commits.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido esperando os Commits do journal " + path, e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        return true;
+    }
+
+    /**
+     * @return true se há um arquivo ".old" ainda não descartado.
+     */
+    boolean rotatedExists() {
+        return Files.exists(rotatedPath);
+    }
+
+    /**
+     * Apaga o arquivo ".old", já coberto por um snapshot.
+     *
+     * @return Quantos bytes foram descartados.
+     * @throws IOException Se o arquivo não puder ser apagado.
+     */
+    long discardRotated() throws IOException {
+        if (!Files.exists(rotatedPath)) {
+            return 0;
+        }
+        long size = Files.size(rotatedPath);
+        Files.delete(rotatedPath);
+        return size;
+    }
+
+    /**
+     * @return true se uma gravação falhou e o journal não aceita mais registros (eles seriam
+     *         todos recusados com Commit.onCommit(false)).
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Acrescenta a criação de um leilão.
+     *
+     * @param onCommit Chamado depois que o registro estiver no disco (ou a gravação falhar).
+     */
+    void appendCreate(AuctionItem item, Commit onCommit) {
+        append(encode(RECORD_CREATE, item), onCommit);
+    }
+
+    /**
+     * Acrescenta um lance aceito.
+     *
+     * @param onCommit Chamado depois que o registro estiver no disco (ou a gravação falhar).
+     */
+    void appendBid(String auctionId, long sequence, long amount, String bidderId, String bidderUsername,
+                   long timestampMillis, Commit onCommit) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(RECORD_BID);
+            writeString(out, auctionId);
+            out.writeLong(sequence);
+            out.writeLong(amount);
+            writeString(out, bidderId);
+            writeString(out, bidderUsername);
+            out.writeLong(timestampMillis);
+            append(bytes.toByteArray(), onCommit);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream não lança IOException
+        }
+    }
+
+    /**
+     * Acrescenta o encerramento de um leilão, com o estado final (lance vencedor e status).
+     * Um lance aceito pouco antes do encerramento pode ser gravado depois deste registro; na
+     * releitura ele é ignorado, pois o estado final já o inclui.
+     *
+     * @param onCommit Chamado depois que o registro estiver no disco (ou a gravação falhar).
+     */
+    void appendClose(AuctionItem item, Commit onCommit) {
+        append(encode(RECORD_CLOSE, item), onCommit);
+    }
+
+    private void append(byte[] content, Commit onCommit) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + content.length);
+        record.putInt(content.length).putInt((int) crc.getValue()).put(content).flip();
+        lock.lock();
+        try {
+            if (failed) {
+                // Entregue sob o lock, então fica depois dos Commits dos lotes anteriores
+                deliver(List.of(onCommit), false);
+                return;
+            }
+            pending.add(record);
+            pendingCommits.add(onCommit);
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Entrega o resultado de um lote à thread dos Commits, na ordem dos registros.
+    private void deliver(List<Commit> batchCommits, boolean durable) {
+        if (batchCommits.isEmpty()) {
+            return;
+        }
+        commits.execute(() -> {
+            for (Commit commit : batchCommits) {
+                try {
+                    commit.onCommit(durable);
+                } catch (RuntimeException e) {
+                    Log.log(Log.Level.ERROR, "Erro ao anunciar uma mudança gravada no journal {}: {}", path, e.toString());
+                }
+            }
+        });
+    }
+
+    // Thread de gravação: grava o lote pendente inteiro e chama force() uma vez por lote.
+    private void writeLoop() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        while (true) {
+            List<Commit> batchCommits;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !rotateRequested) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                List<ByteBuffer> swap = pending;
+                pending = batch;
+                batch = swap;
+                batchCommits = pendingCommits;
+                pendingCommits = new ArrayList<>(); // Entregue à outra thread: não é reaproveitada
+            } finally {
+                lock.unlock();
+            }
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) {
+                    remaining += buffer.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                if (!batch.isEmpty()) {
+                    channel.force(false);
+                    WRITTEN_RECORDS.add(batch.size());
+                    COMMITS.increment();
+                }
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Erro ao gravar o journal {}: {}. As próximas mudanças serão recusadas.", path,
+                        e.getMessage());
+                lock.lock();
+                try {
+                    failed = true;
+                    // O lote que falhou e tudo o que foi acrescentado enquanto ele era gravado
+                    deliver(batchCommits, false);
+                    deliver(pendingCommits, false);
+                    pending.clear();
+                    pendingCommits = new ArrayList<>();
+                    rotated.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            batch.clear();
+            lock.lock();
+            try {
+                deliver(batchCommits, true);
+                if (rotateRequested) {
+                    // Tudo acrescentado até aqui já está no arquivo atual: troca de arquivo
+                    rotateFailure = switchFile();
+                    rotateRequested = false;
+                    rotated.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Executado pela thread de gravação, com o lock, entre dois lotes.
+    private IOException switchFile() {
+        try {
+            channel.close();
+            Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(path);
+            return null;
+        } catch (IOException e) {
+            Log.log(Log.Level.ERROR, "Erro ao rodar o journal {}: {}", path, e.getMessage());
+            try {
+                if (!channel.isOpen()) {
+                    channel = open(Files.exists(path) ? path : rotatedPath);
+                    channel.position(channel.size());
+                }
+            } catch (IOException reopen) {
+                failed = true; // Percebido pelo próximo lote, que falha ao gravar no canal fechado
+            }
+            return e;
+        }
+    }
+
+    static int readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static byte[] encode(byte type, AuctionItem item) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            writeItem(out, item);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream não lança IOException
+        }
+    }
+
+    /**
+     * Grava o estado completo de um leilão. Formato compartilhado com o AuctionStateSnapshot.
+     * Lance, licitante e status são os do momento: na criação, os iniciais; no encerramento,
+     * os finais.
+     */
+    static void writeItem(DataOutputStream out, AuctionItem item) throws IOException {
+        writeString(out, item.getId());
+        writeString(out, item.getName());
+        writeString(out, item.getDescription());
+        out.writeLong(item.getStartBid());
+        out.writeLong(item.getEndTimeMillis());
+        writeString(out, item.getSellerId());
+        writeString(out, item.getSellerUsername());
+        out.writeInt(item.getHandle());
+        out.writeLong(item.getCurrentBid());
+        writeString(out, item.getHighestBidderId());
+        writeString(out, item.getHighestBidderUsername());
+        out.writeByte(item.getStatus().ordinal());
+        out.writeLong(item.getUpdateSequence());
+    }
+
+    private static void apply(ByteBuffer in, Replay replay) throws IOException {
+        byte type = in.get();
+        try {
+            switch (type) {
+                case RECORD_CREATE:
+                    replay.onCreate(readItem(in));
+                    break;
+                case RECORD_BID:
+                    replay.onBid(readString(in), in.getLong(), in.getLong(), readString(in), readString(in),
+                            in.getLong());
+                    break;
+                case RECORD_CLOSE:
+                    replay.onClose(readItem(in));
+                    break;
+                default:
+                    throw new IOException("Tipo de registro desconhecido no journal: " + type
+                            + ". O journal é de outra versão do servidor e precisa ser apagado.");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Registro do tipo " + type + " menor que o esperado no journal."
+                    + " O journal é de outra versão do servidor e precisa ser apagado.", e);
+        }
+    }
+
+    /**
+     * Lê um leilão gravado por writeItem().
+     */
+    static AuctionItem readItem(ByteBuffer in) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        String description = readString(in);
+        long startBid = in.getLong();
+        long endTimeMillis = in.getLong();
+        String sellerId = readString(in);
+        String sellerUsername = readString(in);
+        int handle = in.getInt();
+        long currentBid = in.getLong();
+        String highestBidderId = readString(in);
+        String highestBidderUsername = readString(in);
+        int status = in.get();
+        AuctionItem.Status[] statuses = AuctionItem.Status.values();
+        if (status < 0 || status >= statuses.length) {
+            throw new IOException("Status inválido: " + status);
+        }
+        long updateSequence = in.getLong();
+        return new AuctionItem(id, name, description, currentBid, startBid, highestBidderId,
+                highestBidderUsername, endTimeMillis, sellerId, sellerUsername, statuses[status], handle,
+                updateSequence);
+    }
+
+    // Tamanho em bytes (-1 para null) seguido do UTF-8. Sem o limite de 64 KB do writeUTF().
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IOException("Texto maior que o registro: " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,13 +1,34 @@
 package com.auction.server;
 
 import com.auction.common.AuctionItem;
+import com.auction.common.AuctionQueryMessage;
+import com.auction.common.AuctionQueryResponseMessage;
+import com.auction.common.AuctionStatusDeltaMessage;
 import com.auction.common.AuctionUpdateMessage;
+import com.auction.common.BidDeltaMessage;
+import com.auction.common.BidHistoryRequestMessage;
+import com.auction.common.BidHistoryResponseMessage;
+import com.auction.common.Log;
+import com.auction.common.Message;
+import com.auction.common.Money;
+import com.auction.common.SearchMessage;
+import com.auction.common.SearchResponseMessage;
+import com.auction.common.UserInfo;
 
-import java.util.Comparator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Gerencia a criação, atualização e encerramento de leilões na aplicação.
@@ -21,19 +42,284 @@ public class AuctionManager {
 
     private final Map<String, AuctionItem> discontinuedAuctions;
 
+    // Leilões ordenados por status, vendedor, término e lance, para listas e consultas paginadas.
+    private final AuctionQueryIndex queryIndex = new AuctionQueryIndex();
+
+    // Listas enviadas no LOGIN e no AUCTION_LIST_REQUEST, remontadas só quando o catálogo muda.
+    private final AuctionSnapshotCache snapshotCache = new AuctionSnapshotCache(queryIndex);
+
+    // Palavras do nome e da descrição de cada leilão, para a busca (SEARCH). Só muda na
+    // criação, no encerramento e no arquivamento; lances não a alteram.
+    private final AuctionSearchIndex searchIndex = new AuctionSearchIndex();
+
+    // Todos os leilões (ativos, encerrados e os já em criação) pelo handle. Lances, shards,
+    // assinaturas e históricos usam o handle; o ID só é traduzido na borda.
+    private final HandleRegistry<AuctionItem> auctions = new HandleRegistry<>();
+
+    // Histórico completo de lances aceitos de cada leilão, pelo handle; só existe para leilões
+    // com ao menos um lance. Os licitantes são guardados como handles da BidderTable.
+    private final Map<Integer, BidHistory> histories = new ConcurrentHashMap<>();
+    private final BidderTable bidders = new BidderTable();
+
     // Referência ao servidor principal para poder broadcastar atualizações aos clientes.
     private AuctionServer server;
 
+    // Agrupa as atualizações de lance por leilão; null quando ServerConfig.CONFLATION_WINDOW_MS é 0.
+    private final UpdateConflator conflator;
+
+    // Grava criações, lances aceitos e encerramentos antes de anunciá-los; null quando
+    // ServerConfig.JOURNAL_PATH não está definido e os leilões ficam só em memória.
+    private final AuctionJournal journal;
+
+    // Leilões cujo registro de criação já pode estar no journal mas que ainda não entraram em
+    // activeAuctions. O snapshot também os inclui, para não perder uma criação que fique no
+    // journal descartado pela compactação.
+    private final Set<AuctionItem> creating = ConcurrentHashMap.newKeySet();
+
+    // Grava snapshots do estado e compacta o journal; null sem journal ou com
+    // ServerConfig.SNAPSHOT_INTERVAL_MS igual a 0.
+    private final ScheduledExecutorService snapshotScheduler;
+    private Path snapshotPath;
+
+    // Leilões encerrados há mais de ServerConfig.ARCHIVE_AGE_MS, fora da memória; null quando
+    // ServerConfig.ARCHIVE_PATH não está definido e todos ficam em discontinuedAuctions.
+    private final AuctionArchive archive;
+    private final ScheduledExecutorService archiveScheduler;
+
+    // Threads donas dos leilões; null quando ServerConfig.AUCTION_SHARDS é 0 e os comandos
+    // executam na thread de quem os pediu.
+    private final AuctionShards shards;
+
+    // Encerra cada leilão no seu horário de término. Uma tarefa por leilão, na fila de prazos
+    // do ScheduledExecutorService: o trabalho é proporcional aos leilões que expiram, e não
+    // uma varredura de todos os ativos a cada segundo.
+    private final ScheduledExecutorService expiryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "auction-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Construtor para o AuctionManager.
      *
      * @param server A instância do AuctionServer para comunicação de volta aos clientes.
+     * @throws IOException Se o journal configurado não puder ser aberto ou lido.
      */
-    public AuctionManager(AuctionServer server) {
+    public AuctionManager(AuctionServer server) throws IOException {
         this.server = server;
+        this.conflator = ServerConfig.CONFLATION_WINDOW_MS > 0
+                ? new UpdateConflator(server, ServerConfig.CONFLATION_WINDOW_MS) : null;
+        this.shards = ServerConfig.AUCTION_SHARDS > 0 ? new AuctionShards(ServerConfig.AUCTION_SHARDS) : null;
         this.activeAuctions = new ConcurrentHashMap<>();
-        addInitialAuctions();
         this.discontinuedAuctions = new ConcurrentHashMap<>();
+        addInitialAuctions();
+        // Aberto antes da recuperação: leilões já arquivados não voltam para a memória
+        this.archive = ServerConfig.ARCHIVE_PATH != null
+                ? new AuctionArchive(Paths.get(ServerConfig.ARCHIVE_PATH), ServerConfig.ARCHIVE_CACHE_SIZE) : null;
+        if (ServerConfig.JOURNAL_PATH != null) {
+            this.journal = new AuctionJournal(Paths.get(ServerConfig.JOURNAL_PATH));
+            this.snapshotPath = Paths.get(ServerConfig.JOURNAL_PATH + ".snapshot");
+            recover();
+        } else {
+            this.journal = null;
+        }
+        if (journal != null && ServerConfig.SNAPSHOT_INTERVAL_MS > 0) {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "auction-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::takeSnapshot, ServerConfig.SNAPSHOT_INTERVAL_MS,
+                    ServerConfig.SNAPSHOT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotScheduler = null;
+        }
+        if (archive != null) {
+            this.archiveScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "auction-archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.min(ServerConfig.ARCHIVE_AGE_MS, 60000);
+            archiveScheduler.scheduleWithFixedDelay(this::archiveEnded, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.archiveScheduler = null;
+        }
+    }
+
+    /**
+     * Reconstrói os leilões a partir do último snapshot e do journal gravado depois dele:
+     * recria cada leilão, reaplica os lances e os encerramentos, reindexa tudo e agenda o
+     * encerramento dos que continuam ativos (os que terminaram com o servidor parado são
+     * encerrados logo em seguida).
+     *
+     * O journal pode repetir mudanças que o snapshot já contém; reaplicá-las não muda nada:
+     * criações de leilões já conhecidos são ignoradas, lances valem pela sequência e o
+     * histórico não repete um valor de lance.
+     *
+     * @throws IOException Se o snapshot ou o journal não puderem ser lidos.
+     */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        Map<String, BidHistory> snapshotHistories = new HashMap<>();
+        AuctionStateSnapshot snapshot = AuctionStateSnapshot.read(snapshotPath, bidders, snapshotHistories);
+        if (snapshot != null) {
+            for (AuctionItem item : snapshot.auctions) {
+                if (isArchived(item.getId())) {
+                    continue;
+                }
+                (item.getStatus() == AuctionItem.Status.ACTIVE ? activeAuctions : discontinuedAuctions)
+                        .put(item.getId(), item);
+                auctions.put(item.getHandle(), item.getId(), item);
+            }
+            for (Map.Entry<String, BidHistory> entry : snapshotHistories.entrySet()) {
+                int handle = auctions.handleOf(entry.getKey());
+                if (handle != 0) {
+                    histories.put(handle, entry.getValue());
+                }
+            }
+            auctions.advanceTo(snapshot.nextAuctionHandle);
+        }
+        int records = journal.replay(new AuctionJournal.Replay() {
+            @Override
+            public void onCreate(AuctionItem item) {
+                if (auctions.get(item.getId()) == null && !isArchived(item.getId())) {
+                    activeAuctions.put(item.getId(), item);
+                    auctions.put(item.getHandle(), item.getId(), item);
+                }
+            }
+
+            @Override
+            public void onBid(String auctionId, long sequence, long amount, String bidderId, String bidderUsername,
+                              long timestampMillis) {
+                int handle = auctions.handleOf(auctionId);
+                AuctionItem item = auctions.get(handle);
+                if (item != null) {
+                    // Um lance que o snapshot já contém tem o mesmo valor e não é repetido no histórico
+                    recordBid(handle, timestampMillis, amount, bidderId, bidderUsername);
+                    // Lances gravados fora de ordem são resolvidos pela sequência, como nos deltas
+                    item.applyBidDelta(sequence, amount, bidderId, bidderUsername);
+                }
+            }
+
+            @Override
+            public void onClose(AuctionItem finalState) {
+                if (isArchived(finalState.getId())) {
+                    return;
+                }
+                activeAuctions.remove(finalState.getId());
+                discontinuedAuctions.put(finalState.getId(), finalState);
+                auctions.put(finalState.getHandle(), finalState.getId(), finalState);
+            }
+        });
+        for (AuctionItem item : discontinuedAuctions.values()) {
+            catalogChanged(item);
+            searchIndex.index(item);
+        }
+        for (AuctionItem item : activeAuctions.values()) {
+            catalogChanged(item);
+            searchIndex.index(item);
+            scheduleExpiry(item);
+        }
+        if (snapshot != null) {
+            Log.log(Log.Level.INFO, "Snapshot {}: {n} leilões relidos.", snapshotPath, snapshot.auctions.size());
+        }
+        Log.log(Log.Level.INFO, "Journal {}: {n} registros relidos em {n} ms.", ServerConfig.JOURNAL_PATH, records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        Log.log(Log.Level.INFO, "Journal {}: {n} leilões ativos e {n} encerrados recuperados.", ServerConfig.JOURNAL_PATH,
+                activeAuctions.size(), discontinuedAuctions.size());
+    }
+
+    private boolean isArchived(String auctionId) {
+        return archive != null && archive.contains(auctionId);
+    }
+
+    /**
+     * Grava um snapshot do estado e descarta o journal que ele cobre. Executado pela thread de
+     * snapshot enquanto os lances continuam.
+     *
+     * Primeiro o journal é rodado: tudo o que foi gravado até ali fica no arquivo ".old". Cada
+     * mudança gravada nele já foi aplicada ao leilão antes da gravação (ou, numa criação, o
+     * leilão já está em creating), e ao histórico no seu Commit, que rotate() espera; então as
+     * cópias lidas em seguida estão no mínimo tão atualizadas quanto o ".old", que pode ser
+     * apagado quando o snapshot estiver no disco.
+     */
+    private void takeSnapshot() {
+        try {
+            long start = System.nanoTime();
+            if (journal.size() == 0 && !journal.rotatedExists()) {
+                return; // Nada mudou desde o último snapshot
+            }
+            journal.rotate();
+            // A ordem importa: um leilão passa de creating para activeAuctions e de
+            // activeAuctions para discontinuedAuctions entrando no novo mapa antes de sair do
+            // antigo, então percorrer nesta ordem encontra cada leilão ao menos uma vez.
+            Map<String, AuctionItem> copies = new LinkedHashMap<>();
+            for (AuctionItem item : creating) {
+                copies.putIfAbsent(item.getId(), item.copy());
+            }
+            for (AuctionItem item : activeAuctions.values()) {
+                copies.putIfAbsent(item.getId(), item.copy());
+            }
+            for (AuctionItem item : discontinuedAuctions.values()) {
+                copies.put(item.getId(), item.copy()); // Mais recente que uma cópia ainda ativa
+            }
+            AuctionStateSnapshot.write(snapshotPath, auctions.nextHandle(), copies.values(), bidders, histories,
+                    auctions::idOf);
+            long discarded = journal.discardRotated();
+            Log.log(Log.Level.INFO, "Snapshot {}: {n} leilões gravados em {n} ms.", snapshotPath, copies.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            Log.log(Log.Level.INFO, "Journal {}: {n} bytes cobertos pelo snapshot descartados.",
+                    ServerConfig.JOURNAL_PATH, discarded);
+        } catch (IOException | RuntimeException e) {
+            Log.log(Log.Level.ERROR, "Erro ao gravar o snapshot {}: {}", snapshotPath, e.toString());
+        }
+    }
+
+    /**
+     * Move para o AuctionArchive os leilões encerrados há mais de ServerConfig.ARCHIVE_AGE_MS.
+     * Executado pela thread do arquivo.
+     *
+     * Cada leilão é gravado e forçado para o disco antes de sair da memória, então o snapshot
+     * e o journal podem deixar de tê-lo: na recuperação, o que está no arquivo é ignorado. A
+     * retirada da memória segue o caminho do encerramento (thread de expiração e depois o
+     * dono do leilão), então nunca acontece no meio do closeAuction do mesmo leilão.
+     */
+    private void archiveEnded() {
+        try {
+            long start = System.nanoTime();
+            long cutoff = System.currentTimeMillis() - ServerConfig.ARCHIVE_AGE_MS;
+            List<AuctionArchive.Archived> due = new ArrayList<>();
+            for (AuctionItem item : discontinuedAuctions.values()) {
+                if (item.getEndTimeMillis() <= cutoff && !archive.contains(item.getId())) {
+                    BidHistory history = histories.get(item.getHandle());
+                    due.add(AuctionArchive.Archived.of(item, history != null ? history.all() : null, bidders));
+                }
+            }
+            if (due.isEmpty()) {
+                return;
+            }
+            archive.append(due);
+            for (AuctionArchive.Archived archived : due) {
+                AuctionItem item = archived.item;
+                expiryScheduler.execute(() -> runOnOwner(item.getHandle(), () -> evict(item)));
+            }
+            Log.log(Log.Level.INFO, "Arquivo {}: {n} leilões encerrados arquivados em {n} ms.", ServerConfig.ARCHIVE_PATH,
+                    due.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            Log.log(Log.Level.ERROR, "Erro ao arquivar leilões encerrados em {}: {}", ServerConfig.ARCHIVE_PATH,
+                    e.toString());
+        }
+    }
+
+    // Tira da memória um leilão que já está no arquivo.
+    private void evict(AuctionItem item) {
+        discontinuedAuctions.remove(item.getId());
+        auctions.remove(item.getId());
+        histories.remove(item.getHandle());
+        queryIndex.remove(item);
+        searchIndex.remove(item);
+        snapshotCache.invalidate();
     }
 
     /**
@@ -55,49 +341,290 @@ public class AuctionManager {
     }
 
     /**
-     * Adiciona um novo leilão à lista de leilões ativos.
+     * @return O número de shards dos leilões, ou 0 se os comandos executam na thread de quem os pede.
+     */
+    public int getShardCount() {
+        return shards != null ? shards.getShardCount() : 0;
+    }
+
+    /**
+     * Executa um comando que altera o leilão na thread do shard dono dele, ou na thread
+     * atual se não houver shards.
+     *
+     * @param auctionHandle O handle do leilão.
+     * @param command       O comando.
+     */
+    private void runOnOwner(int auctionHandle, Runnable command) {
+        if (shards != null) {
+            shards.execute(auctionHandle, command);
+        } else {
+            command.run();
+        }
+    }
+
+    /**
+     * Atribui o handle de um leilão novo. Chamado quando o CREATE_AUCTION chega, antes de
+     * submitAuction, para que o vendedor já possa assinar o leilão pelo handle.
+     *
+     * @param item O AuctionItem recém-criado.
+     */
+    public void assignHandle(AuctionItem item) {
+        if (item.getHandle() == 0) {
+            item.setHandle(auctions.reserve());
+        }
+    }
+
+    /**
+     * Pede a criação de um leilão. Com shards, o leilão é adicionado pela thread dona dele
+     * e este método retorna sem esperar.
+     *
+     * @param item O AuctionItem a ser adicionado.
+     */
+    public void submitAuction(AuctionItem item) {
+        assignHandle(item);
+        runOnOwner(item.getHandle(), () -> addAuction(item));
+    }
+
+    /**
+     * Pede o processamento de um lance. Com shards, o lance é processado pela thread dona do
+     * leilão, na ordem de chegada, e este método retorna sem esperar. Um lance recusado é
+     * respondido ao licitante com "Lance inválido.", o estado do leilão e o menor lance aceito
+     * no momento; um lance em leilão desconhecido só é registrado no log. Com o journal, um
+     * lance aceito que não puder ser gravado é respondido com "Lance não confirmado." em vez de
+     * anunciado, e com o journal desativado por erro os lances são recusados.
+     *
+     * @param auctionHandle O handle do leilão (0 se o leilão for desconhecido).
+     * @param bidderId      O ID do cliente que está dando o lance.
+     * @param bidAmount     O valor do lance, em centavos.
+     */
+    public void submitBid(int auctionHandle, String bidderId, long bidAmount) {
+        runOnOwner(auctionHandle, () -> {
+            // placeBid já faz o broadcast da atualização se o lance for aceito
+            if (!placeBid(auctionHandle, bidderId, bidAmount)) {
+                AuctionItem auction = auctions.get(auctionHandle);
+                if (auction == null) {
+                    return; // Sem leilão não há o que responder: o AUCTION_UPDATE exige o item
+                }
+                String reason = journal != null && journal.isFailed()
+                        ? "Lance não aceito: o servidor não está conseguindo gravar os lances."
+                        : auction.getStatus() == AuctionItem.Status.ACTIVE
+                        ? "Lance inválido. O lance mínimo é "
+                                + Money.format(auction.getCurrentBid() + ServerConfig.MIN_BID_INCREMENT) + "."
+                        : "Lance inválido.";
+                server.sendMessageToClient(bidderId, new AuctionUpdateMessage("server", auction, reason));
+            }
+        });
+    }
+
+    /**
+     * Adiciona um novo leilão à lista de leilões ativos. Com o journal, o leilão só entra no
+     * catálogo e é anunciado depois que sua criação estiver no disco; se a gravação falhar, a
+     * criação é desfeita e o vendedor é avisado.
      *
      * @param item O AuctionItem a ser adicionado.
      */
     public void addAuction(AuctionItem item) {
+        assignHandle(item);
+        if (journal == null) {
+            auctions.put(item.getHandle(), item.getId(), item);
+            publishAuction(item);
+            return;
+        }
+        if (journal.isFailed()) {
+            rejectAuction(item);
+            return;
+        }
+        // Registrado já pelo handle, para que os lances que chegarem ao shard em seguida o
+        // encontrem; os registros deles ficam depois da criação no journal.
+        creating.add(item);
+        auctions.put(item.getHandle(), item.getId(), item);
+        journal.appendCreate(item, durable -> {
+            if (durable) {
+                publishAuction(item);
+            } else {
+                auctions.remove(item.getId());
+                rejectAuction(item);
+            }
+            creating.remove(item);
+        });
+    }
+
+    // Coloca um leilão criado no catálogo e o anuncia.
+    private void publishAuction(AuctionItem item) {
         activeAuctions.put(item.getId(), item);
-        System.out.println("Novo leilão criado: " + item.getName() + " (ID: " + item.getId() + ")");
-        // Notifica todos os clientes sobre o novo leilão
-        server.broadcast(new AuctionUpdateMessage("server", item, "Novo leilão adicionado!"));
+        catalogChanged(item);
+        searchIndex.index(item);
+        scheduleExpiry(item);
+        Log.log(Log.Level.INFO, "Novo leilão criado: {} (ID: {})", item.getName(), item.getId());
+        // Notifica os clientes que acompanham o catálogo sobre o novo leilão
+        AuctionUpdateMessage created = new AuctionUpdateMessage("server", item, "Novo leilão adicionado!");
+        server.broadcastAuctionUpdate(item.getHandle(), true, created, () -> created);
+    }
+
+    // Avisa o vendedor de um leilão cuja criação não pôde ser gravada no journal.
+    private void rejectAuction(AuctionItem item) {
+        Log.log(Log.Level.ERROR, "Leilão não criado, o journal não o gravou: {} (ID: {})", item.getName(), item.getId());
+        server.getSubscriptions().removeAuction(item.getHandle());
+        item.setStatus(AuctionItem.Status.ENDED);
+        server.sendMessageToClient(item.getSellerId(), new AuctionUpdateMessage("server", item,
+                "Leilão não criado: o servidor não conseguiu gravá-lo."));
     }
 
     /**
      * Tenta processar um lance para um leilão específico.
      *
-     * @param auctionId O ID do leilão.
+     * @param auctionHandle O handle do leilão.
      * @param bidderId O ID do cliente que está dando o lance.
-     * @param bidAmount O valor do lance.
+     * @param bidAmount O valor do lance, em centavos; deve superar o atual em ao menos
+     *                  ServerConfig.MIN_BID_INCREMENT.
      * @return true se o lance foi aceito e o leilão atualizado, false caso contrário.
      */
-    public boolean placeBid(String auctionId, String bidderId, double bidAmount) {
-        AuctionItem auction = activeAuctions.get(auctionId);
+    public boolean placeBid(int auctionHandle, String bidderId, long bidAmount) {
+        long receivedNanos = System.nanoTime();
+        AuctionItem auction = auctions.get(auctionHandle);
         if (auction == null) {
-            System.out.println("Tentativa de lance em leilão inexistente: " + auctionId);
+            Log.log(Log.Level.INFO, "Tentativa de lance em leilão inexistente: handle {n}", auctionHandle);
+            ServerMetrics.recordBid(false);
             return false; // Leilão não encontrado
         }
+        if (journal != null && journal.isFailed()) {
+            Log.log(Log.Level.WARN, "Lance recusado para {}: o journal está desativado por erro de gravação",
+                    auction.getName());
+            ServerMetrics.recordBid(false);
+            return false; // Não seria durável
+        }
 
         // Recupera o nome de usuário do licitante para exibir nos clientes
-        String bidderUsername = server.getActiveUsersInfo().get(bidderId) != null ?
-                                server.getActiveUsersInfo().get(bidderId).getUsername() : bidderId;
+        UserInfo bidder = server.getUserInfo(bidderId);
+        String bidderUsername = bidder != null ? bidder.getUsername() : bidderId;
 
-        // O método placeBid() dentro de AuctionItem já é synchronized e tem validações
-        boolean bidAccepted = auction.placeBid(bidderId, bidderUsername, bidAmount);
+        // O tryPlaceBidOver() dentro de AuctionItem é atômico (compare-and-set) e tem validações
+        AuctionItem.BidState previous = auction.tryPlaceBidOver(bidderId, bidderUsername, bidAmount,
+                ServerConfig.MIN_BID_INCREMENT);
+        boolean bidAccepted = previous != null;
+        ServerMetrics.recordBid(bidAccepted);
 
         if (bidAccepted) {
-            System.out.println("Lance aceito para " + auction.getName() + ": " + bidAmount + " por " + bidderUsername);
-            // O servidor deve broadcastar a atualização do leilão para todos os clientes
-            server.broadcast(new AuctionUpdateMessage("server", auction, "Novo lance para " + auction.getName() + ": " + bidAmount + " por " + bidderUsername));
+            long sequence = previous.updateSequence + 1;
+            Log.log(Log.Level.INFO, "Lance aceito para {}: {$} por {}", auction.getName(), bidderUsername, bidAmount);
+            long acceptedAt = System.currentTimeMillis();
+            // O servidor deve broadcastar a atualização do leilão para quem o acompanha.
+            // Clientes novos recebem só o delta; a descrição textual só é montada para os antigos.
+            BidDeltaMessage delta = new BidDeltaMessage("server", auction.getHandle(), sequence, bidAmount,
+                    bidder != null ? bidder.getHandle() : 0);
+            Supplier<Message> fullUpdate = () -> new AuctionUpdateMessage("server", auction,
+                    "Novo lance para " + auction.getName() + ": " + Money.format(bidAmount) + " por " + bidderUsername);
+            // O lance já vale para os próximos lances deste leilão, mas histórico, índices e
+            // anúncio só o incluem depois de gravado; se a gravação falhar, ele é desfeito.
+            AuctionJournal.Commit announce = durable -> {
+                if (!durable) {
+                    Log.log(Log.Level.ERROR, "Lance não gravado no journal para {}: {$} por {}", auction.getName(),
+                            bidderUsername, bidAmount);
+                    // Os lances seguintes a este também falharam (a falha é definitiva e os Commits
+                    // chegam em ordem), então o estado anterior é o último gravado
+                    auction.revertBid(previous);
+                    catalogChanged(auction);
+                    server.sendMessageToClient(bidderId, new AuctionUpdateMessage("server", auction,
+                            "Lance não confirmado: o servidor não conseguiu gravá-lo."));
+                    return;
+                }
+                recordBid(auctionHandle, acceptedAt, bidAmount, bidderId, bidderUsername);
+                catalogChanged(auction);
+                if (conflator != null) {
+                    // O licitante recebe a confirmação na hora; os demais, a última atualização da janela.
+                    server.sendDeltaToClient(bidderId, delta, fullUpdate);
+                    conflator.submit(auctionHandle, delta, fullUpdate, receivedNanos);
+                } else {
+                    server.broadcastAuctionUpdate(auctionHandle, false, delta, fullUpdate);
+                    ServerMetrics.recordBidToBroadcast(System.nanoTime() - receivedNanos);
+                }
+            };
+            if (journal != null) {
+                // Anunciado só depois de gravado, pela thread dos Commits: a thread dona do leilão
+                // segue com os próximos lances, que dividem o mesmo force()
+                journal.appendBid(auction.getId(), sequence, bidAmount, bidderId, bidderUsername, acceptedAt,
+                        announce);
+            } else {
+                announce.onCommit(true);
+            }
         } else {
-            System.out.println("Lance recusado para " + auction.getName() + ": " + bidAmount + " (lance atual: " + auction.getCurrentBid() + ")");
+            Log.log(Log.Level.INFO, "Lance recusado para {}: {$} (lance atual: {$})", auction.getName(), bidAmount,
+                    auction.getCurrentBid());
         }
         return bidAccepted;
     }
 
+    /**
+     * Acrescenta um lance aceito ao histórico do leilão.
+     */
+    private void recordBid(int auctionHandle, long timestampMillis, long amount, String bidderId,
+                           String bidderUsername) {
+        histories.computeIfAbsent(auctionHandle, handle -> new BidHistory())
+                .add(timestampMillis, amount, bidders.intern(bidderId, bidderUsername));
+    }
+
+    /**
+     * Responde a um pedido de histórico de lances com um trecho do histórico, do lance mais
+     * antigo para o mais recente, limitado a ServerConfig.HISTORY_MAX_SLICE lances.
+     *
+     * @param request O pedido.
+     * @return A resposta; o total de lances é -1 se o leilão não existir.
+     */
+    public BidHistoryResponseMessage getBidHistory(BidHistoryRequestMessage request) {
+        String auctionId = request.getAuctionId();
+        int handle = auctions.handleOf(auctionId);
+        if (handle == 0) {
+            return getArchivedBidHistory(request);
+        }
+        BidHistory history = histories.get(handle);
+        if (history == null) {
+            return new BidHistoryResponseMessage("server", auctionId, 0, 0, new long[0], new long[0], new String[0]);
+        }
+        int maxEntries = Math.max(1, Math.min(request.getMaxEntries(), ServerConfig.HISTORY_MAX_SLICE));
+        BidHistory.Slice slice = history.slice(request.getFromIndex(), maxEntries);
+        String[] usernames = new String[slice.bidders.length];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = bidders.usernameOf(slice.bidders[i]);
+        }
+        return new BidHistoryResponseMessage("server", auctionId, slice.fromIndex, slice.total,
+                slice.timestamps, slice.amounts, usernames);
+    }
+
+    // Histórico de um leilão que não está em memória: procura no arquivo.
+    private BidHistoryResponseMessage getArchivedBidHistory(BidHistoryRequestMessage request) {
+        String auctionId = request.getAuctionId();
+        AuctionArchive.Archived archived = null;
+        if (archive != null) {
+            try {
+                archived = archive.get(auctionId);
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Erro ao ler o leilão {} do arquivo: {}", auctionId, e.getMessage());
+            }
+        }
+        if (archived == null) {
+            return new BidHistoryResponseMessage("server", auctionId, 0, -1, new long[0], new long[0], new String[0]);
+        }
+        int maxEntries = Math.max(1, Math.min(request.getMaxEntries(), ServerConfig.HISTORY_MAX_SLICE));
+        BidHistory.Slice slice = archived.history.slice(request.getFromIndex(), maxEntries);
+        String[] usernames = new String[slice.bidders.length];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = archived.bidderUsernames[slice.bidders[i]];
+        }
+        return new BidHistoryResponseMessage("server", auctionId, slice.fromIndex, slice.total,
+                slice.timestamps, slice.amounts, usernames);
+    }
+
+    /**
+     * Atualiza os índices e invalida as listas em cache depois de uma criação, lance aceito
+     * ou encerramento.
+     *
+     * @param item O leilão alterado.
+     */
+    private void catalogChanged(AuctionItem item) {
+        queryIndex.reindex(item);
+        snapshotCache.invalidate();
+    }
+
     /**
      * Retorna um AuctionItem pelo seu ID.
      *
@@ -108,64 +635,189 @@ public class AuctionManager {
         return activeAuctions.get(auctionId);
     }
 
+    /**
+     * Retorna um leilão ativo pelo seu handle.
+     *
+     * @param auctionHandle O handle do leilão.
+     * @return O AuctionItem correspondente, ou null se não encontrado ou já encerrado.
+     */
+    public AuctionItem getAuction(int auctionHandle) {
+        AuctionItem auction = auctions.get(auctionHandle);
+        return auction != null && auction.getStatus() == AuctionItem.Status.ACTIVE ? auction : null;
+    }
+
+    /**
+     * @param auctionId O ID de um leilão, ativo ou encerrado.
+     * @return O handle do leilão, ou 0 se o ID for desconhecido.
+     */
+    public int getAuctionHandle(String auctionId) {
+        return auctions.handleOf(auctionId);
+    }
+
     /**
      * Retorna uma lista de todos os leilões ativos, ordenada por tempo restante.
+     * A lista é compartilhada entre os pedidos até a próxima mudança no catálogo e não
+     * pode ser modificada.
      *
      * @return Uma List de AuctionItem.
      */
     public List<AuctionItem> getLiveAuctions() {
-        return activeAuctions.values().stream()
-                .sorted(Comparator.comparingLong(AuctionItem::getEndTimeMillis)) // Ordena pelo tempo de término
-                .collect(Collectors.toList());
+        return snapshotCache.get().liveAuctions;
     }
 
     /**
      * Retorna uma lista de todos os leilões descontinuados (encerrados), ordenada por tempo de término.
      *
-     * @return Uma List de AuctionItem.
+     * @return Uma List de AuctionItem, imutável.
      */
     public List<AuctionItem> getDiscontinuedAuctions() {
-        return discontinuedAuctions.values().stream()
-                .sorted(Comparator.comparingLong(AuctionItem::getEndTimeMillis)) // Ordena pelo tempo de término
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Verifica e encerra leilões que atingiram seu tempo final.
-     * Este método é projetado para ser executado periodicamente por um scheduler.
-     */
-    public void checkAuctionEndTimes() {
-        // Itera sobre uma cópia dos valores para evitar ConcurrentModificationException
-        // se um leilão for removido enquanto estamos iterando.
-        for (AuctionItem auction : activeAuctions.values()) {
-            if (auction.getStatus() == AuctionItem.Status.ACTIVE && auction.isEnded()) {
-                auction.setStatus(AuctionItem.Status.ENDED);
-                
-                String statusMessage;
-                // Verifica se houve algum lance válido (ou seja, se o highestBidderUsername foi definido)
-                if (auction.getHighestBidderUsername() != null) {
-                    statusMessage = "Vencedor: " + auction.getHighestBidderUsername() +
-                                    " com lance de " + String.format("%.2f", auction.getCurrentBid());
-                    System.out.println("Leilão ENCERRADO: " + auction.getName() + " (ID: " + auction.getId() + ")");
-                    System.out.println(statusMessage);
-                } else {
-                    // Ninguém deu um lance após o lance inicial
-                    statusMessage = "Item não foi vendido (sem lances). Lance inicial: " + String.format("%.2f", auction.getStartBid());
-                    System.out.println("Leilão ENCERRADO: " + auction.getName() + " (ID: " + auction.getId() + ")");
-                    System.out.println(statusMessage);
-                }
-                
-                // Atualiza o leilão no mapa (não removemos para manter o histórico)
-                activeAuctions.put(auction.getId(), auction);
+        return snapshotCache.get().discontinuedAuctions;
+    }
+
+    /**
+     * Retorna a resposta ao AUCTION_LIST_REQUEST da versão atual do catálogo. A mesma
+     * instância (e seus bytes codificados) serve a todos os clientes até a próxima mudança.
+     *
+     * @return A AuctionListResponseMessage pronta para envio.
+     */
+    public OutboundMessage getAuctionListResponse() {
+        return snapshotCache.get().listResponse;
+    }
+
+    /**
+     * Responde uma consulta paginada de leilões a partir dos índices ordenados: por vendedor
+     * ("meus leilões"), por autor do lance mais alto ("leilões que estou vencendo"), por faixa
+     * de lance ou de término ("terminam nos próximos 5 minutos").
+     *
+     * @param query A consulta recebida do cliente.
+     * @return A página de leilões e o cursor da página seguinte.
+     */
+    public AuctionQueryResponseMessage queryAuctions(AuctionQueryMessage query) {
+        AuctionItem.Status status = query.getStatus() != null ? query.getStatus() : AuctionItem.Status.ACTIVE;
+        AuctionQueryMessage.SortKey sortKey = query.getSortKey() != null
+                ? query.getSortKey() : AuctionQueryMessage.SortKey.END_TIME;
+        int pageSize = Math.max(1, Math.min(query.getPageSize(), ServerConfig.QUERY_MAX_PAGE_SIZE));
+        AuctionQueryIndex.Page page = queryIndex.query(status, query.getSellerId(), query.getBidderId(),
+                orMin(query.getMinBid()), orMax(query.getMaxBid()), orMin(query.getEndsAfter()),
+                orMax(query.getEndsBefore()), sortKey, query.isDescending(), query.getCursor(), pageSize);
+        return new AuctionQueryResponseMessage("server", page.auctions, page.nextCursor);
+    }
+
+    // Limites de faixa ausentes na consulta deixam a faixa aberta.
+    private static long orMin(Long bound) {
+        return bound != null ? bound : Long.MIN_VALUE;
+    }
+
+    private static long orMax(Long bound) {
+        return bound != null ? bound : Long.MAX_VALUE;
+    }
+
+    /**
+     * Busca leilões pelas palavras do nome e da descrição, no índice invertido.
+     *
+     * @param search A busca recebida do cliente.
+     * @return Os leilões encontrados, do mais relevante para o menos relevante.
+     */
+    public SearchResponseMessage searchAuctions(SearchMessage search) {
+        AuctionItem.Status status = search.getStatus() != null ? search.getStatus() : AuctionItem.Status.ACTIVE;
+        int maxResults = Math.max(1, Math.min(search.getMaxResults(), ServerConfig.QUERY_MAX_PAGE_SIZE));
+        int[] handles = searchIndex.search(status, search.getQuery(), maxResults);
+        List<AuctionItem> results = new ArrayList<>(handles.length);
+        for (int handle : handles) {
+            AuctionItem item = auctions.get(handle);
+            if (item != null) { // Pode ter sido arquivado depois da busca
+                results.add(item);
+            }
+        }
+        return new SearchResponseMessage("server", search.getQuery(), results);
+    }
 
-                // Move o leilão para a lista de descontinuados
-                discontinuedAuctions.put(auction.getId(), auction);
-                activeAuctions.remove(auction.getId());
+    /**
+     * Agenda o encerramento de um leilão para o seu horário de término.
+     *
+     * @param auction O leilão ativo.
+     */
+    private void scheduleExpiry(AuctionItem auction) {
+        // O scheduler só marca o horário; o encerramento entra na fila do dono do leilão, depois dos lances já recebidos.
+        expiryScheduler.schedule(() -> runOnOwner(auction.getHandle(), () -> expire(auction)),
+                auction.getRemainingTime(), TimeUnit.MILLISECONDS);
+    }
 
-                // Notifica todos os clientes que o leilão terminou
-                server.broadcast(new AuctionUpdateMessage("server", auction, "Leilão encerrado! " + auction.getName() + " (ID: " + auction.getId() + "). " + statusMessage));
+    // Tarefa agendada por scheduleExpiry. Uma exceção não tratada seria guardada no Future
+    // descartado e o leilão nunca seria encerrado, então ela é registrada aqui.
+    private void expire(AuctionItem auction) {
+        try {
+            if (auction.getStatus() != AuctionItem.Status.ACTIVE) {
+                return;
+            }
+            if (!auction.isEnded()) {
+                // O relógio de parede pode divergir do relógio do scheduler: reagenda pelo restante.
+                scheduleExpiry(auction);
+                return;
             }
+            closeAuction(auction);
+        } catch (RuntimeException e) {
+            Log.log(Log.Level.ERROR, "Erro ao encerrar o leilão {}: {}", auction.getId(), e.toString());
+        }
+    }
+
+    /**
+     * Encerra um leilão que atingiu seu tempo final: move-o para os descontinuados e
+     * notifica os interessados. Chamado apenas pela thread de expiração ou pelo shard dono do leilão.
+     *
+     * @param auction O leilão a encerrar.
+     */
+    private void closeAuction(AuctionItem auction) {
+        long sequence = auction.setStatus(AuctionItem.Status.ENDED);
+        if (journal != null) {
+            journal.appendClose(auction, durable -> {
+                if (!durable) {
+                    // O encerramento é anunciado mesmo assim: ele decorre do horário final, que
+                    // está na criação gravada, e a releitura encerra o leilão do mesmo jeito.
+                    Log.log(Log.Level.ERROR, "Encerramento não gravado no journal: {} (ID: {})", auction.getName(),
+                            auction.getId());
+                }
+                announceClosed(auction, sequence);
+            });
+        } else {
+            announceClosed(auction, sequence);
+        }
+    }
+
+    // Move um leilão encerrado para os descontinuados e notifica os interessados.
+    private void announceClosed(AuctionItem auction, long sequence) {
+        String statusMessage;
+        // Verifica se houve algum lance válido (ou seja, se o highestBidderUsername foi definido)
+        if (auction.getHighestBidderUsername() != null) {
+            statusMessage = "Vencedor: " + auction.getHighestBidderUsername() +
+                            " com lance de " + Money.format(auction.getCurrentBid());
+            Log.log(Log.Level.INFO, "Leilão ENCERRADO: {} (ID: {}). Vencedor: {} com lance de {$}", auction.getName(),
+                    auction.getId(), auction.getHighestBidderUsername(), auction.getCurrentBid());
+        } else {
+            // Ninguém deu um lance após o lance inicial
+            statusMessage = "Item não foi vendido (sem lances). Lance inicial: " + Money.format(auction.getStartBid());
+            Log.log(Log.Level.INFO, "Leilão ENCERRADO: {} (ID: {}). Item não foi vendido (sem lances). Lance inicial: {$}",
+                    auction.getName(), auction.getId(), auction.getStartBid());
         }
         
+        // Atualiza o leilão no mapa (não removemos para manter o histórico)
+        activeAuctions.put(auction.getId(), auction);
+
+        // Move o leilão para a lista de descontinuados
+        discontinuedAuctions.put(auction.getId(), auction);
+        activeAuctions.remove(auction.getId());
+        catalogChanged(auction);
+        searchIndex.index(auction);
+
+        // Notifica os interessados que o leilão terminou, depois do último lance agrupado
+        if (conflator != null) {
+            conflator.flush(auction.getHandle());
+        }
+        String endedDescription = "Leilão encerrado! " + auction.getName() + " (ID: " + auction.getId() + "). " + statusMessage;
+        server.broadcastAuctionUpdate(auction.getHandle(), true,
+                new AuctionStatusDeltaMessage("server", auction.getHandle(), sequence, AuctionItem.Status.ENDED),
+                () -> new AuctionUpdateMessage("server", auction, endedDescription));
+        // Um leilão encerrado não recebe mais atualizações: descarta suas assinaturas
+        server.getSubscriptions().removeAuction(auction.getHandle());
     }
-}
\ No newline at end of file
+}
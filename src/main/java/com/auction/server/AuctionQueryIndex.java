@@ -0,0 +1,313 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.AuctionQueryMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Índices ordenados dos leilões, para responder consultas paginadas (AUCTION_QUERY) e as
+ * listas completas sem ordenar todos os leilões a cada pedido.
+ *
+ * Cada status tem um par de skip lists, uma por critério de ordenação (término e lance
+ * atual), e cada vendedor e cada autor de lance mais alto tem o mesmo conjunto só com os
+ * seus leilões. Uma página é um percurso a partir do cursor, dentro da faixa pedida do
+ * critério de ordenação: custa O(log n + tamanho da página), independente de quantos
+ * leilões existem. Só os filtros que não correspondem ao índice percorrido (a faixa do
+ * outro critério, ou o vendedor numa consulta por licitante) são conferidos leilão a leilão.
+ *
+ * As chaves são (valor de ordenação, handle do leilão), então leilões com o mesmo valor
+ * têm uma ordem estável e o cursor identifica exatamente onde a página anterior parou.
+ * Leilões que mudam de posição entre duas páginas (novo lance, com ordenação por lance)
+ * podem aparecer duas vezes ou ser pulados; o término nunca muda.
+ */
+class AuctionQueryIndex {
+
+    private final Map<AuctionItem.Status, OrderedAuctions> byStatus = newPartitions();
+    private final Map<String, Map<AuctionItem.Status, OrderedAuctions>> bySeller = new ConcurrentHashMap<>();
+    private final Map<String, Map<AuctionItem.Status, OrderedAuctions>> byBidder = new ConcurrentHashMap<>();
+    // Status, lance e licitante com que cada leilão (pelo handle) está indexado, para removê-lo
+    // das posições antigas. compute() nesse mapa serializa as reindexações de um mesmo leilão.
+    private final Map<Integer, IndexedState> indexed = new ConcurrentHashMap<>();
+
+    /**
+     * Uma página de resultados e o cursor da seguinte.
+     */
+    static final class Page {
+        final List<AuctionItem> auctions;
+        final String nextCursor; // null se não houver mais resultados
+
+        Page(List<AuctionItem> auctions, String nextCursor) {
+            this.auctions = auctions;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    /**
+     * Indexa um leilão, ou atualiza sua posição depois de um lance ou de uma mudança de
+     * status. Lê o estado atual do item de uma vez (lance, licitante e status coerentes entre
+     * si), então chamadas concorrentes para o mesmo leilão terminam sempre com a posição do
+     * estado mais recente.
+     *
+     * @param item O leilão, já com o handle atribuído.
+     */
+    void reindex(AuctionItem item) {
+        indexed.compute(item.getHandle(), (handle, previous) -> {
+            AuctionItem.BidState state = item.getBidState();
+            if (previous != null) {
+                if (previous.status == state.status && previous.bidKey == state.currentBid
+                        && Objects.equals(previous.bidderId, state.highestBidderId)) {
+                    return previous;
+                }
+                removeFrom(item, previous);
+            }
+            IndexedState current = new IndexedState(state.status, state.currentBid, state.highestBidderId);
+            byStatus.get(current.status).add(item, current.bidKey);
+            addTo(bySeller, item.getSellerId(), item, current);
+            if (current.bidderId != null) {
+                addTo(byBidder, current.bidderId, item, current);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Tira um leilão dos índices (leilão encerrado que foi para o AuctionArchive).
+     *
+     * @param item O leilão.
+     */
+    void remove(AuctionItem item) {
+        indexed.computeIfPresent(item.getHandle(), (handle, previous) -> {
+            removeFrom(item, previous);
+            return null;
+        });
+    }
+
+    private void removeFrom(AuctionItem item, IndexedState previous) {
+        byStatus.get(previous.status).remove(item, previous.bidKey);
+        removeFrom(bySeller, item.getSellerId(), item, previous);
+        if (previous.bidderId != null) {
+            removeFrom(byBidder, previous.bidderId, item, previous);
+        }
+    }
+
+    // As partições de um vendedor ou licitante existem só enquanto ele tem leilões indexados.
+    // Inclusão e remoção passam pelo compute() do mapa externo, que as serializa por dono:
+    // uma inclusão nunca cai numa partição que acabou de ser descartada por estar vazia.
+    private static void addTo(Map<String, Map<AuctionItem.Status, OrderedAuctions>> owners, String ownerId,
+                              AuctionItem item, IndexedState state) {
+        owners.compute(ownerId, (id, partitions) -> {
+            Map<AuctionItem.Status, OrderedAuctions> result = partitions != null ? partitions : newPartitions();
+            result.get(state.status).add(item, state.bidKey);
+            return result;
+        });
+    }
+
+    private static void removeFrom(Map<String, Map<AuctionItem.Status, OrderedAuctions>> owners, String ownerId,
+                                   AuctionItem item, IndexedState state) {
+        owners.computeIfPresent(ownerId, (id, partitions) -> {
+            partitions.get(state.status).remove(item, state.bidKey);
+            for (OrderedAuctions ordered : partitions.values()) {
+                if (!ordered.isEmpty()) {
+                    return partitions;
+                }
+            }
+            return null; // Sem leilões: descarta as partições do dono
+        });
+    }
+
+    /**
+     * @return Todos os leilões com o status informado, do término mais próximo ao mais distante.
+     */
+    List<AuctionItem> list(AuctionItem.Status status) {
+        return new ArrayList<>(byStatus.get(status).byEndTime.values());
+    }
+
+    /**
+     * Devolve uma página de leilões. As faixas são inclusivas; Long.MIN_VALUE e
+     * Long.MAX_VALUE as deixam abertas.
+     *
+     * @param status     Só leilões com este status.
+     * @param sellerId   Só leilões deste vendedor, ou null para todos.
+     * @param bidderId   Só leilões em que este usuário tem o lance mais alto, ou null para todos.
+     * @param minBid     Lance atual mínimo, em centavos.
+     * @param maxBid     Lance atual máximo, em centavos.
+     * @param endsAfter  Término mínimo, em ms.
+     * @param endsBefore Término máximo, em ms.
+     * @param sortKey    Critério de ordenação.
+     * @param descending true para ordem decrescente.
+     * @param cursor     O cursor devolvido na página anterior, ou null para a primeira.
+     * @param pageSize   Máximo de leilões na página (maior que zero).
+     * @return A página e o cursor da seguinte.
+     */
+    Page query(AuctionItem.Status status, String sellerId, String bidderId, long minBid, long maxBid,
+               long endsAfter, long endsBefore, AuctionQueryMessage.SortKey sortKey, boolean descending,
+               String cursor, int pageSize) {
+        if (minBid > maxBid || endsAfter > endsBefore) {
+            return new Page(Collections.emptyList(), null);
+        }
+        // A partição mais estreita: a do licitante, a do vendedor ou a do status inteiro
+        Map<String, Map<AuctionItem.Status, OrderedAuctions>> owners = bidderId != null ? byBidder
+                : sellerId != null ? bySeller : null;
+        OrderedAuctions source;
+        if (owners == null) {
+            source = byStatus.get(status);
+        } else {
+            Map<AuctionItem.Status, OrderedAuctions> ownerPartitions = owners.get(bidderId != null ? bidderId : sellerId);
+            if (ownerPartitions == null) {
+                return new Page(Collections.emptyList(), null);
+            }
+            source = ownerPartitions.get(status);
+        }
+        boolean byBid = sortKey == AuctionQueryMessage.SortKey.CURRENT_BID;
+        NavigableMap<Key, AuctionItem> ordered = byBid ? source.byCurrentBid : source.byEndTime;
+        // A faixa do critério de ordenação é um trecho contíguo da skip list
+        long from = byBid ? minBid : endsAfter;
+        long to = byBid ? maxBid : endsBefore;
+        if (from != Long.MIN_VALUE || to != Long.MAX_VALUE) {
+            ordered = ordered.subMap(new Key(from, Integer.MIN_VALUE), true, new Key(to, Integer.MAX_VALUE), true);
+        }
+        // Os demais filtros são conferidos em cada leilão percorrido
+        String otherSeller = bidderId != null ? sellerId : null;
+        long otherFrom = byBid ? endsAfter : minBid;
+        long otherTo = byBid ? endsBefore : maxBid;
+        boolean filtered = otherSeller != null || otherFrom != Long.MIN_VALUE || otherTo != Long.MAX_VALUE;
+        if (descending) {
+            ordered = ordered.descendingMap();
+        }
+        Key after = Key.parse(cursor);
+        if (after != null) {
+            try {
+                ordered = ordered.tailMap(after, false);
+            } catch (IllegalArgumentException e) {
+                return new Page(Collections.emptyList(), null); // Cursor fora da faixa: não é desta consulta
+            }
+        }
+
+        List<AuctionItem> auctions = new ArrayList<>(Math.min(pageSize, 64));
+        Key last = null;
+        for (Map.Entry<Key, AuctionItem> entry : ordered.entrySet()) {
+            AuctionItem item = entry.getValue();
+            if (filtered) {
+                long value = byBid ? item.getEndTimeMillis() : item.getCurrentBid();
+                if (value < otherFrom || value > otherTo
+                        || (otherSeller != null && !otherSeller.equals(item.getSellerId()))) {
+                    continue;
+                }
+            }
+            if (auctions.size() == pageSize) {
+                // Há ao menos mais um resultado: a próxima página começa depois do último desta.
+                return new Page(auctions, last.toString());
+            }
+            auctions.add(item);
+            last = entry.getKey();
+        }
+        return new Page(auctions, null);
+    }
+
+    // Criado com todos os status e nunca alterado depois, então pode ser lido sem sincronização.
+    private static Map<AuctionItem.Status, OrderedAuctions> newPartitions() {
+        Map<AuctionItem.Status, OrderedAuctions> partitions = new EnumMap<>(AuctionItem.Status.class);
+        for (AuctionItem.Status status : AuctionItem.Status.values()) {
+            partitions.put(status, new OrderedAuctions());
+        }
+        return partitions;
+    }
+
+    /**
+     * Os leilões de uma partição (status, ou status de um vendedor) em cada ordem.
+     */
+    private static final class OrderedAuctions {
+        final ConcurrentSkipListMap<Key, AuctionItem> byEndTime = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Key, AuctionItem> byCurrentBid = new ConcurrentSkipListMap<>();
+
+        void add(AuctionItem item, long bidKey) {
+            byEndTime.put(new Key(item.getEndTimeMillis(), item.getHandle()), item);
+            byCurrentBid.put(new Key(bidKey, item.getHandle()), item);
+        }
+
+        void remove(AuctionItem item, long bidKey) {
+            byEndTime.remove(new Key(item.getEndTimeMillis(), item.getHandle()));
+            byCurrentBid.remove(new Key(bidKey, item.getHandle()));
+        }
+
+        boolean isEmpty() {
+            return byEndTime.isEmpty(); // As duas listas têm sempre os mesmos leilões
+        }
+    }
+
+    private static final class IndexedState {
+        final AuctionItem.Status status;
+        final long bidKey;
+        final String bidderId; // Autor do lance mais alto; null se ainda não houve lance
+
+        IndexedState(AuctionItem.Status status, long bidKey, String bidderId) {
+            this.status = status;
+            this.bidKey = bidKey;
+            this.bidderId = bidderId;
+        }
+    }
+
+    /**
+     * Chave das skip lists: o valor de ordenação e, para desempate, o handle do leilão.
+     * Sua forma textual ("valor:handle") é o cursor enviado aos clientes.
+     */
+    private static final class Key implements Comparable<Key> {
+        final long value;
+        final int handle;
+
+        Key(long value, int handle) {
+            this.value = value;
+            this.handle = handle;
+        }
+
+        /**
+         * @return A chave representada pelo cursor, ou null se ele for null ou inválido
+         *         (nesse caso a consulta começa da primeira página).
+         */
+        static Key parse(String cursor) {
+            if (cursor == null) {
+                return null;
+            }
+            int separator = cursor.indexOf(':');
+            if (separator < 0) {
+                return null;
+            }
+            try {
+                return new Key(Long.parseLong(cursor.substring(0, separator)),
+                        Integer.parseInt(cursor.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byValue = Long.compare(value, other.value);
+            return byValue != 0 ? byValue : Integer.compare(handle, other.handle);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value) * 31 + handle;
+        }
+
+        @Override
+        public String toString() {
+            return value + ":" + handle;
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice invertido das palavras do nome e da descrição dos leilões, para a busca por
+ * palavras-chave (SEARCH) sem percorrer os leilões.
+ *
+ * Cada status tem seu próprio índice, como no AuctionQueryIndex: um leilão encerrado sai do
+ * índice dos ativos e entra no dos encerrados. Cada termo aponta para a lista dos handles
+ * que o contêm, em ordem crescente, com o peso do termo em cada leilão (no nome vale mais
+ * que na descrição). Os termos também ficam em um conjunto ordenado, para as buscas por
+ * prefixo ("relóg*").
+ *
+ * Todos os termos da consulta precisam aparecer no leilão. A busca começa pela lista mais
+ * curta e só confere os leilões dela nas demais (busca binária), então custa no máximo
+ * proporcional ao termo mais raro da consulta, e não ao número de leilões. A relevância
+ * soma, para cada termo, o peso no leilão vezes o IDF do termo (termos raros valem mais);
+ * empates ficam com o leilão mais novo. Os leilões são percorridos do mais novo para o mais
+ * antigo, em blocos, e a busca para assim que nenhum leilão restante pode entrar no
+ * resultado, então termos comuns não obrigam a percorrer a lista inteira.
+ *
+ * Palavras são comparadas sem acentos e sem diferenciar maiúsculas ("Relógio" = "relogio").
+ */
+class AuctionSearchIndex {
+
+    // Peso de um termo no nome e na descrição; um termo nos dois soma os pesos.
+    private static final int NAME_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int MAX_QUERY_TERMS = 8;
+    // Um prefixo precisa de ao menos 2 caracteres e considera no máximo 64 termos do dicionário.
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_TERMS = 64;
+    // Candidatos conferidos por vez nas consultas de vários termos, antes de testar se a busca pode parar.
+    private static final int CHUNK_SIZE = 256;
+
+    // Palavras comuns demais para distinguir um leilão; ficam fora do índice e das consultas.
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "o", "as", "os", "um", "uma", "de", "da", "do", "das", "dos", "e", "em", "no", "na",
+            "nos", "nas", "para", "por", "com", "sem", "the", "of", "and");
+
+    private final Map<AuctionItem.Status, Partition> byStatus = new EnumMap<>(AuctionItem.Status.class);
+    // Status com que cada leilão (pelo handle) está indexado. compute() nesse mapa serializa
+    // as mudanças de um mesmo leilão.
+    private final Map<Integer, AuctionItem.Status> indexed = new ConcurrentHashMap<>();
+
+    AuctionSearchIndex() {
+        for (AuctionItem.Status status : AuctionItem.Status.values()) {
+            byStatus.put(status, new Partition());
+        }
+    }
+
+    /**
+     * Indexa um leilão no índice do seu status atual, tirando-o do índice anterior se o
+     * status mudou. Chamado na criação e no encerramento; lances não mudam o índice.
+     *
+     * @param item O leilão, já com o handle atribuído.
+     */
+    void index(AuctionItem item) {
+        indexed.compute(item.getHandle(), (handle, previous) -> {
+            AuctionItem.Status status = item.getStatus();
+            if (previous == status) {
+                return previous;
+            }
+            Map<String, Integer> weights = termWeights(item);
+            if (previous != null) {
+                byStatus.get(previous).remove(handle, weights.keySet());
+            }
+            byStatus.get(status).add(handle, weights);
+            return status;
+        });
+    }
+
+    /**
+     * Tira um leilão do índice (leilão encerrado que foi para o AuctionArchive).
+     *
+     * @param item O leilão.
+     */
+    void remove(AuctionItem item) {
+        indexed.computeIfPresent(item.getHandle(), (handle, previous) -> {
+            byStatus.get(previous).remove(handle, termWeights(item).keySet());
+            return null;
+        });
+    }
+
+    /**
+     * Busca os leilões que contêm todos os termos da consulta. Um termo terminado em '*' vale
+     * para qualquer palavra que comece com ele.
+     *
+     * @param status     Só leilões com este status.
+     * @param query      O texto digitado, como "relógio antigo" ou "bicicl* aro".
+     * @param maxResults Máximo de leilões devolvidos (maior que zero).
+     * @return Os handles dos leilões encontrados, do mais relevante para o menos relevante.
+     */
+    int[] search(AuctionItem.Status status, String query, int maxResults) {
+        Partition partition = byStatus.get(status);
+        List<QueryTerm> terms = parseQuery(query);
+        if (terms.isEmpty()) {
+            return new int[0];
+        }
+        int auctionCount = partition.size.get();
+        for (QueryTerm term : terms) {
+            term.resolve(partition, auctionCount);
+            if (term.postings.isEmpty()) {
+                return new int[0]; // Um termo sem nenhum leilão: nada contém todos
+            }
+        }
+        terms.sort((a, b) -> Integer.compare(a.estimatedSize(), b.estimatedSize()));
+        QueryTerm driver = terms.get(0);
+        if (terms.size() == 1 && driver.postings.size() == 1) {
+            return driver.postings.get(0).top(driver.idfs[0], maxResults);
+        }
+        // Candidatos: os leilões do termo mais raro, um intervalo de handles por vez, do mais
+        // novo para o mais antigo. Cada termo seguinte descarta os que não o contêm.
+        TopResults top = new TopResults(maxResults);
+        float bound = 0;
+        for (QueryTerm term : terms) {
+            bound += term.maxScore();
+        }
+        int high = driver.maxHandle();
+        int span = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) CHUNK_SIZE * high / driver.estimatedSize()));
+        while (high > 0) {
+            int low = Math.max(0, high - span);
+            Candidates candidates = driver.collect(low, high);
+            for (int i = 1; i < terms.size() && candidates.size > 0; i++) {
+                terms.get(i).filter(candidates);
+            }
+            candidates.offerTo(top);
+            if (top.isFull() && top.minScore() >= bound) {
+                break; // Os leilões restantes são mais antigos e no máximo empatam com o pior do resultado
+            }
+            high = low;
+        }
+        return top.handles();
+    }
+
+    /**
+     * @return Os termos indexáveis de um texto, sem acentos, em minúsculas e sem as palavras comuns.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue; // Acento separado da letra pela normalização NFD
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (token.length() < MAX_TERM_LENGTH) {
+                    token.append(c);
+                }
+            } else if (token.length() > 0) {
+                String term = token.toString();
+                if (!STOP_WORDS.contains(term)) {
+                    tokens.add(term);
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static Map<String, Integer> termWeights(AuctionItem item) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : tokenize(item.getName())) {
+            weights.put(term, NAME_WEIGHT);
+        }
+        for (String term : tokenize(item.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, (name, description) -> name == NAME_WEIGHT
+                    ? NAME_WEIGHT + DESCRIPTION_WEIGHT : name);
+        }
+        return weights;
+    }
+
+    private static List<QueryTerm> parseQuery(String query) {
+        List<QueryTerm> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < tokens.size() && terms.size() < MAX_QUERY_TERMS; i++) {
+                // Em "guarda-chu*", só a última parte é prefixo
+                boolean last = i == tokens.size() - 1;
+                terms.add(new QueryTerm(tokens.get(i), prefix && last && tokens.get(i).length() >= MIN_PREFIX_LENGTH));
+            }
+        }
+        return terms;
+    }
+
+    // O IDF de um termo presente em documentFrequency dos auctionCount leilões.
+    private static float idf(int auctionCount, int documentFrequency) {
+        return (float) Math.log(1 + (double) Math.max(auctionCount, documentFrequency) / Math.max(1, documentFrequency));
+    }
+
+    /**
+     * O índice de um status: a lista de cada termo e o dicionário ordenado dos termos.
+     */
+    private static final class Partition {
+        final Map<String, Postings> postings = new ConcurrentHashMap<>();
+        final NavigableSet<String> dictionary = new ConcurrentSkipListSet<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(int handle, Map<String, Integer> weights) {
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                // compute() serializa a criação e a remoção da lista de um termo
+                postings.compute(entry.getKey(), (term, list) -> {
+                    if (list == null) {
+                        list = new Postings();
+                        dictionary.add(term);
+                    }
+                    list.add(handle, entry.getValue());
+                    return list;
+                });
+            }
+            size.incrementAndGet();
+        }
+
+        void remove(int handle, Set<String> terms) {
+            for (String term : terms) {
+                postings.computeIfPresent(term, (key, list) -> {
+                    if (list.remove(handle) && list.isEmpty()) {
+                        dictionary.remove(key);
+                        return null;
+                    }
+                    return list;
+                });
+            }
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Os leilões que contêm um termo: handles em ordem crescente e o peso do termo em cada um.
+     * Quem a lê ou altera segura o lock só dela, nunca o de outra lista ao mesmo tempo.
+     */
+    private static final class Postings {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int[] handles = new int[4];
+        private byte[] weights = new byte[4];
+        private int size;
+        private int maxWeight; // Só cresce: é um limite superior dos pesos da lista
+
+        void add(int handle, int weight) {
+            lock.lock();
+            try {
+                // Quase sempre o maior handle até agora (leilão novo): entra no fim
+                int position = size > 0 && handles[size - 1] >= handle
+                        ? Arrays.binarySearch(handles, 0, size, handle) : -(size + 1);
+                if (position >= 0) {
+                    weights[position] = (byte) weight;
+                } else {
+                    position = -(position + 1);
+                    if (size == handles.length) {
+                        handles = Arrays.copyOf(handles, size * 2);
+                        weights = Arrays.copyOf(weights, size * 2);
+                    }
+                    System.arraycopy(handles, position, handles, position + 1, size - position);
+                    System.arraycopy(weights, position, weights, position + 1, size - position);
+                    handles[position] = handle;
+                    weights[position] = (byte) weight;
+                    size++;
+                }
+                maxWeight = Math.max(maxWeight, weight);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(int handle) {
+            lock.lock();
+            try {
+                int position = Arrays.binarySearch(handles, 0, size, handle);
+                if (position < 0) {
+                    return false;
+                }
+                System.arraycopy(handles, position + 1, handles, position, size - position - 1);
+                System.arraycopy(weights, position + 1, weights, position, size - position - 1);
+                size--;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isEmpty() {
+            lock.lock();
+            try {
+                return size == 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int maxHandle() {
+            lock.lock();
+            try {
+                return size > 0 ? handles[size - 1] : 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        float maxScore(float idf) {
+            lock.lock();
+            try {
+                return maxWeight * idf;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Os leilões mais relevantes de uma consulta de um termo só, sem copiar a lista. Percorre
+         * do handle maior para o menor e para quando nenhum leilão restante pode superar o pior
+         * dos que já estão no resultado.
+         */
+        int[] top(float idf, int maxResults) {
+            TopResults top = new TopResults(maxResults);
+            lock.lock();
+            try {
+                float bound = maxWeight * idf;
+                for (int i = size - 1; i >= 0; i--) {
+                    if (top.isFull() && top.minScore() >= bound) {
+                        break;
+                    }
+                    top.offer(handles[i], weights[i] * idf);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return top.handles();
+        }
+
+        // Acrescenta aos candidatos os leilões da lista com handle em (low, high], com pontuação peso × idf.
+        void copyTo(Candidates candidates, float idf, int low, int high) {
+            lock.lock();
+            try {
+                int from = Arrays.binarySearch(handles, 0, size, low + 1);
+                from = from >= 0 ? from : -(from + 1);
+                int to = Arrays.binarySearch(handles, from, size, high);
+                to = to >= 0 ? to + 1 : -(to + 1);
+                candidates.ensureCapacity(candidates.size + to - from);
+                for (int i = from; i < to; i++) {
+                    candidates.append(handles[i], weights[i] * idf);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Para cada candidato que contém o termo, guarda em termScores a maior pontuação encontrada.
+        void scoreInto(Candidates candidates, float[] termScores, float idf) {
+            lock.lock();
+            try {
+                int from = 0;
+                for (int i = 0; i < candidates.size && from < size; i++) {
+                    // Candidatos em ordem crescente: a busca recomeça de onde parou
+                    int position = Arrays.binarySearch(handles, from, size, candidates.handles[i]);
+                    if (position >= 0) {
+                        termScores[i] = Math.max(termScores[i], weights[position] * idf);
+                        from = position + 1;
+                    } else {
+                        from = -(position + 1);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Um termo da consulta e as listas que ele alcança: uma para um termo exato, até
+     * MAX_PREFIX_TERMS para um prefixo.
+     */
+    private static final class QueryTerm {
+        final String text;
+        final boolean prefix;
+        List<Postings> postings;
+        float[] idfs;
+
+        QueryTerm(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+
+        void resolve(Partition partition, int auctionCount) {
+            postings = new ArrayList<>(1);
+            Iterable<String> terms = prefix
+                    ? partition.dictionary.subSet(text, true, text + Character.MAX_VALUE, false)
+                    : List.of(text);
+            for (String term : terms) {
+                Postings list = partition.postings.get(term);
+                if (list != null) {
+                    postings.add(list);
+                    if (postings.size() == MAX_PREFIX_TERMS) {
+                        break;
+                    }
+                }
+            }
+            idfs = new float[postings.size()];
+            for (int i = 0; i < idfs.length; i++) {
+                idfs[i] = idf(auctionCount, postings.get(i).size());
+            }
+        }
+
+        int estimatedSize() {
+            int total = 0;
+            for (Postings list : postings) {
+                total += list.size();
+            }
+            return total;
+        }
+
+        int maxHandle() {
+            int max = 0;
+            for (Postings list : postings) {
+                max = Math.max(max, list.maxHandle());
+            }
+            return max;
+        }
+
+        // A maior pontuação que este termo pode dar a um leilão.
+        float maxScore() {
+            float max = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                max = Math.max(max, postings.get(i).maxScore(idfs[i]));
+            }
+            return max;
+        }
+
+        // Os leilões deste termo com handle em (low, high], em ordem crescente e sem repetição.
+        Candidates collect(int low, int high) {
+            Candidates candidates = new Candidates();
+            for (int i = 0; i < postings.size(); i++) {
+                postings.get(i).copyTo(candidates, idfs[i], low, high);
+            }
+            if (postings.size() > 1) {
+                candidates.sortAndMerge(); // Um leilão pode ter várias palavras com o mesmo prefixo
+            }
+            return candidates;
+        }
+
+        // Descarta os candidatos sem este termo e soma a pontuação do termo aos demais.
+        void filter(Candidates candidates) {
+            float[] termScores = new float[candidates.size];
+            for (int i = 0; i < postings.size(); i++) {
+                postings.get(i).scoreInto(candidates, termScores, idfs[i]);
+            }
+            candidates.retain(termScores);
+        }
+    }
+
+    /**
+     * Leilões candidatos de uma consulta com mais de um termo (ou um prefixo), de um intervalo
+     * de handles, em ordem crescente, e a pontuação acumulada de cada um.
+     */
+    private static final class Candidates {
+        int[] handles = new int[16];
+        float[] scores = new float[16];
+        int size;
+
+        void ensureCapacity(int capacity) {
+            if (capacity > handles.length) {
+                int grown = Math.max(capacity, handles.length * 2);
+                handles = Arrays.copyOf(handles, grown);
+                scores = Arrays.copyOf(scores, grown);
+            }
+        }
+
+        void append(int handle, float score) {
+            handles[size] = handle;
+            scores[size] = score;
+            size++;
+        }
+
+        // Ordena pelos handles e junta repetições, ficando com a maior pontuação.
+        void sortAndMerge() {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                // Pontuações positivas: a ordem dos bits do float é a ordem dos valores
+                packed[i] = ((long) handles[i] << 32) | (Float.floatToIntBits(scores[i]) & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed);
+            int merged = 0;
+            for (int i = 0; i < packed.length; i++) {
+                int handle = (int) (packed[i] >>> 32);
+                float score = Float.intBitsToFloat((int) packed[i]);
+                if (merged > 0 && handles[merged - 1] == handle) {
+                    scores[merged - 1] = score; // O último de cada handle tem a maior pontuação
+                } else {
+                    handles[merged] = handle;
+                    scores[merged] = score;
+                    merged++;
+                }
+            }
+            size = merged;
+        }
+
+        // Mantém só os candidatos com pontuação no termo, somando-a.
+        void retain(float[] termScores) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (termScores[i] > 0) {
+                    handles[kept] = handles[i];
+                    scores[kept] = scores[i] + termScores[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        void offerTo(TopResults top) {
+            for (int i = size - 1; i >= 0; i--) {
+                top.offer(handles[i], scores[i]);
+            }
+        }
+    }
+
+    /**
+     * Os maxResults leilões de maior pontuação vistos até agora, em um heap pelo pior deles.
+     * Cada entrada é a pontuação nos 32 bits altos e o handle nos baixos, então a comparação
+     * de longs desempata pelo handle maior (o leilão mais novo).
+     */
+    private static final class TopResults {
+        private final int maxResults;
+        private final PriorityQueue<Long> heap;
+
+        TopResults(int maxResults) {
+            this.maxResults = maxResults;
+            this.heap = new PriorityQueue<>(Math.min(maxResults, 64) + 1);
+        }
+
+        boolean isFull() {
+            return heap.size() == maxResults;
+        }
+
+        float minScore() {
+            return Float.intBitsToFloat((int) (heap.peek() >>> 32));
+        }
+
+        void offer(int handle, float score) {
+            long entry = ((long) Float.floatToIntBits(score) << 32) | (handle & 0xFFFFFFFFL);
+            if (heap.size() < maxResults) {
+                heap.add(entry);
+            } else if (entry > heap.peek()) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        int[] handles() {
+            int[] result = new int[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = (int) (long) heap.poll(); // O heap devolve do pior para o melhor
+            }
+            return result;
+        }
+    }
+}
@@ -6,53 +6,90 @@ import com.auction.common.AuctionItem;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Servidor principal da aplicação de leilões online.
  * Gerencia a conexão de clientes, o estado dos leilões e a comunicação de mensagens.
  */
 public class AuctionServer {
-    // Socket principal do servidor que aceita novas conexões de clientes.
+    // Socket principal do servidor que aceita novas conexões de clientes (transporte BLOCKING).
     private ServerSocket welcomeSocket;
 
-    // Mapa thread-safe para armazenar ClientHandlers de clientes conectados, indexados por userId.
-    private final Map<String, ClientHandler> connectedClients = Collections.synchronizedMap(new HashMap<>());
+    // Transporte baseado em event loops NIO (transporte NIO). Exclusivo com welcomeSocket.
+    private NioServerTransport nioTransport;
 
-    // Mapa thread-safe para armazenar informações de UserInfo de clientes ativos, indexados por userId.
-    // Usado para obter IP/porta P2P para comunicação direta entre clientes.
-    private final Map<String, UserInfo> activeUsersInfo = Collections.synchronizedMap(new HashMap<>());
+    // Mapa thread-safe para armazenar as conexões de clientes conectados, indexadas por userId.
+    // ConcurrentHashMap permite iterar no broadcast sem segurar um monitor durante as escritas.
+    private final Map<String, ClientConnection> connectedClients = new ConcurrentHashMap<>();
 
-    // Mapa para rastrear o último tempo de atividade (keep-alive) de cada cliente.
-    private final Map<String, Long> lastActivityMap = Collections.synchronizedMap(new HashMap<>());
+    // UserInfo dos clientes ativos, pelo userId e pelo handle atribuído no LOGIN (enviado nos
+    // deltas de lance no lugar do userId). Usado para obter IP/porta P2P e nomes de usuário.
+    private final HandleRegistry<UserInfo> activeUsersInfo = new HandleRegistry<>();
+
+    // Quem acompanha cada leilão; as atualizações de leilão só vão para esses clientes.
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    // Serializa entradas e saídas de clientes. É um ReentrantLock (e não synchronized) para
+    // não prender a thread carregadora quando os handlers rodam em threads virtuais.
+    private final ReentrantLock membershipLock = new ReentrantLock();
+
+    // Desconecta clientes inativos. Ticks de 100 ms: o prazo vence no máximo um tick atrasado.
+    private final SessionTimeouts sessionTimeouts = new SessionTimeouts(
+            new HashedWheelTimer("session-timeouts", 100, TimeUnit.MILLISECONDS, 1024),
+            Constants.CLIENT_INACTIVITY_TIMEOUT_MS);
 
     // Gerenciador de leilões, responsável pela lógica de negócios dos leilões.
     private AuctionManager auctionManager;
 
+    // Estágios que processam as mensagens recebidas fora das threads dos transportes; null
+    // quando ServerConfig.PIPELINE_SIZE é 0 e cada mensagem é processada por quem a leu.
+    private InboundPipeline inboundPipeline;
+
     // Scheduler para executar tarefas em segundo plano (ex: verificar fim de leilões).
     private ScheduledExecutorService scheduler;
 
+    // Métricas no último relatório periódico.
+    private ServerMetrics.Snapshot reportedMetrics = ServerMetrics.snapshot();
+
     /**
      * Construtor para o AuctionServer.
-     * Inicializa o ServerSocket e o AuctionManager.
+     * Inicializa o transporte configurado em ServerConfig.TRANSPORT e o AuctionManager.
      *
      * @param port A porta em que o servidor irá escutar as conexões.
      */
     public AuctionServer(int port) {
         try {
-            welcomeSocket = new ServerSocket(port);
+            if (ServerConfig.TRANSPORT == ServerConfig.Transport.NIO) {
+                nioTransport = new NioServerTransport(port, this, ServerConfig.NIO_EVENT_LOOPS);
+            } else {
+                welcomeSocket = new ServerSocket(port);
+            }
             auctionManager = new AuctionManager(this); // Passa a referência do próprio servidor ao gerenciador
-            // Cria um scheduler com um pool de 2 threads para tarefas agendadas.
-            // Uma para checkAuctionEndTimes, outra para checkClientInactivity.
-            scheduler = Executors.newScheduledThreadPool(2);
-            System.out.println("Servidor de leilão iniciado na porta " + port);
+            if (ServerConfig.PIPELINE_SIZE > 0) {
+                inboundPipeline = createInboundPipeline();
+            }
+            // Cria um scheduler de uma thread para os relatórios periódicos. O encerramento dos
+            // leilões e a inatividade dos clientes têm seus próprios timers.
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+            String setup = "transporte " + ServerConfig.TRANSPORT
+                    + (nioTransport != null ? ", " + nioTransport.getLoopCount() + " event loops"
+                                            : ", threads " + ServerConfig.THREADS)
+                    + (auctionManager.getShardCount() > 0 ? ", " + auctionManager.getShardCount() + " shards de leilões" : "")
+                    + (inboundPipeline != null ? ", pipeline de " + inboundPipeline.getCapacity() + " posições" : "");
+            Log.log(Log.Level.INFO, "Servidor de leilão iniciado na porta {n} ({}).", setup, port);
         } catch (IOException e) {
-            System.err.println("Erro ao iniciar o servidor: " + e.getMessage());
+            Log.log(Log.Level.ERROR, "Erro ao iniciar o servidor: {}", e.getMessage());
+            Log.flush(1000); // A thread do log não chegaria a escrever o erro antes do exit
             System.exit(1); // Sai do programa se o servidor não puder iniciar
         }
     }
@@ -61,63 +98,92 @@ public class AuctionServer {
      * Inicia o loop principal do servidor para aceitar conexões e agendar tarefas.
      */
     public void start() {
-        // Agendamento da tarefa para verificar o fim dos leilões periodicamente.
-        // O método checkAuctionEndTimes do auctionManager será chamado a cada AUCTION_END_CHECK_INTERVAL_MS.
-        scheduler.scheduleAtFixedRate(auctionManager::checkAuctionEndTimes, 0,
-                                       Constants.AUCTION_END_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
-
-        scheduler.scheduleAtFixedRate(this::checkClientInactivity, 0,
-                                        Constants.CLIENT_INACTIVITY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (ServerConfig.METRICS_INTERVAL_MS > 0) {
+            scheduler.scheduleAtFixedRate(this::reportMetrics, ServerConfig.METRICS_INTERVAL_MS,
+                                            ServerConfig.METRICS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
 
-        System.out.println("Servidor aguardando conexões de clientes...");
+        Log.log(Log.Level.INFO, "Servidor aguardando conexões de clientes...");
+        if (nioTransport != null) {
+            // No transporte NIO as conexões são atendidas pelos event loops; esta thread apenas aceita.
+            nioTransport.acceptLoop();
+            return;
+        }
         // Loop infinito para aceitar novas conexões de clientes
         while (true) {
             try {
                 Socket clientSocket = welcomeSocket.accept(); // Bloqueia até uma nova conexão chegar
-                System.out.println("Novo cliente conectado de: " + clientSocket.getInetAddress().getHostAddress());
-                // Cria um novo ClientHandler para esta conexão e o executa em uma nova thread.
+                Log.log(Log.Level.INFO, "Novo cliente conectado de: {}", clientSocket.getInetAddress().getHostAddress());
+                // Cria um novo ClientHandler para esta conexão e o executa em uma nova thread
+                // (de plataforma ou virtual, conforme ServerConfig.THREADS).
                 ClientHandler handler = new ClientHandler(clientSocket, this);
-                new Thread(handler).start();
+                ServerConfig.THREADS.start(handler, "client-" + clientSocket.getRemoteSocketAddress());
             } catch (IOException e) {
-                System.err.println("Erro ao aceitar conexão de cliente: " + e.getMessage());
+                Log.log(Log.Level.ERROR, "Erro ao aceitar conexão de cliente: {}", e.getMessage());
             }
         }
     }
 
     /**
-     * Adiciona um ClientHandler à lista de clientes conectados após o login.
+     * Adiciona uma conexão à lista de clientes conectados após o login.
      * Também armazena as informações do usuário para P2P e notifica outros clientes.
      *
      * @param userId O ID único do cliente.
-     * @param handler A instância do ClientHandler para este cliente.
+     * @param handler A conexão (ClientHandler ou NioClientConnection) deste cliente.
      * @param ipAddress O endereço IP do cliente.
      * @param p2pPort A porta P2P que o cliente está escutando.
      */
-    public synchronized void addClient(String userId, ClientHandler handler, String ipAddress, int p2pPort) {
-        // Verifica se o userId já existe (e.g., reconexão ou erro)
-        if (connectedClients.containsKey(userId)) {
-            System.out.println("Cliente " + userId + " já estava conectado. Atualizando handler.");
+    public void addClient(String userId, ClientConnection handler, String ipAddress, int p2pPort) {
+        UserInfo userInfo = new UserInfo(userId, handler.getUsername(), ipAddress, p2pPort,
+                activeUsersInfo.reserve());
+        membershipLock.lock();
+        try {
+            // Verifica se o userId já existe (e.g., reconexão ou erro)
+            if (connectedClients.containsKey(userId)) {
+                Log.log(Log.Level.INFO, "Cliente {} já estava conectado. Atualizando handler.", userId);
+            }
+            ClientConnection previous = connectedClients.put(userId, handler);
+            if (previous != null) {
+                subscriptions.unregister(previous);
+            }
+            activeUsersInfo.put(userInfo.getHandle(), userId, userInfo);
+            subscriptions.register(handler);
+            Log.log(Log.Level.INFO, "Cliente '{}' (ID: {}) logado. Total online: {n}", handler.getUsername(), userId,
+                    activeUsersInfo.size());
+        } finally {
+            membershipLock.unlock();
         }
-        connectedClients.put(userId, handler);
-        UserInfo userInfo = new UserInfo(userId, handler.getUsername(), ipAddress, p2pPort);
-        activeUsersInfo.put(userId, userInfo);
-        System.out.println("Cliente '" + handler.getUsername() + "' (ID: " + userId + ") logado. Total online: " + activeUsersInfo.size());
 
-        // Notifica todos os outros clientes sobre o novo usuário online
+        // Notifica todos os outros clientes sobre o novo usuário online (fora do lock,
+        // para que escritas lentas em sockets não bloqueiem outros logins/logouts)
         broadcast(new UserStatusUpdateMessage("server", userInfo, true));
     }
 
     /**
-     * Remove um ClientHandler da lista de clientes conectados.
+     * Remove uma conexão da lista de clientes conectados.
      * Chamado quando um cliente se desconecta ou sua conexão é perdida.
      *
      * @param userId O ID único do cliente a ser removido.
      */
-    public synchronized void removeClient(String userId) {
-        ClientHandler handler = connectedClients.remove(userId);
-        UserInfo userInfo = activeUsersInfo.remove(userId);
+    public void removeClient(String userId) {
+        ClientConnection handler;
+        UserInfo userInfo;
+        membershipLock.lock();
+        try {
+            handler = connectedClients.remove(userId);
+            userInfo = activeUsersInfo.remove(userId);
+            if (handler != null) {
+                subscriptions.unregister(handler);
+                sessionTimeouts.unregister(handler);
+            }
+            if (handler != null && userInfo != null) {
+                Log.log(Log.Level.INFO, "Cliente '{}' (ID: {}) desconectado. Total online: {n}", userInfo.getUsername(), userId,
+                        activeUsersInfo.size());
+            }
+        } finally {
+            membershipLock.unlock();
+        }
         if (handler != null && userInfo != null) {
-            System.out.println("Cliente '" + userInfo.getUsername() + "' (ID: " + userId + ") desconectado. Total online: " + activeUsersInfo.size());
             // Notifica todos os outros clientes que este usuário ficou offline
             broadcast(new UserStatusUpdateMessage("server", userInfo, false));
         }
@@ -125,24 +191,112 @@ public class AuctionServer {
 
     /**
      * Envia uma mensagem para todos os clientes atualmente conectados.
+     * A mensagem é codificada uma única vez por formato de fio, aqui mesmo, e os mesmos
+     * bytes são enfileirados para todos os destinatários.
      *
      * @param message A Message a ser broadcastada.
      */
     public void broadcast(Message message) {
-        // Para evitar ConcurrentModificationException ao iterar sobre o mapa
-        // e potencialmente remover clientes ao mesmo tempo, itera-se sobre uma cópia.
-        // Ou, como connectedClients é synchronizedMap, o bloco synchronized ajuda.
-        synchronized (connectedClients) {
-            for (ClientHandler handler : connectedClients.values()) {
-                // Não envia a mensagem de status de online/offline para o próprio usuário que acabou de logar/deslogar
-                if (message instanceof UserStatusUpdateMessage) {
-                    UserStatusUpdateMessage statusMsg = (UserStatusUpdateMessage) message;
-                    if (statusMsg.getUser().getUserId().equals(handler.getUserId())) {
-                        continue; // Não envie para o próprio usuário
-                    }
+        OutboundMessage encoded = new OutboundMessage(message);
+        int recipients = 0;
+        // connectedClients é um ConcurrentHashMap: a iteração é segura mesmo com clientes
+        // entrando e saindo, sem segurar nenhum monitor durante as escritas nos sockets.
+        for (ClientConnection handler : connectedClients.values()) {
+            // Não envia a mensagem de status de online/offline para o próprio usuário que acabou de logar/deslogar
+            if (message instanceof UserStatusUpdateMessage) {
+                UserStatusUpdateMessage statusMsg = (UserStatusUpdateMessage) message;
+                if (statusMsg.getUser().getUserId().equals(handler.getUserId())) {
+                    continue; // Não envie para o próprio usuário
                 }
-                handler.sendMessage(message);
             }
+            try {
+                // Codifica agora, e não na thread escritora: o AuctionItem da mensagem continua
+                // mudando, e todos os clientes devem receber o mesmo estado.
+                encoded.encodedFor(handler.getProtocolVersion());
+            } catch (IOException e) {
+                // Como em sendAuctionUpdate(): só este destinatário fica sem a mensagem
+                Log.log(Log.Level.ERROR, "Erro ao codificar mensagem de broadcast {} para {}: {}", message.getType(),
+                        handler.getUserId(), e.getMessage());
+                continue;
+            }
+            handler.send(encoded);
+            recipients++;
+        }
+        ServerMetrics.recordBroadcast(recipients);
+    }
+
+    /**
+     * Envia uma atualização de leilão apenas a quem a acompanha: os assinantes do leilão, os
+     * clientes antigos (que recebem tudo) e, se for uma mudança no catálogo (leilão criado ou
+     * encerrado), os assinantes do tópico de leilões novos.
+     *
+     * Quem negociou Constants.PROTOCOL_DELTA_UPDATES recebe o delta, e os demais a mensagem
+     * completa, que só é montada se houver algum desses clientes entre os destinatários.
+     *
+     * @param auctionHandle O handle do leilão atualizado.
+     * @param catalogChange true se o leilão foi criado ou encerrado.
+     * @param delta         A mensagem delta (BID_DELTA, AUCTION_STATUS_DELTA), ou a própria
+     *                      mensagem completa quando não há delta (criação de leilão).
+     * @param fullUpdate    Cria o AuctionUpdateMessage equivalente, para clientes sem suporte a deltas.
+     */
+    public void broadcastAuctionUpdate(int auctionHandle, boolean catalogChange, Message delta, Supplier<Message> fullUpdate) {
+        OutboundMessage[] encoded = new OutboundMessage[2]; // [0] mensagem completa, [1] delta
+        int recipients = 0;
+        for (ClientConnection handler : subscriptions.allUpdatesSubscribers()) {
+            recipients += sendAuctionUpdate(handler, encoded, delta, fullUpdate);
+        }
+        Set<ClientConnection> watchers = subscriptions.subscribersOf(auctionHandle);
+        for (ClientConnection handler : watchers) {
+            recipients += sendAuctionUpdate(handler, encoded, delta, fullUpdate);
+        }
+        if (catalogChange) {
+            for (ClientConnection handler : subscriptions.newAuctionSubscribers()) {
+                if (!watchers.contains(handler)) { // Já recebeu como assinante do leilão
+                    recipients += sendAuctionUpdate(handler, encoded, delta, fullUpdate);
+                }
+            }
+        }
+        ServerMetrics.recordBroadcast(recipients);
+    }
+
+    // Devolve 1 se a atualização foi entregue à fila de saída do cliente, 0 se não pôde ser codificada.
+    private int sendAuctionUpdate(ClientConnection handler, OutboundMessage[] encoded, Message delta,
+                                  Supplier<Message> fullUpdate) {
+        int version = handler.getProtocolVersion();
+        int slot = version >= Constants.PROTOCOL_DELTA_UPDATES ? 1 : 0;
+        if (encoded[slot] == null) {
+            encoded[slot] = new OutboundMessage(slot == 1 ? delta : fullUpdate.get());
+        }
+        try {
+            encoded[slot].encodedFor(version); // Mesmo motivo de broadcast(): um único estado para todos
+        } catch (IOException e) {
+            Log.log(Log.Level.ERROR, "Erro ao codificar mensagem de broadcast {}: {}", encoded[slot].getMessage().getType(),
+                    e.getMessage());
+            return 0;
+        }
+        handler.send(encoded[slot]);
+        return 1;
+    }
+
+    /**
+     * @return O índice de assinaturas, usado pelo AuctionManager ao encerrar leilões.
+     */
+    SubscriptionIndex getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Envia uma atualização de leilão para um único cliente, como delta ou como mensagem
+     * completa conforme a versão de protocolo negociada com ele.
+     *
+     * @param userId     O ID do cliente de destino.
+     * @param delta      A mensagem delta.
+     * @param fullUpdate Cria a mensagem completa equivalente.
+     */
+    public void sendDeltaToClient(String userId, Message delta, Supplier<Message> fullUpdate) {
+        ClientConnection handler = connectedClients.get(userId);
+        if (handler != null) {
+            handler.sendMessage(handler.getProtocolVersion() >= Constants.PROTOCOL_DELTA_UPDATES ? delta : fullUpdate.get());
         }
     }
 
@@ -153,11 +307,11 @@ public class AuctionServer {
      * @param message A Message a ser enviada.
      */
     public void sendMessageToClient(String userId, Message message) {
-        ClientHandler handler = connectedClients.get(userId);
+        ClientConnection handler = connectedClients.get(userId);
         if (handler != null) {
             handler.sendMessage(message);
         } else {
-            System.out.println("Cliente " + userId + " não encontrado para enviar mensagem: " + message.getType());
+            Log.log(Log.Level.INFO, "Cliente {} não encontrado para enviar mensagem: {}", userId, message.getType());
         }
     }
 
@@ -173,59 +327,150 @@ public class AuctionServer {
     }
 
     /**
-     * Retorna o mapa de informações de usuários ativos.
+     * Retorna as informações de um usuário ativo.
      * Utilizado pelo AuctionManager para obter nomes de usuários.
      *
-     * @return Mapa de UserInfo de usuários ativos.
+     * @param userId O ID do usuário.
+     * @return UserInfo do usuário, ou null se ele não estiver online.
+     */
+    public UserInfo getUserInfo(String userId) {
+        return activeUsersInfo.get(userId);
+    }
+
+    /**
+     * Processa a primeira mensagem de uma conexão, que deve obrigatoriamente ser um LOGIN.
+     * Registra o cliente e encaminha o LOGIN para handleMessage; caso contrário, responde
+     * com falha para que o transporte encerre a conexão.
+     *
+     * @param firstMessage A primeira Message recebida na conexão.
+     * @param connection A conexão que enviou a mensagem.
+     * @return true se o login foi aceito, false se a conexão deve ser fechada.
+     */
+    boolean handleFirstMessage(Message firstMessage, ClientConnection connection) {
+        if (firstMessage.getType() != MessageType.LOGIN) {
+            Log.log(Log.Level.INFO, "Cliente {} enviou {} antes de LOGIN. Fechando conexão.", connection.getRemoteAddress(),
+                    firstMessage.getType());
+            connection.sendMessage(new LoginResponseMessage("server", false, "Por favor, faça login primeiro.", null, null));
+            return false;
+        }
+        LoginMessage loginMsg = (LoginMessage) firstMessage;
+        // Configura o ID e username do cliente nesta conexão
+        connection.setUserId(loginMsg.getSenderId());
+        connection.setUsername(loginMsg.getUsername());
+        // Clientes antigos não enviam versão (0) e continuam recebendo objetos serializados.
+        connection.setProtocolVersion(Math.min(loginMsg.getProtocolVersion(), ServerConfig.PROTOCOL_VERSION));
+        // Prefere o endereço IP informado pelo cliente na LoginMessage, se presente.
+        String reportedIp = loginMsg.getIpAddress() != null ? loginMsg.getIpAddress() : connection.getRemoteAddress();
+        addClient(connection.getUserId(), connection, reportedIp, loginMsg.getP2pPort());
+        // Passa a mensagem de login para o servidor lidar, incluindo a resposta ao cliente
+        handleMessage(loginMsg, connection);
+        return true;
+    }
+
+    /**
+     * Cria o pipeline das mensagens recebidas: limite de mensagens por conexão (se
+     * configurado) e então o handleMessage. A decodificação continua nas threads dos
+     * transportes, que precisam dela para separar as mensagens do fluxo de bytes. A gravação
+     * no journal e o anúncio não são estágios: o AuctionJournal já junta os registros de
+     * todas as threads num force() por lote e anuncia cada mudança no seu Commit.
+     *
+     * @return O pipeline, já iniciado.
      */
-    public Map<String, UserInfo> getActiveUsersInfo() {
-        return activeUsersInfo;
+    private InboundPipeline createInboundPipeline() {
+        List<InboundPipeline.NamedStage> stages = new ArrayList<>();
+        if (ServerConfig.RATE_LIMIT_PER_SECOND > 0) {
+            stages.add(new InboundPipeline.NamedStage("validate",
+                    new InboundRateLimiter(ServerConfig.RATE_LIMIT_PER_SECOND, this::isConnected)));
+        }
+        stages.add(new InboundPipeline.NamedStage("apply", event -> {
+            // A conexão pode ter saído enquanto a mensagem esperava no anel
+            if (!event.dropped && isConnected(event.sender)) {
+                handleMessage(event.message, event.sender);
+            }
+        }));
+        return new InboundPipeline("inbound", ServerConfig.PIPELINE_SIZE, stages);
     }
 
     /**
-     * Método central para processar mensagens recebidas de ClientHandlers.
+     * Recebe uma mensagem de um cliente já logado, chamado pelos transportes. Com o pipeline
+     * ligado apenas a publica no anel e retorna; senão, a processa na hora.
+     *
+     * @param message A Message recebida.
+     * @param sender A conexão que enviou a mensagem.
+     */
+    void receive(Message message, ClientConnection sender) {
+        if (inboundPipeline != null) {
+            inboundPipeline.publish(message, sender);
+        } else {
+            handleMessage(message, sender);
+        }
+    }
+
+    // Se a conexão ainda é a conexão logada do seu usuário.
+    private boolean isConnected(ClientConnection connection) {
+        String userId = connection.getUserId();
+        return userId != null && connectedClients.get(userId) == connection;
+    }
+
+    /**
+     * Método central para processar mensagens recebidas das conexões de clientes.
      * A lógica de roteamento e tratamento das mensagens acontece aqui.
      *
      * @param message A Message recebida.
-     * @param sender O ClientHandler que enviou a mensagem.
+     * @param sender A conexão que enviou a mensagem.
      */
-    public void handleMessage(Message message, ClientHandler sender) {
-        System.out.println("Servidor recebeu de '" + (sender.getUsername() != null ? sender.getUsername() : sender.getUserId()) + "' (" + message.getSenderId() + "): " + message.getType());
+    public void handleMessage(Message message, ClientConnection sender) {
+        long startNanos = System.nanoTime();
+        try {
+            dispatch(message, sender);
+        } finally {
+            ServerMetrics.recordMessage(message.getType(), System.nanoTime() - startNanos);
+        }
+    }
+
+    // O tratamento de cada tipo de mensagem; handleMessage mede sua duração.
+    private void dispatch(Message message, ClientConnection sender) {
+        // Uma linha por mensagem só no nível DEBUG; o evento não monta texto nesta thread
+        Log.log(Log.Level.DEBUG, "Servidor recebeu de '{}' ({}): {}",
+                sender.getUsername() != null ? sender.getUsername() : sender.getUserId(), message.getSenderId(),
+                message.getType());
+
+        // Qualquer mensagem conta como atividade, não apenas o KEEP_ALIVE
+        sessionTimeouts.touch(sender);
 
         switch (message.getType()) {
             case LOGIN:
-                LoginMessage loginMsg = (LoginMessage) message;
-                lastActivityMap.put(loginMsg.getSenderId(), System.currentTimeMillis());
+                sessionTimeouts.register(sender);
                 // O addClient já foi chamado no ClientHandler após a primeira mensagem
                 // Agora envia a resposta de login para o cliente
                 sendMessageToClient(sender.getUserId(), new LoginResponseMessage(
                     "server", true, "Login bem-sucedido!",
                     auctionManager.getLiveAuctions(),
-                    new java.util.ArrayList<>(activeUsersInfo.values()) // Lista de usuários online
+                    activeUsersInfo.values(), // Lista de usuários online
+                    sender.getProtocolVersion()
                 ));
                 break;
             case LOGOUT:
                 // O ClientHandler já remove o cliente via closeConnection, então aqui é mais para log
-                System.out.println("Cliente " + sender.getUsername() + " solicitou LOGOUT.");
-                lastActivityMap.remove(sender.getUserId());
+                Log.log(Log.Level.INFO, "Cliente {} solicitou LOGOUT.", sender.getUsername());
                 sender.closeConnection(); // Irá chamar removeClient
                 break;
             case AUCTION_LIST_REQUEST:
-                // Responde com a lista de leilões
-                sendMessageToClient(sender.getUserId(), new AuctionListResponseMessage(
-                    "server", auctionManager.getLiveAuctions(), auctionManager.getDiscontinuedAuctions()
-                ));
+                // Responde com a lista de leilões, compartilhada enquanto o catálogo não muda
+                sender.send(auctionManager.getAuctionListResponse());
                 break;
             case PLACE_BID:
                 PlaceBidMessage bidMsg = (PlaceBidMessage) message;
-                // Passa o processamento do lance para o AuctionManager
-                boolean bidAccepted = auctionManager.placeBid(bidMsg.getAuctionId(), bidMsg.getSenderId(), bidMsg.getBidAmount());
-                // O AuctionManager já faz o broadcast da atualização se o lance for aceito.
-                // Se o lance não for aceito, podemos enviar uma mensagem de erro específica de volta ao cliente.
-                if (!bidAccepted) {
-                    sendMessageToClient(sender.getUserId(), new AuctionUpdateMessage(
-                        "server", auctionManager.getAuction(bidMsg.getAuctionId()), "Lance inválido."));
+                // Clientes a partir de PROTOCOL_HANDLES mandam só o handle; os anteriores, o ID
+                int bidHandle = bidMsg.getAuctionHandle() != 0
+                        ? bidMsg.getAuctionHandle() : auctionManager.getAuctionHandle(bidMsg.getAuctionId());
+                // Quem dá um lance passa a acompanhar o leilão, para receber a confirmação e os próximos lances
+                if (auctionManager.getAuction(bidHandle) != null) {
+                    subscriptions.subscribe(sender, List.of(bidHandle), false);
                 }
+                // Passa o lance para o AuctionManager, que o processa na thread dona do leilão (se houver
+                // shards), faz o broadcast se ele for aceito e responde ao licitante se for recusado.
+                auctionManager.submitBid(bidHandle, bidMsg.getSenderId(), bidMsg.getBidAmount());
                 break;
             case CREATE_AUCTION:
                 CreateAuctionMessage createAuctionMsg = (CreateAuctionMessage) message;
@@ -238,12 +483,50 @@ public class AuctionServer {
                     createAuctionMsg.getSenderId(),
                     sender.getUsername() // Pega o username do sender para associar ao vendedor
                 );
-                auctionManager.addAuction(newAuction);
-                // O addAuction já faz o broadcast da criação do leilão.
+                // O vendedor acompanha o próprio leilão desde a criação, pelo handle atribuído agora
+                auctionManager.assignHandle(newAuction);
+                subscriptions.subscribe(sender, List.of(newAuction.getHandle()), false);
+                auctionManager.submitAuction(newAuction);
+                // O addAuction, executado pelo dono do leilão, faz o broadcast da criação.
                 break;
             case KEEP_ALIVE:
-                // Atualiza o tempo de última atividade do cliente
-                lastActivityMap.put(sender.getUserId(), System.currentTimeMillis());
+                // Só serve para registrar atividade, o que já foi feito acima
+                break;
+            case SUBSCRIBE:
+                SubscribeMessage subscribeMsg = (SubscribeMessage) message;
+                // Só aceita leilões ainda em andamento: os encerrados não terão mais atualizações
+                List<Integer> watched = new ArrayList<>();
+                List<String> requested = subscribeMsg.getAuctionIds() != null ? subscribeMsg.getAuctionIds() : List.of();
+                for (String auctionId : requested) {
+                    AuctionItem watchedAuction = auctionManager.getAuction(auctionId);
+                    if (watchedAuction != null) {
+                        watched.add(watchedAuction.getHandle());
+                    }
+                }
+                subscriptions.subscribe(sender, watched, subscribeMsg.isNewAuctions());
+                break;
+            case UNSUBSCRIBE:
+                UnsubscribeMessage unsubscribeMsg = (UnsubscribeMessage) message;
+                List<Integer> unwatched = new ArrayList<>();
+                if (unsubscribeMsg.getAuctionIds() != null) {
+                    for (String auctionId : unsubscribeMsg.getAuctionIds()) {
+                        int handle = auctionManager.getAuctionHandle(auctionId);
+                        if (handle != 0) {
+                            unwatched.add(handle);
+                        }
+                    }
+                }
+                subscriptions.unsubscribe(sender, unwatched, unsubscribeMsg.isNewAuctions());
+                break;
+            case AUCTION_QUERY:
+                sendMessageToClient(sender.getUserId(), auctionManager.queryAuctions((AuctionQueryMessage) message));
+                break;
+            case BID_HISTORY_REQUEST:
+                sendMessageToClient(sender.getUserId(),
+                        auctionManager.getBidHistory((BidHistoryRequestMessage) message));
+                break;
+            case SEARCH:
+                sendMessageToClient(sender.getUserId(), auctionManager.searchAuctions((SearchMessage) message));
                 break;
             case PEER_INFO_REQUEST:
                 PeerInfoRequestMessage peerReq = (PeerInfoRequestMessage) message;
@@ -263,30 +546,30 @@ public class AuctionServer {
             case LOGIN_RESPONSE: // Resposta de login é apenas do server -> client
             case AUCTION_LIST_RESPONSE: // Resposta de lista de leilões é apenas do server -> client
             case PEER_INFO_RESPONSE: // Resposta de info de peer é apenas do server -> client
+            case BID_DELTA: // Deltas de leilão são apenas do server -> client
+            case AUCTION_STATUS_DELTA:
+            case AUCTION_QUERY_RESPONSE:
+            case BID_HISTORY_RESPONSE:
+            case SEARCH_RESPONSE:
             case DIRECT_MESSAGE: // Mensagens P2P são diretas entre clientes
-                System.err.println("Mensagem de tipo inesperado recebida do cliente: " + message.getType());
+                Log.log(Log.Level.WARN, "Mensagem de tipo inesperado recebida do cliente: {}", message.getType());
                 break;
             default:
-                System.out.println("Tipo de mensagem não tratado pelo servidor: " + message.getType());
+                Log.log(Log.Level.WARN, "Tipo de mensagem não tratado pelo servidor: {}", message.getType());
         }
     }
 
-    public void checkClientInactivity() {
-        long currentTime = System.currentTimeMillis();
-        for (Map.Entry<String, Long> entry : lastActivityMap.entrySet()) {
-            String userId = entry.getKey();
-            long lastActiveTime = entry.getValue();
-            if (currentTime - lastActiveTime > Constants.CLIENT_INACTIVITY_TIMEOUT_MS) {
-                System.out.println("Cliente " + userId + " inativo por mais de " + (Constants.CLIENT_INACTIVITY_TIMEOUT_MS / 1000) + " segundos. Desconectando.");
-                ClientHandler handler = connectedClients.get(userId);
-                if (handler != null) {
-                    handler.closeConnection(); // Isso chamará removeClient e limpará lastActivityMap
-                } else {
-                    // Se o handler não existir, apenas remova do lastActivityMap
-                    lastActivityMap.remove(userId);
-                }
-            }
+    /**
+     * Relata as métricas do servidor (ServerMetrics) registradas desde o último relatório,
+     * a cada ServerConfig.METRICS_INTERVAL_MS. Não imprime nada se nada mudou no período.
+     */
+    private void reportMetrics() {
+        ServerMetrics.Snapshot current = ServerMetrics.snapshot();
+        ServerMetrics.Snapshot period = current.since(reportedMetrics);
+        if (period.hasActivity()) {
+            Log.log(Log.Level.INFO, "Métricas ({n} ms):\n{}", period.report().stripTrailing(), ServerConfig.METRICS_INTERVAL_MS);
         }
+        reportedMetrics = current;
     }
 
     /**
@@ -0,0 +1,63 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Divide os leilões entre N shards, cada um com uma única thread e sua fila de comandos.
+ *
+ * Todo comando que altera um leilão (criação, lance, encerramento) é executado pela thread
+ * do shard dono dele, escolhido pelo handle. Comandos de um mesmo leilão nunca executam
+ * em paralelo e são aplicados na ordem em que entraram na fila; leilões de shards
+ * diferentes são processados em paralelo, um núcleo por shard.
+ *
+ * A thread que recebeu a mensagem apenas enfileira o comando e volta a ler a conexão.
+ */
+class AuctionShards {
+
+    private final ExecutorService[] shards;
+
+    /**
+     * Cria e inicia os shards.
+     *
+     * @param count Número de shards (maior que zero).
+     */
+    AuctionShards(int count) {
+        this.shards = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            String name = "auction-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return O número de shards.
+     */
+    int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Enfileira um comando no shard dono do leilão. Não bloqueia.
+     *
+     * @param auctionHandle O handle do leilão afetado pelo comando. Handles são densos, então
+     *                      leilões consecutivos caem em shards diferentes.
+     * @param command       O comando, executado depois dos já enfileirados para o mesmo shard.
+     */
+    void execute(int auctionHandle, Runnable command) {
+        shards[Math.floorMod(auctionHandle, shards.length)].execute(() -> {
+            // Uma exceção não tratada trocaria a thread do shard; registra e segue para o próximo comando.
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                Log.log(Log.Level.ERROR, "Erro no comando do leilão de handle {n}: {}", e.toString(), auctionHandle);
+            }
+        });
+    }
+}
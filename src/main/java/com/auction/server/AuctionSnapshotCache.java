@@ -0,0 +1,88 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.AuctionListResponseMessage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache da lista de leilões enviada no LOGIN e em resposta ao AUCTION_LIST_REQUEST.
+ *
+ * O catálogo tem um número de versão que avança a cada criação, lance aceito e
+ * encerramento (invalidate()). Enquanto a versão não muda, todos os pedidos recebem o mesmo
+ * Snapshot: as mesmas listas imutáveis e a mesma AuctionListResponseMessage, codificada uma
+ * única vez por versão de protocolo pelo OutboundMessage. Uma onda de logins depois de um
+ * reinício monta a lista uma vez, em vez de uma vez por cliente.
+ */
+class AuctionSnapshotCache {
+
+    private final AuctionQueryIndex index;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot current;
+    // Apenas um thread remonta o snapshot; os demais esperam e reaproveitam o resultado.
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * As listas de leilões de uma versão do catálogo.
+     */
+    static final class Snapshot {
+        final long version;
+        final List<AuctionItem> liveAuctions;         // Ordenados por término; imutável
+        final List<AuctionItem> discontinuedAuctions; // Ordenados por término; imutável
+        final OutboundMessage listResponse;           // AUCTION_LIST_RESPONSE pronta para envio
+
+        Snapshot(long version, List<AuctionItem> liveAuctions, List<AuctionItem> discontinuedAuctions) {
+            this.version = version;
+            this.liveAuctions = liveAuctions;
+            this.discontinuedAuctions = discontinuedAuctions;
+            this.listResponse = new OutboundMessage(
+                    new AuctionListResponseMessage("server", liveAuctions, discontinuedAuctions));
+        }
+    }
+
+    /**
+     * Construtor para o AuctionSnapshotCache.
+     *
+     * @param index O índice de onde as listas ordenadas são lidas.
+     */
+    AuctionSnapshotCache(AuctionQueryIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Marca o snapshot atual como desatualizado. Deve ser chamado depois que a mudança foi
+     * aplicada ao leilão e ao índice.
+     */
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return O snapshot da versão atual do catálogo, montando-o se necessário.
+     */
+    Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.version == version.get()) {
+            return snapshot;
+        }
+        rebuildLock.lock();
+        try {
+            // A versão é lida antes das listas: uma mudança durante a montagem avança a
+            // versão, e o próximo pedido monta outro snapshot em vez de usar este.
+            long expected = version.get();
+            snapshot = current;
+            if (snapshot == null || snapshot.version != expected) {
+                snapshot = new Snapshot(expected,
+                        Collections.unmodifiableList(index.list(AuctionItem.Status.ACTIVE)),
+                        Collections.unmodifiableList(index.list(AuctionItem.Status.ENDED)));
+                current = snapshot;
+            }
+            return snapshot;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+}
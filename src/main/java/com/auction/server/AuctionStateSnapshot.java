@@ -0,0 +1,180 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Imagem compacta do estado dos leilões (ativos e encerrados), gravada periodicamente para
+ * que a inicialização não precise reler o journal desde o começo.
+ *
+ * Formato: identificador e versão do formato, próximo handle de leilão, número de leilões,
+ * os leilões (no formato de AuctionJournal.writeItem()), a tabela de licitantes na ordem dos
+ * handles, os históricos de lances (ID do leilão, número de lances e, para cada lance,
+ * horário, valor e handle do licitante) e, no fim, o CRC32 de tudo o que veio antes. Os
+ * valores monetários são centavos (long). As versões 1 e 2 do formato não foram publicadas
+ * e são recusadas.
+ *
+ * O arquivo é gravado com outro nome, forçado para o disco e só então renomeado sobre o
+ * anterior, então um snapshot lido é sempre completo. Na leitura o arquivo é mapeado em
+ * memória e percorrido direto do mapeamento.
+ */
+final class AuctionStateSnapshot {
+
+    private static final int MAGIC = 0x4155534E; // "AUSN"
+    private static final int FORMAT_VERSION = 3;
+
+    final int nextAuctionHandle;
+    final List<AuctionItem> auctions;
+
+    private AuctionStateSnapshot(int nextAuctionHandle, List<AuctionItem> auctions) {
+        this.nextAuctionHandle = nextAuctionHandle;
+        this.auctions = auctions;
+    }
+
+    /**
+     * Grava um snapshot.
+     *
+     * @param path              Caminho final do snapshot.
+     * @param nextAuctionHandle Próximo handle de leilão.
+     * @param auctions          Cópias dos leilões (AuctionItem.copy()), sem repetições.
+     * @param bidders           A tabela de licitantes.
+     * @param histories         Os históricos de lances, por handle do leilão.
+     * @param auctionIdOf       Traduz o handle de um leilão no seu ID, que é o gravado.
+     * @throws IOException Se o arquivo não puder ser gravado.
+     */
+    static void write(Path path, int nextAuctionHandle, Collection<AuctionItem> auctions, BidderTable bidders,
+                      Map<Integer, BidHistory> histories, IntFunction<String> auctionIdOf) throws IOException {
+        // Os históricos são copiados antes de ler o tamanho da tabela: todo handle que eles
+        // citam já está nela.
+        List<String> historyIds = new ArrayList<>(histories.size());
+        List<BidHistory.Slice> historySlices = new ArrayList<>(histories.size());
+        for (Map.Entry<Integer, BidHistory> entry : histories.entrySet()) {
+            String auctionId = auctionIdOf.apply(entry.getKey());
+            if (auctionId != null) {
+                historyIds.add(auctionId);
+                historySlices.add(entry.getValue().all());
+            }
+        }
+        int bidderCount = bidders.size();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(nextAuctionHandle);
+            out.writeInt(auctions.size());
+            for (AuctionItem item : auctions) {
+                AuctionJournal.writeItem(out, item);
+            }
+            out.writeInt(bidderCount);
+            for (int handle = 0; handle < bidderCount; handle++) {
+                AuctionJournal.writeString(out, bidders.idOf(handle));
+                AuctionJournal.writeString(out, bidders.usernameOf(handle));
+            }
+            out.writeInt(historyIds.size());
+            for (int i = 0; i < historyIds.size(); i++) {
+                BidHistory.Slice history = historySlices.get(i);
+                AuctionJournal.writeString(out, historyIds.get(i));
+                out.writeInt(history.amounts.length);
+                for (int j = 0; j < history.amounts.length; j++) {
+                    out.writeLong(history.timestamps[j]);
+                    out.writeLong(history.amounts[j]);
+                    out.writeInt(history.bidders[j]);
+                }
+            }
+            out.flush();
+            // O CRC não entra no próprio cálculo: é gravado direto no arquivo.
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Lê um snapshot. Os licitantes e os históricos de lances lidos são acrescentados a
+     * bidders e histories, que devem estar vazios.
+     *
+     * @param path      Caminho do snapshot.
+     * @param bidders   Recebe a tabela de licitantes.
+     * @param histories Recebe os históricos de lances, por ID do leilão.
+     * @return O snapshot, ou null se o arquivo não existir.
+     * @throws IOException Se o arquivo existir mas estiver corrompido ou não puder ser lido.
+     */
+    static AuctionStateSnapshot read(Path path, BidderTable bidders, Map<String, BidHistory> histories)
+            throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 20 || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " com tamanho inválido: " + size + " bytes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int contentLength = (int) size - 4;
+            ByteBuffer content = mapped.duplicate().limit(contentLength);
+            CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            if ((int) crc.getValue() != mapped.getInt(contentLength)) {
+                throw new IOException("Snapshot " + path + " corrompido (CRC32 não confere)");
+            }
+            try {
+                int version = content.getInt() == MAGIC ? content.getInt() : -1;
+                if (version != FORMAT_VERSION) {
+                    throw new IOException("Snapshot " + path + " em formato desconhecido (versão " + version
+                            + ", esperada " + FORMAT_VERSION + "). Apague o snapshot e o journal para recomeçar.");
+                }
+                int nextAuctionHandle = content.getInt();
+                int count = content.getInt();
+                List<AuctionItem> auctions = new ArrayList<>(Math.max(0, Math.min(count, 1 << 20)));
+                for (int i = 0; i < count; i++) {
+                    auctions.add(AuctionJournal.readItem(content));
+                }
+                int bidderCount = content.getInt();
+                for (int handle = 0; handle < bidderCount; handle++) {
+                    bidders.restore(handle, AuctionJournal.readString(content), AuctionJournal.readString(content));
+                }
+                int historyCount = content.getInt();
+                for (int i = 0; i < historyCount; i++) {
+                    String auctionId = AuctionJournal.readString(content);
+                    int bids = content.getInt();
+                    BidHistory history = new BidHistory();
+                    for (int j = 0; j < bids; j++) {
+                        long timestamp = content.getLong();
+                        long amount = content.getLong();
+                        int bidder = content.getInt();
+                        if (bidder < 0 || bidder >= bidderCount) {
+                            throw new IOException("Snapshot " + path + " com licitante inválido: " + bidder);
+                        }
+                        history.add(timestamp, amount, bidder);
+                    }
+                    histories.put(auctionId, history);
+                }
+                return new AuctionStateSnapshot(nextAuctionHandle, auctions);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot " + path + " truncado", e);
+            }
+        }
+    }
+}
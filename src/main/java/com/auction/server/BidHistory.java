@@ -0,0 +1,144 @@
+package com.auction.server;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Histórico de lances aceitos de um leilão, em arrays primitivos paralelos (horário, valor em
+ * centavos e handle do licitante na BidderTable) que dobram de tamanho quando enchem: cerca de 20 bytes
+ * por lance, sem um objeto por lance.
+ *
+ * Os lances aceitos de um leilão têm valores estritamente crescentes, então o valor
+ * identifica o lance e ordena o histórico. add() insere na posição do valor e ignora um valor
+ * já presente: dois lances aceitos quase ao mesmo tempo ficam na ordem certa mesmo que
+ * cheguem aqui invertidos, e reaplicar o journal sobre um snapshot não duplica lances.
+ */
+class BidHistory {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] timestamps;
+    private long[] amounts;
+    private int[] bidders;
+    private int size;
+
+    BidHistory() {
+        this(8);
+    }
+
+    private BidHistory(int capacity) {
+        this.timestamps = new long[capacity];
+        this.amounts = new long[capacity];
+        this.bidders = new int[capacity];
+    }
+
+    /**
+     * Um trecho do histórico, copiado.
+     */
+    static final class Slice {
+        final int fromIndex; // Posição do primeiro lance do trecho no histórico
+        final int total;     // Total de lances no histórico quando o trecho foi copiado
+        final long[] timestamps;
+        final long[] amounts;
+        final int[] bidders;
+
+        Slice(int fromIndex, int total, long[] timestamps, long[] amounts, int[] bidders) {
+            this.fromIndex = fromIndex;
+            this.total = total;
+            this.timestamps = timestamps;
+            this.amounts = amounts;
+            this.bidders = bidders;
+        }
+
+        /**
+         * Copia um trecho de um histórico inteiro (all()), com as mesmas regras de
+         * BidHistory.slice(). Usado para os históricos lidos do AuctionArchive.
+         */
+        Slice slice(int fromIndex, int maxEntries) {
+            return copy(timestamps, amounts, bidders, amounts.length, fromIndex, maxEntries);
+        }
+    }
+
+    /**
+     * Registra um lance aceito.
+     *
+     * @param timestampMillis Horário em que o lance foi aceito.
+     * @param amount          Valor do lance, em centavos.
+     * @param bidder          Handle do licitante na BidderTable.
+     * @return true se o lance foi registrado, false se já estava no histórico.
+     */
+    boolean add(long timestampMillis, long amount, int bidder) {
+        lock.lock();
+        try {
+            int position = size;
+            if (position > 0 && amounts[position - 1] >= amount) {
+                // Fora de ordem (ou repetido): procura a posição do valor
+                position = Arrays.binarySearch(amounts, 0, size, amount);
+                if (position >= 0) {
+                    return false;
+                }
+                position = -position - 1;
+            }
+            if (size == amounts.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                bidders = Arrays.copyOf(bidders, capacity);
+            }
+            if (position < size) {
+                System.arraycopy(timestamps, position, timestamps, position + 1, size - position);
+                System.arraycopy(amounts, position, amounts, position + 1, size - position);
+                System.arraycopy(bidders, position, bidders, position + 1, size - position);
+            }
+            timestamps[position] = timestampMillis;
+            amounts[position] = amount;
+            bidders[position] = bidder;
+            size++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Quantos lances o histórico tem.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copia um trecho do histórico, do lance mais antigo para o mais recente.
+     *
+     * @param fromIndex  Posição do primeiro lance; negativo para os últimos maxEntries lances.
+     * @param maxEntries Máximo de lances no trecho.
+     * @return O trecho (vazio se fromIndex passar do fim).
+     */
+    Slice slice(int fromIndex, int maxEntries) {
+        lock.lock();
+        try {
+            return copy(timestamps, amounts, bidders, size, fromIndex, maxEntries);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Slice copy(long[] timestamps, long[] amounts, int[] bidders, int size, int fromIndex,
+                              int maxEntries) {
+        int from = fromIndex < 0 ? Math.max(0, size - maxEntries) : Math.min(fromIndex, size);
+        int to = from + Math.min(maxEntries, size - from);
+        return new Slice(from, size, Arrays.copyOfRange(timestamps, from, to),
+                Arrays.copyOfRange(amounts, from, to), Arrays.copyOfRange(bidders, from, to));
+    }
+
+    /**
+     * @return O histórico inteiro, copiado (para o snapshot).
+     */
+    Slice all() {
+        return slice(0, Integer.MAX_VALUE);
+    }
+}
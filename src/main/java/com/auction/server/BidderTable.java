@@ -0,0 +1,98 @@
+package com.auction.server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tabela de licitantes: troca o ID de cada licitante por um número inteiro (handle)
+ * estável, para que o histórico de lances guarde 4 bytes por lance em vez de referências a
+ * Strings. Os handles começam em 0 e nunca são reutilizados.
+ *
+ * Leituras (idOf, usernameOf) não usam lock: os arrays só são trocados por cópias maiores, e
+ * um handle só é entregue depois que sua posição foi preenchida.
+ */
+class BidderTable {
+
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile String[] ids = new String[64];
+    private volatile String[] usernames = new String[64];
+    private volatile int size;
+
+    /**
+     * Devolve o handle do licitante, criando-o na primeira vez. O nome de usuário registrado
+     * é o mais recente.
+     *
+     * @param bidderId       ID do licitante.
+     * @param bidderUsername Nome de usuário do licitante.
+     * @return O handle.
+     */
+    int intern(String bidderId, String bidderUsername) {
+        Integer handle = handles.get(bidderId);
+        if (handle != null && (bidderUsername == null || bidderUsername.equals(usernames[handle]))) {
+            return handle;
+        }
+        lock.lock();
+        try {
+            handle = handles.get(bidderId);
+            if (handle == null) {
+                handle = append(bidderId, bidderUsername);
+                handles.put(bidderId, handle);
+            } else {
+                usernames[handle] = bidderUsername; // O usuário trocou de nome
+            }
+            return handle;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recria um licitante lido de um snapshot, com o mesmo handle que tinha.
+     *
+     * @param handle         O handle gravado; deve ser igual a size().
+     * @param bidderId       ID do licitante.
+     * @param bidderUsername Nome de usuário do licitante.
+     */
+    void restore(int handle, String bidderId, String bidderUsername) {
+        lock.lock();
+        try {
+            if (handle != size) {
+                throw new IllegalStateException("Handle de licitante fora de ordem: " + handle + " (esperado " + size + ")");
+            }
+            handles.put(bidderId, append(bidderId, bidderUsername));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Chamado com o lock.
+    private int append(String bidderId, String bidderUsername) {
+        int handle = size;
+        if (handle == ids.length) {
+            ids = Arrays.copyOf(ids, handle * 2);
+            usernames = Arrays.copyOf(usernames, handle * 2);
+        }
+        ids[handle] = bidderId;
+        usernames[handle] = bidderUsername;
+        size = handle + 1; // Publica a posição preenchida
+        return handle;
+    }
+
+    /**
+     * @return Quantos licitantes a tabela tem.
+     */
+    int size() {
+        return size;
+    }
+
+    String idOf(int handle) {
+        return ids[handle];
+    }
+
+    String usernameOf(int handle) {
+        return usernames[handle];
+    }
+}
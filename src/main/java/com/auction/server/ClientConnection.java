@@ -0,0 +1,54 @@
+package com.auction.server;
+
+import com.auction.common.Message;
+
+/**
+ * Representa a conexão de um cliente com o servidor, independente do transporte usado
+ * (uma thread por cliente em ClientHandler, ou event loop NIO em NioClientConnection).
+ * O AuctionServer só conversa com os clientes através desta interface.
+ */
+public interface ClientConnection {
+
+    String getUserId();
+
+    void setUserId(String userId);
+
+    String getUsername();
+
+    void setUsername(String username);
+
+    /**
+     * @return A versão de protocolo negociada no LOGIN (Constants.PROTOCOL_LEGACY até lá).
+     *         Define o formato em que as mensagens são escritas para este cliente.
+     */
+    int getProtocolVersion();
+
+    void setProtocolVersion(int protocolVersion);
+
+    /**
+     * @return O endereço IP remoto da conexão, usado quando o cliente não informa o próprio IP.
+     */
+    String getRemoteAddress();
+
+    /**
+     * Envia uma mensagem para o cliente associado a esta conexão.
+     *
+     * @param message A Message a ser enviada.
+     */
+    default void sendMessage(Message message) {
+        send(new OutboundMessage(message));
+    }
+
+    /**
+     * Envia uma mensagem possivelmente compartilhada com outras conexões (broadcast),
+     * reaproveitando os bytes já codificados no formato deste cliente.
+     *
+     * @param message A OutboundMessage a ser enviada.
+     */
+    void send(OutboundMessage message);
+
+    /**
+     * Fecha a conexão e notifica o servidor para remover o cliente.
+     */
+    void closeConnection();
+}
@@ -1,26 +1,36 @@
 package com.auction.server;
 
 import com.auction.common.*;
+import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Lida com a comunicação de um cliente individual no servidor de leilões.
  * Cada cliente conectado terá uma instância de ClientHandler rodando em sua
- * própria thread.
+ * própria thread (transporte BLOCKING), mais uma thread escritora que drena
+ * a fila de saída do cliente.
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, ClientConnection {
 
     private Socket clientSocket;
     private AuctionServer server;
-    private ObjectInputStream in;
-    private ObjectOutputStream out;
-    private String userId;
-    private String username;
+    private MessageInput in;
+    private BufferedOutputStream out; // Recebe as mensagens já codificadas (OutboundMessage)
+    private volatile String userId;
+    private volatile String username;
+    private volatile int protocolVersion = Constants.PROTOCOL_LEGACY;
+
+    // Mensagens aguardando envio. Broadcasts e respostas apenas enfileiram; somente a
+    // thread escritora deste handler escreve no socket, então um cliente lento não
+    // bloqueia quem envia.
+    private final OutboundQueue outbound =
+            new OutboundQueue(ServerConfig.OUTBOUND_QUEUE_CAPACITY, ServerConfig.OUTBOUND_OVERFLOW);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     /**
      * Construtor para o ClientHandler.
@@ -39,27 +49,36 @@ public class ClientHandler implements Runnable {
             // Se a ordem for invertida, pode ocorrer um deadlock pois ambos os lados
             // esperariam
             // o cabeçalho do stream do outro para continuar.
-            this.out = new ObjectOutputStream(clientSocket.getOutputStream());
-            this.in = new ObjectInputStream(clientSocket.getInputStream());
+            // O buffer permite que a thread escritora agrupe várias mensagens em uma única
+            // escrita no socket; o cabeçalho precisa ser enviado imediatamente.
+            // Depois do cabeçalho, o ObjectOutputStream não é mais usado: as mensagens já
+            // chegam codificadas e autocontidas (ver SerializedFrames).
+            this.out = new BufferedOutputStream(clientSocket.getOutputStream());
+            new ObjectOutputStream(out).flush();
+            this.in = new MessageInput(clientSocket.getInputStream());
         } catch (IOException e) {
-            System.err.println(
-                    "Erro ao criar streams para o cliente " + clientSocket.getInetAddress() + ": " + e.getMessage());
+            Log.log(Log.Level.WARN, "Erro ao criar streams para o cliente {}: {}", clientSocket.getInetAddress(),
+                    e.getMessage());
             closeConnection();
         }
     }
 
+    @Override
     public String getUserId() {
         return userId;
     }
 
+    @Override
     public void setUserId(String userId) {
         this.userId = userId;
     }
 
+    @Override
     public String getUsername() {
         return username;
     }
 
+    @Override
     public void setUsername(String username) {
         this.username = username;
     }
@@ -68,6 +87,21 @@ public class ClientHandler implements Runnable {
         return clientSocket;
     } // Permite ao servidor obter IP do cliente
 
+    @Override
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    @Override
+    public void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return clientSocket.getInetAddress().getHostAddress();
+    }
+
     /**
      * O método run() contém a lógica principal da thread do ClientHandler.
      * Ele lê mensagens do cliente e as encaminha para o AuctionServer para
@@ -75,93 +109,116 @@ public class ClientHandler implements Runnable {
      */
     @Override
     public void run() {
+        if (in == null) {
+            return; // Os streams não puderam ser criados e a conexão já foi fechada
+        }
+        ServerConfig.THREADS.start(this::writeLoop, "client-writer-" + clientSocket.getRemoteSocketAddress());
+        boolean drainBeforeClose = false;
         try {
             // A primeira mensagem de um cliente deve ser um LOGIN
-            Message firstMessage = (Message) in.readObject();
-            if (firstMessage.getType() == MessageType.LOGIN) {
-                LoginMessage loginMsg = (LoginMessage) firstMessage;
-                // Configura o ID e username do cliente neste handler
-                this.setUserId(loginMsg.getSenderId());
-                this.setUsername(loginMsg.getUsername());
-                // Prefer the IP address provided by the client in the LoginMessage if present.
-                String reportedIp = loginMsg instanceof com.auction.common.LoginMessage
-                        && ((com.auction.common.LoginMessage) loginMsg).getIpAddress() != null
-                                ? ((com.auction.common.LoginMessage) loginMsg).getIpAddress()
-                                : clientSocket.getInetAddress().getHostAddress();
-                server.addClient(userId, this, reportedIp, loginMsg.getP2pPort());
-                // Passa a mensagem de login para o servidor lidar, incluindo o registro do
-                // cliente
-                server.handleMessage(loginMsg, this);
-            } else {
-                System.out.println("Cliente " + clientSocket.getInetAddress() + " enviou " + firstMessage.getType()
-                        + " antes de LOGIN. Fechando conexão.");
-                // Envia uma resposta de falha e fecha a conexão
-                sendMessage(new LoginResponseMessage("server", false, "Por favor, faça login primeiro.", null, null));
+            Message firstMessage = in.readMessage();
+            // O servidor registra o cliente e responde ao LOGIN; se não for um LOGIN,
+            // já enviou a resposta de falha e a conexão deve ser fechada.
+            if (!server.handleFirstMessage(firstMessage, this)) {
+                drainBeforeClose = true; // A resposta de falha precisa chegar ao cliente
                 return; // Encerra a thread sem entrar no loop de leitura
             }
 
             // Loop principal para ler mensagens do cliente
             while (clientSocket.isConnected()) {
-                Message message = (Message) in.readObject();
+                Message message = in.readMessage();
                 // Encaminha a mensagem para o servidor principal processar
-                server.handleMessage(message, this);
+                server.receive(message, this);
             }
 
         } catch (EOFException e) {
             // Cliente fechou a conexão de forma limpa
-            System.out
-                    .println("Cliente " + (userId != null ? userId : clientSocket.getInetAddress()) + " desconectou.");
+            Log.log(Log.Level.INFO, "Cliente {} desconectou.", userId != null ? userId : clientSocket.getInetAddress());
         } catch (SocketException e) {
             // Conexão perdida (e.g., cliente desligou, rede caiu)
-            System.out.println("Conexão perdida com o cliente "
-                    + (userId != null ? userId : clientSocket.getInetAddress()) + ": " + e.getMessage());
+            Log.log(Log.Level.INFO, "Conexão perdida com o cliente {}: {}",
+                    userId != null ? userId : clientSocket.getInetAddress(), e.getMessage());
         } catch (IOException | ClassNotFoundException e) {
             // Outros erros de I/O ou desserialização
-            System.err.println("Erro na comunicação com o cliente "
-                    + (userId != null ? userId : clientSocket.getInetAddress()) + ": " + e.getMessage());
+            Log.log(Log.Level.WARN, "Erro na comunicação com o cliente {}: {}",
+                    userId != null ? userId : clientSocket.getInetAddress(), e.getMessage());
         } finally {
-            closeConnection(); // Garante que os recursos sejam liberados
+            if (drainBeforeClose) {
+                outbound.close(); // A thread escritora envia o que falta e fecha a conexão
+            } else {
+                closeConnection(); // Garante que os recursos sejam liberados
+            }
         }
     }
 
     /**
-     * Envia uma mensagem para o cliente associado a este handler.
+     * Enfileira uma mensagem para o cliente associado a este handler. Não bloqueia:
+     * a escrita no socket é feita pela thread escritora. Se a fila estourar e a política
+     * for desconectar clientes lentos, a conexão é fechada.
      *
-     * @param message A Message a ser enviada.
+     * @param message A OutboundMessage a ser enviada.
      */
-    public void sendMessage(Message message) {
+    @Override
+    public void send(OutboundMessage message) {
+        if (!outbound.offer(message)) {
+            Log.log(Log.Level.INFO, "Cliente {} não está consumindo suas mensagens (fila de saída cheia). Desconectando.",
+                    userId != null ? userId : clientSocket.getInetAddress());
+            closeConnection();
+        }
+    }
+
+    /**
+     * Laço da thread escritora: retira mensagens da fila de saída e escreve seus bytes no
+     * socket, no formato negociado com o cliente. Mensagens de broadcast já chegam
+     * codificadas; aqui só há cópia de bytes.
+     * O flush só é feito quando a fila esvazia, agrupando rajadas de mensagens.
+     */
+    private void writeLoop() {
         try {
-            // Reset the stream to clear the object cache so subsequent
-            // writes of the same object will be fully serialized again.
-            out.reset();
-            out.writeObject(message);
-            out.flush(); // Garante que a mensagem seja enviada imediatamente
+            OutboundMessage message;
+            while ((message = outbound.take()) != null) {
+                byte[] bytes = message.encodedFor(protocolVersion);
+                out.write(bytes);
+                ServerMetrics.recordBytesSent(bytes.length);
+                if (outbound.isEmpty()) {
+                    out.flush(); // Garante que a mensagem seja enviada imediatamente
+                }
+            }
+            out.flush();
         } catch (IOException e) {
-            System.err.println("Erro ao enviar mensagem para o cliente "
-                    + (userId != null ? userId : clientSocket.getInetAddress()) + ": " + e.getMessage());
+            if (!closed.get()) {
+                Log.log(Log.Level.WARN, "Erro ao enviar mensagem para o cliente {}: {}",
+                        userId != null ? userId : clientSocket.getInetAddress(), e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restaura o estado de interrupção
+        } finally {
             closeConnection(); // A conexão pode ter caído, então tenta fechá-la.
         }
     }
 
     /**
-     * Fecha os streams e o socket deste handler, e notifica o servidor.
+     * Fecha o socket deste handler, descarta as mensagens ainda não enviadas e notifica o servidor.
      */
+    @Override
     public void closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return; // Já fechada pela thread leitora ou pela escritora
+        }
+        outbound.discard(); // Acorda a thread escritora, que encerra em seguida
         try {
             if (userId != null) {
                 server.removeClient(userId); // Notifica o servidor que este cliente se desconectou
             }
-            if (in != null)
-                in.close();
-            if (out != null)
-                out.close();
+            // Fechar o socket fecha os dois streams e desbloqueia leituras e escritas pendentes;
+            // fechar o ObjectOutputStream antes tentaria um flush, que travaria em um cliente parado.
             if (clientSocket != null)
                 clientSocket.close();
-            System.out.println(
-                    "Conexão com cliente " + (userId != null ? userId : clientSocket.getInetAddress()) + " fechada.");
+            Log.log(Log.Level.INFO, "Conexão com cliente {} fechada.",
+                    userId != null ? userId : clientSocket.getInetAddress());
         } catch (IOException e) {
-            System.err.println("Erro ao fechar recursos do cliente "
-                    + (userId != null ? userId : clientSocket.getInetAddress()) + ": " + e.getMessage());
+            Log.log(Log.Level.WARN, "Erro ao fechar recursos do cliente {}: {}",
+                    userId != null ? userId : clientSocket.getInetAddress(), e.getMessage());
         }
     }
 }
\ No newline at end of file
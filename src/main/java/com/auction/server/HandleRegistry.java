@@ -0,0 +1,179 @@
+package com.auction.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro bidirecional entre IDs (UUIDs em texto) e handles inteiros densos, atribuídos
+ * pelo servidor (usuários no LOGIN, leilões no CREATE_AUCTION).
+ *
+ * O caminho quente usa o handle: a busca por handle é um acesso a array, sem calcular hash
+ * nem comparar os 36 caracteres de um UUID decodificado da rede. O ID só é consultado na
+ * borda (mensagens que ainda o trazem, exibição, journal).
+ *
+ * Os handles começam em 1 (0 significa desconhecido) e nunca são reutilizados; o array
+ * cresce com o maior handle atribuído. Leituras não usam lock: as posições são de um
+ * AtomicReferenceArray, trocado por uma cópia maior sob o lock quando falta espaço.
+ *
+ * @param <T> O objeto registrado (AuctionItem, UserInfo).
+ */
+final class HandleRegistry<T> {
+
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger(1);
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile AtomicReferenceArray<Entry<T>> entries = new AtomicReferenceArray<>(64);
+
+    private static final class Entry<T> {
+        final String id;
+        final T value;
+
+        Entry(String id, T value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Reserva o próximo handle, sem registrar nada ainda. Útil quando o handle precisa ser
+     * conhecido antes de o objeto ficar visível (leilão em criação).
+     *
+     * @return O handle reservado.
+     */
+    int reserve() {
+        return nextHandle.getAndIncrement();
+    }
+
+    /**
+     * Registra (ou substitui) o objeto de um handle já reservado, ou de um handle lido do
+     * journal ou de um snapshot. Se o ID já tinha outro handle, o antigo deixa de valer.
+     *
+     * @param handle O handle (maior que zero).
+     * @param id     O ID do objeto.
+     * @param value  O objeto.
+     */
+    void put(int handle, String id, T value) {
+        if (handle <= 0) {
+            throw new IllegalArgumentException("Handle inválido: " + handle);
+        }
+        lock.lock();
+        try {
+            AtomicReferenceArray<Entry<T>> current = entries;
+            if (handle >= current.length()) {
+                AtomicReferenceArray<Entry<T>> grown = new AtomicReferenceArray<>(
+                        Math.max(current.length() * 2, Integer.highestOneBit(handle) << 1));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.lazySet(i, current.get(i));
+                }
+                entries = grown; // A escrita volátil publica as posições copiadas
+                current = grown;
+            }
+            current.set(handle, new Entry<>(id, value));
+            Integer previous = handles.put(id, handle);
+            if (previous != null && previous != handle) {
+                current.set(previous, null);
+            }
+            nextHandle.accumulateAndGet(handle + 1, Math::max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove o objeto registrado com o ID. O handle não é reutilizado.
+     *
+     * @param id O ID do objeto.
+     * @return O objeto removido, ou null se o ID não estava registrado.
+     */
+    T remove(String id) {
+        lock.lock();
+        try {
+            Integer handle = handles.remove(id);
+            if (handle == null) {
+                return null;
+            }
+            return entries.getAndSet(handle, null).value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return O objeto com o handle, ou null se o handle for desconhecido.
+     */
+    T get(int handle) {
+        Entry<T> entry = entryOf(handle);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * @return O objeto com o ID, ou null se o ID for desconhecido.
+     */
+    T get(String id) {
+        return get(handleOf(id));
+    }
+
+    /**
+     * @return O handle do ID, ou 0 se o ID for desconhecido.
+     */
+    int handleOf(String id) {
+        Integer handle = id != null ? handles.get(id) : null;
+        return handle != null ? handle : 0;
+    }
+
+    /**
+     * @return O ID do handle, ou null se o handle for desconhecido.
+     */
+    String idOf(int handle) {
+        Entry<T> entry = entryOf(handle);
+        return entry != null ? entry.id : null;
+    }
+
+    /**
+     * Garante que os próximos handles atribuídos sejam ao menos nextHandle, como os de um
+     * snapshot que já os tinha entregue.
+     *
+     * @param nextHandle O menor próximo handle.
+     */
+    void advanceTo(int nextHandle) {
+        this.nextHandle.accumulateAndGet(nextHandle, Math::max);
+    }
+
+    /**
+     * @return O próximo handle a ser atribuído, para ser gravado em um snapshot.
+     */
+    int nextHandle() {
+        return nextHandle.get();
+    }
+
+    /**
+     * @return Quantos objetos estão registrados.
+     */
+    int size() {
+        return handles.size();
+    }
+
+    /**
+     * @return Uma cópia dos objetos registrados, sem ordem definida.
+     */
+    List<T> values() {
+        List<T> values = new ArrayList<>(handles.size());
+        for (Integer handle : handles.values()) {
+            T value = get(handle);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private Entry<T> entryOf(int handle) {
+        AtomicReferenceArray<Entry<T>> current = entries;
+        return handle > 0 && handle < current.length() ? current.get(handle) : null;
+    }
+}
@@ -0,0 +1,157 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer de roda com hash (hashed wheel) para um grande número de prazos que quase nunca
+ * vencem, como os de inatividade dos clientes.
+ *
+ * A roda tem um número fixo de posições; cada tick avança uma posição e executa os prazos
+ * vencidos dela. Agendar ou cancelar custa O(1), independente de quantos prazos existem, e
+ * cada tick só percorre uma posição. Em troca, a precisão é a duração de um tick: um prazo
+ * dispara até um tick depois do horário pedido.
+ *
+ * Novos prazos entram por uma fila concorrente e só a thread da roda mexe nas posições.
+ * As tarefas executam na própria thread da roda e devem ser curtas.
+ */
+final class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startNanos;
+    private long tick; // Acessado apenas pela thread da roda
+
+    /**
+     * Um prazo agendado, que pode ser cancelado.
+     */
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos; // Relativo a startNanos
+        private long remainingRounds;     // Voltas completas da roda que ainda faltam
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancela o prazo. A entrada é descartada quando a roda passar pela sua posição.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Cria e inicia o timer.
+     *
+     * @param threadName Nome da thread da roda.
+     * @param tick       Duração de um tick (a precisão do timer).
+     * @param unit       Unidade de tick.
+     * @param wheelSize  Número de posições da roda; arredondado para a próxima potência de 2.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HashedWheelTimer(String threadName, long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Agenda uma tarefa. Pode ser chamado de qualquer thread.
+     *
+     * @param task  A tarefa a executar no vencimento.
+     * @param delay Atraso a partir de agora.
+     * @param unit  Unidade do atraso.
+     * @return O prazo, que pode ser cancelado.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay)));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Para a thread da roda. Prazos ainda não vencidos são descartados.
+     */
+    void stop() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long wait = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    // Coloca os prazos recém-agendados nas suas posições da roda.
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max(timeout.deadlineNanos / tickNanos, tick); // Prazo já vencido: este tick
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        List<Timeout> expired = null;
+        for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+        if (expired == null) {
+            return;
+        }
+        // Executa fora da iteração: a tarefa pode agendar novos prazos.
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                Log.log(Log.Level.ERROR, "Erro em tarefa do {}: {}", worker.getName(), e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+import com.auction.common.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pipeline das mensagens recebidas dos clientes, no estilo do Disruptor: um anel de eventos
+ * pré-alocados percorrido por uma sequência de estágios, cada um na sua própria thread.
+ *
+ * As threads dos transportes (produtores) reservam a próxima posição do anel com um
+ * incremento atômico, preenchem o evento e o publicam. Cada estágio tem um contador de
+ * sequência: ele processa, em lote, todos os eventos até onde o estágio anterior já chegou
+ * (ou, no primeiro, até onde os eventos já foram publicados) e então avança o próprio
+ * contador, liberando-os para o próximo. Não há lock entre os estágios; um produtor só
+ * espera quando o anel dá a volta e alcança o último estágio.
+ *
+ * Os eventos são reaproveitados: o caminho de uma mensagem não aloca nada além da própria
+ * mensagem decodificada. Os eventos de uma mesma conexão são processados na ordem de chegada.
+ */
+final class InboundPipeline {
+
+    // Tentativas antes de ceder a CPU e antes de estacionar a thread sem trabalho.
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    // Espera máxima de um estágio estacionado; normalmente ele é acordado antes pelo anterior.
+    private static final long PARK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Uma posição do anel. Preenchida pelo produtor, lida (e eventualmente marcada) pelos
+     * estágios, e limpa depois do último.
+     */
+    static final class Event {
+        Message message;
+        ClientConnection sender;
+        boolean dropped; // Descartado por um estágio; os seguintes devem ignorá-lo
+
+        private void clear() {
+            message = null;
+            sender = null;
+            dropped = false;
+        }
+    }
+
+    /**
+     * Um estágio do pipeline. Executado sempre pela mesma thread, então não precisa de
+     * sincronização para o próprio estado.
+     */
+    interface Stage {
+        /**
+         * Processa um evento.
+         *
+         * @param event O evento.
+         */
+        void onEvent(Event event);
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    private final int indexShift;
+    // Volta do anel em que cada posição foi publicada pela última vez (-1: nunca).
+    private final AtomicIntegerArray published;
+    // Última sequência reservada por um produtor.
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final Worker[] workers;
+
+    /**
+     * Cria e inicia o pipeline.
+     *
+     * @param name   Prefixo do nome das threads dos estágios.
+     * @param size   Número de posições do anel; arredondado para a próxima potência de 2.
+     * @param stages Os estágios, na ordem em que cada evento os percorre.
+     */
+    InboundPipeline(String name, int size, List<NamedStage> stages) {
+        int capacity = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        this.ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.workers = new Worker[stages.size()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(stages.get(i), i > 0 ? workers[i - 1] : null, i == workers.length - 1);
+        }
+        for (int i = 0; i < workers.length; i++) {
+            Thread thread = new Thread(workers[i]::run, name + "-" + stages.get(i).name);
+            thread.setDaemon(true);
+            workers[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Um estágio e o nome usado na thread e no log.
+     */
+    static final class NamedStage {
+        final String name;
+        final Stage stage;
+
+        NamedStage(String name, Stage stage) {
+            this.name = name;
+            this.stage = stage;
+        }
+    }
+
+    /**
+     * @return O número de posições do anel.
+     */
+    int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Publica uma mensagem recebida. Pode ser chamado de qualquer thread; só espera se o
+     * anel estiver cheio, o que freia a leitura dos clientes até o pipeline alcançar.
+     *
+     * @param message A mensagem decodificada.
+     * @param sender  A conexão que a enviou.
+     */
+    void publish(Message message, ClientConnection sender) {
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        Worker last = workers[workers.length - 1];
+        int tries = 0;
+        while (wrapPoint > last.sequence.get()) {
+            tries = backOff(tries); // Anel cheio: espera o último estágio liberar a posição
+        }
+        Event event = ring[(int) (sequence & mask)];
+        event.message = message;
+        event.sender = sender;
+        published.set((int) (sequence & mask), (int) (sequence >>> indexShift));
+        workers[0].wakeUp();
+    }
+
+    // Maior sequência publicada, sem lacunas, a partir de next (next - 1 se next ainda não foi).
+    private long highestPublished(long next, long claimedUpTo) {
+        for (long sequence = next; sequence <= claimedUpTo; sequence++) {
+            if (published.get((int) (sequence & mask)) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return claimedUpTo;
+    }
+
+    private static int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(1_000);
+        }
+        return tries + 1;
+    }
+
+    /**
+     * A thread de um estágio e seu contador de sequência.
+     */
+    private final class Worker {
+        final String name;
+        final Stage stage;
+        final Worker upstream;  // null no primeiro estágio: lê o que os produtores publicaram
+        final boolean last;     // O último estágio limpa os eventos para reaproveitamento
+        final AtomicLong sequence = new AtomicLong(-1); // Último evento processado
+        volatile boolean parked;
+        Thread thread;
+        Worker downstream;
+
+        Worker(NamedStage stage, Worker upstream, boolean last) {
+            this.name = stage.name;
+            this.stage = stage.stage;
+            this.upstream = upstream;
+            this.last = last;
+            if (upstream != null) {
+                upstream.downstream = this;
+            }
+        }
+
+        private long available(long next) {
+            return upstream == null ? highestPublished(next, claimed.get()) : upstream.sequence.get();
+        }
+
+        void wakeUp() {
+            if (parked) {
+                parked = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void run() {
+            long next = 0;
+            int tries = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                long available = available(next);
+                if (available < next) {
+                    if (tries < YIELD_TRIES) {
+                        tries = backOff(tries);
+                    } else {
+                        // Sem trabalho: estaciona. O aviso é dado antes de conferir de novo, então
+                        // uma publicação entre a conferência e o park() sempre acorda esta thread.
+                        parked = true;
+                        if (available(next) < next) {
+                            LockSupport.parkNanos(this, PARK_TIMEOUT_NANOS);
+                        }
+                        parked = false;
+                    }
+                    continue;
+                }
+                tries = 0;
+                for (long sequence = next; sequence <= available; sequence++) {
+                    Event event = ring[(int) (sequence & mask)];
+                    try {
+                        stage.onEvent(event);
+                    } catch (RuntimeException e) {
+                        Log.log(Log.Level.ERROR, "Erro no estágio {} do pipeline: {}", name, e.toString());
+                    }
+                    if (last) {
+                        event.clear();
+                    }
+                }
+                sequence.set(available);
+                if (last) {
+                    ServerMetrics.recordPipelineBatch(available - next + 1);
+                }
+                next = available + 1;
+                if (downstream != null) {
+                    downstream.wakeUp();
+                }
+            }
+        }
+    }
+}
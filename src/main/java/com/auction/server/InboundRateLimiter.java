@@ -0,0 +1,92 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+import com.auction.common.MessageType;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Estágio do InboundPipeline que limita quantas mensagens cada conexão pode enviar por
+ * segundo. As excedentes são marcadas como descartadas e não chegam ao handleMessage.
+ * KEEP_ALIVE e LOGOUT nunca são descartados.
+ *
+ * Usa janelas fixas de um segundo. Como o estágio tem uma única thread, os contadores são
+ * campos comuns em um HashMap; ao virar a janela eles são zerados no lugar, e os de
+ * conexões que já saíram são removidos.
+ */
+class InboundRateLimiter implements InboundPipeline.Stage {
+
+    // Contador global de mensagens descartadas por excesso.
+    private static final LongAdder DROPPED_MESSAGES = new LongAdder();
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int maxPerSecond;
+    private final Predicate<ClientConnection> connected;
+    private final Map<ClientConnection, Counter> counters = new HashMap<>();
+    private long windowStart = System.nanoTime();
+
+    private static final class Counter {
+        int count;
+        boolean warned; // Já avisou no log nesta janela
+    }
+
+    /**
+     * Construtor para o InboundRateLimiter.
+     *
+     * @param maxPerSecond Máximo de mensagens por conexão por segundo (maior que zero).
+     * @param connected    Diz se uma conexão ainda está logada, para descartar seus contadores.
+     */
+    InboundRateLimiter(int maxPerSecond, Predicate<ClientConnection> connected) {
+        this.maxPerSecond = maxPerSecond;
+        this.connected = connected;
+    }
+
+    /**
+     * @return Quantas mensagens foram descartadas por exceder o limite.
+     */
+    static long getDroppedMessages() {
+        return DROPPED_MESSAGES.sum();
+    }
+
+    @Override
+    public void onEvent(InboundPipeline.Event event) {
+        MessageType type = event.message.getType();
+        if (type == MessageType.KEEP_ALIVE || type == MessageType.LOGOUT) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            startWindow(now);
+        }
+        Counter counter = counters.computeIfAbsent(event.sender, connection -> new Counter());
+        if (++counter.count <= maxPerSecond) {
+            return;
+        }
+        event.dropped = true;
+        DROPPED_MESSAGES.increment();
+        if (!counter.warned) {
+            counter.warned = true;
+            Log.log(Log.Level.INFO, "Cliente {} excedeu {n} mensagens por segundo. Descartando as excedentes.",
+                    event.sender.getUserId(), maxPerSecond);
+        }
+    }
+
+    private void startWindow(long now) {
+        windowStart = now;
+        for (Iterator<Map.Entry<ClientConnection, Counter>> it = counters.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ClientConnection, Counter> entry = it.next();
+            if (!connected.test(entry.getKey())) {
+                it.remove();
+            } else {
+                entry.getValue().count = 0;
+                entry.getValue().warned = false;
+            }
+        }
+    }
+}
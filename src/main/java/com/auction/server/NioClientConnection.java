@@ -0,0 +1,258 @@
+package com.auction.server;
+
+import com.auction.common.Constants;
+import com.auction.common.Log;
+import com.auction.common.Message;
+import com.auction.common.MessageStreamDecoder;
+import com.auction.common.SerializedFrames;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão de um cliente atendida por um NioEventLoop. Fala o mesmo protocolo do
+ * ClientHandler (stream de serialização Java, ou BinaryCodec se negociado no LOGIN),
+ * portanto os clientes existentes funcionam sem alterações; a diferença é que nenhuma
+ * thread fica bloqueada por conexão.
+ *
+ * Leitura e escrita no canal acontecem sempre na thread do loop. sendMessage() pode ser
+ * chamado de qualquer thread: apenas enfileira a mensagem na fila de saída limitada e pede
+ * ao loop para escrevê-la. Se ainda não estiver codificada (respostas individuais), a
+ * mensagem é codificada no loop, no momento da escrita.
+ */
+class NioClientConnection implements ClientConnection {
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final AuctionServer server;
+    private final String remoteAddress;
+    private final MessageStreamDecoder decoder = new MessageStreamDecoder();
+
+    private final OutboundQueue outbound =
+            new OutboundQueue(ServerConfig.OUTBOUND_QUEUE_CAPACITY, ServerConfig.OUTBOUND_OVERFLOW);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private SelectionKey key;    // Acessada apenas pela thread do loop
+    private ByteBuffer inFlight; // Mensagem já serializada e parcialmente escrita (thread do loop)
+    private volatile String userId;
+    private volatile String username;
+    private volatile int protocolVersion = Constants.PROTOCOL_LEGACY;
+
+    /**
+     * Construtor para o NioClientConnection.
+     *
+     * @param channel O canal não bloqueante do cliente.
+     * @param loop    O event loop dono deste canal.
+     * @param server  A instância do AuctionServer para interagir com a lógica central.
+     */
+    NioClientConnection(SocketChannel channel, NioEventLoop loop, AuctionServer server) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+        String address;
+        try {
+            address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        } catch (IOException | NullPointerException e) {
+            address = "desconhecido";
+        }
+        this.remoteAddress = address;
+    }
+
+    @Override
+    public String getUserId() {
+        return userId;
+    }
+
+    @Override
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    @Override
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    @Override
+    public void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Chamado pelo loop após o registro no Selector. O cliente cria seu ObjectInputStream
+     * logo após conectar e fica bloqueado até receber o cabeçalho do stream, por isso ele
+     * é a primeira coisa enviada.
+     */
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+        this.inFlight = ByteBuffer.wrap(SerializedFrames.STREAM_HEADER);
+        flushOutbound();
+    }
+
+    /**
+     * Lê os bytes disponíveis no canal e despacha todas as mensagens completas.
+     * Executado na thread do loop.
+     *
+     * @param readBuffer Buffer de leitura compartilhado pelo loop.
+     */
+    void onReadable(ByteBuffer readBuffer) {
+        try {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                Log.log(Log.Level.INFO, "Cliente {} desconectou.", userId != null ? userId : remoteAddress);
+                closeConnection();
+                return;
+            }
+            readBuffer.flip();
+            decoder.append(readBuffer);
+
+            Message message;
+            while (!closed.get() && (message = decoder.next()) != null) {
+                if (userId == null) {
+                    // A primeira mensagem de um cliente deve ser um LOGIN
+                    if (!server.handleFirstMessage(message, this)) {
+                        closeConnection();
+                    }
+                } else {
+                    server.receive(message, this);
+                }
+            }
+        } catch (IOException e) {
+            Log.log(Log.Level.WARN, "Erro na comunicação com o cliente {}: {}", userId != null ? userId : remoteAddress,
+                    e.getMessage());
+            closeConnection();
+        }
+    }
+
+    /**
+     * Envia uma mensagem para o cliente. Apenas enfileira; a escrita no canal é feita
+     * pelo event loop. Se a fila estourar e a política for desconectar clientes lentos,
+     * a conexão é fechada.
+     *
+     * @param message A OutboundMessage a ser enviada.
+     */
+    @Override
+    public void send(OutboundMessage message) {
+        if (closed.get()) {
+            return;
+        }
+        if (!outbound.offer(message)) {
+            Log.log(Log.Level.INFO, "Cliente {} não está consumindo suas mensagens (fila de saída cheia). Desconectando.",
+                    userId != null ? userId : remoteAddress);
+            closeConnection();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flushOutbound);
+        }
+    }
+
+    /**
+     * Escreve no canal a mensagem em andamento e as seguintes da fila, até esvaziá-la ou
+     * até o socket não aceitar mais bytes. Executado na thread do loop.
+     *
+     * @return true se tudo foi escrito, false se o socket encheu.
+     */
+    private boolean writePending() throws IOException {
+        while (true) {
+            if (inFlight == null) {
+                OutboundMessage next = outbound.poll();
+                if (next == null) {
+                    return true;
+                }
+                // Os bytes podem ser compartilhados com outras conexões (broadcast); o
+                // ByteBuffer é só uma visão própria desta conexão sobre eles.
+                inFlight = ByteBuffer.wrap(next.encodedFor(protocolVersion));
+            }
+            ServerMetrics.recordBytesSent(channel.write(inFlight));
+            if (inFlight.hasRemaining()) {
+                return false;
+            }
+            inFlight = null;
+        }
+    }
+
+    /**
+     * Escreve no canal tudo o que couber do que está enfileirado. Se o buffer do socket
+     * encher, passa a aguardar OP_WRITE em vez de bloquear. Executado na thread do loop.
+     */
+    void flushOutbound() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (!writePending()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return; // Continua quando o socket aceitar mais bytes
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                flushScheduled.set(false);
+                // Outra thread pode ter enfileirado algo entre o último poll e o set(false).
+                if (outbound.isEmpty() || !flushScheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Log.log(Log.Level.WARN, "Erro ao enviar mensagem para o cliente {}: {}",
+                    userId != null ? userId : remoteAddress, e.getMessage());
+            closeConnection();
+        }
+    }
+
+    /**
+     * Fecha o canal deste cliente e notifica o servidor. Pode ser chamado de qualquer
+     * thread; o que já estava enfileirado é escrito uma última vez antes do fechamento.
+     */
+    @Override
+    public void closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (userId != null) {
+            server.removeClient(userId); // Notifica o servidor que este cliente se desconectou
+        }
+        loop.execute(() -> {
+            try {
+                // Não bloqueia o loop por um cliente que não lê: uma única tentativa.
+                if (channel.isOpen()) {
+                    writePending();
+                }
+            } catch (IOException e) {
+                // A conexão já caiu; segue com o fechamento.
+            }
+            outbound.discard();
+            try {
+                if (key != null) {
+                    key.cancel();
+                }
+                channel.close();
+                Log.log(Log.Level.INFO, "Conexão com cliente {} fechada.", userId != null ? userId : remoteAddress);
+            } catch (IOException e) {
+                Log.log(Log.Level.WARN, "Erro ao fechar recursos do cliente {}: {}",
+                        userId != null ? userId : remoteAddress, e.getMessage());
+            }
+        });
+    }
+}
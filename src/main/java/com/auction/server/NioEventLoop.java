@@ -0,0 +1,124 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop do transporte NIO. Cada instância roda em sua própria thread com um Selector
+ * e atende um subconjunto das conexões: lê, decodifica e despacha as mensagens para o
+ * AuctionServer, e escreve as mensagens enfileiradas por outras threads.
+ *
+ * Todo acesso a SelectionKey e SocketChannel acontece na thread do loop; outras threads
+ * pedem trabalho através de {@link #execute(Runnable)}.
+ */
+class NioEventLoop implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final AuctionServer server;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    // Buffer de leitura compartilhado por todas as conexões deste loop; os bytes
+    // que sobram de uma mensagem incompleta ficam no decodificador da conexão.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    /**
+     * Construtor para o NioEventLoop.
+     *
+     * @param server A instância do AuctionServer que processará as mensagens recebidas.
+     * @throws IOException Se o Selector não puder ser aberto.
+     */
+    NioEventLoop(AuctionServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Agenda uma tarefa para rodar na thread deste loop e acorda o Selector.
+     *
+     * @param task A tarefa a ser executada.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registra um canal recém-aceito neste loop. Pode ser chamado de qualquer thread.
+     *
+     * @param channel O SocketChannel já configurado como não bloqueante.
+     */
+    void register(SocketChannel channel) {
+        execute(() -> {
+            NioClientConnection connection = new NioClientConnection(channel, this, server);
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.onRegistered(key);
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Erro ao registrar conexão {}: {}", connection.getRemoteAddress(), e.getMessage());
+                connection.closeConnection();
+            }
+        });
+    }
+
+    /**
+     * O método run() contém o loop principal: espera eventos de I/O, executa as tarefas
+     * pendentes e atende as conexões prontas para leitura ou escrita.
+     */
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioClientConnection connection = (NioClientConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flushOutbound();
+                        }
+                    } catch (CancelledKeyException e) {
+                        // A conexão foi fechada enquanto era atendida; nada a fazer.
+                    } catch (RuntimeException e) {
+                        // Um erro ao decodificar ou processar a mensagem de um cliente não pode
+                        // encerrar a thread do loop, que atende todas as conexões do Selector
+                        String client = connection.getUserId() != null ? connection.getUserId()
+                                : connection.getRemoteAddress();
+                        Log.log(Log.Level.ERROR, "Erro inesperado ao atender o cliente {}: {}. Desconectando.", client,
+                                e.toString());
+                        connection.closeConnection();
+                    }
+                }
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Erro no event loop {}: {}", Thread.currentThread().getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.log(Log.Level.ERROR, "Erro ao executar tarefa no event loop: {}", e.toString());
+            }
+        }
+    }
+}
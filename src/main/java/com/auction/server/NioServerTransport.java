@@ -0,0 +1,66 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transporte alternativo do servidor baseado em java.nio. Um pequeno número fixo de
+ * NioEventLoop (um por núcleo, por padrão) atende todas as conexões, em vez de uma
+ * thread bloqueada por cliente. Conexões aceitas são distribuídas entre os loops em
+ * round-robin.
+ */
+class NioServerTransport {
+
+    private final ServerSocketChannel serverChannel;
+    private final NioEventLoop[] loops;
+    private int nextLoop;
+
+    /**
+     * Construtor para o NioServerTransport. Abre a porta e inicia as threads dos event loops.
+     *
+     * @param port      A porta em que o servidor irá escutar as conexões.
+     * @param server    A instância do AuctionServer que processará as mensagens.
+     * @param loopCount Quantidade de event loops.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    NioServerTransport(int port, AuctionServer server, int loopCount) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.loops = new NioEventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop(server);
+            new Thread(loops[i], "nio-loop-" + i).start();
+        }
+    }
+
+    /**
+     * @return A quantidade de event loops em execução.
+     */
+    int getLoopCount() {
+        return loops.length;
+    }
+
+    /**
+     * Loop de aceitação de conexões, executado na thread que chamou AuctionServer.start().
+     * Cada canal aceito é configurado como não bloqueante e entregue a um event loop.
+     */
+    void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept(); // Bloqueia até uma nova conexão chegar
+                Log.log(Log.Level.INFO, "Novo cliente conectado de: {}", channel.socket().getInetAddress().getHostAddress());
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[nextLoop].register(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Erro ao aceitar conexão de cliente: {}", e.getMessage());
+            }
+        }
+    }
+}
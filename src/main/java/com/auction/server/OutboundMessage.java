@@ -0,0 +1,58 @@
+package com.auction.server;
+
+import com.auction.common.BinaryCodec;
+import com.auction.common.Constants;
+import com.auction.common.Message;
+import com.auction.common.SerializedFrames;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Uma mensagem a caminho de um ou mais clientes, junto com seus bytes já codificados.
+ *
+ * Um broadcast cria uma única instância e a entrega a todas as conexões: a mensagem é
+ * codificada no máximo uma vez por versão de protocolo (serialização Java ou uma versão do
+ * BinaryCodec), e todas as filas de saída compartilham o mesmo array de bytes. O array
+ * nunca é alterado depois de criado; cada escritor apenas o lê.
+ */
+public final class OutboundMessage {
+
+    private final Message message;
+    // Bytes codificados, indexados pela versão de protocolo. Na posição PROTOCOL_LEGACY
+    // fica TC_RESET + objeto, para clientes antigos; nas demais, o frame do BinaryCodec.
+    private final AtomicReferenceArray<byte[]> encoded = new AtomicReferenceArray<>(Constants.PROTOCOL_VERSION + 1);
+
+    /**
+     * Construtor para o OutboundMessage.
+     *
+     * @param message A Message a ser enviada.
+     */
+    public OutboundMessage(Message message) {
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * Devolve os bytes da mensagem no formato da versão de protocolo informada, codificando-a
+     * apenas na primeira vez em que essa versão é pedida.
+     *
+     * @param protocolVersion A versão de protocolo negociada com o destinatário.
+     * @return Os bytes prontos para serem escritos no socket. Não devem ser modificados.
+     * @throws IOException Se a mensagem não puder ser codificada.
+     */
+    public byte[] encodedFor(int protocolVersion) throws IOException {
+        int version = Math.max(Constants.PROTOCOL_LEGACY, Math.min(protocolVersion, Constants.PROTOCOL_VERSION));
+        byte[] frame = encoded.get(version);
+        if (frame == null) {
+            frame = version >= Constants.PROTOCOL_BINARY_CODEC
+                    ? BinaryCodec.encode(message, version)
+                    : SerializedFrames.encode(message);
+            encoded.set(version, frame);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,174 @@
+package com.auction.server;
+
+import com.auction.common.MessageType;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila de saída limitada de uma conexão de cliente. Quem envia (broadcast, respostas)
+ * apenas enfileira e retorna imediatamente; a escrita no socket é feita pelo escritor da
+ * própria conexão. Assim, um cliente lento ou travado não atrasa os demais.
+ *
+ * Quando a fila enche, aplica a política configurada em ServerConfig.OUTBOUND_OVERFLOW:
+ * descartar a atualização mais antiga ainda não enviada ou desconectar o cliente lento.
+ * O lock só é mantido durante a manipulação da fila, nunca durante I/O.
+ */
+class OutboundQueue {
+
+    // Contadores globais de quantas vezes a política de estouro foi aplicada.
+    private static final LongAdder DROPPED_UPDATES = new LongAdder();
+    private static final LongAdder SLOW_CONSUMER_DISCONNECTS = new LongAdder();
+
+    private final int capacity;
+    private final ServerConfig.OverflowPolicy policy;
+    private final ArrayDeque<OutboundMessage> messages = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed;
+
+    /**
+     * Construtor para a OutboundQueue.
+     *
+     * @param capacity Quantidade máxima de mensagens aguardando envio.
+     * @param policy   O que fazer quando a fila estiver cheia.
+     */
+    OutboundQueue(int capacity, ServerConfig.OverflowPolicy policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+    }
+
+    /**
+     * @return Quantas atualizações foram descartadas por filas cheias desde o início do servidor.
+     */
+    static long getDroppedUpdates() {
+        return DROPPED_UPDATES.sum();
+    }
+
+    /**
+     * @return Quantos clientes foram desconectados por não consumirem suas mensagens a tempo.
+     */
+    static long getSlowConsumerDisconnects() {
+        return SLOW_CONSUMER_DISCONNECTS.sum();
+    }
+
+    /**
+     * Enfileira uma mensagem sem bloquear.
+     *
+     * @param message A OutboundMessage a ser enviada.
+     * @return false se a fila estourou e o cliente deve ser desconectado; true caso contrário
+     *         (inclusive quando uma atualização antiga foi descartada ou a fila já foi fechada).
+     */
+    boolean offer(OutboundMessage message) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true; // Conexão encerrando: a mensagem é simplesmente ignorada
+            }
+            if (messages.size() >= capacity && !dropOldestUpdate()) {
+                SLOW_CONSUMER_DISCONNECTS.increment();
+                return false;
+            }
+            messages.addLast(message);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta a atualização mais antiga da fila, se a política permitir. Apenas
+     * notificações (leilão, lance e status de usuário) são descartáveis: uma mais recente do
+     * mesmo tipo as substitui. Um BID_DELTA traz o lance absoluto e a sequência, então o
+     * cliente aplica o seguinte mesmo sem ter recebido o descartado. Respostas a pedidos do
+     * cliente e AUCTION_STATUS_DELTA (encerramentos) nunca são descartados.
+     */
+    private boolean dropOldestUpdate() {
+        if (policy != ServerConfig.OverflowPolicy.DROP_OLDEST) {
+            return false;
+        }
+        for (Iterator<OutboundMessage> it = messages.iterator(); it.hasNext(); ) {
+            MessageType type = it.next().getMessage().getType();
+            if (type == MessageType.AUCTION_UPDATE || type == MessageType.BID_DELTA
+                    || type == MessageType.USER_STATUS_UPDATE) {
+                it.remove();
+                DROPPED_UPDATES.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retira a próxima mensagem, aguardando se a fila estiver vazia.
+     *
+     * @return A próxima OutboundMessage, ou null se a fila foi fechada e não há mais nada a enviar.
+     * @throws InterruptedException Se a thread escritora for interrompida.
+     */
+    OutboundMessage take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (messages.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return messages.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira a próxima mensagem sem bloquear.
+     *
+     * @return A próxima OutboundMessage, ou null se a fila estiver vazia.
+     */
+    OutboundMessage poll() {
+        lock.lock();
+        try {
+            return messages.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return messages.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fecha a fila para novas mensagens. As já enfileiradas continuam disponíveis, e take()
+     * passa a devolver null quando elas acabarem.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fecha a fila e descarta tudo o que ainda não foi enviado.
+     */
+    void discard() {
+        lock.lock();
+        try {
+            closed = true;
+            messages.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.auction.server;
+
+import com.auction.common.Constants;
+import com.auction.common.ExecutionMode;
+
+/**
+ * Opções do servidor escolhidas na inicialização através de propriedades de sistema,
+ * por exemplo: {@code java -Dauction.transport=nio -cp out com.auction.server.AuctionServer}.
+ * Os valores padrão mantêm o comportamento original do servidor.
+ */
+public final class ServerConfig {
+
+    /**
+     * Modelo de transporte usado para atender os clientes.
+     */
+    public enum Transport {
+        BLOCKING, // Uma thread por cliente, bloqueada em ObjectInputStream.readObject().
+        NIO       // Poucos event loops com Selector atendendo todas as conexões.
+    }
+
+    /**
+     * O que fazer quando a fila de saída de um cliente enche.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST, // Descarta a atualização mais antiga ainda não enviada.
+        DISCONNECT   // Desconecta o cliente lento.
+    }
+
+    /**
+     * Transporte escolhido pela propriedade {@code auction.transport} ("blocking" ou "nio").
+     */
+    public static final Transport TRANSPORT =
+            Transport.valueOf(System.getProperty("auction.transport", "blocking").trim().toUpperCase());
+
+    /**
+     * Número de event loops do transporte NIO ({@code auction.nio.loops}). Padrão: um por núcleo.
+     */
+    public static final int NIO_EVENT_LOOPS =
+            Integer.getInteger("auction.nio.loops", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Tipo de thread usado para cada ClientHandler no transporte BLOCKING
+     * ({@code auction.threads}: "platform" ou "virtual").
+     */
+    public static final ExecutionMode THREADS = ExecutionMode.fromProperty("auction.threads", ExecutionMode.PLATFORM);
+
+    /**
+     * Máximo de mensagens aguardando envio por cliente ({@code auction.outbound.capacity}).
+     */
+    public static final int OUTBOUND_QUEUE_CAPACITY = Integer.getInteger("auction.outbound.capacity", 1024);
+
+    /**
+     * Política aplicada quando a fila de saída de um cliente enche
+     * ({@code auction.outbound.overflow}: "drop_oldest" ou "disconnect").
+     */
+    public static final OverflowPolicy OUTBOUND_OVERFLOW =
+            OverflowPolicy.valueOf(System.getProperty("auction.outbound.overflow", "drop_oldest").trim().toUpperCase());
+
+    /**
+     * Maior versão de protocolo aceita na negociação do LOGIN ({@code auction.protocol}).
+     * Com 0 o servidor fala apenas serialização Java, mesmo com clientes novos.
+     */
+    public static final int PROTOCOL_VERSION = Integer.getInteger("auction.protocol", Constants.PROTOCOL_VERSION);
+
+    /**
+     * Janela, em milissegundos, em que as atualizações de lance de um mesmo leilão são
+     * agrupadas antes do broadcast ({@code auction.conflation.ms}). 0 desliga o agrupamento
+     * e cada lance é transmitido na hora.
+     */
+    public static final long CONFLATION_WINDOW_MS = Long.getLong("auction.conflation.ms", 0);
+
+    /**
+     * Máximo de leilões devolvidos em uma página de AUCTION_QUERY ou em uma resposta a SEARCH
+     * ({@code auction.query.maxpage}). Pedidos maiores são reduzidos a este valor.
+     */
+    public static final int QUERY_MAX_PAGE_SIZE = Integer.getInteger("auction.query.maxpage", 100);
+
+    /**
+     * Número de shards que executam criação, lances e encerramento dos leilões
+     * ({@code auction.shards}). Com 0 cada comando executa na thread que recebeu a mensagem
+     * (ou na thread de expiração), como originalmente.
+     */
+    public static final int AUCTION_SHARDS = Integer.getInteger("auction.shards", 0);
+
+    /**
+     * Posições do anel do pipeline de mensagens recebidas ({@code auction.pipeline}).
+     * Com 0 cada mensagem é processada na thread do transporte que a leu, como originalmente.
+     */
+    public static final int PIPELINE_SIZE = Integer.getInteger("auction.pipeline", 0);
+
+    /**
+     * Máximo de mensagens por segundo aceitas de cada conexão quando o pipeline está ligado
+     * ({@code auction.ratelimit}). 0 não limita.
+     */
+    public static final int RATE_LIMIT_PER_SECOND = Integer.getInteger("auction.ratelimit", 0);
+
+    /**
+     * Arquivo do journal dos leilões ({@code auction.journal}). Com um caminho, cada criação,
+     * lance aceito e encerramento é gravado no disco antes de ser anunciado, e os leilões são
+     * recuperados do arquivo na inicialização. Sem ele os leilões ficam só em memória. A thread
+     * que aplica o lance (shard ou pipeline) não espera o disco: o anúncio sai quando o lote for
+     * gravado, e uma gravação que falhar é informada ao cliente em vez de anunciada.
+     */
+    public static final String JOURNAL_PATH = System.getProperty("auction.journal");
+
+    /**
+     * Intervalo, em milissegundos, entre snapshots do estado dos leilões quando o journal está
+     * ligado ({@code auction.snapshot.ms}). Cada snapshot permite descartar o journal anterior
+     * a ele. 0 desliga os snapshots e o journal só cresce.
+     */
+    public static final long SNAPSHOT_INTERVAL_MS = Long.getLong("auction.snapshot.ms", 60000);
+
+    /**
+     * Máximo de lances devolvidos em cada resposta a um pedido de histórico
+     * ({@code auction.history.maxslice}). Pedidos maiores recebem só esse número de lances e
+     * continuam a partir do próximo índice.
+     */
+    public static final int HISTORY_MAX_SLICE = Integer.getInteger("auction.history.maxslice", 200);
+
+    /**
+     * Incremento mínimo de um lance sobre o lance atual, em centavos
+     * ({@code auction.bid.increment}). Com 1, qualquer lance maior que o atual é aceito.
+     */
+    public static final long MIN_BID_INCREMENT = Math.max(1, Long.getLong("auction.bid.increment", 1));
+
+    /**
+     * Arquivo de leilões encerrados ({@code auction.archive}). Com um caminho, os leilões
+     * encerrados há mais de ARCHIVE_AGE_MS saem da memória e passam a ser lidos desse arquivo
+     * (com um cache LRU na frente). Sem ele todos os leilões encerrados ficam em memória.
+     */
+    public static final String ARCHIVE_PATH = System.getProperty("auction.archive");
+
+    /**
+     * Tempo, em milissegundos, que um leilão encerrado fica em memória (e na lista de
+     * encerrados) antes de ir para o arquivo ({@code auction.archive.age.ms}).
+     */
+    public static final long ARCHIVE_AGE_MS = Math.max(1000, Long.getLong("auction.archive.age.ms", 600000));
+
+    /**
+     * Máximo de leilões arquivados mantidos em memória pelo cache LRU do arquivo
+     * ({@code auction.archive.cache}).
+     */
+    public static final int ARCHIVE_CACHE_SIZE = Math.max(1, Integer.getInteger("auction.archive.cache", 1000));
+
+    /**
+     * Intervalo, em milissegundos, do relatório periódico das métricas (ServerMetrics, com
+     * os contadores das filas de saída, agrupamento, pipeline, journal, arquivo e log), pela
+     * propriedade {@code auction.metrics.ms}. As métricas são sempre registradas e podem ser lidas por
+     * ServerMetrics.snapshot(); 0 só desliga o relatório.
+     */
+    public static final long METRICS_INTERVAL_MS = Long.getLong("auction.metrics.ms", 30000);
+
+    private ServerConfig() {
+    }
+}
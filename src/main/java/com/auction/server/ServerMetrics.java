@@ -0,0 +1,505 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+import com.auction.common.MessageType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas de vazão e latência do servidor: mensagens recebidas por tipo, lances aceitos e
+ * recusados, broadcasts (quantos destinatários cada um alcançou) e bytes escritos nos sockets,
+ * além de histogramas do tempo de handleMessage e do tempo entre um lance chegar ao
+ * AuctionManager e sua atualização ser entregue às filas de saída.
+ *
+ * Registrar não usa lock: contadores são LongAdder (um por tipo de mensagem) e os histogramas
+ * são arrays de contadores atômicos, com buckets log-lineares como os do HdrHistogram. Cada
+ * potência de 2 é dividida em 16 buckets, então o valor relatado de um bucket difere do valor
+ * medido em no máximo 1/16 (6,25%), de nanossegundos a minutos, com tamanho fixo.
+ *
+ * Os contadores que pertencem a outros componentes (filas de saída, agrupamento, journal,
+ * arquivo, log) são lidos por snapshot() pelos getters de cada um (Counter).
+ *
+ * snapshot() copia todos os valores; Snapshot.since() dá a diferença entre duas cópias, usada
+ * no relatório periódico (ServerConfig.METRICS_INTERVAL_MS).
+ */
+public final class ServerMetrics {
+
+    /**
+     * Contadores mantidos pelos próprios componentes e copiados em cada snapshot.
+     */
+    public enum Counter {
+        /** Atualizações descartadas por filas de saída cheias. */
+        DROPPED_UPDATES(OutboundQueue::getDroppedUpdates),
+        /** Clientes desconectados por não esvaziarem a fila de saída. */
+        SLOW_CONSUMER_DISCONNECTS(OutboundQueue::getSlowConsumerDisconnects),
+        /** Atualizações de lance substituídas por uma mais recente dentro da janela. */
+        CONFLATED_UPDATES(UpdateConflator::getConflatedUpdates),
+        /** Atualizações de lance transmitidas ao fim da janela. */
+        EMITTED_UPDATES(UpdateConflator::getEmittedUpdates),
+        /** Mensagens descartadas pelo limite por conexão do pipeline. */
+        RATE_LIMITED_MESSAGES(InboundRateLimiter::getDroppedMessages),
+        /** Registros gravados no journal. */
+        JOURNAL_RECORDS(AuctionJournal::getWrittenRecords),
+        /** force() do journal, um por lote de registros. */
+        JOURNAL_COMMITS(AuctionJournal::getCommits),
+        /** Leituras de leilões arquivados atendidas pelo cache. */
+        ARCHIVE_HITS(AuctionArchive::getCacheHits),
+        /** Leituras de leilões arquivados que foram ao disco. */
+        ARCHIVE_MISSES(AuctionArchive::getCacheMisses),
+        /** Eventos de log descartados por encontrarem o anel cheio. */
+        LOG_DROPS(Log::getDroppedEvents);
+
+        private final LongSupplier source;
+
+        Counter(LongSupplier source) {
+            this.source = source;
+        }
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final LongAdder[] MESSAGES = new LongAdder[TYPES.length];
+    private static final LongAdder BIDS_ACCEPTED = new LongAdder();
+    private static final LongAdder BIDS_REJECTED = new LongAdder();
+    private static final LongAdder BROADCASTS = new LongAdder();
+    private static final LongAdder BROADCAST_RECIPIENTS = new LongAdder();
+    private static final LongAdder BYTES_SENT = new LongAdder();
+    private static final LongAdder PIPELINE_EVENTS = new LongAdder();
+    private static final Histogram HANDLE_MESSAGE_NANOS = new Histogram();
+    private static final Histogram BID_TO_BROADCAST_NANOS = new Histogram();
+    private static final Histogram FAN_OUT = new Histogram();
+    private static final Histogram PIPELINE_BATCH = new Histogram();
+
+    static {
+        for (int i = 0; i < MESSAGES.length; i++) {
+            MESSAGES[i] = new LongAdder();
+        }
+    }
+
+    private ServerMetrics() {
+    }
+
+    /**
+     * Registra uma mensagem recebida e o tempo que handleMessage levou para tratá-la.
+     *
+     * @param type         O tipo da mensagem.
+     * @param elapsedNanos Duração do tratamento, em ns.
+     */
+    static void recordMessage(MessageType type, long elapsedNanos) {
+        MESSAGES[type.ordinal()].increment();
+        HANDLE_MESSAGE_NANOS.record(elapsedNanos);
+    }
+
+    /**
+     * Registra o resultado de um lance.
+     *
+     * @param accepted true se o lance foi aceito.
+     */
+    static void recordBid(boolean accepted) {
+        (accepted ? BIDS_ACCEPTED : BIDS_REJECTED).increment();
+    }
+
+    /**
+     * Registra o tempo entre um lance aceito chegar ao AuctionManager e sua atualização ser
+     * entregue às filas de saída dos destinatários. Com o agrupamento de atualizações ligado,
+     * só o lance transmitido ao fim da janela é medido (e a espera da janela está incluída).
+     *
+     * @param elapsedNanos O tempo, em ns.
+     */
+    static void recordBidToBroadcast(long elapsedNanos) {
+        BID_TO_BROADCAST_NANOS.record(elapsedNanos);
+    }
+
+    /**
+     * Registra um broadcast (para todos os clientes ou para os assinantes de um leilão).
+     *
+     * @param recipients Quantas filas de saída receberam a mensagem.
+     */
+    static void recordBroadcast(int recipients) {
+        BROADCASTS.increment();
+        BROADCAST_RECIPIENTS.add(recipients);
+        FAN_OUT.record(recipients);
+    }
+
+    /**
+     * Registra bytes escritos no socket de um cliente.
+     *
+     * @param bytes Quantos bytes foram escritos.
+     */
+    static void recordBytesSent(long bytes) {
+        BYTES_SENT.add(bytes);
+    }
+
+    /**
+     * Registra um lote de eventos processado pelo último estágio do pipeline de entrada.
+     *
+     * @param events Quantos eventos o lote tinha.
+     */
+    static void recordPipelineBatch(long events) {
+        PIPELINE_EVENTS.add(events);
+        PIPELINE_BATCH.record(events);
+    }
+
+    /**
+     * @return Uma cópia dos valores acumulados desde o início do servidor. Concorrente com
+     *         os registros: cada valor é consistente, mas valores diferentes podem refletir
+     *         instantes ligeiramente diferentes.
+     */
+    public static Snapshot snapshot() {
+        long[] messages = new long[TYPES.length];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = MESSAGES[i].sum();
+        }
+        long[] counters = new long[COUNTERS.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = COUNTERS[i].source.getAsLong();
+        }
+        return new Snapshot(messages, counters, BIDS_ACCEPTED.sum(), BIDS_REJECTED.sum(), BROADCASTS.sum(),
+                BROADCAST_RECIPIENTS.sum(), BYTES_SENT.sum(), PIPELINE_EVENTS.sum(), HANDLE_MESSAGE_NANOS.snapshot(),
+                BID_TO_BROADCAST_NANOS.snapshot(), FAN_OUT.snapshot(), PIPELINE_BATCH.snapshot());
+    }
+
+    /**
+     * Valores das métricas em um instante, ou a diferença entre dois instantes (since()).
+     */
+    public static final class Snapshot {
+        private final long[] messages;
+        private final long[] counters;
+        private final long bidsAccepted;
+        private final long bidsRejected;
+        private final long broadcasts;
+        private final long broadcastRecipients;
+        private final long bytesSent;
+        private final long pipelineEvents;
+        private final HistogramSnapshot handleMessageNanos;
+        private final HistogramSnapshot bidToBroadcastNanos;
+        private final HistogramSnapshot fanOut;
+        private final HistogramSnapshot pipelineBatch;
+
+        private Snapshot(long[] messages, long[] counters, long bidsAccepted, long bidsRejected, long broadcasts,
+                         long broadcastRecipients, long bytesSent, long pipelineEvents,
+                         HistogramSnapshot handleMessageNanos, HistogramSnapshot bidToBroadcastNanos,
+                         HistogramSnapshot fanOut, HistogramSnapshot pipelineBatch) {
+            this.messages = messages;
+            this.counters = counters;
+            this.bidsAccepted = bidsAccepted;
+            this.bidsRejected = bidsRejected;
+            this.broadcasts = broadcasts;
+            this.broadcastRecipients = broadcastRecipients;
+            this.bytesSent = bytesSent;
+            this.pipelineEvents = pipelineEvents;
+            this.handleMessageNanos = handleMessageNanos;
+            this.bidToBroadcastNanos = bidToBroadcastNanos;
+            this.fanOut = fanOut;
+            this.pipelineBatch = pipelineBatch;
+        }
+
+        /**
+         * @param earlier Um snapshot anterior.
+         * @return O que foi registrado entre earlier e este snapshot.
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[messages.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = messages[i] - earlier.messages[i];
+            }
+            long[] counterDelta = new long[counters.length];
+            for (int i = 0; i < counterDelta.length; i++) {
+                counterDelta[i] = counters[i] - earlier.counters[i];
+            }
+            return new Snapshot(delta, counterDelta, bidsAccepted - earlier.bidsAccepted,
+                    bidsRejected - earlier.bidsRejected, broadcasts - earlier.broadcasts,
+                    broadcastRecipients - earlier.broadcastRecipients, bytesSent - earlier.bytesSent,
+                    pipelineEvents - earlier.pipelineEvents, handleMessageNanos.since(earlier.handleMessageNanos),
+                    bidToBroadcastNanos.since(earlier.bidToBroadcastNanos), fanOut.since(earlier.fanOut),
+                    pipelineBatch.since(earlier.pipelineBatch));
+        }
+
+        /**
+         * @return Quantas mensagens deste tipo foram recebidas.
+         */
+        public long getMessages(MessageType type) {
+            return messages[type.ordinal()];
+        }
+
+        /**
+         * @return Quantas mensagens foram recebidas, de todos os tipos.
+         */
+        public long getTotalMessages() {
+            long total = 0;
+            for (long count : messages) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * @return O valor de um contador de outro componente.
+         */
+        public long getCounter(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        /**
+         * @return Se algo foi registrado: mensagens recebidas ou algum contador alterado.
+         */
+        public boolean hasActivity() {
+            if (getTotalMessages() > 0) {
+                return true;
+            }
+            for (long count : counters) {
+                if (count != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getBidsAccepted() {
+            return bidsAccepted;
+        }
+
+        public long getBidsRejected() {
+            return bidsRejected;
+        }
+
+        public long getBroadcasts() {
+            return broadcasts;
+        }
+
+        /**
+         * @return A soma dos destinatários de todos os broadcasts.
+         */
+        public long getBroadcastRecipients() {
+            return broadcastRecipients;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * @return Quantos eventos passaram pelo último estágio do pipeline de entrada.
+         */
+        public long getPipelineEvents() {
+            return pipelineEvents;
+        }
+
+        /**
+         * @return Duração de handleMessage, em ns.
+         */
+        public HistogramSnapshot getHandleMessageNanos() {
+            return handleMessageNanos;
+        }
+
+        /**
+         * @return Tempo entre um lance aceito chegar ao AuctionManager e ser entregue às filas
+         *         de saída, em ns.
+         */
+        public HistogramSnapshot getBidToBroadcastNanos() {
+            return bidToBroadcastNanos;
+        }
+
+        /**
+         * @return Destinatários por broadcast.
+         */
+        public HistogramSnapshot getFanOut() {
+            return fanOut;
+        }
+
+        /**
+         * @return Eventos por lote do último estágio do pipeline de entrada.
+         */
+        public HistogramSnapshot getPipelineBatch() {
+            return pipelineBatch;
+        }
+
+        /**
+         * @return Um relatório de várias linhas, com os tipos de mensagem recebidos, os
+         *         percentis dos histogramas e os contadores dos componentes que mudaram.
+         */
+        public String report() {
+            StringBuilder report = new StringBuilder(512);
+            report.append("  mensagens: ").append(getTotalMessages());
+            boolean first = true;
+            for (int i = 0; i < messages.length; i++) {
+                if (messages[i] > 0) {
+                    report.append(first ? " (" : ", ").append(TYPES[i]).append('=').append(messages[i]);
+                    first = false;
+                }
+            }
+            report.append(first ? "" : ")").append('\n');
+            report.append("  lances: ").append(bidsAccepted).append(" aceitos, ").append(bidsRejected)
+                    .append(" recusados\n");
+            report.append("  broadcasts: ").append(broadcasts).append(" para ").append(broadcastRecipients)
+                    .append(" destinatários, ").append(bytesSent).append(" bytes enviados\n");
+            appendLatency(report, "handleMessage", handleMessageNanos);
+            appendLatency(report, "lance até broadcast", bidToBroadcastNanos);
+            report.append(String.format("  destinatários por broadcast: p50=%d p99=%d máx=%d\n",
+                    fanOut.valueAtPercentile(50), fanOut.valueAtPercentile(99), fanOut.getMax()));
+            if (getCounter(Counter.DROPPED_UPDATES) != 0 || getCounter(Counter.SLOW_CONSUMER_DISCONNECTS) != 0) {
+                report.append("  filas de saída: ").append(getCounter(Counter.DROPPED_UPDATES))
+                        .append(" atualizações descartadas, ").append(getCounter(Counter.SLOW_CONSUMER_DISCONNECTS))
+                        .append(" clientes lentos desconectados\n");
+            }
+            if (getCounter(Counter.CONFLATED_UPDATES) != 0 || getCounter(Counter.EMITTED_UPDATES) != 0) {
+                report.append("  agrupamento: ").append(getCounter(Counter.CONFLATED_UPDATES))
+                        .append(" atualizações agrupadas, ").append(getCounter(Counter.EMITTED_UPDATES))
+                        .append(" transmitidas\n");
+            }
+            if (pipelineEvents != 0 || getCounter(Counter.RATE_LIMITED_MESSAGES) != 0) {
+                report.append(String.format("  pipeline: %d eventos em %d lotes (p50=%d p99=%d máx=%d), %d descartados por excesso\n",
+                        pipelineEvents, pipelineBatch.getCount(), pipelineBatch.valueAtPercentile(50),
+                        pipelineBatch.valueAtPercentile(99), pipelineBatch.getMax(),
+                        getCounter(Counter.RATE_LIMITED_MESSAGES)));
+            }
+            long journalRecords = getCounter(Counter.JOURNAL_RECORDS);
+            long journalCommits = getCounter(Counter.JOURNAL_COMMITS);
+            if (journalRecords != 0) {
+                report.append(String.format("  journal: %d registros em %d gravações (%.1f por gravação)\n",
+                        journalRecords, journalCommits, journalCommits == 0 ? 0.0 : (double) journalRecords / journalCommits));
+            }
+            if (getCounter(Counter.ARCHIVE_HITS) != 0 || getCounter(Counter.ARCHIVE_MISSES) != 0) {
+                report.append("  arquivo: ").append(getCounter(Counter.ARCHIVE_HITS)).append(" leituras do cache, ")
+                        .append(getCounter(Counter.ARCHIVE_MISSES)).append(" do disco\n");
+            }
+            if (getCounter(Counter.LOG_DROPS) != 0) {
+                report.append("  log: ").append(getCounter(Counter.LOG_DROPS))
+                        .append(" eventos descartados (anel cheio)\n");
+            }
+            return report.toString();
+        }
+
+        private static void appendLatency(StringBuilder report, String name, HistogramSnapshot nanos) {
+            report.append(String.format("  %s (µs): n=%d média=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f máx=%.1f\n",
+                    name, nanos.getCount(), nanos.getMean() / 1000.0, nanos.valueAtPercentile(50) / 1000.0,
+                    nanos.valueAtPercentile(90) / 1000.0, nanos.valueAtPercentile(99) / 1000.0,
+                    nanos.valueAtPercentile(99.9) / 1000.0, nanos.getMax() / 1000.0));
+        }
+    }
+
+    /**
+     * Os valores de um histograma em um instante. Os valores devolvidos são o maior valor do
+     * bucket correspondente (no máximo 6,25% acima do medido).
+     */
+    public static final class HistogramSnapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private HistogramSnapshot(long[] counts, long sum) {
+            this.counts = counts;
+            long total = 0;
+            for (long bucket : counts) {
+                total += bucket;
+            }
+            this.count = total;
+            this.sum = sum;
+        }
+
+        HistogramSnapshot since(HistogramSnapshot earlier) {
+            long[] delta = new long[counts.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+            }
+            return new HistogramSnapshot(delta, sum - earlier.sum);
+        }
+
+        /**
+         * @return Quantos valores foram registrados.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return A média exata dos valores registrados, ou 0 se não houver nenhum.
+         */
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * @return O maior valor registrado, ou 0 se não houver nenhum.
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return Histogram.highestValueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param percentile O percentil, de 0 a 100.
+         * @return O valor abaixo do qual (ou igual) estão percentile% dos valores registrados,
+         *         ou 0 se não houver nenhum.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Histogram.highestValueOf(i);
+                }
+            }
+            return getMax();
+        }
+    }
+
+    /**
+     * Histograma concorrente de valores não negativos. Valores até 15 têm um bucket cada; acima
+     * disso, cada intervalo [2^k, 2^(k+1)) é dividido em 16 buckets iguais.
+     */
+    private static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        // Buckets exatos de 0 a 15, mais 16 para cada deslocamento de 0 a 59 (até Long.MAX_VALUE).
+        private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0; // Relógio ajustado entre as duas leituras
+            }
+            counts.incrementAndGet(bucketOf(value));
+            sum.add(value);
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = counts.get(i);
+            }
+            return new HistogramSnapshot(copy, sum.sum());
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+            // value >>> shift fica entre 16 e 31: os 4 bits abaixo do mais alto escolhem o sub-bucket
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        static long highestValueOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+}
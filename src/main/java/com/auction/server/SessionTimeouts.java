@@ -0,0 +1,98 @@
+package com.auction.server;
+
+import com.auction.common.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Desconecta clientes que ficam sem enviar nenhuma mensagem por mais que o tempo limite.
+ *
+ * Cada sessão tem um único prazo no HashedWheelTimer. Qualquer mensagem recebida apenas
+ * registra o horário da atividade (touch(), uma escrita volátil); o prazo não é movido.
+ * Quando ele vence, a sessão confere a última atividade: se o cliente ficou inativo pelo
+ * tempo limite inteiro, é desconectado; senão, o prazo é reagendado para o tempo que falta.
+ * Assim um cliente ativo custa um reagendamento por período, e não um por mensagem.
+ */
+class SessionTimeouts {
+
+    private final HashedWheelTimer timer;
+    private final long timeoutNanos;
+    private final Map<ClientConnection, Session> sessions = new ConcurrentHashMap<>();
+
+    private static final class Session {
+        final ClientConnection connection;
+        volatile long lastActivityNanos = System.nanoTime();
+        volatile HashedWheelTimer.Timeout timeout;
+
+        Session(ClientConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Construtor para o SessionTimeouts.
+     *
+     * @param timer         O timer em que os prazos são agendados.
+     * @param timeoutMillis Tempo máximo de inatividade, em milissegundos.
+     */
+    SessionTimeouts(HashedWheelTimer timer, long timeoutMillis) {
+        this.timer = timer;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Começa a acompanhar a inatividade de uma conexão recém-logada.
+     *
+     * @param connection A conexão.
+     */
+    void register(ClientConnection connection) {
+        Session session = new Session(connection);
+        Session previous = sessions.put(connection, session);
+        if (previous != null) {
+            previous.timeout.cancel();
+        }
+        session.timeout = timer.schedule(() -> check(session), timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registra uma mensagem recebida da conexão.
+     *
+     * @param connection A conexão que enviou a mensagem.
+     */
+    void touch(ClientConnection connection) {
+        Session session = sessions.get(connection);
+        if (session != null) {
+            session.lastActivityNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Deixa de acompanhar uma conexão que foi fechada.
+     *
+     * @param connection A conexão.
+     */
+    void unregister(ClientConnection connection) {
+        Session session = sessions.remove(connection);
+        if (session != null) {
+            session.timeout.cancel();
+        }
+    }
+
+    // Executado pela thread do timer quando o prazo de uma sessão vence.
+    private void check(Session session) {
+        if (sessions.get(session.connection) != session) {
+            return; // Sessão já encerrada ou substituída
+        }
+        long idle = System.nanoTime() - session.lastActivityNanos;
+        if (idle < timeoutNanos) {
+            session.timeout = timer.schedule(() -> check(session), timeoutNanos - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+        sessions.remove(session.connection, session);
+        Log.log(Log.Level.INFO, "Cliente {} inativo por mais de {n} segundos. Desconectando.",
+                session.connection.getUserId(), TimeUnit.NANOSECONDS.toSeconds(timeoutNanos));
+        session.connection.closeConnection(); // Chama removeClient
+    }
+}
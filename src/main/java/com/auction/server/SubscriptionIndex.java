@@ -0,0 +1,163 @@
+package com.auction.server;
+
+import com.auction.common.Constants;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice de quem deve receber as atualizações de cada leilão, para que um lance seja
+ * entregue apenas a quem acompanha aquele leilão em vez de a todos os clientes.
+ *
+ * Há três grupos de destinatários:
+ * - assinantes de cada leilão (leilão → conexões), mantidos por SUBSCRIBE/UNSUBSCRIBE;
+ * - assinantes do tópico de leilões novos, que recebem criações e encerramentos;
+ * - clientes anteriores a Constants.PROTOCOL_SUBSCRIPTIONS, que não sabem assinar e por
+ *   isso continuam recebendo todas as atualizações.
+ * Os grupos são disjuntos por leilão: clientes antigos nunca entram nos conjuntos por leilão.
+ *
+ * Todos os conjuntos são concorrentes: o broadcast os percorre sem lock enquanto clientes
+ * entram, saem e mudam suas assinaturas.
+ */
+class SubscriptionIndex {
+
+    // Leilões pelo handle (AuctionItem.getHandle()).
+    private final Map<Integer, Set<ClientConnection>> subscribersByAuction = new ConcurrentHashMap<>();
+    private final Map<ClientConnection, Set<Integer>> auctionsBySubscriber = new ConcurrentHashMap<>();
+    private final Set<ClientConnection> newAuctionSubscribers = ConcurrentHashMap.newKeySet();
+    private final Set<ClientConnection> allUpdatesSubscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Registra uma conexão recém-logada. Clientes que suportam assinaturas começam inscritos
+     * apenas no tópico de leilões novos; os demais recebem tudo.
+     *
+     * @param connection A conexão, com a versão de protocolo já negociada.
+     */
+    void register(ClientConnection connection) {
+        if (connection.getProtocolVersion() >= Constants.PROTOCOL_SUBSCRIPTIONS) {
+            newAuctionSubscribers.add(connection);
+        } else {
+            allUpdatesSubscribers.add(connection);
+        }
+    }
+
+    /**
+     * Remove uma conexão de todos os grupos.
+     *
+     * @param connection A conexão que saiu.
+     */
+    void unregister(ClientConnection connection) {
+        allUpdatesSubscribers.remove(connection);
+        newAuctionSubscribers.remove(connection);
+        Set<Integer> auctions = auctionsBySubscriber.remove(connection);
+        if (auctions != null) {
+            for (Integer auctionHandle : auctions) {
+                removeSubscriber(auctionHandle, connection);
+            }
+        }
+    }
+
+    /**
+     * Inscreve uma conexão em leilões e, opcionalmente, no tópico de leilões novos. Ignorado
+     * para clientes antigos, que já recebem tudo.
+     *
+     * @param connection     A conexão.
+     * @param auctionHandles Os handles dos leilões a acompanhar (pode ser null).
+     * @param newAuctions    Se deve entrar também no tópico de leilões novos.
+     */
+    void subscribe(ClientConnection connection, Collection<Integer> auctionHandles, boolean newAuctions) {
+        if (connection.getProtocolVersion() < Constants.PROTOCOL_SUBSCRIPTIONS) {
+            return;
+        }
+        if (newAuctions) {
+            newAuctionSubscribers.add(connection);
+        }
+        if (auctionHandles == null || auctionHandles.isEmpty()) {
+            return;
+        }
+        Set<Integer> auctions = auctionsBySubscriber.computeIfAbsent(connection, c -> ConcurrentHashMap.newKeySet());
+        for (Integer auctionHandle : auctionHandles) {
+            if (auctions.add(auctionHandle)) {
+                // compute (e não computeIfAbsent + add) para não adicionar a um conjunto que
+                // removeSubscriber acabou de descartar por estar vazio.
+                subscribersByAuction.compute(auctionHandle, (handle, subscribers) -> {
+                    Set<ClientConnection> updated = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                    updated.add(connection);
+                    return updated;
+                });
+            }
+        }
+    }
+
+    /**
+     * Cancela a inscrição de uma conexão em leilões e, opcionalmente, no tópico de leilões novos.
+     *
+     * @param connection     A conexão.
+     * @param auctionHandles Os handles dos leilões a deixar de acompanhar (pode ser null).
+     * @param newAuctions    Se deve sair também do tópico de leilões novos.
+     */
+    void unsubscribe(ClientConnection connection, Collection<Integer> auctionHandles, boolean newAuctions) {
+        if (newAuctions) {
+            newAuctionSubscribers.remove(connection);
+        }
+        Set<Integer> auctions = auctionsBySubscriber.get(connection);
+        if (auctions == null || auctionHandles == null) {
+            return;
+        }
+        for (Integer auctionHandle : auctionHandles) {
+            if (auctions.remove(auctionHandle)) {
+                removeSubscriber(auctionHandle, connection);
+            }
+        }
+    }
+
+    /**
+     * Descarta todas as inscrições de um leilão encerrado.
+     *
+     * @param auctionHandle O handle do leilão.
+     */
+    void removeAuction(int auctionHandle) {
+        Set<ClientConnection> subscribers = subscribersByAuction.remove(auctionHandle);
+        if (subscribers != null) {
+            for (ClientConnection connection : subscribers) {
+                Set<Integer> auctions = auctionsBySubscriber.get(connection);
+                if (auctions != null) {
+                    auctions.remove(auctionHandle);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Os assinantes de um leilão específico (sem os clientes antigos).
+     */
+    Set<ClientConnection> subscribersOf(int auctionHandle) {
+        Set<ClientConnection> subscribers = subscribersByAuction.get(auctionHandle);
+        return subscribers != null ? subscribers : Collections.emptySet();
+    }
+
+    /**
+     * @return Os assinantes do tópico de leilões novos.
+     */
+    Set<ClientConnection> newAuctionSubscribers() {
+        return newAuctionSubscribers;
+    }
+
+    /**
+     * @return Os clientes antigos, que recebem todas as atualizações.
+     */
+    Set<ClientConnection> allUpdatesSubscribers() {
+        return allUpdatesSubscribers;
+    }
+
+    private void removeSubscriber(Integer auctionHandle, ClientConnection connection) {
+        // computeIfPresent remove o conjunto vazio atomicamente em relação a novas inscrições.
+        subscribersByAuction.computeIfPresent(auctionHandle, (handle, subscribers) -> {
+            subscribers.remove(connection);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package com.auction.server;
+
+import com.auction.common.Message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa as atualizações de lance de cada leilão em janelas de tempo
+ * (ServerConfig.CONFLATION_WINDOW_MS). Durante uma disputa acirrada só o preço mais recente
+ * interessa a quem acompanha o leilão: a primeira atualização de uma janela agenda o envio,
+ * as seguintes apenas substituem a pendente, e ao fim da janela só a última é transmitida.
+ *
+ * Quem deu o lance não espera a janela: o AuctionManager confirma cada lance aceito
+ * diretamente ao licitante.
+ */
+class UpdateConflator {
+
+    // Contadores globais: atualizações substituídas dentro de uma janela e atualizações transmitidas.
+    private static final LongAdder CONFLATED_UPDATES = new LongAdder();
+    private static final LongAdder EMITTED_UPDATES = new LongAdder();
+
+    private final AuctionServer server;
+    private final long windowMillis;
+    // Última atualização ainda não transmitida de cada leilão, indexada pelo handle do leilão.
+    private final Map<Integer, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Construtor para o UpdateConflator.
+     *
+     * @param server       O servidor usado para transmitir as atualizações.
+     * @param windowMillis Duração da janela de agrupamento em milissegundos.
+     */
+    UpdateConflator(AuctionServer server, long windowMillis) {
+        this.server = server;
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "update-conflator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Quantas atualizações foram substituídas por uma mais recente antes de serem transmitidas.
+     */
+    static long getConflatedUpdates() {
+        return CONFLATED_UPDATES.sum();
+    }
+
+    /**
+     * @return Quantas atualizações agrupadas foram efetivamente transmitidas.
+     */
+    static long getEmittedUpdates() {
+        return EMITTED_UPDATES.sum();
+    }
+
+    /**
+     * Registra a atualização mais recente de um leilão. Não bloqueia.
+     *
+     * @param auctionHandle O handle do leilão.
+     * @param delta         A mensagem delta, para clientes que a suportam.
+     * @param fullUpdate    Cria a mensagem completa, para clientes antigos.
+     * @param bidNanos      System.nanoTime() de quando o lance chegou, para ServerMetrics.
+     */
+    void submit(int auctionHandle, Message delta, Supplier<Message> fullUpdate, long bidNanos) {
+        if (pending.put(auctionHandle, new PendingUpdate(delta, fullUpdate, bidNanos)) == null) {
+            // Primeira atualização da janela: agenda o envio da que estiver pendente no fim dela.
+            scheduler.schedule(() -> flush(auctionHandle), windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            CONFLATED_UPDATES.increment();
+        }
+    }
+
+    /**
+     * Transmite imediatamente a atualização pendente de um leilão, se houver. Usado antes de
+     * anunciar o encerramento, para que nenhum lance chegue aos clientes depois dele.
+     *
+     * @param auctionHandle O handle do leilão.
+     */
+    void flush(int auctionHandle) {
+        PendingUpdate update = pending.remove(auctionHandle);
+        if (update != null) {
+            EMITTED_UPDATES.increment();
+            server.broadcastAuctionUpdate(auctionHandle, false, update.delta, update.fullUpdate);
+            ServerMetrics.recordBidToBroadcast(System.nanoTime() - update.bidNanos);
+        }
+    }
+
+    private static final class PendingUpdate {
+        final Message delta;
+        final Supplier<Message> fullUpdate;
+        final long bidNanos;
+
+        PendingUpdate(Message delta, Supplier<Message> fullUpdate, long bidNanos) {
+            this.delta = delta;
+            this.fullUpdate = fullUpdate;
+            this.bidNanos = bidNanos;
+        }
+    }
+}
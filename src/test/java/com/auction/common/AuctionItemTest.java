@@ -0,0 +1,103 @@
+package com.auction.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lances no AuctionItem: compare-and-set do BidState e desfazer lances não gravados.
+ */
+class AuctionItemTest {
+
+    private static AuctionItem auction() {
+        return new AuctionItem("Item", "Desc", 1000, 60, "seller", "Vendedor");
+    }
+
+    @Test
+    void revertBidRestoresTheStateBeforeTheBid() {
+        AuctionItem item = auction();
+        AuctionItem.BidState previous = item.tryPlaceBidOver("a", "Ana", 1500, 1);
+        assertEquals(0, previous.updateSequence);
+
+        assertTrue(item.revertBid(previous));
+        assertEquals(1000, item.getCurrentBid());
+        assertNull(item.getHighestBidderId());
+        assertEquals(0, item.getUpdateSequence());
+        assertEquals(1, item.tryPlaceBid("b", "Bia", 1200, 1), "a sequência do lance desfeito é reaproveitada");
+    }
+
+    @Test
+    void revertingAChainOfUnrecordedBidsStopsAtTheFirst() {
+        AuctionItem item = auction();
+        AuctionItem.BidState first = item.tryPlaceBidOver("a", "Ana", 1500, 1);
+        AuctionItem.BidState second = item.tryPlaceBidOver("b", "Bia", 2000, 1);
+
+        // Os Commits chegam na ordem dos registros: o primeiro desfaz os dois
+        assertTrue(item.revertBid(first));
+        assertFalse(item.revertBid(second));
+        assertEquals(1000, item.getCurrentBid());
+        assertNull(item.getHighestBidderUsername());
+    }
+
+    @Test
+    void revertBidKeepsAnAuctionThatEndedMeanwhileClosed() {
+        AuctionItem item = auction();
+        AuctionItem.BidState previous = item.tryPlaceBidOver("a", "Ana", 1500, 1);
+        item.setStatus(AuctionItem.Status.ENDED);
+
+        assertTrue(item.revertBid(previous));
+        assertEquals(AuctionItem.Status.ENDED, item.getStatus());
+        assertEquals(1000, item.getCurrentBid());
+    }
+
+    @Test
+    void concurrentBidsKeepTheHighestAndOneSequencePerAcceptedBid() throws InterruptedException {
+        AuctionItem item = auction();
+        int threads = 8;
+        int bidsPerThread = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong sequenceSum = new AtomicLong();
+        List<Thread> bidders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread bidder = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Valores intercalados entre as threads: cada lance disputa com os das outras
+                for (int i = 1; i <= bidsPerThread; i++) {
+                    long sequence = item.tryPlaceBid("b" + id, "B" + id, 1000 + (long) i * threads + id, 1);
+                    if (sequence > 0) {
+                        accepted.incrementAndGet();
+                        sequenceSum.addAndGet(sequence);
+                    }
+                }
+            });
+            bidder.start();
+            bidders.add(bidder);
+        }
+        start.countDown();
+        for (Thread bidder : bidders) {
+            bidder.join();
+        }
+
+        long highest = 1000 + (long) bidsPerThread * threads + threads - 1;
+        assertEquals(highest, item.getCurrentBid(), "o maior lance de todos vence");
+        assertEquals("b" + (threads - 1), item.getHighestBidderId());
+        assertEquals(accepted.get(), item.getUpdateSequence(), "uma sequência por lance aceito");
+        // Cada sequência de 1 a n foi atribuída a exatamente um lance aceito
+        long n = accepted.get();
+        assertEquals(n * (n + 1) / 2, sequenceSum.get());
+    }
+}
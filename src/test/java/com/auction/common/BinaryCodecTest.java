@@ -0,0 +1,107 @@
+package com.auction.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Ida e volta pelo BinaryCodec e recusa de frames malformados ou truncados.
+ */
+class BinaryCodecTest {
+
+    private static Message roundTrip(Message message) throws IOException {
+        byte[] frame = BinaryCodec.encode(message);
+        return BinaryCodec.decode(frame[1], frame, BinaryCodec.HEADER_LENGTH, frame.length - BinaryCodec.HEADER_LENGTH);
+    }
+
+    // Payload de um LOGIN até o senderId, seguido dos bytes dados.
+    private static byte[] loginPayload(byte... tail) {
+        ByteBuffer payload = ByteBuffer.allocate(9 + tail.length);
+        payload.put((byte) 1).putLong(0).put(tail); // Código do LOGIN e timestamp
+        return payload.array();
+    }
+
+    private static Message decode(byte[] payload) throws IOException {
+        return BinaryCodec.decode(BinaryCodec.VERSION, payload, 0, payload.length);
+    }
+
+    @Test
+    void loginRoundTrip() throws IOException {
+        LoginMessage decoded = (LoginMessage) roundTrip(
+                new LoginMessage("u1", "ana", 6000, "10.0.0.1", BinaryCodec.VERSION));
+        assertEquals("u1", decoded.getSenderId());
+        assertEquals("ana", decoded.getUsername());
+        assertEquals(6000, decoded.getP2pPort());
+        assertEquals("10.0.0.1", decoded.getIpAddress());
+        assertEquals(BinaryCodec.VERSION, decoded.getProtocolVersion());
+    }
+
+    @Test
+    void placeBidAndBidDeltaRoundTrip() throws IOException {
+        PlaceBidMessage bid = (PlaceBidMessage) roundTrip(new PlaceBidMessage("u1", null, 42, 123_456_789L, null));
+        assertEquals(42, bid.getAuctionHandle());
+        assertEquals(123_456_789L, bid.getBidAmount());
+
+        BidDeltaMessage delta = (BidDeltaMessage) roundTrip(
+                new BidDeltaMessage("server", Integer.MAX_VALUE, Long.MAX_VALUE, 150, 7));
+        assertEquals(Integer.MAX_VALUE, delta.getAuctionHandle());
+        assertEquals(Long.MAX_VALUE, delta.getSequence());
+        assertEquals(150, delta.getNewBid());
+        assertEquals(7, delta.getBidderHandle());
+    }
+
+    @Test
+    void hugeStringLengthIsRejectedAsCorruptFrame() {
+        // Tamanho 0x7FFFFFFF: pos + tamanho estouraria o int
+        assertThrows(IOException.class, () -> decode(loginPayload(
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x07)));
+    }
+
+    @Test
+    void negativeAndOverlongVarintsAreRejected() {
+        assertThrows(IOException.class, () -> decode(loginPayload(
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x0F)));
+        assertThrows(IOException.class, () -> decode(loginPayload(
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x00)));
+    }
+
+    @Test
+    void negativeVarintIsNotEncoded() {
+        assertThrows(IOException.class, () -> BinaryCodec.encode(new LoginMessage("u1", "ana", -1)));
+    }
+
+    @Test
+    void everyTruncationOfAValidFrameIsRejected() throws IOException {
+        byte[] frame = BinaryCodec.encode(new CreateAuctionMessage("u1", "Relógio", "Antigo", 1000, 60));
+        byte[] payload = Arrays.copyOfRange(frame, BinaryCodec.HEADER_LENGTH, frame.length);
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThrows(IOException.class, () -> decode(truncated));
+        }
+    }
+
+    @Test
+    void streamDecoderWaitsForACompleteFrameAndRejectsBadLengths() throws IOException {
+        byte[] frame = BinaryCodec.encode(new KeepAliveMessage("u1"));
+        MessageStreamDecoder decoder = new MessageStreamDecoder();
+        decoder.append(ByteBuffer.wrap(SerializedFrames.STREAM_HEADER));
+        for (int i = 0; i < frame.length - 1; i++) {
+            decoder.append(ByteBuffer.wrap(frame, i, 1));
+            assertNull(decoder.next());
+        }
+        decoder.append(ByteBuffer.wrap(frame, frame.length - 1, 1));
+        assertEquals(MessageType.KEEP_ALIVE, decoder.next().getType());
+
+        MessageStreamDecoder negative = new MessageStreamDecoder();
+        negative.append(ByteBuffer.wrap(SerializedFrames.STREAM_HEADER));
+        negative.append(ByteBuffer.wrap(new byte[] {BinaryCodec.FRAME_MARKER, BinaryCodec.VERSION,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0}));
+        assertThrows(IOException.class, negative::next);
+    }
+}
@@ -0,0 +1,100 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gravação, releitura, cache e registros incompletos do AuctionArchive.
+ */
+class AuctionArchiveTest {
+
+    private static AuctionArchive.Archived ended(int handle, long... amounts) {
+        AuctionItem item = new AuctionItem("Item " + handle, "Desc", 1000, 60, "seller", "Vendedor");
+        item.setHandle(handle);
+        long[] timestamps = new long[amounts.length];
+        int[] bidders = new int[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            item.tryPlaceBid("b" + (i % 2), "B" + (i % 2), amounts[i], 1);
+            timestamps[i] = 1_000_000 + i;
+            bidders[i] = i % 2;
+        }
+        item.setStatus(AuctionItem.Status.ENDED);
+        return new AuctionArchive.Archived(item.copy(),
+                new BidHistory.Slice(0, amounts.length, timestamps, amounts, bidders),
+                new String[]{"b0", "b1"}, new String[]{"B0", "B1"});
+    }
+
+    @Test
+    void archivedAuctionsAreReadBackAfterReopening() throws IOException {
+        Path path = Files.createTempDirectory("archive").resolve("ended.log");
+        AuctionArchive.Archived first = ended(1, 1500, 2000, 2500);
+        AuctionArchive.Archived second = ended(2);
+        new AuctionArchive(path, 10).append(List.of(first, second));
+
+        AuctionArchive reopened = new AuctionArchive(path, 10);
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.contains(first.item.getId()));
+        assertNull(reopened.get("desconhecido"));
+
+        AuctionArchive.Archived read = reopened.get(first.item.getId());
+        assertEquals(2500, read.item.getCurrentBid());
+        assertEquals(AuctionItem.Status.ENDED, read.item.getStatus());
+        assertEquals(3, read.history.amounts.length);
+        assertEquals(2000, read.history.amounts[1]);
+        assertEquals("B1", read.bidderUsernames[read.history.bidders[1]]);
+        assertEquals(0, reopened.get(second.item.getId()).history.amounts.length);
+    }
+
+    @Test
+    void repeatedReadsAreServedByTheCache() throws IOException {
+        Path path = Files.createTempDirectory("archive").resolve("ended.log");
+        AuctionArchive.Archived entry = ended(1, 1500);
+        new AuctionArchive(path, 10).append(List.of(entry));
+        AuctionArchive archive = new AuctionArchive(path, 10);
+
+        long hits = AuctionArchive.getCacheHits();
+        long misses = AuctionArchive.getCacheMisses();
+        archive.get(entry.item.getId());
+        archive.get(entry.item.getId());
+        archive.get(entry.item.getId());
+
+        assertEquals(1, AuctionArchive.getCacheMisses() - misses);
+        assertEquals(2, AuctionArchive.getCacheHits() - hits);
+    }
+
+    @Test
+    void incompleteLastRecordIsDroppedOnReopening() throws IOException {
+        Path path = Files.createTempDirectory("archive").resolve("ended.log");
+        AuctionArchive.Archived kept = ended(1, 1500);
+        AuctionArchive.Archived torn = ended(2, 3000);
+        AuctionArchive archive = new AuctionArchive(path, 10);
+        archive.append(List.of(kept));
+        long complete = Files.size(path);
+        archive.append(List.of(torn));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 5); // Queda no meio da gravação do segundo registro
+        }
+
+        AuctionArchive reopened = new AuctionArchive(path, 10);
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.contains(kept.item.getId()));
+        assertFalse(reopened.contains(torn.item.getId()));
+        assertEquals(complete, Files.size(path));
+
+        // O próximo registro é gravado onde o válido termina
+        reopened.append(List.of(torn));
+        assertEquals(3000, new AuctionArchive(path, 10).get(torn.item.getId()).item.getCurrentBid());
+    }
+}
@@ -0,0 +1,151 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gravação em grupo, Commits e releitura do AuctionJournal.
+ */
+class AuctionJournalTest {
+
+    // Guarda os registros relidos como texto, para comparar a ordem.
+    private static final class Recorder implements AuctionJournal.Replay {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void onCreate(AuctionItem item) {
+            records.add("create " + item.getId() + " " + item.getCurrentBid());
+        }
+
+        @Override
+        public void onBid(String auctionId, long sequence, long amount, String bidderId, String bidderUsername,
+                          long timestampMillis) {
+            records.add("bid " + auctionId + " " + sequence + " " + amount + " " + bidderUsername + " " + timestampMillis);
+        }
+
+        @Override
+        public void onClose(AuctionItem finalState) {
+            records.add("close " + finalState.getId() + " " + finalState.getStatus());
+        }
+    }
+
+    private static AuctionItem auction() {
+        AuctionItem item = new AuctionItem("Item", "Desc", 1000, 60, "seller", "Vendedor");
+        item.setHandle(1);
+        return item;
+    }
+
+    private static AuctionJournal open(Path path) throws IOException {
+        AuctionJournal journal = new AuctionJournal(path);
+        journal.replay(new Recorder());
+        return journal;
+    }
+
+    @Test
+    void commitsArriveInRecordOrderAndReplayReadsEveryRecord() throws Exception {
+        Path path = Files.createTempDirectory("journal").resolve("auctions.log");
+        AuctionJournal journal = open(path);
+        AuctionItem item = auction();
+        List<String> commits = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        journal.appendCreate(item, durable -> {
+            commits.add("create " + durable);
+            done.countDown();
+        });
+        for (int i = 1; i <= 3; i++) {
+            int bid = i;
+            journal.appendBid(item.getId(), bid, 1000 + bid * 100, "bidder", "Licitante", 42, durable -> {
+                commits.add("bid" + bid + " " + durable);
+                done.countDown();
+            });
+        }
+        item.setStatus(AuctionItem.Status.ENDED);
+        journal.appendClose(item, durable -> {
+            commits.add("close " + durable);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS), "Commits não chegaram");
+        assertEquals(List.of("create true", "bid1 true", "bid2 true", "bid3 true", "close true"), commits);
+
+        Recorder replayed = new Recorder();
+        assertEquals(5, new AuctionJournal(path).replay(replayed));
+        assertEquals(List.of(
+                "create " + item.getId() + " 1000",
+                "bid " + item.getId() + " 1 1100 Licitante 42",
+                "bid " + item.getId() + " 2 1200 Licitante 42",
+                "bid " + item.getId() + " 3 1300 Licitante 42",
+                "close " + item.getId() + " ENDED"), replayed.records);
+    }
+
+    @Test
+    void incompleteRecordAtTheEndIsDiscardedAndTruncated() throws Exception {
+        Path path = Files.createTempDirectory("journal").resolve("auctions.log");
+        AuctionJournal journal = open(path);
+        AuctionItem item = auction();
+        CountDownLatch done = new CountDownLatch(1);
+        journal.appendCreate(item, durable -> done.countDown());
+        assertTrue(done.await(10, TimeUnit.SECONDS), "Commit não chegou");
+        long complete = Files.size(path);
+
+        // Queda no meio de uma gravação: cabeçalho de um registro de 100 bytes com só 3 deles
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[3]).flip());
+        }
+
+        Recorder replayed = new Recorder();
+        assertEquals(1, new AuctionJournal(path).replay(replayed));
+        assertEquals(1, replayed.records.size());
+        assertEquals(complete, Files.size(path));
+    }
+
+    @Test
+    void rotateWaitsForTheCommitsOfTheRotatedRecords() throws Exception {
+        Path path = Files.createTempDirectory("journal").resolve("auctions.log");
+        AuctionJournal journal = open(path);
+        AtomicBoolean committed = new AtomicBoolean();
+        journal.appendCreate(auction(), durable -> {
+            try {
+                Thread.sleep(200); // Um Commit lento: rotate() não pode voltar antes dele
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            committed.set(durable);
+        });
+        assertTrue(journal.rotate());
+        assertTrue(committed.get(), "rotate() voltou antes do Commit do registro rodado");
+        assertTrue(journal.rotatedExists());
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void recordTypesOfUnreleasedFormatsAreRejected() throws Exception {
+        Path path = Files.createTempDirectory("journal").resolve("auctions.log");
+        // Registro íntegro (CRC confere) do tipo 1, o antigo "criação com valores em double"
+        byte[] content = {1, 0, 0, 0, 0};
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8 + content.length).putInt(content.length)
+                    .putInt((int) crc.getValue()).put(content).flip());
+        }
+        assertThrows(IOException.class, () -> new AuctionJournal(path).replay(new Recorder()));
+    }
+}
@@ -0,0 +1,157 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.AuctionQueryMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Paginação, filtros e partições por dono do AuctionQueryIndex.
+ */
+class AuctionQueryIndexTest {
+
+    private static final long OPEN_MIN = Long.MIN_VALUE;
+    private static final long OPEN_MAX = Long.MAX_VALUE;
+    // Término de leilões que recebem lances: ainda não vencido
+    private static final long LATER = System.currentTimeMillis() + 3_600_000;
+
+    private static AuctionItem auction(int handle, String sellerId, long currentBid, long endTimeMillis) {
+        return new AuctionItem("a" + handle, "Item " + handle, "Desc", currentBid, currentBid, null, null,
+                endTimeMillis, sellerId, sellerId, AuctionItem.Status.ACTIVE, handle, 0);
+    }
+
+    private static List<Integer> handles(List<AuctionItem> auctions) {
+        List<Integer> handles = new ArrayList<>();
+        for (AuctionItem item : auctions) {
+            handles.add(item.getHandle());
+        }
+        return handles;
+    }
+
+    private static AuctionQueryIndex.Page byEndTime(AuctionQueryIndex index, String cursor, int pageSize) {
+        return index.query(AuctionItem.Status.ACTIVE, null, null, OPEN_MIN, OPEN_MAX, OPEN_MIN, OPEN_MAX,
+                AuctionQueryMessage.SortKey.END_TIME, false, cursor, pageSize);
+    }
+
+    @Test
+    void pagesFollowTheCursorWithoutGapsOrRepeats() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        // Términos repetidos de três em três: o handle desempata
+        for (int handle = 25; handle >= 1; handle--) {
+            index.reindex(auction(handle, "s", 1000, 10_000 + (handle - 1) / 3));
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            AuctionQueryIndex.Page page = byEndTime(index, cursor, 10);
+            seen.addAll(handles(page.auctions));
+            cursor = page.nextCursor;
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        List<Integer> expected = new ArrayList<>();
+        for (int handle = 1; handle <= 25; handle++) {
+            expected.add(handle);
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void lastFullPageHasNoCursor() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        for (int handle = 1; handle <= 4; handle++) {
+            index.reindex(auction(handle, "s", 1000, 10_000 + handle));
+        }
+        AuctionQueryIndex.Page page = byEndTime(index, null, 4);
+        assertEquals(4, page.auctions.size());
+        assertNull(page.nextCursor);
+    }
+
+    @Test
+    void rangesAndSellerFilterAreApplied() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        for (int handle = 1; handle <= 20; handle++) {
+            index.reindex(auction(handle, handle % 2 == 0 ? "par" : "impar", handle * 100L, 10_000 + handle));
+        }
+
+        // Faixa do critério de ordenação (lance), em ordem decrescente, com a faixa de término conferida item a item
+        AuctionQueryIndex.Page page = index.query(AuctionItem.Status.ACTIVE, "par", null, 500, 1600, 10_008, OPEN_MAX,
+                AuctionQueryMessage.SortKey.CURRENT_BID, true, null, 10);
+        assertEquals(List.of(16, 14, 12, 10, 8), handles(page.auctions));
+        assertNull(page.nextCursor);
+
+        // Faixas vazias não devolvem nada
+        page = index.query(AuctionItem.Status.ACTIVE, null, null, 900, 100, OPEN_MIN, OPEN_MAX,
+                AuctionQueryMessage.SortKey.CURRENT_BID, false, null, 10);
+        assertTrue(page.auctions.isEmpty());
+    }
+
+    @Test
+    void bidderPartitionFollowsTheHighestBidder() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        AuctionItem item = auction(1, "s", 1000, LATER);
+        index.reindex(item);
+
+        item.tryPlaceBid("ana", "Ana", 1500, 1);
+        index.reindex(item);
+        assertEquals(List.of(1), handles(byBidder(index, "ana").auctions));
+
+        item.tryPlaceBid("bia", "Bia", 2000, 1);
+        index.reindex(item);
+        assertTrue(byBidder(index, "ana").auctions.isEmpty(), "superada, ana não tem mais o lance mais alto");
+        assertEquals(List.of(1), handles(byBidder(index, "bia").auctions));
+
+        // O lance novo muda a posição na ordenação por lance
+        AuctionQueryIndex.Page page = index.query(AuctionItem.Status.ACTIVE, null, null, 2000, 2000, OPEN_MIN,
+                OPEN_MAX, AuctionQueryMessage.SortKey.CURRENT_BID, false, null, 10);
+        assertEquals(List.of(1), handles(page.auctions));
+    }
+
+    @Test
+    void statusChangeMovesTheAuctionBetweenLists() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        AuctionItem item = auction(1, "s", 1000, 10_000);
+        index.reindex(item);
+
+        item.setStatus(AuctionItem.Status.ENDED);
+        index.reindex(item);
+
+        assertTrue(index.list(AuctionItem.Status.ACTIVE).isEmpty());
+        assertEquals(List.of(1), handles(index.list(AuctionItem.Status.ENDED)));
+    }
+
+    @Test
+    void removeDropsTheAuctionAndItsOwnersPartitions() {
+        AuctionQueryIndex index = new AuctionQueryIndex();
+        AuctionItem item = auction(1, "s", 1000, LATER);
+        item.tryPlaceBid("ana", "Ana", 1500, 1);
+        index.reindex(item);
+        assertEquals(List.of(1), handles(byBidder(index, "ana").auctions));
+
+        index.remove(item);
+
+        assertTrue(index.list(AuctionItem.Status.ACTIVE).isEmpty());
+        assertTrue(byBidder(index, "ana").auctions.isEmpty());
+        AuctionQueryIndex.Page bySeller = index.query(AuctionItem.Status.ACTIVE, "s", null, OPEN_MIN, OPEN_MAX,
+                OPEN_MIN, OPEN_MAX, AuctionQueryMessage.SortKey.END_TIME, false, null, 10);
+        assertTrue(bySeller.auctions.isEmpty());
+
+        // Reindexar depois de remover recria as partições
+        index.reindex(item);
+        assertEquals(List.of(1), handles(byBidder(index, "ana").auctions));
+    }
+
+    private static AuctionQueryIndex.Page byBidder(AuctionQueryIndex index, String bidderId) {
+        return index.query(AuctionItem.Status.ACTIVE, null, bidderId, OPEN_MIN, OPEN_MAX, OPEN_MIN, OPEN_MAX,
+                AuctionQueryMessage.SortKey.END_TIME, false, null, 10);
+    }
+}
@@ -0,0 +1,87 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Termos, prefixos, relevância e mudanças de status do AuctionSearchIndex.
+ */
+class AuctionSearchIndexTest {
+
+    private static AuctionItem auction(int handle, String name, String description) {
+        AuctionItem item = new AuctionItem(name, description, 1000, 60, "seller", "Vendedor");
+        item.setHandle(handle);
+        return item;
+    }
+
+    private static AuctionSearchIndex index(AuctionItem... items) {
+        AuctionSearchIndex index = new AuctionSearchIndex();
+        for (AuctionItem item : items) {
+            index.index(item);
+        }
+        return index;
+    }
+
+    private static List<Integer> search(AuctionSearchIndex index, AuctionItem.Status status, String query) {
+        return Arrays.stream(index.search(status, query, 10)).boxed().toList();
+    }
+
+    @Test
+    void tokenizeDropsAccentsCaseAndStopWords() {
+        assertEquals(List.of("relogio", "ouro", "antigo"), AuctionSearchIndex.tokenize("O Relógio de Ouro, ANTIGO!"));
+        assertEquals(List.of("guarda", "chuva"), AuctionSearchIndex.tokenize("guarda-chuva"));
+    }
+
+    @Test
+    void everyQueryTermMustMatch() {
+        AuctionSearchIndex index = index(
+                auction(1, "Relógio antigo", "Corda manual"),
+                auction(2, "Relógio digital", "Pulseira de aço"),
+                auction(3, "Bicicleta antiga", "Aro 26"));
+
+        assertEquals(List.of(1), search(index, AuctionItem.Status.ACTIVE, "relogio ANTIGO"));
+        assertEquals(List.of(2, 1), search(index, AuctionItem.Status.ACTIVE, "relógio"), "empate: o mais novo primeiro");
+        assertEquals(List.of(), search(index, AuctionItem.Status.ACTIVE, "relogio bicicleta"));
+        assertEquals(List.of(), search(index, AuctionItem.Status.ACTIVE, "de o"), "só palavras comuns");
+    }
+
+    @Test
+    void prefixNeedsTwoCharacters() {
+        AuctionSearchIndex index = index(
+                auction(1, "Bicicleta", "Aro 26"),
+                auction(2, "Bicho de pelúcia", "Urso"));
+
+        assertEquals(List.of(2, 1), search(index, AuctionItem.Status.ACTIVE, "bic*"));
+        assertEquals(List.of(1), search(index, AuctionItem.Status.ACTIVE, "bicic*"));
+        assertEquals(List.of(), search(index, AuctionItem.Status.ACTIVE, "b*"), "um caractere é buscado como termo exato");
+    }
+
+    @Test
+    void nameMatchOutranksDescriptionMatch() {
+        AuctionSearchIndex index = index(
+                auction(1, "Câmera analógica", "Filme 35 mm"),
+                auction(2, "Tripé", "Serve em qualquer câmera"));
+
+        assertEquals(List.of(1, 2), search(index, AuctionItem.Status.ACTIVE, "camera"));
+        assertEquals(1, index.search(AuctionItem.Status.ACTIVE, "camera", 1).length);
+    }
+
+    @Test
+    void statusChangeAndRemoveMoveTheAuction() {
+        AuctionItem item = auction(1, "Vitrola", "Toca-discos");
+        AuctionSearchIndex index = index(item);
+
+        item.setStatus(AuctionItem.Status.ENDED);
+        index.index(item);
+        assertEquals(List.of(), search(index, AuctionItem.Status.ACTIVE, "vitrola"));
+        assertEquals(List.of(1), search(index, AuctionItem.Status.ENDED, "vitrola"));
+
+        index.remove(item);
+        assertEquals(List.of(), search(index, AuctionItem.Status.ENDED, "vitrola"));
+    }
+}
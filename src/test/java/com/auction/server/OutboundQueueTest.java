@@ -0,0 +1,66 @@
+package com.auction.server;
+
+import com.auction.common.AuctionItem;
+import com.auction.common.AuctionStatusDeltaMessage;
+import com.auction.common.BidDeltaMessage;
+import com.auction.common.MessageType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Política de estouro da OutboundQueue com as mensagens delta de clientes novos.
+ */
+class OutboundQueueTest {
+
+    private static final int CAPACITY = 4;
+
+    private static OutboundMessage bidDelta(long sequence) {
+        return new OutboundMessage(new BidDeltaMessage("server", 1, sequence, 1000 + sequence, 7));
+    }
+
+    private static OutboundMessage statusDelta(long sequence) {
+        return new OutboundMessage(new AuctionStatusDeltaMessage("server", 1, sequence, AuctionItem.Status.ENDED));
+    }
+
+    @Test
+    void dropOldestDiscardsStaleBidDeltasInsteadOfDisconnecting() {
+        OutboundQueue queue = new OutboundQueue(CAPACITY, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        for (long sequence = 1; sequence <= CAPACITY * 3; sequence++) {
+            assertTrue(queue.offer(bidDelta(sequence)), "offer do lance " + sequence);
+        }
+        // Ficam os mais recentes, na ordem
+        for (long sequence = CAPACITY * 2 + 1; sequence <= CAPACITY * 3; sequence++) {
+            assertEquals(sequence, ((BidDeltaMessage) queue.poll().getMessage()).getSequence());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void dropOldestKeepsStatusDeltas() {
+        OutboundQueue queue = new OutboundQueue(CAPACITY, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(statusDelta(1)));
+        for (long sequence = 2; sequence <= CAPACITY * 2; sequence++) {
+            assertTrue(queue.offer(bidDelta(sequence)));
+        }
+        assertEquals(MessageType.AUCTION_STATUS_DELTA, queue.poll().getMessage().getType());
+
+        OutboundQueue closings = new OutboundQueue(CAPACITY, ServerConfig.OverflowPolicy.DROP_OLDEST);
+        for (long sequence = 1; sequence <= CAPACITY; sequence++) {
+            assertTrue(closings.offer(statusDelta(sequence)));
+        }
+        assertFalse(closings.offer(bidDelta(CAPACITY + 1)), "só encerramentos na fila: nada a descartar");
+    }
+
+    @Test
+    void disconnectPolicyNeverDrops() {
+        OutboundQueue queue = new OutboundQueue(CAPACITY, ServerConfig.OverflowPolicy.DISCONNECT);
+        for (long sequence = 1; sequence <= CAPACITY; sequence++) {
+            assertTrue(queue.offer(bidDelta(sequence)));
+        }
+        assertFalse(queue.offer(bidDelta(CAPACITY + 1)));
+    }
+}